@@ -0,0 +1,27 @@
+#!/bin/bash
+# 构建并运行 JMH 基准，结果按提交号保存为 JSON：results/<提交号>.json
+# 用法: ./run.sh [JMH 参数...]，例如 ./run.sh JwtUtilsBenchmark -f 2
+# 与基线比较: BASELINE=results/<基线提交号>.json ./run.sh
+set -e
+
+cd "$(dirname "$0")"
+
+echo "正在安装被测应用..."
+(cd .. && mvn -B -q install -Dmaven.test.skip=true)
+
+echo "正在构建基准测试..."
+mvn -B -q package
+
+COMMIT=$(git rev-parse --short HEAD 2>/dev/null || echo "local")
+if [ -n "$(git status --porcelain -- .. 2>/dev/null)" ]; then
+    COMMIT="${COMMIT}-dirty"
+fi
+mkdir -p results
+RESULT="results/${COMMIT}.json"
+
+java -jar target/benchmarks.jar -rf json -rff "$RESULT" "$@"
+echo "结果已保存: $RESULT"
+
+if [ -n "$BASELINE" ]; then
+    java -cp target/benchmarks.jar com.example.mentalhealth.benchmark.JmhResultComparator "$BASELINE" "$RESULT"
+fi
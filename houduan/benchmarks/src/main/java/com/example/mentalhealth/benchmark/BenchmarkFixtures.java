@@ -0,0 +1,108 @@
+package com.example.mentalhealth.benchmark;
+
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.Questionnaire;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.util.JwtUtils;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试共用的测试数据：字段取值与线上数据的长度和分布接近
+ */
+public final class BenchmarkFixtures {
+
+    public static final String JWT_SECRET =
+            "8VLYmEl1wWQdYgerBsAXZ79GN40/JbrI83v0wd8GYqAx5C2KLZybeR82ZiSnxRmCxuwmT+Pse/QYEQ7ySR+nTA==";
+    public static final long JWT_EXPIRATION_MS = 86_400_000L;
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 3, 1, 9, 30);
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * 按 application.properties 的配置初始化 JwtUtils（不启动 Spring 容器）
+     * @param claimsCache false 时每次验证都完整验签
+     */
+    public static JwtUtils jwtUtils(boolean claimsCache) {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", JWT_SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", JWT_EXPIRATION_MS);
+        ReflectionTestUtils.setField(jwtUtils, "claimsCacheMaxSize", 10_000L);
+        ReflectionTestUtils.setField(jwtUtils, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(jwtUtils, "init");
+        if (!claimsCache) {
+            // 容量为 0 且在调用线程上同步淘汰，写入的条目立即被移除
+            ReflectionTestUtils.setField(jwtUtils, "verifiedClaims",
+                    Caffeine.newBuilder().maximumSize(0).executor(Runnable::run).build());
+        }
+        return jwtUtils;
+    }
+
+    public static User user(long id) {
+        User user = new User("user" + id, "user" + id + "@example.com", "$2a$10$abcdefghijklmnopqrstuv");
+        user.setId(id);
+        user.setName("测试用户" + id);
+        user.setAffiliation("心理健康中心");
+        user.setEnabled(true);
+        return user;
+    }
+
+    public static FileRecord fileRecord(long id, User owner) {
+        FileRecord fileRecord = new FileRecord("焦虑自评量表_第" + id + "版.pdf",
+                "20240301_093000_" + String.format("%08x", id) + ".pdf",
+                "uploads/blobs/ab/cd/" + String.format("%064x", id),
+                1_048_576L + id, "application/pdf", FileRecord.FileCategory.DOCUMENT, owner);
+        fileRecord.setId(id);
+        fileRecord.setDescription("门诊随访使用的量表扫描件");
+        fileRecord.setCreatedAt(BASE_TIME.plusMinutes(id));
+        fileRecord.setUpdatedAt(BASE_TIME.plusMinutes(id));
+        return fileRecord;
+    }
+
+    public static Questionnaire questionnaire(long id, User creator) {
+        Questionnaire questionnaire = new Questionnaire("抑郁症筛查量表（PHQ-9）第" + id + "期",
+                "PHQ-9_" + id + ".pdf", "questionnaire_20240301_093000_" + String.format("%08x", id) + ".pdf",
+                "uploads/blobs/12/34/" + String.format("%064x", id), 524_288L + id, "application/pdf", creator);
+        questionnaire.setId(id);
+        questionnaire.setDescription("用于初筛的九项自评问卷，约需五分钟完成");
+        questionnaire.setStatus(Questionnaire.QuestionnaireStatus.PUBLISHED);
+        questionnaire.setCategory("抑郁");
+        questionnaire.setTags("筛查,自评,成人");
+        questionnaire.setDownloadCount((int) (id * 7));
+        questionnaire.setCreatedAt(BASE_TIME.plusMinutes(id));
+        questionnaire.setUpdatedAt(BASE_TIME.plusMinutes(id));
+        questionnaire.setPublishedAt(BASE_TIME.plusHours(1).plusMinutes(id));
+        return questionnaire;
+    }
+
+    public static List<FileRecord> fileRecords(int count, User owner) {
+        List<FileRecord> records = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            records.add(fileRecord(i, owner));
+        }
+        return records;
+    }
+
+    public static List<Questionnaire> questionnaires(int count, User creator) {
+        List<Questionnaire> questionnaires = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            questionnaires.add(questionnaire(i, creator));
+        }
+        return questionnaires;
+    }
+
+    /**
+     * 签名下载链接形式的 URL，长度与线上一致
+     */
+    public static String downloadUrl(String sha256) {
+        return "http://localhost:9000/api/blobs/" + sha256 + "?name=report.pdf&type=application%2Fpdf"
+                + "&expires=1709289000&sig=Zm9vYmFyYmF6cXV4Zm9vYmFyYmF6cXV4Zm9vYmFyYmF6cXU";
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.mentalhealth.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 比较两次 JMH 运行的 JSON 结果（-rf json），逐项输出变化比例；
+ * 任一基准变差超过阈值（默认 10%）且超出两次结果误差范围时以退出码 1 结束，可直接用于 CI。
+ * <pre>
+ * java -cp target/benchmarks.jar com.example.mentalhealth.benchmark.JmhResultComparator base.json current.json [阈值百分比]
+ * </pre>
+ */
+public class JmhResultComparator {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: JmhResultComparator <基线结果.json> <当前结果.json> [阈值百分比，默认 10]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+        Map<String, Score> base = load(new File(args[0]));
+        Map<String, Score> current = load(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "benchmark", "base", "current", "change");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score before = base.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s%n", entry.getKey(), "-", now.value, "new");
+                continue;
+            }
+            // 吞吐模式越大越好，其余模式（平均时间、采样时间等）越小越好
+            double change = (now.value - before.value) / before.value;
+            double worse = now.higherIsBetter ? -change : change;
+            boolean beyondError = Math.abs(now.value - before.value) > now.error + before.error;
+            boolean regression = worse > threshold && beyondError;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), before.value, now.value,
+                    change * 100, regression ? "  << 变差" : "");
+        }
+        for (String key : base.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-90s %14.3f %14s %9s%n", key, base.get(key).value, "-", "removed");
+            }
+        }
+        System.out.printf("%n%d 项基准变差超过 %.0f%%%n", regressions, threshold * 100);
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    // 私有方法
+
+    // 键：基准方法 + 参数 + 单位，同一方法的不同参数分别比较
+    private static Map<String, Score> load(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            JsonNode params = result.path("params");
+            if (params.isObject()) {
+                Map<String, String> sorted = new TreeMap<>();
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    sorted.put(field.getKey(), field.getValue().asText());
+                }
+                key.append(sorted);
+            }
+            JsonNode metric = result.path("primaryMetric");
+            key.append(" (").append(metric.path("scoreUnit").asText()).append(')');
+            double error = metric.path("scoreError").asDouble();
+            scores.put(key.toString(), new Score(metric.path("score").asDouble(),
+                    Double.isNaN(error) ? 0 : error, "thrpt".equals(result.path("mode").asText())));
+        }
+        return scores;
+    }
+
+    private static class Score {
+        private final double value;
+        private final double error;
+        private final boolean higherIsBetter;
+
+        Score(double value, double error, boolean higherIsBetter) {
+            this.value = value;
+            this.error = error;
+            this.higherIsBetter = higherIsBetter;
+        }
+    }
+}
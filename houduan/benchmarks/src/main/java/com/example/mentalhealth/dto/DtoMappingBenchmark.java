@@ -0,0 +1,98 @@
+package com.example.mentalhealth.dto;
+
+import com.example.mentalhealth.benchmark.BenchmarkFixtures;
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.Questionnaire;
+import com.example.mentalhealth.entity.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 列表接口的响应构造：实体到 DTO 的映射，以及 ApiResponse 的 JSON 序列化
+ * ObjectMapper 与 Spring Boot 默认配置一致（Java 时间模块，日期输出为 ISO 字符串）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoMappingBenchmark {
+
+    // 单条、默认分页大小和一次返回的整个列表
+    @Param({"1", "20", "200"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<FileRecord> fileRecords;
+    private List<Questionnaire> questionnaires;
+    private List<String> downloadUrls;
+    private ApiResponse<List<FileInfoResponse>> fileListResponse;
+    private ApiResponse<List<QuestionnaireInfoResponse>> questionnaireListResponse;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        User user = BenchmarkFixtures.user(1);
+        fileRecords = BenchmarkFixtures.fileRecords(size, user);
+        questionnaires = BenchmarkFixtures.questionnaires(size, user);
+        downloadUrls = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            downloadUrls.add(BenchmarkFixtures.downloadUrl(String.format("%064x", i)));
+        }
+        fileListResponse = new ApiResponse<>(true, "获取文件列表成功", mapFiles());
+        questionnaireListResponse = new ApiResponse<>(true, "获取已发布问卷成功", mapQuestionnaires());
+    }
+
+    @Benchmark
+    public List<FileInfoResponse> mapFiles() {
+        List<FileInfoResponse> responses = new ArrayList<>(fileRecords.size());
+        for (int i = 0; i < fileRecords.size(); i++) {
+            responses.add(new FileInfoResponse(fileRecords.get(i), downloadUrls.get(i)));
+        }
+        return responses;
+    }
+
+    @Benchmark
+    public List<QuestionnaireInfoResponse> mapQuestionnaires() {
+        List<QuestionnaireInfoResponse> responses = new ArrayList<>(questionnaires.size());
+        for (int i = 0; i < questionnaires.size(); i++) {
+            responses.add(new QuestionnaireInfoResponse(questionnaires.get(i), downloadUrls.get(i)));
+        }
+        return responses;
+    }
+
+    @Benchmark
+    public byte[] serializeFileList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(fileListResponse);
+    }
+
+    @Benchmark
+    public byte[] serializeQuestionnaireList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(questionnaireListResponse);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerializeQuestionnaireList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(new ApiResponse<>(true, "获取已发布问卷成功", mapQuestionnaires()));
+    }
+}
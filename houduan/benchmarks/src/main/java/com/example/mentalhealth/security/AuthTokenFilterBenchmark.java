@@ -0,0 +1,98 @@
+package com.example.mentalhealth.security;
+
+import com.example.mentalhealth.benchmark.BenchmarkFixtures;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.service.UserDetailsServiceImpl;
+import com.example.mentalhealth.util.JwtUtils;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个受保护请求都会经过的 AuthTokenFilter：解析 Authorization 头、验证 token、加载主体、写入安全上下文。
+ * 主体查询替换为内存返回（对应线上主体缓存命中的情况），不访问数据库。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthTokenFilterBenchmark {
+
+    private AuthTokenFilter filter;
+    private String authorization;
+
+    @Setup
+    public void setUp() {
+        JwtUtils jwtUtils = BenchmarkFixtures.jwtUtils(true);
+        User user = BenchmarkFixtures.user(1);
+        authorization = "Bearer " + jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+
+        filter = new AuthTokenFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "userDetailsService", new CachedUserDetailsService(user));
+    }
+
+    @Benchmark
+    public Object authenticatedRequest() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/files/list");
+        request.addHeader("Authorization", authorization);
+        return doFilter(request);
+    }
+
+    @Benchmark
+    public Object anonymousRequest() throws ServletException, IOException {
+        return doFilter(new MockHttpServletRequest("GET", "/api/questionnaires/published"));
+    }
+
+    @Benchmark
+    public Object signedDownloadRequest() throws ServletException, IOException {
+        return doFilter(new MockHttpServletRequest("GET", "/api/blobs/" + "0".repeat(64)));
+    }
+
+    // 私有方法
+
+    private Object doFilter(MockHttpServletRequest request) throws ServletException, IOException {
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    // 固定返回同一个主体
+    private static class CachedUserDetailsService extends UserDetailsServiceImpl {
+
+        private final User user;
+
+        CachedUserDetailsService(User user) {
+            this.user = user;
+        }
+
+        @Override
+        public UserDetails loadCachedUserByUsername(String username) {
+            return user;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.entity.FileRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传路径上的文件名处理：类型校验、分类和生成存储文件名。
+ * 基准与 FileService 同包，直接调用这几个包内可见的方法，不经过数据库、内容存储和事务。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileServiceBenchmark {
+
+    // 分别命中文档、视频、图片分支的末尾，以及不支持的类型
+    @Param({"随访记录.docx", "团体辅导录像.MKV", "情绪日记.webp", "setup.exe"})
+    private String filename;
+
+    private FileService fileService;
+
+    @Setup
+    public void setUp() {
+        // 这几个方法只读取常量，不需要注入依赖
+        fileService = new FileService();
+    }
+
+    @Benchmark
+    public boolean isAllowedFileType() {
+        return fileService.isAllowedFileType(filename);
+    }
+
+    @Benchmark
+    public FileRecord.FileCategory determineFileCategory() {
+        return fileService.determineFileCategory(filename);
+    }
+
+    @Benchmark
+    public String generateStoredFileName() {
+        return fileService.generateStoredFileName(filename);
+    }
+}
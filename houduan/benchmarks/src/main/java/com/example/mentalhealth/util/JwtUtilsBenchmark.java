@@ -0,0 +1,74 @@
+package com.example.mentalhealth.util;
+
+import com.example.mentalhealth.benchmark.BenchmarkFixtures;
+import com.example.mentalhealth.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT 生成与验证：验证分为命中 claims 缓存和首次验签两种情况
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtUtilsBenchmark {
+
+    private JwtUtils jwtUtils;
+    private JwtUtils uncachedJwtUtils;
+    private Authentication authentication;
+    private String token;
+    private String tamperedToken;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = BenchmarkFixtures.jwtUtils(true);
+        uncachedJwtUtils = BenchmarkFixtures.jwtUtils(false);
+        User user = BenchmarkFixtures.user(1);
+        authentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+        token = jwtUtils.generateJwtToken(authentication);
+        jwtUtils.validateJwtToken(token);
+        // 改动签名最后一个字符，验签失败
+        char last = token.charAt(token.length() - 1);
+        tamperedToken = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtils.generateJwtToken(authentication);
+    }
+
+    @Benchmark
+    public boolean validateCachedToken() {
+        return jwtUtils.validateJwtToken(token);
+    }
+
+    @Benchmark
+    public boolean validateUncachedToken() {
+        return uncachedJwtUtils.validateJwtToken(token);
+    }
+
+    @Benchmark
+    public boolean rejectTamperedToken() {
+        return jwtUtils.validateJwtToken(tamperedToken);
+    }
+
+    @Benchmark
+    public String usernameFromCachedToken() {
+        return jwtUtils.getUserNameFromJwtToken(token);
+    }
+}
@@ -48,6 +48,7 @@ CREATE TABLE IF NOT EXISTS file_records (
     file_path VARCHAR(500) NOT NULL COMMENT '文件存储路径',
     file_size BIGINT COMMENT '文件大小（字节）',
     file_type VARCHAR(100) COMMENT '文件类型（MIME类型）',
+    content_hash CHAR(64) COMMENT '内容SHA-256（引用 stored_blobs，旧数据为空）',
     category ENUM('DOCUMENT', 'VIDEO', 'IMAGE', 'OTHER') NOT NULL COMMENT '文件分类',
     uploaded_by BIGINT NOT NULL COMMENT '上传用户ID',
     description TEXT COMMENT '文件描述',
@@ -63,7 +64,10 @@ CREATE TABLE IF NOT EXISTS file_records (
     INDEX idx_category (category),
     INDEX idx_created_at (created_at),
     INDEX idx_is_active (is_active),
-    INDEX idx_file_type (file_type)
+    INDEX idx_file_type (file_type),
+    INDEX idx_file_uploader_created (uploaded_by, is_active, created_at, id),
+    INDEX idx_file_content_hash (content_hash),
+    INDEX idx_file_purge (is_active, updated_at)
 ) COMMENT='文件记录表';
 
 -- 创建问卷表
@@ -76,6 +80,7 @@ CREATE TABLE IF NOT EXISTS questionnaires (
     file_path VARCHAR(500) NOT NULL COMMENT '文件存储路径',
     file_size BIGINT COMMENT '文件大小（字节）',
     file_type VARCHAR(100) COMMENT '文件类型（MIME类型）',
+    content_hash CHAR(64) COMMENT '内容SHA-256（引用 stored_blobs，旧数据为空）',
     status ENUM('DRAFT', 'PUBLISHED', 'ARCHIVED') NOT NULL DEFAULT 'DRAFT' COMMENT '问卷状态',
     created_by BIGINT NOT NULL COMMENT '创建用户ID',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
@@ -96,6 +101,98 @@ CREATE TABLE IF NOT EXISTS questionnaires (
     INDEX idx_created_at (created_at),
     INDEX idx_published_at (published_at),
     INDEX idx_is_active (is_active),
-    INDEX idx_download_count (download_count)
+    INDEX idx_download_count (download_count),
+    INDEX idx_questionnaire_creator_created (created_by, is_active, created_at, id),
+    INDEX idx_questionnaire_status_published (status, is_active, published_at, id),
+    INDEX idx_questionnaire_category_created (category, is_active, created_at, id),
+    INDEX idx_questionnaire_content_hash (content_hash),
+    INDEX idx_questionnaire_purge (is_active, updated_at)
 ) COMMENT='问卷表';
 
+-- 创建标签字典表
+CREATE TABLE IF NOT EXISTS tags (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '标签ID（主键）',
+    name VARCHAR(100) NOT NULL UNIQUE COMMENT '标签名（去空格、小写）',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'
+) COMMENT='标签字典表';
+
+-- 创建问卷标签关联表
+CREATE TABLE IF NOT EXISTS questionnaire_tag (
+    questionnaire_id BIGINT NOT NULL COMMENT '问卷ID',
+    tag_id BIGINT NOT NULL COMMENT '标签ID',
+    
+    PRIMARY KEY (questionnaire_id, tag_id),
+    
+    -- 外键约束
+    CONSTRAINT fk_questionnaire_tag_questionnaire FOREIGN KEY (questionnaire_id) REFERENCES questionnaires(id) ON DELETE CASCADE,
+    CONSTRAINT fk_questionnaire_tag_tag FOREIGN KEY (tag_id) REFERENCES tags(id) ON DELETE CASCADE,
+    
+    -- 索引
+    INDEX idx_questionnaire_tag_tag (tag_id, questionnaire_id)
+) COMMENT='问卷标签关联表';
+
+-- 创建用户统计汇总表（statistics.materialized.enabled=true 时由上传、删除、发布、归档增量维护）
+CREATE TABLE IF NOT EXISTS user_statistics (
+    user_id BIGINT PRIMARY KEY COMMENT '用户ID',
+    file_count BIGINT NOT NULL DEFAULT 0 COMMENT '文件总数',
+    document_count BIGINT NOT NULL DEFAULT 0 COMMENT '文档数量',
+    video_count BIGINT NOT NULL DEFAULT 0 COMMENT '视频数量',
+    image_count BIGINT NOT NULL DEFAULT 0 COMMENT '图片数量',
+    total_file_size BIGINT NOT NULL DEFAULT 0 COMMENT '文件总大小（字节）',
+    questionnaire_count BIGINT NOT NULL DEFAULT 0 COMMENT '问卷总数',
+    draft_count BIGINT NOT NULL DEFAULT 0 COMMENT '草稿数量',
+    published_count BIGINT NOT NULL DEFAULT 0 COMMENT '已发布数量',
+    archived_count BIGINT NOT NULL DEFAULT 0 COMMENT '已归档数量',
+    updated_at TIMESTAMP NULL COMMENT '更新时间',
+    
+    -- 外键约束
+    CONSTRAINT fk_user_statistics_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) COMMENT='用户统计汇总表';
+
+-- 内容寻址存储表（相同内容只存一份，文件位于 {file.upload.dir}/blobs/{sha256}）
+-- ref_count 统计引用的文件记录和问卷（含软删除），彻底清除最后一个引用后删除物理文件
+CREATE TABLE IF NOT EXISTS stored_blobs (
+    sha256 CHAR(64) PRIMARY KEY COMMENT '内容SHA-256',
+    file_size BIGINT NOT NULL COMMENT '文件大小（字节）',
+    ref_count BIGINT NOT NULL DEFAULT 0 COMMENT '引用次数',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    
+    -- 索引
+    INDEX idx_stored_blob_ref_count (ref_count)
+) COMMENT='内容存储表';
+
+-- 分片上传会话表（可续传的大文件上传，长时间无活动的会话由应用定期清理）
+CREATE TABLE IF NOT EXISTS upload_sessions (
+    id VARCHAR(36) PRIMARY KEY COMMENT '上传ID（UUID）',
+    uploaded_by BIGINT NOT NULL COMMENT '上传用户ID',
+    original_name VARCHAR(255) NOT NULL COMMENT '原始文件名',
+    content_type VARCHAR(255) COMMENT '文件类型（MIME类型）',
+    description VARCHAR(255) COMMENT '文件描述',
+    total_size BIGINT NOT NULL COMMENT '文件总大小（字节）',
+    chunk_size INT NOT NULL COMMENT '分片大小（字节）',
+    target_path VARCHAR(500) NOT NULL COMMENT '暂存路径（分片写入 .part 文件）',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '最近活动时间',
+    
+    -- 外键约束
+    CONSTRAINT fk_upload_session_user FOREIGN KEY (uploaded_by) REFERENCES users(id) ON DELETE CASCADE,
+    
+    -- 索引
+    INDEX idx_upload_session_updated (updated_at)
+) COMMENT='分片上传会话表';
+
+-- 已接收的分片
+CREATE TABLE IF NOT EXISTS upload_chunks (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '主键',
+    session_id VARCHAR(36) NOT NULL COMMENT '上传会话ID',
+    chunk_index INT NOT NULL COMMENT '分片序号（从0开始）',
+    chunk_size BIGINT NOT NULL COMMENT '分片字节数',
+    sha256 CHAR(64) NOT NULL COMMENT '分片SHA-256',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '接收时间',
+    
+    UNIQUE KEY uk_upload_chunk (session_id, chunk_index)
+) COMMENT='分片上传分片表';
+
+-- 旧数据迁移：questionnaires.tags 逗号分隔字符串会在应用启动时自动迁移到关联表
+-- （questionnaire.tags.migrate-on-startup=true，只处理尚无关联记录的问卷，可重复执行）
+-- questionnaires.tags 列保留作为展示用的冗余字段
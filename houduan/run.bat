@@ -7,7 +7,7 @@ echo.
 echo 正在检查Java环境...
 java -version
 if %errorlevel% neq 0 (
-    echo 错误: 未找到Java环境，请确保已安装JDK 17或更高版本
+    echo 错误: 未找到Java环境，请确保已安装JDK 21或更高版本
     pause
     exit /b 1
 )
@@ -0,0 +1,57 @@
+package com.example.mentalhealth.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 指标配置：服务类上的 @Timed 由切面计时；下载和搜索接口的 http.server.requests 发布直方图桶
+ * 连接池（hikaricp.*）和 Hibernate 统计（hibernate.*）由 Spring Boot 自动绑定
+ */
+@Configuration
+public class MetricsConfig {
+
+    private static final String HTTP_SERVER_REQUESTS = "http.server.requests";
+
+    @Value("${metrics.http.histogram-uris:}")
+    private List<String> histogramUris;
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    /**
+     * 只给指定接口开直方图，避免所有接口都带上几十个桶
+     */
+    @Bean
+    public MeterFilter httpHistogramMeterFilter() {
+        Set<String> uris = new HashSet<>();
+        for (String uri : histogramUris) {
+            if (!uri.isBlank()) {
+                uris.add(uri.trim());
+            }
+        }
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (HTTP_SERVER_REQUESTS.equals(id.getName()) && uris.contains(id.getTag("uri"))) {
+                    return DistributionStatisticConfig.builder()
+                            .percentilesHistogram(true)
+                            .build()
+                            .merge(config);
+                }
+                return config;
+            }
+        };
+    }
+}
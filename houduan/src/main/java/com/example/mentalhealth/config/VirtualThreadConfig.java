@@ -0,0 +1,72 @@
+package com.example.mentalhealth.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程执行模式（spring.threads.virtual.enabled=true，需要 JDK 21）
+ * 请求处理、@Async / 异步请求任务和定时任务都改为在虚拟线程上运行：阻塞在 JDBC 和文件 I/O 上时
+ * 只挂起虚拟线程，不再占用 Tomcat 线程池，并发上限由连接数和数据库连接池决定。
+ * 属性名与 Spring Boot 3.2 内置开关一致，升级后可删除本类改用内置实现。
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    /**
+     * Tomcat 每个请求一个虚拟线程，替代默认的 maxThreads 线程池
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        logger.info("请求处理使用虚拟线程");
+        return protocolHandler -> protocolHandler.setExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-vt-", 0).factory()));
+    }
+
+    /**
+     * @Async 方法和 Spring MVC 异步请求（Callable / StreamingResponseBody）使用的执行器，
+     * 同名 Bean 会替换自动配置的 applicationTaskExecutor 线程池
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("task-vt-", 0).factory()));
+    }
+
+    /**
+     * 定时任务（迁移、清理、下载次数写回）保持原有的调度线程数，线程改为虚拟线程
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${spring.task.scheduling.pool.size:1}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadFactory(Thread.ofVirtual().name("scheduling-vt-", 0).factory());
+        return scheduler;
+    }
+
+    /**
+     * 监听虚拟线程被固定（在 synchronized 块或本地调用中阻塞）的 JFR 事件并记录调用栈
+     */
+    @Bean
+    @ConditionalOnProperty(name = "virtual-threads.pinning-monitor.enabled", havingValue = "true", matchIfMissing = true)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            @Value("${virtual-threads.pinning-monitor.threshold-ms:20}") long thresholdMs) {
+        return new VirtualThreadPinningMonitor(Duration.ofMillis(thresholdMs));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.mentalhealth.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 虚拟线程固定诊断：订阅 JFR 的 jdk.VirtualThreadPinned 事件（固定时间超过阈值才产生），
+ * 每个不同的调用位置第一次出现时输出 WARN 和调用栈，之后只计数（DEBUG）。
+ * 固定期间载体线程无法释放，常见原因是在 synchronized 块内做 JDBC 或文件 I/O。
+ */
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    // 日志中输出的最大栈帧数
+    private static final int MAX_FRAMES = 16;
+
+    private final Duration threshold;
+
+    private final AtomicLong pinnedCount = new AtomicLong();
+
+    // 调用位置（栈顶若干帧）-> 出现次数
+    private final Map<String, AtomicLong> sites = new ConcurrentHashMap<>();
+
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::report);
+        stream.startAsync();
+        logger.info("虚拟线程固定监控已启动，阈值 {} ms", threshold.toMillis());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    /**
+     * 启动以来记录到的固定次数
+     */
+    public long getPinnedCount() {
+        return pinnedCount.get();
+    }
+
+    // 私有方法
+
+    private void report(RecordedEvent event) {
+        pinnedCount.incrementAndGet();
+        String stackTrace = formatStackTrace(event.getStackTrace());
+        long occurrences = sites.computeIfAbsent(stackTrace, key -> new AtomicLong()).incrementAndGet();
+        if (occurrences == 1) {
+            logger.warn("虚拟线程被固定 {} ms（线程: {}）:\n{}", event.getDuration().toMillis(),
+                    event.getThread() != null ? event.getThread().getJavaName() : "?", stackTrace);
+        } else {
+            logger.debug("虚拟线程被固定 {} ms（同一位置第 {} 次）", event.getDuration().toMillis(), occurrences);
+        }
+    }
+
+    private String formatStackTrace(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "\t(无调用栈)";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < frames.size() && i < MAX_FRAMES; i++) {
+            RecordedFrame frame = frames.get(i);
+            builder.append("\tat ").append(frame.getMethod().getType().getName())
+                    .append('.').append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber()).append('\n');
+        }
+        if (frames.size() > MAX_FRAMES) {
+            builder.append("\t...\n");
+        }
+        return builder.toString();
+    }
+}
@@ -4,9 +4,12 @@ import com.example.mentalhealth.security.AuthEntryPointJwt;
 import com.example.mentalhealth.security.AuthTokenFilter;
 import com.example.mentalhealth.service.UserDetailsServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -16,7 +19,12 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 @Configuration
 @EnableWebSecurity
@@ -29,6 +37,10 @@ public class WebSecurityConfig {
     @Autowired
     private AuthEntryPointJwt unauthorizedHandler;
     
+    // Prometheus 抓取凭证（Authorization: Bearer <token>），未配置时拒绝抓取
+    @Value("${metrics.prometheus.scrape-token:}")
+    private String prometheusScrapeToken;
+    
     @Bean
     public AuthTokenFilter authenticationJwtTokenFilter() {
         return new AuthTokenFilter();
@@ -62,12 +74,18 @@ public class WebSecurityConfig {
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/test/**").permitAll()
                 .requestMatchers("/h2-console/**").permitAll()
+                // 签名下载链接自带凭证，由控制器验签
+                .requestMatchers("/api/blobs/**").permitAll()
                 // Swagger相关路径
                 .requestMatchers("/swagger-ui/**").permitAll()
                 .requestMatchers("/v3/api-docs/**").permitAll()
                 .requestMatchers("/swagger-ui.html").permitAll()
                 .requestMatchers("/swagger-resources/**").permitAll()
                 .requestMatchers("/webjars/**").permitAll()
+                // 监控端点：健康检查公开，Prometheus 抓取需要抓取凭证，其余端点（metrics 等）不对外开放
+                .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                .requestMatchers("/actuator/prometheus").access(prometheusScrapeAccess())
+                .requestMatchers("/actuator/**").denyAll()
                 // 文件上传下载接口需要认证 - /api/files/** 由下面的 anyRequest().authenticated() 保护
                 .anyRequest().authenticated();
         
@@ -79,4 +97,16 @@ public class WebSecurityConfig {
         
         return http.build();
     }
+    
+    // 私有方法
+    
+    private AuthorizationManager<RequestAuthorizationContext> prometheusScrapeAccess() {
+        byte[] expected = ("Bearer " + prometheusScrapeToken).getBytes(StandardCharsets.UTF_8);
+        return (authentication, context) -> {
+            String header = context.getRequest().getHeader("Authorization");
+            boolean granted = StringUtils.hasText(prometheusScrapeToken) && header != null
+                    && MessageDigest.isEqual(expected, header.getBytes(StandardCharsets.UTF_8));
+            return new AuthorizationDecision(granted);
+        };
+    }
 }
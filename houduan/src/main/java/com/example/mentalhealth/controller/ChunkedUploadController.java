@@ -0,0 +1,145 @@
+package com.example.mentalhealth.controller;
+
+import com.example.mentalhealth.dto.ApiResponse;
+import com.example.mentalhealth.dto.ChunkedUploadInitRequest;
+import com.example.mentalhealth.dto.ChunkedUploadStatusResponse;
+import com.example.mentalhealth.dto.FileUploadResponse;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.service.ChunkedUploadService;
+import com.example.mentalhealth.util.StreamingMultipartUpload;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/files/uploads")
+@Tag(name = "分片上传", description = "大文件（视频）可续传的分片上传接口")
+public class ChunkedUploadController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadController.class);
+    
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+    
+    @PostMapping
+    @Operation(summary = "创建分片上传", description = "校验文件名和大小并预分配文件，返回上传ID和服务端分片大小")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "创建成功"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "文件格式不支持、文件过大或超过未完成上传的数量、总大小上限"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "未授权")
+    })
+    public ResponseEntity<ApiResponse<ChunkedUploadStatusResponse>> initiate(
+            @Valid @RequestBody ChunkedUploadInitRequest request,
+            @AuthenticationPrincipal User user) {
+        
+        try {
+            ChunkedUploadStatusResponse status = chunkedUploadService.initiate(request, user);
+            return ResponseEntity.ok(new ApiResponse<>(true, "分片上传已创建", status));
+        } catch (IllegalArgumentException e) {
+            logger.warn("分片上传创建失败: {} (用户: {})", e.getMessage(), user.getUsername());
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("分片上传创建失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "分片上传创建失败: " + e.getMessage(), null));
+        }
+    }
+    
+    @PutMapping(value = "/{uploadId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(summary = "上传分片", description = "请求体为分片原始字节，X-Content-SHA256 头为分片的 SHA-256；分片可以并行上传；校验通过后才写入文件，已接收的分片重试时直接返回状态，内容不同则拒绝")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "分片已接收"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "序号、偏移量、大小或校验和不正确，分片已以不同内容上传，或会话已完成"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "未授权")
+    })
+    public ResponseEntity<ApiResponse<ChunkedUploadStatusResponse>> uploadChunk(
+            @Parameter(description = "上传ID") @PathVariable String uploadId,
+            @Parameter(description = "分片序号，从0开始") @PathVariable int index,
+            @Parameter(description = "分片在文件中的字节偏移量（可选，用于校验）") @RequestParam(required = false) Long offset,
+            @Parameter(description = "分片的 SHA-256（十六进制）") @RequestHeader(value = StreamingMultipartUpload.CHECKSUM_HEADER, required = false) String checksum,
+            HttpServletRequest request,
+            @AuthenticationPrincipal User user) {
+        
+        try {
+            ChunkedUploadStatusResponse status = chunkedUploadService.writeChunk(
+                    uploadId, index, offset, checksum, request.getInputStream(), user);
+            return ResponseEntity.ok(new ApiResponse<>(true, "分片已接收", status));
+        } catch (IllegalArgumentException e) {
+            logger.warn("分片上传验证失败: {} (用户: {})", e.getMessage(), user.getUsername());
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("分片上传失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "分片上传失败: " + e.getMessage(), null));
+        }
+    }
+    
+    @GetMapping("/{uploadId}")
+    @Operation(summary = "查询分片上传状态", description = "返回已收到的字节区间和缺失的分片序号，用于断线后续传")
+    public ResponseEntity<ApiResponse<ChunkedUploadStatusResponse>> getStatus(
+            @Parameter(description = "上传ID") @PathVariable String uploadId,
+            @AuthenticationPrincipal User user) {
+        
+        try {
+            ChunkedUploadStatusResponse status = chunkedUploadService.getStatus(uploadId, user);
+            return ResponseEntity.ok(new ApiResponse<>(true, "获取上传状态成功", status));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        }
+    }
+    
+    @PostMapping("/{uploadId}/complete")
+    @Operation(summary = "完成分片上传", description = "全部分片到齐后生成文件记录")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "上传成功"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "会话不存在或仍有分片缺失"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "未授权")
+    })
+    public ResponseEntity<ApiResponse<FileUploadResponse>> complete(
+            @Parameter(description = "上传ID") @PathVariable String uploadId,
+            @AuthenticationPrincipal User user) {
+        
+        try {
+            FileUploadResponse response = chunkedUploadService.complete(uploadId, user);
+            return ResponseEntity.ok(new ApiResponse<>(true, "文件上传成功", response));
+        } catch (IllegalArgumentException e) {
+            logger.warn("完成分片上传失败: {} (用户: {})", e.getMessage(), user.getUsername());
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("完成分片上传失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "文件上传失败: " + e.getMessage(), null));
+        }
+    }
+    
+    @DeleteMapping("/{uploadId}")
+    @Operation(summary = "取消分片上传", description = "删除上传会话和已写入的临时文件")
+    public ResponseEntity<ApiResponse<Void>> abort(
+            @Parameter(description = "上传ID") @PathVariable String uploadId,
+            @AuthenticationPrincipal User user) {
+        
+        try {
+            chunkedUploadService.abort(uploadId, user);
+            return ResponseEntity.ok(new ApiResponse<>(true, "分片上传已取消", null));
+        } catch (Exception e) {
+            logger.error("取消分片上传失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        }
+    }
+}
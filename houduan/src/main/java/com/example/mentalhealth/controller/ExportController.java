@@ -0,0 +1,93 @@
+package com.example.mentalhealth.controller;
+
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.service.BulkExportService;
+import com.example.mentalhealth.service.RangeDownloadService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/admin/export")
+@Tag(name = "批量导出", description = "管理员按用户或分类把文件、问卷打包为 ZIP 下载")
+public class ExportController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExportController.class);
+    
+    private static final String ZIP_CONTENT_TYPE = "application/zip";
+    
+    @Autowired
+    private BulkExportService bulkExportService;
+    
+    @Autowired
+    private RangeDownloadService rangeDownloadService;
+    
+    @GetMapping("/users/{userId}/files")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "导出用户的全部文件", description = "边读边压缩，以 ZIP 流式输出，不预先计算总大小")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "导出成功", content = @Content(mediaType = ZIP_CONTENT_TYPE)),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "用户不存在"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "403", description = "需要管理员权限")
+    })
+    public void exportUserFiles(
+            @Parameter(description = "用户ID") @PathVariable Long userId,
+            HttpServletResponse response) throws IOException {
+        
+        Optional<User> user = bulkExportService.findUser(userId);
+        if (user.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        startZip(response, "files-" + user.get().getUsername() + ".zip");
+        try {
+            bulkExportService.exportUserFiles(user.get(), response.getOutputStream());
+        } catch (IOException e) {
+            logger.warn("批量导出中断: {} (用户ID: {})", e.getMessage(), userId);
+        }
+    }
+    
+    @GetMapping("/questionnaires")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "导出分类下的全部问卷", description = "边读边压缩，以 ZIP 流式输出，不预先计算总大小")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "导出成功", content = @Content(mediaType = ZIP_CONTENT_TYPE)),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "403", description = "需要管理员权限")
+    })
+    public void exportQuestionnaires(
+            @Parameter(description = "问卷分类") @RequestParam String category,
+            HttpServletResponse response) throws IOException {
+        
+        startZip(response, "questionnaires-" + category + ".zip");
+        try {
+            bulkExportService.exportQuestionnaires(category, response.getOutputStream());
+        } catch (IOException e) {
+            logger.warn("批量导出中断: {} (分类: {})", e.getMessage(), category);
+        }
+    }
+    
+    // 长度未知，响应使用分块传输
+    private void startZip(HttpServletResponse response, String filename) {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(ZIP_CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, rangeDownloadService.buildContentDisposition(filename));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+    }
+}
@@ -1,33 +1,38 @@
 package com.example.mentalhealth.controller;
 
 import com.example.mentalhealth.dto.ApiResponse;
+import com.example.mentalhealth.dto.CursorPageResponse;
+import com.example.mentalhealth.dto.DownloadDescriptor;
 import com.example.mentalhealth.dto.FileInfoResponse;
 import com.example.mentalhealth.dto.FileUploadResponse;
 import com.example.mentalhealth.entity.FileRecord;
 import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.service.DerivativeService;
 import com.example.mentalhealth.service.FileService;
+import com.example.mentalhealth.service.RangeDownloadService;
+import com.example.mentalhealth.service.ViewVersionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -40,6 +45,15 @@ public class FileController {
     @Autowired
     private FileService fileService;
     
+    @Autowired
+    private RangeDownloadService rangeDownloadService;
+    
+    @Autowired
+    private DerivativeService derivativeService;
+    
+    @Autowired
+    private ViewVersionService viewVersionService;
+    
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "上传文件", description = "支持上传文档(PDF, DOC, DOCX)和视频文件")
     @ApiResponses(value = {
@@ -66,43 +80,127 @@ public class FileController {
         }
     }
     
+    @PostMapping(value = "/upload/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "流式上传文件", description = "表单字段同 /upload（file、description），请求体直接写入存储目录；可通过 X-Content-SHA256 头校验文件内容")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "上传成功"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "文件格式不支持、文件过大或校验和不一致"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "未授权")
+    })
+    public ResponseEntity<ApiResponse<FileUploadResponse>> uploadFileStream(
+            HttpServletRequest request,
+            @AuthenticationPrincipal User user) {
+        
+        try {
+            FileUploadResponse response = fileService.uploadFileStream(request, user);
+            return ResponseEntity.ok(new ApiResponse<>(true, "文件上传成功", response));
+        } catch (IllegalArgumentException e) {
+            logger.warn("文件上传验证失败: {} (用户: {})", e.getMessage(), user.getUsername());
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("文件上传失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "文件上传失败: " + e.getMessage(), null));
+        }
+    }
+    
+    @PostMapping("/upload/by-hash")
+    @Operation(summary = "按内容摘要上传文件", description = "已上传过相同内容（SHA-256）时直接生成文件记录，不传输文件；返回404时改为正常上传")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "上传成功"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "摘要格式或文件类型不正确"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "没有可复用的内容"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "未授权")
+    })
+    public ResponseEntity<ApiResponse<FileUploadResponse>> uploadFileByHash(
+            @Parameter(description = "文件内容的 SHA-256（十六进制）") @RequestParam("sha256") String sha256,
+            @Parameter(description = "文件名") @RequestParam("fileName") String fileName,
+            @Parameter(description = "文件描述（可选）") @RequestParam(value = "description", required = false) String description,
+            @AuthenticationPrincipal User user) {
+        
+        try {
+            return fileService.uploadByHash(sha256, fileName, description, user)
+                    .map(response -> ResponseEntity.ok(new ApiResponse<>(true, "文件上传成功", response)))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body(new ApiResponse<>(false, "没有可复用的内容，请上传文件", null)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("文件上传失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "文件上传失败: " + e.getMessage(), null));
+        }
+    }
+    
     @GetMapping("/download/{fileId}")
-    @Operation(summary = "下载文件", description = "根据文件ID下载文件")
+    @Operation(summary = "下载文件", description = "根据文件ID下载文件，支持Range断点续传和多段下载")
     @ApiResponses(value = {
         @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "下载成功", content = @Content(mediaType = MediaType.APPLICATION_OCTET_STREAM_VALUE)),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "206", description = "部分内容"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "416", description = "请求范围无法满足"),
         @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "文件不存在"),
         @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "未授权")
     })
-    public ResponseEntity<Resource> downloadFile(
+    public void downloadFile(
             @Parameter(description = "文件ID") @PathVariable Long fileId,
-            @AuthenticationPrincipal User user) {
+            @AuthenticationPrincipal User user,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
         
+        DownloadDescriptor descriptor;
         try {
-            Resource resource = fileService.downloadFile(fileId, user);
-            FileInfoResponse fileInfo = fileService.getFileInfo(fileId, user);
-            
-            // 编码文件名以支持中文
-            String encodedFilename = URLEncoder.encode(fileInfo.getOriginalName(), StandardCharsets.UTF_8)
-                    .replaceAll("\\+", "%20");
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, 
-                            "attachment; filename=\"" + fileInfo.getOriginalName() + "\"; filename*=UTF-8''" + encodedFilename)
-                    .header(HttpHeaders.CONTENT_TYPE, fileInfo.getFileType())
-                    .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(fileInfo.getFileSize()))
-                    .body(resource);
-                    
+            descriptor = fileService.resolveDownload(fileId, user);
         } catch (Exception e) {
             logger.error("文件下载失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
-            return ResponseEntity.notFound().build();
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        try {
+            rangeDownloadService.write(descriptor, request, response);
+        } catch (IOException e) {
+            logger.warn("文件传输中断: {} (用户: {})", e.getMessage(), user.getUsername());
+        }
+    }
+    
+    @GetMapping("/thumbnail/{fileId}")
+    @Operation(summary = "获取文件缩略图", description = "图片和PDF文件的固定尺寸JPEG缩略图，不存在时即时生成")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "获取成功", content = @Content(mediaType = MediaType.IMAGE_JPEG_VALUE)),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "文件不存在或不支持缩略图"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "503", description = "生成队列繁忙，稍后重试")
+    })
+    public void getThumbnail(
+            @Parameter(description = "文件ID") @PathVariable Long fileId,
+            @AuthenticationPrincipal User user,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        
+        DownloadDescriptor descriptor;
+        try {
+            descriptor = fileService.resolveContent(fileId, user);
+        } catch (Exception e) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        try {
+            derivativeService.write(descriptor, DerivativeService.Kind.THUMBNAIL, request, response);
+        } catch (IOException e) {
+            logger.warn("缩略图传输中断: {} (用户: {})", e.getMessage(), user.getUsername());
         }
     }
     
     @GetMapping("/list")
-    @Operation(summary = "获取用户文件列表", description = "获取当前用户的所有文件列表")
+    @Operation(summary = "获取用户文件列表", description = "获取当前用户的所有文件列表，列表未变化时返回304")
     public ResponseEntity<ApiResponse<List<FileInfoResponse>>> getUserFiles(
-            @AuthenticationPrincipal User user) {
+            @AuthenticationPrincipal User user, ServletWebRequest webRequest) {
         
+        if (viewVersionService.checkNotModified(ViewVersionService.userFiles(user.getId()), webRequest)) {
+            return null; // 304 已写入
+        }
         try {
             List<FileInfoResponse> files = fileService.getUserFiles(user);
             return ResponseEntity.ok(new ApiResponse<>(true, "获取文件列表成功", files));
@@ -131,6 +229,26 @@ public class FileController {
         }
     }
     
+    @GetMapping("/list/cursor")
+    @Operation(summary = "游标分页获取用户文件列表", description = "按上传时间倒序游标分页获取当前用户的文件列表，不统计总数；用返回的 nextCursor 获取下一页")
+    public ResponseEntity<ApiResponse<CursorPageResponse<FileInfoResponse>>> getUserFilesByCursor(
+            @Parameter(description = "续传令牌，第一页不传") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页大小，最大100") @RequestParam(defaultValue = "10") int size,
+            @AuthenticationPrincipal User user) {
+        
+        try {
+            CursorPageResponse<FileInfoResponse> files = fileService.getUserFiles(user, cursor, size);
+            return ResponseEntity.ok(new ApiResponse<>(true, "获取文件列表成功", files));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("游标分页获取文件列表失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "获取文件列表失败", null));
+        }
+    }
+    
     @GetMapping("/list/category/{category}")
     @Operation(summary = "根据分类获取文件", description = "根据文件分类获取用户文件列表")
     public ResponseEntity<ApiResponse<List<FileInfoResponse>>> getUserFilesByCategory(
@@ -148,13 +266,15 @@ public class FileController {
     }
     
     @GetMapping("/search")
-    @Operation(summary = "搜索文件", description = "根据文件名搜索用户文件")
+    @Operation(summary = "搜索文件", description = "根据文件名搜索用户文件，结果按相关度排序")
     public ResponseEntity<ApiResponse<List<FileInfoResponse>>> searchFiles(
             @Parameter(description = "搜索关键词") @RequestParam String keyword,
+            @Parameter(description = "页码，从0开始") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "每页大小，不传则返回全部结果") @RequestParam(defaultValue = "0") int size,
             @AuthenticationPrincipal User user) {
         
         try {
-            List<FileInfoResponse> files = fileService.searchUserFiles(user, keyword);
+            List<FileInfoResponse> files = fileService.searchUserFiles(user, keyword, page, size);
             return ResponseEntity.ok(new ApiResponse<>(true, "搜索文件成功", files));
         } catch (Exception e) {
             logger.error("搜索文件失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
@@ -1,34 +1,40 @@
 package com.example.mentalhealth.controller;
 
 import com.example.mentalhealth.dto.ApiResponse;
+import com.example.mentalhealth.dto.CursorPageResponse;
+import com.example.mentalhealth.dto.DownloadDescriptor;
 import com.example.mentalhealth.dto.QuestionnaireInfoResponse;
 import com.example.mentalhealth.dto.QuestionnaireUploadResponse;
 import com.example.mentalhealth.entity.Questionnaire;
 import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.service.DerivativeService;
 import com.example.mentalhealth.service.QuestionnaireService;
+import com.example.mentalhealth.service.RangeDownloadService;
+import com.example.mentalhealth.service.ViewVersionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/questionnaires")
@@ -40,6 +46,15 @@ public class QuestionnaireController {
     @Autowired
     private QuestionnaireService questionnaireService;
     
+    @Autowired
+    private RangeDownloadService rangeDownloadService;
+    
+    @Autowired
+    private DerivativeService derivativeService;
+    
+    @Autowired
+    private ViewVersionService viewVersionService;
+    
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "上传问卷", description = "上传问卷文件，支持多种文档格式")
     @ApiResponses(value = {
@@ -70,40 +85,125 @@ public class QuestionnaireController {
         }
     }
     
+    @PostMapping(value = "/upload/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "流式上传问卷", description = "表单字段同 /upload（file、title、description、category、tags），请求体直接写入问卷目录；可通过 X-Content-SHA256 头校验文件内容")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "上传成功"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "文件格式不支持、文件过大或校验和不一致"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "未授权")
+    })
+    public ResponseEntity<ApiResponse<QuestionnaireUploadResponse>> uploadQuestionnaireStream(
+            HttpServletRequest request,
+            @AuthenticationPrincipal User user) {
+        
+        try {
+            QuestionnaireUploadResponse response = questionnaireService.uploadQuestionnaireStream(request, user);
+            return ResponseEntity.ok(new ApiResponse<>(true, "问卷上传成功", response));
+        } catch (IllegalArgumentException e) {
+            logger.warn("问卷上传验证失败: {} (用户: {})", e.getMessage(), user.getUsername());
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("问卷上传失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "问卷上传失败: " + e.getMessage(), null));
+        }
+    }
+    
+    @PostMapping("/upload/by-hash")
+    @Operation(summary = "按内容摘要上传问卷", description = "已上传过相同内容（SHA-256）时直接生成问卷，不传输文件；返回404时改为正常上传")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "上传成功"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "摘要格式、文件类型或标签不正确"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "没有可复用的内容"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "未授权")
+    })
+    public ResponseEntity<ApiResponse<QuestionnaireUploadResponse>> uploadQuestionnaireByHash(
+            @Parameter(description = "文件内容的 SHA-256（十六进制）") @RequestParam("sha256") String sha256,
+            @Parameter(description = "文件名") @RequestParam("fileName") String fileName,
+            @Parameter(description = "问卷标题") @RequestParam(value = "title", required = false) String title,
+            @Parameter(description = "问卷描述") @RequestParam(value = "description", required = false) String description,
+            @Parameter(description = "问卷分类") @RequestParam(value = "category", required = false) String category,
+            @Parameter(description = "问卷标签") @RequestParam(value = "tags", required = false) String tags,
+            @AuthenticationPrincipal User user) {
+        
+        try {
+            return questionnaireService.uploadQuestionnaireByHash(sha256, fileName, title, description, category, tags, user)
+                    .map(response -> ResponseEntity.ok(new ApiResponse<>(true, "问卷上传成功", response)))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body(new ApiResponse<>(false, "没有可复用的内容，请上传文件", null)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("问卷上传失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "问卷上传失败: " + e.getMessage(), null));
+        }
+    }
+    
     @GetMapping("/download/{questionnaireId}")
-    @Operation(summary = "下载问卷", description = "根据问卷ID下载问卷文件")
+    @Operation(summary = "下载问卷", description = "根据问卷ID下载问卷文件，支持Range断点续传和多段下载")
     @ApiResponses(value = {
         @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "下载成功", 
             content = @Content(mediaType = MediaType.APPLICATION_OCTET_STREAM_VALUE)),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "206", description = "部分内容"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "416", description = "请求范围无法满足"),
         @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "问卷不存在"),
         @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "未授权")
     })
-    public ResponseEntity<Resource> downloadQuestionnaire(
+    public void downloadQuestionnaire(
             @Parameter(description = "问卷ID") @PathVariable Long questionnaireId,
-            @AuthenticationPrincipal User user) {
+            @AuthenticationPrincipal User user,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
         
+        DownloadDescriptor descriptor;
         try {
-            Resource resource = questionnaireService.downloadQuestionnaire(questionnaireId, user);
-            QuestionnaireInfoResponse questionnaireInfo = questionnaireService.getQuestionnaireInfo(questionnaireId);
-            
-            // 编码文件名以支持中文
-            String encodedFilename = URLEncoder.encode(questionnaireInfo.getOriginalName(), StandardCharsets.UTF_8)
-                    .replaceAll("\\+", "%20");
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, 
-                            "attachment; filename=\"" + questionnaireInfo.getOriginalName() + 
-                            "\"; filename*=UTF-8''" + encodedFilename)
-                    .header(HttpHeaders.CONTENT_TYPE, questionnaireInfo.getFileType())
-                    .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(questionnaireInfo.getFileSize()))
-                    .body(resource);
-                    
+            descriptor = questionnaireService.resolveDownload(questionnaireId, user);
         } catch (Exception e) {
             logger.error("问卷下载失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
-            return ResponseEntity.notFound().build();
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        try {
+            rangeDownloadService.write(descriptor, request, response);
+        } catch (IOException e) {
+            logger.warn("问卷传输中断: {} (用户: {})", e.getMessage(), user.getUsername());
         }
     }
     
+    @GetMapping("/thumbnail/{questionnaireId}")
+    @Operation(summary = "获取问卷缩略图", description = "PDF首页或图片的固定尺寸JPEG缩略图，不存在时即时生成")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "获取成功", 
+            content = @Content(mediaType = MediaType.IMAGE_JPEG_VALUE)),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "问卷不存在或不支持缩略图"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "503", description = "生成队列繁忙，稍后重试")
+    })
+    public void getThumbnail(
+            @Parameter(description = "问卷ID") @PathVariable Long questionnaireId,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        writeDerivative(questionnaireId, DerivativeService.Kind.THUMBNAIL, request, response);
+    }
+    
+    @GetMapping("/preview/{questionnaireId}")
+    @Operation(summary = "获取问卷预览图", description = "PDF问卷首页的大尺寸JPEG预览图，不存在时即时生成")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "获取成功", 
+            content = @Content(mediaType = MediaType.IMAGE_JPEG_VALUE)),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "问卷不存在或不是PDF"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "503", description = "生成队列繁忙，稍后重试")
+    })
+    public void getPreview(
+            @Parameter(description = "问卷ID") @PathVariable Long questionnaireId,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        writeDerivative(questionnaireId, DerivativeService.Kind.PREVIEW, request, response);
+    }
+    
     @GetMapping("/my")
     @Operation(summary = "获取我的问卷列表", description = "获取当前用户创建的所有问卷")
     public ResponseEntity<ApiResponse<List<QuestionnaireInfoResponse>>> getMyQuestionnaires(
@@ -137,10 +237,35 @@ public class QuestionnaireController {
         }
     }
     
+    @GetMapping("/my/cursor")
+    @Operation(summary = "游标分页获取我的问卷", description = "按创建时间倒序游标分页获取当前用户创建的问卷，不统计总数；用返回的 nextCursor 获取下一页")
+    public ResponseEntity<ApiResponse<CursorPageResponse<QuestionnaireInfoResponse>>> getMyQuestionnairesByCursor(
+            @Parameter(description = "续传令牌，第一页不传") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页大小，最大100") @RequestParam(defaultValue = "10") int size,
+            @AuthenticationPrincipal User user) {
+        
+        try {
+            CursorPageResponse<QuestionnaireInfoResponse> questionnaires =
+                    questionnaireService.getUserQuestionnaires(user, cursor, size);
+            return ResponseEntity.ok(new ApiResponse<>(true, "获取问卷列表成功", questionnaires));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("游标分页获取问卷列表失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "获取问卷列表失败", null));
+        }
+    }
+    
     @GetMapping("/published")
-    @Operation(summary = "获取已发布的问卷", description = "获取所有已发布的问卷列表")
-    public ResponseEntity<ApiResponse<List<QuestionnaireInfoResponse>>> getPublishedQuestionnaires() {
+    @Operation(summary = "获取已发布的问卷", description = "获取所有已发布的问卷列表，列表未变化时返回304")
+    public ResponseEntity<ApiResponse<List<QuestionnaireInfoResponse>>> getPublishedQuestionnaires(
+            ServletWebRequest webRequest) {
         
+        if (viewVersionService.checkNotModified(ViewVersionService.PUBLISHED_CATALOG, webRequest)) {
+            return null; // 304 已写入
+        }
         try {
             List<QuestionnaireInfoResponse> questionnaires = questionnaireService.getPublishedQuestionnaires();
             return ResponseEntity.ok(new ApiResponse<>(true, "获取已发布问卷成功", questionnaires));
@@ -168,6 +293,26 @@ public class QuestionnaireController {
         }
     }
     
+    @GetMapping("/published/cursor")
+    @Operation(summary = "游标分页获取已发布的问卷", description = "按发布时间倒序游标分页获取已发布的问卷，不统计总数；用返回的 nextCursor 获取下一页")
+    public ResponseEntity<ApiResponse<CursorPageResponse<QuestionnaireInfoResponse>>> getPublishedQuestionnairesByCursor(
+            @Parameter(description = "续传令牌，第一页不传") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页大小，最大100") @RequestParam(defaultValue = "10") int size) {
+        
+        try {
+            CursorPageResponse<QuestionnaireInfoResponse> questionnaires =
+                    questionnaireService.getPublishedQuestionnaires(cursor, size);
+            return ResponseEntity.ok(new ApiResponse<>(true, "获取已发布问卷成功", questionnaires));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("游标分页获取已发布问卷失败: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "获取已发布问卷失败", null));
+        }
+    }
+    
     @GetMapping("/my/status/{status}")
     @Operation(summary = "根据状态获取我的问卷", description = "根据问卷状态获取当前用户的问卷")
     public ResponseEntity<ApiResponse<List<QuestionnaireInfoResponse>>> getMyQuestionnairesByStatus(
@@ -186,12 +331,15 @@ public class QuestionnaireController {
     }
     
     @GetMapping("/search")
-    @Operation(summary = "搜索问卷", description = "根据关键词搜索问卷")
+    @Operation(summary = "搜索问卷", description = "根据关键词搜索问卷，结果按相关度排序")
     public ResponseEntity<ApiResponse<List<QuestionnaireInfoResponse>>> searchQuestionnaires(
-            @Parameter(description = "搜索关键词") @RequestParam String keyword) {
+            @Parameter(description = "搜索关键词") @RequestParam String keyword,
+            @Parameter(description = "页码，从0开始") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "每页大小，不传则返回全部结果") @RequestParam(defaultValue = "0") int size) {
         
         try {
-            List<QuestionnaireInfoResponse> questionnaires = questionnaireService.searchQuestionnaires(keyword);
+            List<QuestionnaireInfoResponse> questionnaires = questionnaireService
+                    .searchQuestionnaires(keyword, page, size);
             return ResponseEntity.ok(new ApiResponse<>(true, "搜索问卷成功", questionnaires));
         } catch (Exception e) {
             logger.error("搜索问卷失败: {}", e.getMessage(), e);
@@ -201,14 +349,16 @@ public class QuestionnaireController {
     }
     
     @GetMapping("/my/search")
-    @Operation(summary = "搜索我的问卷", description = "在当前用户的问卷中搜索")
+    @Operation(summary = "搜索我的问卷", description = "在当前用户的问卷中搜索，结果按相关度排序")
     public ResponseEntity<ApiResponse<List<QuestionnaireInfoResponse>>> searchMyQuestionnaires(
             @Parameter(description = "搜索关键词") @RequestParam String keyword,
+            @Parameter(description = "页码，从0开始") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "每页大小，不传则返回全部结果") @RequestParam(defaultValue = "0") int size,
             @AuthenticationPrincipal User user) {
         
         try {
             List<QuestionnaireInfoResponse> questionnaires = questionnaireService
-                    .searchUserQuestionnaires(user, keyword);
+                    .searchUserQuestionnaires(user, keyword, page, size);
             return ResponseEntity.ok(new ApiResponse<>(true, "搜索问卷成功", questionnaires));
         } catch (Exception e) {
             logger.error("搜索问卷失败: {} (用户: {})", e.getMessage(), user.getUsername(), e);
@@ -333,11 +483,55 @@ public class QuestionnaireController {
         }
     }
     
+    @GetMapping("/tags")
+    @Operation(summary = "获取标签列表", description = "获取所有标签及对应的问卷数量")
+    public ResponseEntity<ApiResponse<Map<String, Integer>>> getTags() {
+        
+        try {
+            Map<String, Integer> tags = questionnaireService.getTagCounts();
+            return ResponseEntity.ok(new ApiResponse<>(true, "获取标签列表成功", tags));
+        } catch (Exception e) {
+            logger.error("获取标签列表失败: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "获取标签列表失败", null));
+        }
+    }
+    
+    @GetMapping("/tags/filter")
+    @Operation(summary = "按标签筛选问卷", description = "按多个标签组合筛选已发布问卷，可同时按状态和分类过滤；草稿和归档问卷只能查询自己的（mine=true）")
+    public ResponseEntity<ApiResponse<List<QuestionnaireInfoResponse>>> filterByTags(
+            @Parameter(description = "标签，多个用逗号分隔") @RequestParam List<String> tags,
+            @Parameter(description = "匹配方式：all 表示包含全部标签，any 表示包含任一标签") @RequestParam(defaultValue = "all") String mode,
+            @Parameter(description = "问卷状态（可选，默认已发布；其他状态需要 mine=true）") @RequestParam(required = false) Questionnaire.QuestionnaireStatus status,
+            @Parameter(description = "问卷分类（可选）") @RequestParam(required = false) String category,
+            @Parameter(description = "只查询自己创建的问卷") @RequestParam(defaultValue = "false") boolean mine,
+            @Parameter(description = "页码，从0开始") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "每页大小，不传则返回全部结果") @RequestParam(defaultValue = "0") int size,
+            @AuthenticationPrincipal User user) {
+        
+        try {
+            List<QuestionnaireInfoResponse> questionnaires = questionnaireService.findByTags(
+                    tags, !"any".equalsIgnoreCase(mode), status, category, mine, user, page, size);
+            return ResponseEntity.ok(new ApiResponse<>(true, "按标签筛选问卷成功", questionnaires));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("按标签筛选问卷失败: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "按标签筛选问卷失败", null));
+        }
+    }
+    
     @GetMapping("/popular")
-    @Operation(summary = "获取热门问卷", description = "获取下载次数最多的问卷")
+    @Operation(summary = "获取热门问卷", description = "获取下载次数最多的问卷，列表未变化时返回304")
     public ResponseEntity<ApiResponse<List<QuestionnaireInfoResponse>>> getPopularQuestionnaires(
-            @Parameter(description = "返回数量") @RequestParam(defaultValue = "10") int limit) {
+            @Parameter(description = "返回数量") @RequestParam(defaultValue = "10") int limit,
+            ServletWebRequest webRequest) {
         
+        if (viewVersionService.checkNotModified(ViewVersionService.PUBLISHED_CATALOG, webRequest)) {
+            return null; // 304 已写入
+        }
         try {
             List<QuestionnaireInfoResponse> questionnaires = questionnaireService
                     .getPopularQuestionnaires(limit);
@@ -348,4 +542,24 @@ public class QuestionnaireController {
                     .body(new ApiResponse<>(false, "获取热门问卷失败", null));
         }
     }
+    
+    // 私有方法
+    
+    private void writeDerivative(Long questionnaireId, DerivativeService.Kind kind,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        DownloadDescriptor descriptor;
+        try {
+            descriptor = questionnaireService.resolveContent(questionnaireId);
+        } catch (Exception e) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        try {
+            derivativeService.write(descriptor, kind, request, response);
+        } catch (IOException e) {
+            logger.warn("问卷{}传输中断: {} (问卷ID: {})", kind == DerivativeService.Kind.PREVIEW ? "预览图" : "缩略图",
+                    e.getMessage(), questionnaireId);
+        }
+    }
 }
@@ -0,0 +1,82 @@
+package com.example.mentalhealth.controller;
+
+import com.example.mentalhealth.service.DownloadCounterService;
+import com.example.mentalhealth.service.RangeDownloadService;
+import com.example.mentalhealth.util.DownloadUrlSigner;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * 签名下载链接：不经过 JWT 认证，只在内存中验签，不查询用户和文件记录
+ * 问卷链接带有签名覆盖的问卷 ID，下载时累计下载次数；链接限时有效，重放只能发生在有效期内
+ */
+@RestController
+@RequestMapping("/api/blobs")
+@Tag(name = "签名下载", description = "通过列表和上传接口返回的限时签名链接下载文件")
+public class SignedDownloadController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SignedDownloadController.class);
+    
+    @Autowired
+    private DownloadUrlSigner downloadUrlSigner;
+    
+    @Autowired
+    private RangeDownloadService rangeDownloadService;
+    
+    @Autowired
+    private DownloadCounterService downloadCounterService;
+    
+    @GetMapping("/{sha256}")
+    @Operation(summary = "签名下载", description = "校验签名和有效期后输出文件，支持Range断点续传和多段下载")
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "下载成功", content = @Content(mediaType = MediaType.APPLICATION_OCTET_STREAM_VALUE)),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "206", description = "部分内容"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "403", description = "签名无效或链接已过期"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "文件不存在")
+    })
+    public void download(
+            @Parameter(description = "内容的SHA-256") @PathVariable String sha256,
+            @Parameter(description = "文件名") @RequestParam String name,
+            @Parameter(description = "MIME类型") @RequestParam(defaultValue = "") String type,
+            @Parameter(description = "过期时间（秒级时间戳）") @RequestParam long expires,
+            @Parameter(description = "问卷ID（用于下载计数）") @RequestParam(required = false) Long qid,
+            @Parameter(description = "签名") @RequestParam String sig,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        
+        if (!downloadUrlSigner.verify(sha256, name, type, expires, qid, sig)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        // Range 续传的后续请求不重复计数
+        if (qid != null && request.getHeader(HttpHeaders.RANGE) == null) {
+            downloadCounterService.increment(qid);
+        }
+        
+        // 链接到期前可以在浏览器本地缓存，不允许共享缓存（链接本身即凭证）
+        long maxAge = Math.max(0, expires - System.currentTimeMillis() / 1000);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=" + maxAge);
+        try {
+            rangeDownloadService.writeBlob(sha256, name, type, request, response);
+        } catch (IOException e) {
+            logger.warn("签名下载传输中断: {} ({})", sha256, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.mentalhealth.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+@Schema(description = "分片上传初始化请求")
+public class ChunkedUploadInitRequest {
+    
+    @NotBlank(message = "文件名不能为空")
+    @Schema(description = "原始文件名", example = "session-01.mp4", required = true)
+    private String fileName;
+    
+    @NotNull(message = "文件大小不能为空")
+    @Positive(message = "文件大小必须大于0")
+    @Schema(description = "文件总大小（字节）", example = "524288000", required = true)
+    private Long fileSize;
+    
+    @Schema(description = "文件类型（MIME类型）", example = "video/mp4")
+    private String contentType;
+    
+    @Schema(description = "文件描述")
+    private String description;
+    
+    // 构造函数
+    public ChunkedUploadInitRequest() {
+    }
+    
+    // Getters and Setters
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+    
+    public Long getFileSize() {
+        return fileSize;
+    }
+    
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+    
+    public String getContentType() {
+        return contentType;
+    }
+    
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public void setDescription(String description) {
+        this.description = description;
+    }
+}
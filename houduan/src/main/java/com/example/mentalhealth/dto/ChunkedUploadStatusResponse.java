@@ -0,0 +1,131 @@
+package com.example.mentalhealth.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 分片上传会话状态：已收到的字节区间和缺失的分片序号
+ */
+public class ChunkedUploadStatusResponse {
+    
+    private String uploadId;
+    private String fileName;
+    private long totalSize;
+    private int chunkSize;
+    private int totalChunks;
+    private List<ByteRange> receivedRanges;
+    private List<Integer> missingChunks;
+    private LocalDateTime expiresAt;
+    
+    // 构造函数
+    public ChunkedUploadStatusResponse() {
+    }
+    
+    public ChunkedUploadStatusResponse(String uploadId, String fileName, long totalSize, int chunkSize,
+                                       int totalChunks, List<ByteRange> receivedRanges,
+                                       List<Integer> missingChunks, LocalDateTime expiresAt) {
+        this.uploadId = uploadId;
+        this.fileName = fileName;
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.totalChunks = totalChunks;
+        this.receivedRanges = receivedRanges;
+        this.missingChunks = missingChunks;
+        this.expiresAt = expiresAt;
+    }
+    
+    // Getters and Setters
+    public String getUploadId() {
+        return uploadId;
+    }
+    
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+    
+    public long getTotalSize() {
+        return totalSize;
+    }
+    
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+    
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+    
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+    
+    public void setTotalChunks(int totalChunks) {
+        this.totalChunks = totalChunks;
+    }
+    
+    public List<ByteRange> getReceivedRanges() {
+        return receivedRanges;
+    }
+    
+    public void setReceivedRanges(List<ByteRange> receivedRanges) {
+        this.receivedRanges = receivedRanges;
+    }
+    
+    public List<Integer> getMissingChunks() {
+        return missingChunks;
+    }
+    
+    public void setMissingChunks(List<Integer> missingChunks) {
+        this.missingChunks = missingChunks;
+    }
+    
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
+    // 已收到的字节区间 [start, end)
+    public static class ByteRange {
+        private long start;
+        private long end;
+        
+        public ByteRange() {
+        }
+        
+        public ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+        
+        public long getStart() {
+            return start;
+        }
+        
+        public void setStart(long start) {
+            this.start = start;
+        }
+        
+        public long getEnd() {
+            return end;
+        }
+        
+        public void setEnd(long end) {
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.mentalhealth.dto;
+
+import java.util.List;
+
+/**
+ * 游标分页结果：当前页内容和下一页的续传令牌（不做总数统计）
+ */
+public class CursorPageResponse<T> {
+
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+    private int size;
+
+    // 构造函数
+    public CursorPageResponse() {
+    }
+
+    public CursorPageResponse(List<T> content, String nextCursor, boolean hasNext, int size) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+        this.size = size;
+    }
+
+    // Getters and Setters
+    public List<T> getContent() {
+        return content;
+    }
+
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.mentalhealth.dto;
+
+import java.nio.file.Path;
+
+/**
+ * 下载描述信息：一次查询得到的文件元数据与内容位置，供下载接口直接输出
+ * contentHash 非空时从存储后端读取，为空（尚未迁移的旧记录）时读取 filePath
+ */
+public class DownloadDescriptor {
+
+    private Long id;
+    private String originalName;
+    private String fileType;
+    private Long fileSize;
+    private String contentHash;
+    private Path filePath;
+    // 字节数指标的分类标签：文件为 FileCategory 名称，问卷为 QUESTIONNAIRE
+    private String category;
+
+    // 构造函数
+    public DownloadDescriptor() {
+    }
+
+    public DownloadDescriptor(Long id, String originalName, String fileType, Long fileSize, String contentHash,
+                              Path filePath) {
+        this.id = id;
+        this.originalName = originalName;
+        this.fileType = fileType;
+        this.fileSize = fileSize;
+        this.contentHash = contentHash;
+        this.filePath = filePath;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getOriginalName() {
+        return originalName;
+    }
+
+    public void setOriginalName(String originalName) {
+        this.originalName = originalName;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public void setFileType(String fileType) {
+        this.fileType = fileType;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(Path filePath) {
+        this.filePath = filePath;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+}
@@ -46,6 +46,25 @@ public class QuestionnaireInfoResponse {
         this.downloadUrl = downloadUrl;
     }
     
+    public QuestionnaireInfoResponse(QuestionnaireInfoResponse other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.description = other.description;
+        this.originalName = other.originalName;
+        this.storedName = other.storedName;
+        this.fileSize = other.fileSize;
+        this.fileType = other.fileType;
+        this.status = other.status;
+        this.category = other.category;
+        this.tags = other.tags;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.publishedAt = other.publishedAt;
+        this.creatorName = other.creatorName;
+        this.downloadCount = other.downloadCount;
+        this.downloadUrl = other.downloadUrl;
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -7,7 +7,11 @@ import jakarta.validation.constraints.NotNull;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "file_records")
+@Table(name = "file_records", indexes = {
+    @Index(name = "idx_file_uploader_created", columnList = "uploaded_by, is_active, created_at, id"),
+    @Index(name = "idx_file_content_hash", columnList = "content_hash"),
+    @Index(name = "idx_file_purge", columnList = "is_active, updated_at")
+})
 public class FileRecord {
     
     @Id
@@ -32,6 +36,9 @@ public class FileRecord {
     @Column(name = "file_type")
     private String fileType; // 文件类型（MIME类型）
     
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // 内容 SHA-256，引用 stored_blobs（旧数据为空，文件单独存放）
+    
     @Enumerated(EnumType.STRING)
     @Column(name = "category", nullable = false)
     private FileCategory category; // 文件分类
@@ -127,6 +134,14 @@ public class FileRecord {
         this.fileType = fileType;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
     public FileCategory getCategory() {
         return category;
     }
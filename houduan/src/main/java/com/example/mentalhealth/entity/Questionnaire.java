@@ -7,7 +7,13 @@ import jakarta.validation.constraints.NotNull;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "questionnaires")
+@Table(name = "questionnaires", indexes = {
+    @Index(name = "idx_questionnaire_creator_created", columnList = "created_by, is_active, created_at, id"),
+    @Index(name = "idx_questionnaire_status_published", columnList = "status, is_active, published_at, id"),
+    @Index(name = "idx_questionnaire_category_created", columnList = "category, is_active, created_at, id"),
+    @Index(name = "idx_questionnaire_content_hash", columnList = "content_hash"),
+    @Index(name = "idx_questionnaire_purge", columnList = "is_active, updated_at")
+})
 public class Questionnaire {
     
     @Id
@@ -39,6 +45,9 @@ public class Questionnaire {
     @Column(name = "file_type")
     private String fileType; // 文件类型（MIME类型）
     
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // 内容 SHA-256，引用 stored_blobs（旧数据为空，文件单独存放）
+    
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
     private QuestionnaireStatus status = QuestionnaireStatus.DRAFT; // 问卷状态
@@ -158,6 +167,14 @@ public class Questionnaire {
         this.fileType = fileType;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
     public QuestionnaireStatus getStatus() {
         return status;
     }
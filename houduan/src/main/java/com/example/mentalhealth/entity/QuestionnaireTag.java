@@ -0,0 +1,89 @@
+package com.example.mentalhealth.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+@Entity
+@Table(name = "questionnaire_tag", indexes = {
+    @Index(name = "idx_questionnaire_tag_tag", columnList = "tag_id, questionnaire_id")
+})
+public class QuestionnaireTag {
+    
+    @EmbeddedId
+    private QuestionnaireTagId id;
+    
+    // 构造函数
+    public QuestionnaireTag() {
+    }
+    
+    public QuestionnaireTag(Long questionnaireId, Long tagId) {
+        this.id = new QuestionnaireTagId(questionnaireId, tagId);
+    }
+    
+    // Getters and Setters
+    public QuestionnaireTagId getId() {
+        return id;
+    }
+    
+    public void setId(QuestionnaireTagId id) {
+        this.id = id;
+    }
+    
+    public Long getQuestionnaireId() {
+        return id.getQuestionnaireId();
+    }
+    
+    public Long getTagId() {
+        return id.getTagId();
+    }
+    
+    // 复合主键（questionnaire_id, tag_id）
+    @Embeddable
+    public static class QuestionnaireTagId implements Serializable {
+        
+        @Column(name = "questionnaire_id", nullable = false)
+        private Long questionnaireId;
+        
+        @Column(name = "tag_id", nullable = false)
+        private Long tagId;
+        
+        public QuestionnaireTagId() {
+        }
+        
+        public QuestionnaireTagId(Long questionnaireId, Long tagId) {
+            this.questionnaireId = questionnaireId;
+            this.tagId = tagId;
+        }
+        
+        public Long getQuestionnaireId() {
+            return questionnaireId;
+        }
+        
+        public void setQuestionnaireId(Long questionnaireId) {
+            this.questionnaireId = questionnaireId;
+        }
+        
+        public Long getTagId() {
+            return tagId;
+        }
+        
+        public void setTagId(Long tagId) {
+            this.tagId = tagId;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof QuestionnaireTagId)) return false;
+            QuestionnaireTagId that = (QuestionnaireTagId) o;
+            return Objects.equals(questionnaireId, that.questionnaireId) && Objects.equals(tagId, that.tagId);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(questionnaireId, tagId);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.mentalhealth.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 内容寻址存储的文件内容：按 SHA-256 存一份，文件记录和问卷通过 content_hash 引用
+ * ref_count 统计引用行数（含软删除的行），彻底清除最后一个引用后才删除物理文件
+ */
+@Entity
+@Table(name = "stored_blobs", indexes = {
+    @Index(name = "idx_stored_blob_ref_count", columnList = "ref_count")
+})
+public class StoredBlob {
+    
+    @Id
+    @Column(name = "sha256", length = 64)
+    private String sha256; // 内容摘要（十六进制小写）
+    
+    @Column(name = "file_size", nullable = false)
+    private long fileSize; // 文件大小（字节）
+    
+    @Column(name = "ref_count", nullable = false)
+    private long refCount; // 引用次数
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    // 构造函数
+    public StoredBlob() {
+    }
+    
+    // Getters and Setters
+    public String getSha256() {
+        return sha256;
+    }
+    
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+    
+    public long getFileSize() {
+        return fileSize;
+    }
+    
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+    
+    public long getRefCount() {
+        return refCount;
+    }
+    
+    public void setRefCount(long refCount) {
+        this.refCount = refCount;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.mentalhealth.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 分片上传中已写入并校验通过的分片
+ */
+@Entity
+@Table(name = "upload_chunks", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_upload_chunk", columnNames = {"session_id", "chunk_index"})
+})
+public class UploadChunk {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "session_id", nullable = false, length = 36)
+    private String sessionId; // 上传会话ID
+    
+    @Column(name = "chunk_index", nullable = false)
+    private int chunkIndex; // 分片序号，从0开始
+    
+    @Column(name = "chunk_size", nullable = false)
+    private long chunkSize; // 分片字节数
+    
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256; // 分片内容的 SHA-256（十六进制）
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    // 构造函数
+    public UploadChunk() {
+    }
+    
+    public UploadChunk(String sessionId, int chunkIndex, long chunkSize, String sha256) {
+        this.sessionId = sessionId;
+        this.chunkIndex = chunkIndex;
+        this.chunkSize = chunkSize;
+        this.sha256 = sha256;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getSessionId() {
+        return sessionId;
+    }
+    
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+    
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+    
+    public void setChunkIndex(int chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+    
+    public long getChunkSize() {
+        return chunkSize;
+    }
+    
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+    
+    public String getSha256() {
+        return sha256;
+    }
+    
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.mentalhealth.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 分片上传会话：初始化时预分配目标文件，分片按偏移量写入，全部到齐后生成文件记录
+ */
+@Entity
+@Table(name = "upload_sessions", indexes = {
+    @Index(name = "idx_upload_session_updated", columnList = "updated_at")
+})
+public class UploadSession {
+    
+    @Id
+    @Column(name = "id", length = 36)
+    private String id; // 上传ID（UUID）
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "uploaded_by", nullable = false)
+    private User uploadedBy; // 上传用户
+    
+    @Column(name = "original_name", nullable = false)
+    private String originalName; // 原始文件名
+    
+    @Column(name = "content_type")
+    private String contentType; // 文件类型（MIME类型）
+    
+    @Column(name = "description")
+    private String description; // 文件描述
+    
+    @Column(name = "total_size", nullable = false)
+    private long totalSize; // 文件总大小（字节）
+    
+    @Column(name = "chunk_size", nullable = false)
+    private int chunkSize; // 分片大小（字节），最后一片可以更小
+    
+    @Column(name = "target_path", nullable = false, length = 500)
+    private String targetPath; // 暂存路径，分片写入 targetPath + ".part"，完成后登记到内容存储
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // 构造函数
+    public UploadSession() {
+    }
+    
+    public UploadSession(String id, User uploadedBy, String originalName, String contentType,
+                         long totalSize, int chunkSize, String targetPath) {
+        this.id = id;
+        this.uploadedBy = uploadedBy;
+        this.originalName = originalName;
+        this.contentType = contentType;
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.targetPath = targetPath;
+    }
+    
+    /**
+     * 分片总数
+     */
+    public int getTotalChunks() {
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+    
+    /**
+     * 第 index 片的字节数
+     */
+    public long getChunkLength(int index) {
+        long offset = (long) index * chunkSize;
+        return Math.min(chunkSize, totalSize - offset);
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public User getUploadedBy() {
+        return uploadedBy;
+    }
+    
+    public void setUploadedBy(User uploadedBy) {
+        this.uploadedBy = uploadedBy;
+    }
+    
+    public String getOriginalName() {
+        return originalName;
+    }
+    
+    public void setOriginalName(String originalName) {
+        this.originalName = originalName;
+    }
+    
+    public String getContentType() {
+        return contentType;
+    }
+    
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public void setDescription(String description) {
+        this.description = description;
+    }
+    
+    public long getTotalSize() {
+        return totalSize;
+    }
+    
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+    
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+    
+    public String getTargetPath() {
+        return targetPath;
+    }
+    
+    public void setTargetPath(String targetPath) {
+        this.targetPath = targetPath;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.mentalhealth.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户统计汇总行：上传、删除、发布、归档时增量维护，统计页直接读取
+ */
+@Entity
+@Table(name = "user_statistics")
+public class UserStatistics {
+    
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(name = "file_count", nullable = false)
+    private long fileCount;
+    
+    @Column(name = "document_count", nullable = false)
+    private long documentCount;
+    
+    @Column(name = "video_count", nullable = false)
+    private long videoCount;
+    
+    @Column(name = "image_count", nullable = false)
+    private long imageCount;
+    
+    @Column(name = "total_file_size", nullable = false)
+    private long totalFileSize;
+    
+    @Column(name = "questionnaire_count", nullable = false)
+    private long questionnaireCount;
+    
+    @Column(name = "draft_count", nullable = false)
+    private long draftCount;
+    
+    @Column(name = "published_count", nullable = false)
+    private long publishedCount;
+    
+    @Column(name = "archived_count", nullable = false)
+    private long archivedCount;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // 构造函数
+    public UserStatistics() {
+    }
+    
+    // Getters and Setters
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public long getFileCount() {
+        return fileCount;
+    }
+    
+    public void setFileCount(long fileCount) {
+        this.fileCount = fileCount;
+    }
+    
+    public long getDocumentCount() {
+        return documentCount;
+    }
+    
+    public void setDocumentCount(long documentCount) {
+        this.documentCount = documentCount;
+    }
+    
+    public long getVideoCount() {
+        return videoCount;
+    }
+    
+    public void setVideoCount(long videoCount) {
+        this.videoCount = videoCount;
+    }
+    
+    public long getImageCount() {
+        return imageCount;
+    }
+    
+    public void setImageCount(long imageCount) {
+        this.imageCount = imageCount;
+    }
+    
+    public long getTotalFileSize() {
+        return totalFileSize;
+    }
+    
+    public void setTotalFileSize(long totalFileSize) {
+        this.totalFileSize = totalFileSize;
+    }
+    
+    public long getQuestionnaireCount() {
+        return questionnaireCount;
+    }
+    
+    public void setQuestionnaireCount(long questionnaireCount) {
+        this.questionnaireCount = questionnaireCount;
+    }
+    
+    public long getDraftCount() {
+        return draftCount;
+    }
+    
+    public void setDraftCount(long draftCount) {
+        this.draftCount = draftCount;
+    }
+    
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+    
+    public void setPublishedCount(long publishedCount) {
+        this.publishedCount = publishedCount;
+    }
+    
+    public long getArchivedCount() {
+        return archivedCount;
+    }
+    
+    public void setArchivedCount(long archivedCount) {
+        this.archivedCount = archivedCount;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
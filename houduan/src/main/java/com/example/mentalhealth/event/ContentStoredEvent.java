@@ -0,0 +1,24 @@
+package com.example.mentalhealth.event;
+
+/**
+ * 内容登记事件：文件或问卷上传提交后发布，供后台生成缩略图和预览图
+ */
+public class ContentStoredEvent {
+
+    private final String contentHash;
+    private final String originalName;
+
+    public ContentStoredEvent(String contentHash, String originalName) {
+        this.contentHash = contentHash;
+        this.originalName = originalName;
+    }
+
+    // Getters
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public String getOriginalName() {
+        return originalName;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.mentalhealth.event;
+
+import java.util.Set;
+
+/**
+ * 下载次数写回事件：缓冲的下载增量已写入数据库
+ */
+public class DownloadCountsFlushedEvent {
+
+    private final Set<Long> questionnaireIds;
+
+    public DownloadCountsFlushedEvent(Set<Long> questionnaireIds) {
+        this.questionnaireIds = questionnaireIds;
+    }
+
+    public Set<Long> getQuestionnaireIds() {
+        return questionnaireIds;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.mentalhealth.event;
+
+import com.example.mentalhealth.entity.Questionnaire;
+
+/**
+ * 问卷变更事件：上传、发布、归档、更新、删除后发布，携带变更前后的状态和分类，
+ * 供缓存按键失效
+ */
+public class QuestionnaireChangedEvent {
+
+    private final Long questionnaireId;
+    private final Questionnaire.QuestionnaireStatus previousStatus;
+    private final Questionnaire.QuestionnaireStatus currentStatus;
+    private final String previousCategory;
+    private final String currentCategory;
+
+    public QuestionnaireChangedEvent(Long questionnaireId,
+                                     Questionnaire.QuestionnaireStatus previousStatus,
+                                     Questionnaire.QuestionnaireStatus currentStatus,
+                                     String previousCategory,
+                                     String currentCategory) {
+        this.questionnaireId = questionnaireId;
+        this.previousStatus = previousStatus;
+        this.currentStatus = currentStatus;
+        this.previousCategory = previousCategory;
+        this.currentCategory = currentCategory;
+    }
+
+    /**
+     * 变更前或变更后处于已发布状态
+     */
+    public boolean affectsPublished() {
+        return previousStatus == Questionnaire.QuestionnaireStatus.PUBLISHED
+                || currentStatus == Questionnaire.QuestionnaireStatus.PUBLISHED;
+    }
+
+    // Getters
+    public Long getQuestionnaireId() {
+        return questionnaireId;
+    }
+
+    public Questionnaire.QuestionnaireStatus getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public Questionnaire.QuestionnaireStatus getCurrentStatus() {
+        return currentStatus;
+    }
+
+    public String getPreviousCategory() {
+        return previousCategory;
+    }
+
+    public String getCurrentCategory() {
+        return currentCategory;
+    }
+}
@@ -4,12 +4,16 @@ import com.example.mentalhealth.entity.FileRecord;
 import com.example.mentalhealth.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,30 +24,52 @@ public interface FileRecordRepository extends JpaRepository<FileRecord, Long> {
     Optional<FileRecord> findByStoredNameAndIsActiveTrue(String storedName);
     
     // 根据用户查找所有活跃文件
+    @EntityGraph(attributePaths = "uploadedBy")
     List<FileRecord> findByUploadedByAndIsActiveTrueOrderByCreatedAtDesc(User uploadedBy);
     
     // 分页查询用户的文件
+    @EntityGraph(attributePaths = "uploadedBy")
     Page<FileRecord> findByUploadedByAndIsActiveTrueOrderByCreatedAtDesc(User uploadedBy, Pageable pageable);
     
+    // 游标分页查询用户的文件（第一页，不统计总数）
+    @EntityGraph(attributePaths = "uploadedBy")
+    @Query("SELECT f FROM FileRecord f WHERE f.uploadedBy = :user AND f.isActive = true ORDER BY f.createdAt DESC, f.id DESC")
+    Slice<FileRecord> findFirstSliceByUser(@Param("user") User user, Pageable pageable);
+    
+    // 游标分页查询用户的文件（从 (createdAt, id) 之后继续）
+    @EntityGraph(attributePaths = "uploadedBy")
+    @Query("SELECT f FROM FileRecord f WHERE f.uploadedBy = :user AND f.isActive = true "
+            + "AND (f.createdAt < :createdAt OR (f.createdAt = :createdAt AND f.id < :id)) "
+            + "ORDER BY f.createdAt DESC, f.id DESC")
+    Slice<FileRecord> findSliceByUserAfter(@Param("user") User user, @Param("createdAt") LocalDateTime createdAt,
+                                           @Param("id") Long id, Pageable pageable);
+    
     // 根据文件分类查找文件
+    @EntityGraph(attributePaths = "uploadedBy")
     List<FileRecord> findByCategoryAndIsActiveTrueOrderByCreatedAtDesc(FileRecord.FileCategory category);
     
     // 根据文件分类和用户查找文件
+    @EntityGraph(attributePaths = "uploadedBy")
     List<FileRecord> findByUploadedByAndCategoryAndIsActiveTrueOrderByCreatedAtDesc(
         User uploadedBy, FileRecord.FileCategory category);
     
     // 根据文件类型查找文件
+    @EntityGraph(attributePaths = "uploadedBy")
     List<FileRecord> findByFileTypeAndIsActiveTrueOrderByCreatedAtDesc(String fileType);
     
     // 根据原始文件名模糊查询
+    @EntityGraph(attributePaths = "uploadedBy")
     @Query("SELECT f FROM FileRecord f WHERE f.originalName LIKE %:filename% AND f.isActive = true ORDER BY f.createdAt DESC")
     List<FileRecord> findByOriginalNameContaining(@Param("filename") String filename);
     
-    // 根据用户和文件名模糊查询
+    // 根据用户和文件名模糊查询（搜索索引就绪前的回退，分页与索引检索一致）
+    @EntityGraph(attributePaths = "uploadedBy")
     @Query("SELECT f FROM FileRecord f WHERE f.uploadedBy = :user AND f.originalName LIKE %:filename% AND f.isActive = true ORDER BY f.createdAt DESC")
-    List<FileRecord> findByUploadedByAndOriginalNameContaining(@Param("user") User user, @Param("filename") String filename);
+    List<FileRecord> findByUploadedByAndOriginalNameContaining(@Param("user") User user, @Param("filename") String filename,
+                                                               Pageable pageable);
     
     // 查询指定时间范围内的文件
+    @EntityGraph(attributePaths = "uploadedBy")
     @Query("SELECT f FROM FileRecord f WHERE f.createdAt BETWEEN :startDate AND :endDate AND f.isActive = true ORDER BY f.createdAt DESC")
     List<FileRecord> findByCreatedAtBetween(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
     
@@ -53,17 +79,60 @@ public interface FileRecordRepository extends JpaRepository<FileRecord, Long> {
     // 统计用户某个分类的文件数量
     long countByUploadedByAndCategoryAndIsActiveTrue(User uploadedBy, FileRecord.FileCategory category);
     
+    // 按分类一次统计用户的文件数量和总大小
+    @Query("SELECT f.category AS category, COUNT(f) AS count, COALESCE(SUM(f.fileSize), 0) AS totalSize "
+            + "FROM FileRecord f WHERE f.uploadedBy = :user AND f.isActive = true GROUP BY f.category")
+    List<CategoryStatistics> aggregateByCategory(@Param("user") User user);
+    
     // 计算用户文件总大小
     @Query("SELECT COALESCE(SUM(f.fileSize), 0) FROM FileRecord f WHERE f.uploadedBy = :user AND f.isActive = true")
     Long sumFileSizeByUser(@Param("user") User user);
     
     // 查找所有活跃文件（管理员使用）
+    @EntityGraph(attributePaths = "uploadedBy")
     Page<FileRecord> findByIsActiveTrueOrderByCreatedAtDesc(Pageable pageable);
     
+    // 按ID顺序分批读取活跃文件（用于重建检索索引）
+    @Query("SELECT f FROM FileRecord f WHERE f.isActive = true AND f.id > :afterId ORDER BY f.id ASC")
+    List<FileRecord> findActiveAfterId(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // 按ID批量读取文件并同时加载上传者（列表转换为 DTO 时不再逐行查询用户）
+    @EntityGraph(attributePaths = "uploadedBy")
+    @Query("SELECT f FROM FileRecord f WHERE f.id IN :ids")
+    List<FileRecord> findWithUploaderByIdIn(@Param("ids") Collection<Long> ids);
+    
     // 根据ID和用户查找文件（确保用户只能访问自己的文件）
+    @EntityGraph(attributePaths = "uploadedBy")
     Optional<FileRecord> findByIdAndUploadedByAndIsActiveTrue(Long id, User uploadedBy);
     
     // 软删除文件（标记为不活跃）
     @Query("UPDATE FileRecord f SET f.isActive = false, f.updatedAt = CURRENT_TIMESTAMP WHERE f.id = :id AND f.uploadedBy = :user")
     void softDeleteByIdAndUser(@Param("id") Long id, @Param("user") User user);
+    
+    // 用户已上传过的相同内容（重复上传短路时复用，含已软删除的记录）
+    Optional<FileRecord> findFirstByUploadedByAndContentHash(User uploadedBy, String contentHash);
+    
+    // 软删除超过保留期、等待彻底清除的文件
+    List<FileRecord> findTop100ByIsActiveFalseAndUpdatedAtBefore(LocalDateTime cutoff);
+    
+    // 分片布局之前上传、尚未登记内容摘要的文件（按ID分批迁移）
+    @Query("SELECT f FROM FileRecord f WHERE f.contentHash IS NULL AND f.id > :afterId ORDER BY f.id ASC")
+    List<FileRecord> findLegacyAfterId(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // 清理旧目录前确认：旧文件对应的记录已登记内容，且没有记录仍指向旧路径
+    boolean existsByStoredNameAndContentHashIsNotNull(String storedName);
+    
+    boolean existsByFilePath(String filePath);
+    
+    // 旧文件登记为内容后改写路径和摘要（已被并发迁移时更新 0 行）
+    @Modifying
+    @Query("UPDATE FileRecord f SET f.contentHash = :contentHash, f.filePath = :filePath WHERE f.id = :id AND f.contentHash IS NULL")
+    int assignContent(@Param("id") Long id, @Param("contentHash") String contentHash, @Param("filePath") String filePath);
+    
+    // 分类统计结果
+    interface CategoryStatistics {
+        FileRecord.FileCategory getCategory();
+        long getCount();
+        long getTotalSize();
+    }
 }
@@ -4,12 +4,16 @@ import com.example.mentalhealth.entity.Questionnaire;
 import com.example.mentalhealth.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,53 +24,109 @@ public interface QuestionnaireRepository extends JpaRepository<Questionnaire, Lo
     Optional<Questionnaire> findByIdAndCreatedByAndIsActiveTrue(Long id, User createdBy);
     
     // 根据ID查找活跃问卷
+    @EntityGraph(attributePaths = "createdBy")
     Optional<Questionnaire> findByIdAndIsActiveTrue(Long id);
     
     // 查找用户的所有活跃问卷
+    @EntityGraph(attributePaths = "createdBy")
     List<Questionnaire> findByCreatedByAndIsActiveTrueOrderByCreatedAtDesc(User createdBy);
     
     // 分页查询用户的问卷
+    @EntityGraph(attributePaths = "createdBy")
     Page<Questionnaire> findByCreatedByAndIsActiveTrueOrderByCreatedAtDesc(User createdBy, Pageable pageable);
     
+    // 游标分页查询用户的问卷（第一页，不统计总数）
+    @EntityGraph(attributePaths = "createdBy")
+    @Query("SELECT q FROM Questionnaire q WHERE q.createdBy = :user AND q.isActive = true ORDER BY q.createdAt DESC, q.id DESC")
+    Slice<Questionnaire> findFirstSliceByCreator(@Param("user") User user, Pageable pageable);
+    
+    // 游标分页查询用户的问卷（从 (createdAt, id) 之后继续）
+    @EntityGraph(attributePaths = "createdBy")
+    @Query("SELECT q FROM Questionnaire q WHERE q.createdBy = :user AND q.isActive = true "
+            + "AND (q.createdAt < :createdAt OR (q.createdAt = :createdAt AND q.id < :id)) "
+            + "ORDER BY q.createdAt DESC, q.id DESC")
+    Slice<Questionnaire> findSliceByCreatorAfter(@Param("user") User user, @Param("createdAt") LocalDateTime createdAt,
+                                                 @Param("id") Long id, Pageable pageable);
+    
+    // 游标分页查询分类下的问卷（第一页，批量导出使用）
+    @Query("SELECT q FROM Questionnaire q WHERE q.category = :category AND q.isActive = true ORDER BY q.createdAt DESC, q.id DESC")
+    Slice<Questionnaire> findFirstSliceByCategory(@Param("category") String category, Pageable pageable);
+    
+    // 游标分页查询分类下的问卷（从 (createdAt, id) 之后继续）
+    @Query("SELECT q FROM Questionnaire q WHERE q.category = :category AND q.isActive = true "
+            + "AND (q.createdAt < :createdAt OR (q.createdAt = :createdAt AND q.id < :id)) "
+            + "ORDER BY q.createdAt DESC, q.id DESC")
+    Slice<Questionnaire> findSliceByCategoryAfter(@Param("category") String category,
+                                                  @Param("createdAt") LocalDateTime createdAt,
+                                                  @Param("id") Long id, Pageable pageable);
+    
     // 根据状态查找用户问卷
+    @EntityGraph(attributePaths = "createdBy")
     List<Questionnaire> findByCreatedByAndStatusAndIsActiveTrueOrderByCreatedAtDesc(
         User createdBy, Questionnaire.QuestionnaireStatus status);
     
     // 根据分类查找问卷
+    @EntityGraph(attributePaths = "createdBy")
     List<Questionnaire> findByCategoryAndIsActiveTrueOrderByCreatedAtDesc(String category);
     
-    // 根据标题模糊查询
+    // 根据标题模糊查询（搜索索引就绪前的回退，分页与索引检索一致）
+    @EntityGraph(attributePaths = "createdBy")
     @Query("SELECT q FROM Questionnaire q WHERE q.title LIKE %:title% AND q.isActive = true ORDER BY q.createdAt DESC")
-    List<Questionnaire> findByTitleContaining(@Param("title") String title);
+    List<Questionnaire> findByTitleContaining(@Param("title") String title, Pageable pageable);
     
     // 根据用户和标题模糊查询
+    @EntityGraph(attributePaths = "createdBy")
     @Query("SELECT q FROM Questionnaire q WHERE q.createdBy = :user AND q.title LIKE %:title% AND q.isActive = true ORDER BY q.createdAt DESC")
-    List<Questionnaire> findByCreatedByAndTitleContaining(@Param("user") User user, @Param("title") String title);
+    List<Questionnaire> findByCreatedByAndTitleContaining(@Param("user") User user, @Param("title") String title,
+                                                         Pageable pageable);
     
     // 查找所有已发布的问卷
+    @EntityGraph(attributePaths = "createdBy")
     List<Questionnaire> findByStatusAndIsActiveTrueOrderByPublishedAtDesc(Questionnaire.QuestionnaireStatus status);
     
     // 分页查询所有已发布的问卷
+    @EntityGraph(attributePaths = "createdBy")
     Page<Questionnaire> findByStatusAndIsActiveTrueOrderByPublishedAtDesc(
         Questionnaire.QuestionnaireStatus status, Pageable pageable);
     
+    // 游标分页查询已发布的问卷（第一页，不统计总数）
+    @EntityGraph(attributePaths = "createdBy")
+    @Query("SELECT q FROM Questionnaire q WHERE q.status = 'PUBLISHED' AND q.isActive = true AND q.publishedAt IS NOT NULL ORDER BY q.publishedAt DESC, q.id DESC")
+    Slice<Questionnaire> findFirstPublishedSlice(Pageable pageable);
+    
+    // 游标分页查询已发布的问卷（从 (publishedAt, id) 之后继续）
+    @EntityGraph(attributePaths = "createdBy")
+    @Query("SELECT q FROM Questionnaire q WHERE q.status = 'PUBLISHED' AND q.isActive = true "
+            + "AND (q.publishedAt < :publishedAt OR (q.publishedAt = :publishedAt AND q.id < :id)) "
+            + "ORDER BY q.publishedAt DESC, q.id DESC")
+    Slice<Questionnaire> findPublishedSliceAfter(@Param("publishedAt") LocalDateTime publishedAt,
+                                                 @Param("id") Long id, Pageable pageable);
+    
     // 统计用户的问卷总数
     long countByCreatedByAndIsActiveTrue(User createdBy);
     
     // 统计用户某个状态的问卷数量
     long countByCreatedByAndStatusAndIsActiveTrue(User createdBy, Questionnaire.QuestionnaireStatus status);
     
+    // 按状态一次统计用户的问卷数量
+    @Query("SELECT q.status AS status, COUNT(q) AS count "
+            + "FROM Questionnaire q WHERE q.createdBy = :user AND q.isActive = true GROUP BY q.status")
+    List<StatusStatistics> aggregateByStatus(@Param("user") User user);
+    
     // 查找热门问卷（按下载次数排序）
+    @EntityGraph(attributePaths = "createdBy")
     @Query("SELECT q FROM Questionnaire q WHERE q.status = 'PUBLISHED' AND q.isActive = true ORDER BY q.downloadCount DESC")
     List<Questionnaire> findPopularQuestionnaires(Pageable pageable);
     
     // 查找最新发布的问卷
+    @EntityGraph(attributePaths = "createdBy")
     @Query("SELECT q FROM Questionnaire q WHERE q.status = 'PUBLISHED' AND q.isActive = true ORDER BY q.publishedAt DESC")
     List<Questionnaire> findLatestPublishedQuestionnaires(Pageable pageable);
     
-    // 根据标签搜索
-    @Query("SELECT q FROM Questionnaire q WHERE q.tags LIKE %:tag% AND q.status = 'PUBLISHED' AND q.isActive = true ORDER BY q.createdAt DESC")
-    List<Questionnaire> findByTagsContaining(@Param("tag") String tag);
+    // 根据标签精确搜索（通过 questionnaire_tag 关联表）
+    @EntityGraph(attributePaths = "createdBy")
+    @Query("SELECT q FROM Questionnaire q WHERE q.id IN (SELECT qt.id.questionnaireId FROM QuestionnaireTag qt, Tag t WHERE qt.id.tagId = t.id AND t.name = :tag) AND q.status = 'PUBLISHED' AND q.isActive = true ORDER BY q.createdAt DESC")
+    List<Questionnaire> findByTagName(@Param("tag") String tag);
     
     // 增加下载次数
     @Modifying
@@ -74,9 +134,45 @@ public interface QuestionnaireRepository extends JpaRepository<Questionnaire, Lo
     void incrementDownloadCount(@Param("id") Long id);
     
     // 查找用户某个分类的问卷
+    @EntityGraph(attributePaths = "createdBy")
     List<Questionnaire> findByCreatedByAndCategoryAndIsActiveTrueOrderByCreatedAtDesc(User createdBy, String category);
     
+    // 按ID顺序分批读取活跃问卷（用于重建检索索引）
+    @Query("SELECT q FROM Questionnaire q WHERE q.isActive = true AND q.id > :afterId ORDER BY q.id ASC")
+    List<Questionnaire> findActiveAfterId(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // 按ID批量读取问卷并同时加载创建者（列表转换为 DTO 时不再逐行查询用户）
+    @EntityGraph(attributePaths = "createdBy")
+    @Query("SELECT q FROM Questionnaire q WHERE q.id IN :ids")
+    List<Questionnaire> findWithCreatorByIdIn(@Param("ids") Collection<Long> ids);
+    
     // 获取所有分类
     @Query("SELECT DISTINCT q.category FROM Questionnaire q WHERE q.category IS NOT NULL AND q.isActive = true")
     List<String> findAllCategories();
+    
+    // 用户已上传过的相同内容（重复上传短路时复用，含已软删除的问卷）
+    Optional<Questionnaire> findFirstByCreatedByAndContentHash(User createdBy, String contentHash);
+    
+    // 软删除超过保留期、等待彻底清除的问卷
+    List<Questionnaire> findTop100ByIsActiveFalseAndUpdatedAtBefore(LocalDateTime cutoff);
+    
+    // 分片布局之前上传、尚未登记内容摘要的问卷（按ID分批迁移）
+    @Query("SELECT q FROM Questionnaire q WHERE q.contentHash IS NULL AND q.id > :afterId ORDER BY q.id ASC")
+    List<Questionnaire> findLegacyAfterId(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // 清理旧目录前确认：旧文件对应的记录已登记内容，且没有记录仍指向旧路径
+    boolean existsByStoredNameAndContentHashIsNotNull(String storedName);
+    
+    boolean existsByFilePath(String filePath);
+    
+    // 旧文件登记为内容后改写路径和摘要（已被并发迁移时更新 0 行）
+    @Modifying
+    @Query("UPDATE Questionnaire q SET q.contentHash = :contentHash, q.filePath = :filePath WHERE q.id = :id AND q.contentHash IS NULL")
+    int assignContent(@Param("id") Long id, @Param("contentHash") String contentHash, @Param("filePath") String filePath);
+    
+    // 状态统计结果
+    interface StatusStatistics {
+        Questionnaire.QuestionnaireStatus getStatus();
+        long getCount();
+    }
 }
@@ -0,0 +1,30 @@
+package com.example.mentalhealth.repository;
+
+import com.example.mentalhealth.entity.QuestionnaireTag;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface QuestionnaireTagRepository extends JpaRepository<QuestionnaireTag, QuestionnaireTag.QuestionnaireTagId> {
+    
+    // 查找问卷的所有标签关联
+    List<QuestionnaireTag> findByIdQuestionnaireId(Long questionnaireId);
+    
+    // 批量查找多个问卷的标签名（问卷ID, 标签名）
+    @Query("SELECT qt.id.questionnaireId, t.name FROM QuestionnaireTag qt, Tag t WHERE qt.id.tagId = t.id AND qt.id.questionnaireId IN :questionnaireIds")
+    List<Object[]> findTagNamesByQuestionnaireIds(@Param("questionnaireIds") Collection<Long> questionnaireIds);
+    
+    // 删除问卷的所有标签关联
+    @Modifying
+    @Query("DELETE FROM QuestionnaireTag qt WHERE qt.id.questionnaireId = :questionnaireId")
+    void deleteByQuestionnaireId(@Param("questionnaireId") Long questionnaireId);
+    
+    // 问卷是否已有标签关联
+    boolean existsByIdQuestionnaireId(Long questionnaireId);
+}
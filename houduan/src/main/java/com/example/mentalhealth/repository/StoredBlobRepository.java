@@ -0,0 +1,16 @@
+package com.example.mentalhealth.repository;
+
+import com.example.mentalhealth.entity.StoredBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+    
+    // 已没有任何引用、等待删除物理文件的内容
+    @Query("SELECT b.sha256 FROM StoredBlob b WHERE b.refCount <= 0")
+    List<String> findUnreferencedHashes();
+}
@@ -0,0 +1,31 @@
+package com.example.mentalhealth.repository;
+
+import com.example.mentalhealth.entity.Tag;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TagRepository extends JpaRepository<Tag, Long> {
+    
+    // 根据标签名查找
+    Optional<Tag> findByName(String name);
+    
+    // 批量根据标签名查找
+    List<Tag> findByNameIn(Collection<String> names);
+    
+    // 加锁读取，能读到其他事务刚提交的标签（只用于刚创建的标签：并发创建同名标签后重新读取）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Tag t WHERE t.name IN :names")
+    List<Tag> findByNameInForUpdate(@Param("names") Collection<String> names);
+    
+    // 按名称排序获取所有标签
+    List<Tag> findAllByOrderByNameAsc();
+}
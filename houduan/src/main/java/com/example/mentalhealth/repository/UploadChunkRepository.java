@@ -0,0 +1,24 @@
+package com.example.mentalhealth.repository;
+
+import com.example.mentalhealth.entity.UploadChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadChunkRepository extends JpaRepository<UploadChunk, Long> {
+    
+    @Query("SELECT c.chunkIndex FROM UploadChunk c WHERE c.sessionId = :sessionId ORDER BY c.chunkIndex")
+    List<Integer> findChunkIndexes(@Param("sessionId") String sessionId);
+    
+    Optional<UploadChunk> findBySessionIdAndChunkIndex(String sessionId, int chunkIndex);
+    
+    @Modifying
+    @Query("DELETE FROM UploadChunk c WHERE c.sessionId = :sessionId")
+    int deleteBySessionId(@Param("sessionId") String sessionId);
+}
@@ -0,0 +1,37 @@
+package com.example.mentalhealth.repository;
+
+import com.example.mentalhealth.entity.UploadSession;
+import com.example.mentalhealth.entity.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    
+    // 完成上传时加锁，避免同一会话被重复完成
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UploadSession s WHERE s.id = :id")
+    Optional<UploadSession> findByIdForUpdate(@Param("id") String id);
+    
+    // 分片并行到达时只刷新活动时间，不读写整行
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.updatedAt = :now WHERE s.id = :id")
+    int touch(@Param("id") String id, @Param("now") LocalDateTime now);
+    
+    List<UploadSession> findByUpdatedAtBefore(LocalDateTime time);
+    
+    // 用户未完成的会话数和预分配的总字节数
+    long countByUploadedBy(User user);
+    
+    @Query("SELECT COALESCE(SUM(s.totalSize), 0) FROM UploadSession s WHERE s.uploadedBy = :user")
+    long sumTotalSizeByUploadedBy(@Param("user") User user);
+}
@@ -0,0 +1,9 @@
+package com.example.mentalhealth.repository;
+
+import com.example.mentalhealth.entity.UserStatistics;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserStatisticsRepository extends JpaRepository<UserStatistics, Long> {
+}
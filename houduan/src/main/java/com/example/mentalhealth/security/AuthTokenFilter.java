@@ -1,7 +1,9 @@
 package com.example.mentalhealth.security;
 
 import com.example.mentalhealth.service.UserDetailsServiceImpl;
+import com.example.mentalhealth.util.DownloadUrlSigner;
 import com.example.mentalhealth.util.JwtUtils;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -30,15 +32,19 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
     
+    private static final String ACTUATOR_PREFIX = "/actuator/";
+    
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                   FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
+            // 一次验签同时得到用户名；同一 token 的后续请求直接命中缓存
+            Claims claims = jwt != null ? jwtUtils.getVerifiedClaims(jwt) : null;
+            if (claims != null) {
+                String username = claims.getSubject();
                 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = userDetailsService.loadCachedUserByUsername(username);
                 UsernamePasswordAuthenticationToken authentication = 
                         new UsernamePasswordAuthenticationToken(userDetails, null, 
                                                               userDetails.getAuthorities());
@@ -53,6 +59,13 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
     
+    // 签名下载链接和监控端点不需要用户身份，跳过 token 解析和用户查询（Prometheus 抓取凭证不是 JWT）
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.startsWith(DownloadUrlSigner.PATH_PREFIX) || path.startsWith(ACTUATOR_PREFIX);
+    }
+    
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
         
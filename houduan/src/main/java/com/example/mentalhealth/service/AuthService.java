@@ -4,6 +4,7 @@ import com.example.mentalhealth.dto.LoginRequest;
 import com.example.mentalhealth.dto.RegisterRequest;
 import com.example.mentalhealth.entity.User;
 import com.example.mentalhealth.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -15,6 +16,7 @@ import org.springframework.stereotype.Service;
 import java.util.Optional;
 
 @Service
+@Timed(value = "service.calls", histogram = true)
 public class AuthService {
     
     @Autowired
@@ -26,6 +28,9 @@ public class AuthService {
     @Autowired
     private AuthenticationManager authenticationManager;
     
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+    
     /**
      * 用户注册
      * @param registerRequest 注册请求
@@ -124,6 +129,9 @@ public class AuthService {
             user.setName(name.trim().isEmpty() ? null : name);
         }
         
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        // 已认证请求使用缓存的主体，资料变更后立即失效
+        userDetailsService.evictUser(saved.getUsername());
+        return saved;
     }
 }
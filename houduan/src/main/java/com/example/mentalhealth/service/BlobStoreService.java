@@ -0,0 +1,168 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.repository.StoredBlobRepository;
+import com.example.mentalhealth.storage.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 内容寻址存储：文件内容按 SHA-256 存放在 BlobStore 后端（本地目录或对象存储），相同内容只存一份
+ * 上传先写入本地暂存目录并计算摘要，在事务外把内容写入后端（upload），再在写引用行的事务中只增加引用计数（retain），
+ * 大文件传输期间不持有 stored_blobs 的行锁。内容已存在时不再写入，暂存文件由调用方删除。
+ * 引用计数归零的内容由 collectGarbage 加锁后删除。
+ */
+@Service
+public class BlobStoreService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BlobStoreService.class);
+    
+    // 并发登记同一内容时 INSERT IGNORE 只保留一行，随后的 UPDATE 在行锁下递增
+    private static final String INSERT_SQL =
+            "INSERT IGNORE INTO stored_blobs (sha256, file_size, ref_count, created_at) VALUES (?, ?, 0, ?)";
+    private static final String RETAIN_SQL = "UPDATE stored_blobs SET ref_count = ref_count + 1 WHERE sha256 = ?";
+    private static final String RELEASE_SQL =
+            "UPDATE stored_blobs SET ref_count = ref_count - 1 WHERE sha256 = ? AND ref_count > 0";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private StorageLayoutService storageLayoutService;
+    
+    @Autowired
+    private BlobStore blobStore;
+    
+    @Autowired
+    private DerivativeService derivativeService;
+    
+    /**
+     * 分配一个暂存文件路径（本地存储时与 blob 目录在同一文件系统，保证重命名是原子的）
+     */
+    public Path newStagingFile() throws IOException {
+        Path stagingDir = storageLayoutService.stagingDir();
+        Files.createDirectories(stagingDir);
+        return stagingDir.resolve(UUID.randomUUID().toString());
+    }
+    
+    /**
+     * 内容的存储位置（写入记录的 file_path）
+     */
+    public String location(String sha256) {
+        return blobStore.location(sha256);
+    }
+    
+    /**
+     * 把暂存文件写入后端（内容已存在时跳过，保留暂存文件由调用方删除）
+     * 必须在事务之外调用：先以引用计数 0 登记内容行，之后的事务失败时内容由 collectGarbage 回收
+     */
+    public void upload(String sha256, long size, Path staged) {
+        jdbcTemplate.update(INSERT_SQL, sha256, size, Timestamp.valueOf(LocalDateTime.now()));
+        storeIfAbsent(sha256, staged);
+    }
+    
+    /**
+     * 为已由 upload 写入后端的内容增加一次引用，必须在写入引用行的事务中调用
+     * 递增后持有行锁再确认内容仍在：上传完成到登记之间内容可能被 collectGarbage 回收，此时事务回滚，由用户重新上传
+     */
+    public void retain(String sha256, long size) {
+        jdbcTemplate.update(INSERT_SQL, sha256, size, Timestamp.valueOf(LocalDateTime.now()));
+        jdbcTemplate.update(RETAIN_SQL, sha256);
+        try {
+            if (blobStore.stat(sha256).isEmpty()) {
+                throw new IllegalStateException("存储内容已被回收，请重新上传: " + sha256);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * 为已存储的内容增加一次引用（重复上传短路，不传输文件内容）
+     * @return 内容不存在时返回 false
+     */
+    public boolean retainExisting(String sha256) {
+        if (jdbcTemplate.update(RETAIN_SQL, sha256) != 1) {
+            return false;
+        }
+        try {
+            return blobStore.stat(sha256).isPresent();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * 减少一次引用（引用行被彻底清除时调用），物理文件在 collectGarbage 中删除
+     */
+    public void release(String sha256) {
+        jdbcTemplate.update(RELEASE_SQL, sha256);
+    }
+    
+    /**
+     * 删除已没有引用的内容
+     * 删除文件时持有该行的行锁，同一内容的并发登记会等到删除完成后重新放置文件
+     */
+    public int collectGarbage() {
+        List<String> hashes = storedBlobRepository.findUnreferencedHashes();
+        int deleted = 0;
+        for (String sha256 : hashes) {
+            try {
+                Boolean removed = transactionTemplate.execute(status -> {
+                    List<Long> refCount = jdbcTemplate.queryForList(
+                            "SELECT ref_count FROM stored_blobs WHERE sha256 = ? FOR UPDATE", Long.class, sha256);
+                    if (refCount.isEmpty() || refCount.get(0) > 0) {
+                        return false;
+                    }
+                    try {
+                        blobStore.delete(sha256);
+                        derivativeService.deleteAll(sha256);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    jdbcTemplate.update("DELETE FROM stored_blobs WHERE sha256 = ?", sha256);
+                    return true;
+                });
+                if (Boolean.TRUE.equals(removed)) {
+                    deleted++;
+                }
+            } catch (Exception e) {
+                logger.warn("删除无引用内容失败: {} ({})", sha256, e.getMessage());
+            }
+        }
+        if (deleted > 0) {
+            logger.info("已删除 {} 个无引用的存储内容", deleted);
+        }
+        return deleted;
+    }
+    
+    // 私有方法
+    
+    private void storeIfAbsent(String sha256, Path staged) {
+        try {
+            if (blobStore.stat(sha256).isEmpty()) {
+                blobStore.put(sha256, staged);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
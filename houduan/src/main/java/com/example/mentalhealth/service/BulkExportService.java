@@ -0,0 +1,205 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.Questionnaire;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.FileRecordRepository;
+import com.example.mentalhealth.repository.QuestionnaireRepository;
+import com.example.mentalhealth.repository.UserRepository;
+import com.example.mentalhealth.storage.BlobStore;
+import com.example.mentalhealth.util.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 批量导出：把选中的文件或问卷边读边写成 ZIP 输出到响应流
+ * 记录按 (created_at, id) 游标分批读取，每批处理完清空持久化上下文；
+ * 内容逐个从存储后端流式读取，内存占用与导出数量无关。
+ * 已经压缩过的格式（视频、图片、Office 文档等）用 0 级压缩原样写入，不再重复压缩。
+ */
+@Service
+public class BulkExportService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BulkExportService.class);
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    // 内部已经压缩的格式，再次压缩只消耗 CPU
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "mp4", "avi", "mov", "wmv", "flv", "mkv", "webm",
+            "jpg", "jpeg", "png", "gif", "webp",
+            "docx", "xlsx", "pptx", "zip", "rar", "7z", "gz");
+    
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+    
+    @Autowired
+    private QuestionnaireRepository questionnaireRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private BlobStore blobStore;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${export.batch-size:200}")
+    private int batchSize;
+    
+    /**
+     * 查找导出的目标用户
+     */
+    public Optional<User> findUser(Long userId) {
+        return userRepository.findById(userId);
+    }
+    
+    /**
+     * 导出用户的全部文件
+     * @return 写入的文件数
+     */
+    public int exportUserFiles(User user, OutputStream out) throws IOException {
+        Function<KeysetCursor, Slice<FileRecord>> fetch = after -> {
+            Pageable pageable = PageRequest.of(0, batchSize);
+            return after == null
+                    ? fileRecordRepository.findFirstSliceByUser(user, pageable)
+                    : fileRecordRepository.findSliceByUserAfter(user, after.getTime(), after.getId(), pageable);
+        };
+        int exported = writeZip(out, fetch, file -> new ExportItem(file.getId(), file.getOriginalName(),
+                file.getContentHash(), file.getFilePath(), file.getCreatedAt()));
+        logger.info("批量导出用户文件: {} 共 {} 个", user.getUsername(), exported);
+        return exported;
+    }
+    
+    /**
+     * 导出分类下的全部问卷
+     * @return 写入的问卷数
+     */
+    public int exportQuestionnaires(String category, OutputStream out) throws IOException {
+        Function<KeysetCursor, Slice<Questionnaire>> fetch = after -> {
+            Pageable pageable = PageRequest.of(0, batchSize);
+            return after == null
+                    ? questionnaireRepository.findFirstSliceByCategory(category, pageable)
+                    : questionnaireRepository.findSliceByCategoryAfter(category, after.getTime(), after.getId(),
+                            pageable);
+        };
+        int exported = writeZip(out, fetch, questionnaire -> new ExportItem(questionnaire.getId(),
+                questionnaire.getOriginalName(), questionnaire.getContentHash(), questionnaire.getFilePath(),
+                questionnaire.getCreatedAt()));
+        logger.info("批量导出分类问卷: {} 共 {} 个", category, exported);
+        return exported;
+    }
+    
+    // 私有方法
+    
+    private <T> int writeZip(OutputStream out, Function<KeysetCursor, Slice<T>> fetch,
+                             Function<T, ExportItem> toItem) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int exported = 0;
+        KeysetCursor after = null;
+        Slice<T> batch;
+        do {
+            batch = fetch.apply(after);
+            List<ExportItem> items = batch.getContent().stream().map(toItem).toList();
+            // 只保留本批需要的字段，已读实体不随导出数量累积
+            entityManager.clear();
+            for (ExportItem item : items) {
+                if (writeEntry(zip, item, buffer)) {
+                    exported++;
+                }
+            }
+            if (!items.isEmpty()) {
+                ExportItem last = items.get(items.size() - 1);
+                after = new KeysetCursor(last.createdAt, last.id);
+            }
+        } while (batch.hasNext());
+        zip.finish();
+        zip.flush();
+        return exported;
+    }
+    
+    // 内容缺失时跳过该条（记录日志），不中断整个导出
+    private boolean writeEntry(ZipOutputStream zip, ExportItem item, byte[] buffer) throws IOException {
+        InputStream in;
+        try {
+            in = item.contentHash != null
+                    ? blobStore.get(item.contentHash)
+                    : Files.newInputStream(Paths.get(item.filePath));
+        } catch (NoSuchFileException e) {
+            logger.warn("批量导出跳过缺失的内容: {} ({})", item.name, item.id);
+            return false;
+        }
+        try (in) {
+            ZipEntry entry = new ZipEntry(entryName(item));
+            if (item.createdAt != null) {
+                entry.setTimeLocal(item.createdAt);
+            }
+            zip.setLevel(isCompressed(item.name) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+            zip.putNextEntry(entry);
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                zip.write(buffer, 0, read);
+            }
+            zip.closeEntry();
+        }
+        return true;
+    }
+    
+    // 以 ID 为前缀保证条目名唯一，去掉路径分隔符防止解压到目录之外
+    private String entryName(ExportItem item) {
+        String name = item.name != null ? item.name : "unnamed";
+        return item.id + "_" + name.replace('/', '_').replace('\\', '_');
+    }
+    
+    private boolean isCompressed(String name) {
+        if (name == null) {
+            return false;
+        }
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+    
+    // 导出一条记录需要的字段
+    private static class ExportItem {
+        private final Long id;
+        private final String name;
+        private final String contentHash;
+        private final String filePath;
+        private final LocalDateTime createdAt;
+        
+        ExportItem(Long id, String name, String contentHash, String filePath, LocalDateTime createdAt) {
+            this.id = id;
+            this.name = name;
+            this.contentHash = contentHash;
+            this.filePath = filePath;
+            this.createdAt = createdAt;
+        }
+    }
+}
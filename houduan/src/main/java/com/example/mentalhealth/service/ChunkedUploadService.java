@@ -0,0 +1,378 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.dto.ChunkedUploadInitRequest;
+import com.example.mentalhealth.dto.ChunkedUploadStatusResponse;
+import com.example.mentalhealth.dto.FileUploadResponse;
+import com.example.mentalhealth.entity.UploadChunk;
+import com.example.mentalhealth.entity.UploadSession;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.UploadChunkRepository;
+import com.example.mentalhealth.repository.UploadSessionRepository;
+import com.example.mentalhealth.util.Checksums;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * 可续传的分片上传
+ * 初始化时在内容存储的暂存目录预分配 .part 文件；分片先写入独立的临时文件并校验大小和 SHA-256，
+ * 通过后在会话行锁内复制到 .part 的对应偏移量并记录到 upload_chunks，与完成上传互斥。
+ * 已记录的分片不会再被覆盖，客户端断线后查询缺失分片继续上传；
+ * 全部到齐后在事务之外写入内容存储，再在会话行锁内通过 FileService 生成文件记录。长时间无活动的会话定期清理。
+ */
+@Service
+public class ChunkedUploadService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadService.class);
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PART_SUFFIX = ".part";
+    private static final String CHUNK_SUFFIX = ".chunk-";
+    
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+    
+    @Autowired
+    private UploadChunkRepository uploadChunkRepository;
+    
+    @Autowired
+    private FileService fileService;
+    
+    @Autowired
+    private BlobStoreService blobStoreService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${file.chunked.max-size:2147483648}") // 默认2GB
+    private long maxFileSize;
+    
+    @Value("${file.chunked.chunk-size:8388608}") // 默认8MB
+    private int chunkSize;
+    
+    @Value("${file.chunked.session-ttl-hours:24}")
+    private long sessionTtlHours;
+    
+    // 每个用户同时进行的会话数和预分配的总字节数上限
+    @Value("${file.chunked.max-sessions-per-user:5}")
+    private long maxSessionsPerUser;
+    
+    @Value("${file.chunked.max-reserved-bytes-per-user:4294967296}") // 默认4GB
+    private long maxReservedBytesPerUser;
+    
+    /**
+     * 创建上传会话并预分配文件
+     * @throws IllegalArgumentException 文件名为空、类型不支持、文件过大或超过用户的会话数、预分配空间上限
+     */
+    public ChunkedUploadStatusResponse initiate(ChunkedUploadInitRequest request, User user) throws IOException {
+        String originalName = StringUtils.getFilename(StringUtils.cleanPath(request.getFileName()));
+        long totalSize = request.getFileSize();
+        if (totalSize > maxFileSize) {
+            throw new IllegalArgumentException("文件大小不能超过 " + (maxFileSize / 1024 / 1024) + "MB");
+        }
+        if (uploadSessionRepository.countByUploadedBy(user) >= maxSessionsPerUser) {
+            throw new IllegalArgumentException("未完成的分片上传不能超过 " + maxSessionsPerUser + " 个");
+        }
+        if (uploadSessionRepository.sumTotalSizeByUploadedBy(user) + totalSize > maxReservedBytesPerUser) {
+            throw new IllegalArgumentException("未完成的分片上传总大小不能超过 "
+                    + (maxReservedBytesPerUser / 1024 / 1024) + "MB");
+        }
+        Path target = fileService.allocateStagingFile(originalName);
+        Path partFile = partPath(target);
+        
+        // 预分配完整大小，分片按偏移量直接写入最终位置
+        try (RandomAccessFile file = new RandomAccessFile(partFile.toFile(), "rw")) {
+            file.setLength(totalSize);
+        }
+        
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), user, originalName,
+                request.getContentType(), totalSize, chunkSize, target.toString());
+        session.setDescription(request.getDescription());
+        try {
+            session = uploadSessionRepository.save(session);
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(partFile);
+            throw e;
+        }
+        logger.info("分片上传开始: {} ({} 字节, {} 片, 用户: {})",
+                originalName, totalSize, session.getTotalChunks(), user.getUsername());
+        return toStatus(session, List.of());
+    }
+    
+    /**
+     * 写入一个分片；同一分片可以重复上传（断线重试）：已记录且校验和相同时直接返回状态，不再写入
+     * 分片内容校验通过后才写入 .part 文件，损坏或不完整的重试不会覆盖已校验的数据
+     * @param offset 客户端声明的偏移量（可选），必须等于 index * chunkSize
+     * @param checksum 分片内容的 SHA-256（十六进制）
+     * @throws IllegalArgumentException 会话不存在或已完成、序号或偏移量不正确、大小不符、校验和不一致，
+     *                                  或该分片已以不同内容记录
+     */
+    public ChunkedUploadStatusResponse writeChunk(String uploadId, int index, Long offset, String checksum,
+                                                  InputStream body, User user) throws IOException {
+        UploadSession session = requireSession(uploadId, user);
+        if (index < 0 || index >= session.getTotalChunks()) {
+            throw new IllegalArgumentException("分片序号超出范围: " + index);
+        }
+        long position = (long) index * session.getChunkSize();
+        if (offset != null && offset != position) {
+            throw new IllegalArgumentException("分片偏移量与序号不一致，应为 " + position);
+        }
+        if (!StringUtils.hasText(checksum)) {
+            throw new IllegalArgumentException("缺少分片校验和");
+        }
+        
+        String sha256 = checksum.trim().toLowerCase();
+        
+        // 已记录的分片不读取请求体，重试直接返回当前状态
+        Optional<UploadChunk> recorded = uploadChunkRepository.findBySessionIdAndChunkIndex(session.getId(), index);
+        if (recorded.isPresent()) {
+            requireSameContent(recorded.get(), sha256);
+            return toStatus(session, uploadChunkRepository.findChunkIndexes(session.getId()));
+        }
+        
+        long expected = session.getChunkLength(index);
+        Path chunkFile = receiveChunk(session, index, body, expected, sha256);
+        try {
+            transactionTemplate.executeWithoutResult(status -> applyChunk(session, index, position, expected,
+                    sha256, chunkFile));
+        } finally {
+            deleteQuietly(chunkFile);
+        }
+        return toStatus(session, uploadChunkRepository.findChunkIndexes(session.getId()));
+    }
+    
+    /**
+     * 查询会话状态（已收到的区间和缺失的分片）
+     */
+    public ChunkedUploadStatusResponse getStatus(String uploadId, User user) {
+        UploadSession session = requireSession(uploadId, user);
+        return toStatus(session, uploadChunkRepository.findChunkIndexes(session.getId()));
+    }
+    
+    /**
+     * 完成上传：全部分片到齐后计算整个文件的摘要，写入内容存储并生成文件记录
+     * 摘要和内容写入在事务之外进行，传输大文件期间不持有会话行锁；之后在新事务中重新锁定会话，
+     * 确认会话仍在（没有被取消或并发完成）后删除会话并登记文件记录。
+     * 登记失败时 .part 文件保留，客户端可以重试；已写入存储但没有引用的内容由 collectGarbage 回收
+     * @throws IllegalArgumentException 会话不存在或仍有分片缺失
+     */
+    public FileUploadResponse complete(String uploadId, User user) throws IOException {
+        UploadSession session = transactionTemplate.execute(status -> lockCompleteSession(uploadId, user));
+        // 分片全部记录后 .part 不会再被写入，摘要和上传不需要持有会话锁
+        Path partFile = partPath(session);
+        String contentHash = Checksums.sha256(partFile);
+        Path staged = linkForUpload(partFile);
+        try {
+            blobStoreService.upload(contentHash, session.getTotalSize(), staged);
+        } finally {
+            // 内容已存在或存储后端复制了内容时暂存链接仍在
+            deleteQuietly(staged);
+        }
+        
+        FileUploadResponse response = transactionTemplate.execute(status -> {
+            UploadSession locked = lockCompleteSession(uploadId, user);
+            uploadChunkRepository.deleteBySessionId(uploadId);
+            uploadSessionRepository.delete(locked);
+            return fileService.registerStoredFile(locked.getOriginalName(), contentHash, locked.getTotalSize(),
+                    locked.getContentType(), locked.getDescription(), user);
+        });
+        deleteQuietly(partFile);
+        return response;
+    }
+    
+    /**
+     * 放弃上传，删除会话和临时文件
+     */
+    public void abort(String uploadId, User user) throws IOException {
+        UploadSession session = requireSession(uploadId, user);
+        deleteSession(session);
+        logger.info("分片上传已取消: {} (用户: {})", session.getOriginalName(), user.getUsername());
+    }
+    
+    /**
+     * 清理长时间无活动的会话
+     */
+    @Scheduled(fixedDelayString = "${file.chunked.cleanup-interval-ms:3600000}")
+    public void purgeExpiredSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findByUpdatedAtBefore(
+                LocalDateTime.now().minusHours(sessionTtlHours));
+        for (UploadSession session : expired) {
+            try {
+                deleteSession(session);
+            } catch (Exception e) {
+                logger.warn("清理过期上传会话失败: {} ({})", session.getId(), e.getMessage());
+            }
+        }
+        if (!expired.isEmpty()) {
+            logger.info("已清理 {} 个过期的分片上传会话", expired.size());
+        }
+    }
+    
+    // 私有方法
+    
+    private UploadSession requireSession(String uploadId, User user) {
+        return uploadSessionRepository.findById(uploadId)
+                .filter(session -> session.getUploadedBy().getId().equals(user.getId()))
+                .orElseThrow(() -> new IllegalArgumentException("上传会话不存在或已过期"));
+    }
+    
+    // 持有会话行锁确认会话属于当前用户且分片已全部记录
+    private UploadSession lockCompleteSession(String uploadId, User user) {
+        UploadSession session = uploadSessionRepository.findByIdForUpdate(uploadId)
+                .filter(s -> s.getUploadedBy().getId().equals(user.getId()))
+                .orElseThrow(() -> new IllegalArgumentException("上传会话不存在或已过期"));
+        int received = uploadChunkRepository.findChunkIndexes(uploadId).size();
+        if (received < session.getTotalChunks()) {
+            throw new IllegalArgumentException("还有 " + (session.getTotalChunks() - received) + " 个分片未上传");
+        }
+        return session;
+    }
+    
+    // 以 .part 的硬链接交给内容存储（本地存储会移走源文件），登记失败时 .part 仍在；不支持硬链接时复制
+    private Path linkForUpload(Path partFile) throws IOException {
+        Path staged = blobStoreService.newStagingFile();
+        try {
+            Files.createLink(staged, partFile);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(partFile, staged);
+        }
+        return staged;
+    }
+    
+    // 请求体写入分片自己的临时文件，同时校验大小和摘要；不通过时删除临时文件
+    private Path receiveChunk(UploadSession session, int index, InputStream body, long expected, String sha256)
+            throws IOException {
+        Path target = Paths.get(session.getTargetPath());
+        Path chunkFile = target.resolveSibling(
+                target.getFileName() + CHUNK_SUFFIX + index + "-" + UUID.randomUUID());
+        MessageDigest digest = Checksums.newSha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long received = 0;
+        try (OutputStream out = Files.newOutputStream(chunkFile, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                if (received + read > expected) {
+                    throw new IllegalArgumentException("分片大小超过 " + expected + " 字节");
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                received += read;
+            }
+            if (received != expected) {
+                throw new IllegalArgumentException("分片不完整：收到 " + received + " 字节，应为 " + expected + " 字节");
+            }
+            if (!Checksums.hex(digest).equals(sha256)) {
+                throw new IllegalArgumentException("分片校验和不一致");
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(chunkFile);
+            throw e;
+        }
+        return chunkFile;
+    }
+    
+    // 持有会话行锁：与完成上传、其他分片的写入互斥；会话已完成或取消时拒绝，已记录的分片不再覆盖
+    private void applyChunk(UploadSession session, int index, long position, long length, String sha256,
+                            Path chunkFile) {
+        uploadSessionRepository.findByIdForUpdate(session.getId())
+                .orElseThrow(() -> new IllegalArgumentException("上传会话不存在或已完成"));
+        Optional<UploadChunk> recorded = uploadChunkRepository.findBySessionIdAndChunkIndex(session.getId(), index);
+        if (recorded.isPresent()) {
+            requireSameContent(recorded.get(), sha256);
+            return;
+        }
+        try (FileChannel source = FileChannel.open(chunkFile, StandardOpenOption.READ);
+             FileChannel part = FileChannel.open(partPath(session), StandardOpenOption.WRITE)) {
+            long copied = 0;
+            while (copied < length) {
+                copied += part.transferFrom(source, position + copied, length - copied);
+            }
+            part.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        uploadChunkRepository.save(new UploadChunk(session.getId(), index, length, sha256));
+        uploadSessionRepository.touch(session.getId(), LocalDateTime.now());
+    }
+    
+    private void requireSameContent(UploadChunk recorded, String sha256) {
+        if (!recorded.getSha256().equals(sha256)) {
+            throw new IllegalArgumentException("分片 " + recorded.getChunkIndex() + " 已以不同内容上传");
+        }
+    }
+    
+    private void deleteSession(UploadSession session) throws IOException {
+        transactionTemplate.executeWithoutResult(status -> {
+            uploadChunkRepository.deleteBySessionId(session.getId());
+            uploadSessionRepository.deleteById(session.getId());
+        });
+        Files.deleteIfExists(partPath(session));
+    }
+    
+    private ChunkedUploadStatusResponse toStatus(UploadSession session, List<Integer> receivedChunks) {
+        List<ChunkedUploadStatusResponse.ByteRange> ranges = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        int next = 0;
+        for (int index : receivedChunks) {
+            for (int i = next; i < index; i++) {
+                missing.add(i);
+            }
+            long start = (long) index * session.getChunkSize();
+            long end = start + session.getChunkLength(index);
+            ChunkedUploadStatusResponse.ByteRange last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last.getEnd() == start) {
+                last.setEnd(end);
+            } else {
+                ranges.add(new ChunkedUploadStatusResponse.ByteRange(start, end));
+            }
+            next = index + 1;
+        }
+        for (int i = next; i < session.getTotalChunks(); i++) {
+            missing.add(i);
+        }
+        LocalDateTime lastActive = session.getUpdatedAt() != null ? session.getUpdatedAt() : LocalDateTime.now();
+        return new ChunkedUploadStatusResponse(session.getId(), session.getOriginalName(), session.getTotalSize(),
+                session.getChunkSize(), session.getTotalChunks(), ranges, missing,
+                lastActive.plusHours(sessionTtlHours));
+    }
+    
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("删除临时文件失败: {} ({})", file, e.getMessage());
+        }
+    }
+    
+    private Path partPath(UploadSession session) {
+        return partPath(Paths.get(session.getTargetPath()));
+    }
+    
+    private Path partPath(Path target) {
+        return target.resolveSibling(target.getFileName() + PART_SUFFIX);
+    }
+}
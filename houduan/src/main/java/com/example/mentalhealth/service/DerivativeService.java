@@ -0,0 +1,379 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.dto.DownloadDescriptor;
+import com.example.mentalhealth.event.ContentStoredEvent;
+import com.example.mentalhealth.storage.BlobStat;
+import com.example.mentalhealth.storage.BlobStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 衍生图生成：图片的缩略图，PDF 首页的缩略图和预览图
+ * 上传提交后由有界线程池在后台生成，与原文件放在同一存储位置（键为 "<sha256>.<类型>.jpg"）；
+ * 请求时衍生图不存在（生成被丢弃、失败或早于本功能上传）则重新提交生成并等待结果。
+ * 同一内容的生成任务在执行期间只有一个，并发请求共用同一个结果。
+ */
+@Service
+public class DerivativeService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DerivativeService.class);
+    
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp");
+    private static final String PDF_EXTENSION = "pdf";
+    
+    // PDF 预览的单边像素上限，极端长宽比的页面按像素总数缩小后仍超过时不生成
+    private static final int MAX_PREVIEW_DIMENSION = 16384;
+    
+    // 衍生图由内容哈希决定、生成后不再改变，允许浏览器长期缓存
+    private static final String CACHE_CONTROL = "private, max-age=31536000, immutable";
+    
+    /**
+     * 衍生图类型
+     */
+    public enum Kind {
+        THUMBNAIL("thumb"),
+        PREVIEW("preview");
+        
+        private final String suffix;
+        
+        Kind(String suffix) {
+            this.suffix = suffix;
+        }
+    }
+    
+    @Autowired
+    private BlobStore blobStore;
+    
+    @Autowired
+    private RangeDownloadService rangeDownloadService;
+    
+    @Value("${derivative.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${derivative.workers:2}")
+    private int workers;
+    
+    @Value("${derivative.queue-capacity:200}")
+    private int queueCapacity;
+    
+    @Value("${derivative.thumbnail-size:320}")
+    private int thumbnailSize;
+    
+    @Value("${derivative.preview-width:1024}")
+    private int previewWidth;
+    
+    // 原图像素上限，超过时不生成（防止解码超大图片耗尽内存）；PDF 预览按此上限缩小渲染比例
+    @Value("${derivative.max-pixels:50000000}")
+    private long maxPixels;
+    
+    @Value("${derivative.wait-timeout-ms:10000}")
+    private long waitTimeoutMs;
+    
+    private ThreadPoolExecutor executor;
+    
+    // 内容哈希 -> 执行中的生成任务
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 队列满时直接拒绝，被丢弃的衍生图在第一次请求时补生成
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "derivative-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    /**
+     * 衍生图的存储键，与原文件在同一目录 / 前缀下
+     */
+    public static String key(String contentHash, Kind kind) {
+        return contentHash + "." + kind.suffix + ".jpg";
+    }
+    
+    /**
+     * 删除内容的全部衍生图（内容被回收时调用）
+     */
+    public void deleteAll(String contentHash) throws IOException {
+        for (Kind kind : Kind.values()) {
+            blobStore.delete(key(contentHash, kind));
+        }
+    }
+    
+    /**
+     * 该文件是否有这种衍生图
+     */
+    public boolean supports(String originalName, Kind kind) {
+        String extension = extension(originalName);
+        if (PDF_EXTENSION.equals(extension)) {
+            return true;
+        }
+        return kind == Kind.THUMBNAIL && IMAGE_EXTENSIONS.contains(extension);
+    }
+    
+    /**
+     * 上传提交后在后台生成衍生图；没有事务时立即提交
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onContentStored(ContentStoredEvent event) {
+        if (!enabled || !supports(event.getOriginalName(), Kind.THUMBNAIL)) {
+            return;
+        }
+        submit(event.getContentHash(), event.getOriginalName()).exceptionally(e -> {
+            logger.debug("衍生图后台生成未完成: {} ({})", event.getContentHash(), e.getMessage());
+            return null;
+        });
+    }
+    
+    /**
+     * 获取衍生图，不存在时提交生成并等待
+     * @return 文件类型不支持或生成失败时返回空
+     * @throws TimeoutException 线程池繁忙，未在等待时间内生成
+     */
+    public Optional<BlobStat> ensure(String contentHash, String originalName, Kind kind)
+            throws IOException, TimeoutException {
+        if (contentHash == null || !supports(originalName, kind)) {
+            return Optional.empty();
+        }
+        Optional<BlobStat> stat = blobStore.stat(key(contentHash, kind));
+        if (stat.isPresent()) {
+            return stat;
+        }
+        try {
+            submit(contentHash, originalName).get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待衍生图生成被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                throw new TimeoutException("衍生图生成队列已满");
+            }
+            logger.warn("衍生图生成失败: {} ({})", contentHash, e.getCause().getMessage());
+            return Optional.empty();
+        }
+        return blobStore.stat(key(contentHash, kind));
+    }
+    
+    /**
+     * 输出衍生图；线程池繁忙时返回 503，文件类型不支持或生成失败时返回 404
+     */
+    public void write(DownloadDescriptor descriptor, Kind kind, HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        Optional<BlobStat> stat;
+        try {
+            stat = ensure(descriptor.getContentHash(), descriptor.getOriginalName(), kind);
+        } catch (TimeoutException e) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        if (stat.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        rangeDownloadService.writeInline(key(descriptor.getContentHash(), kind), MediaType.IMAGE_JPEG_VALUE,
+                request, response);
+    }
+    
+    // 私有方法
+    
+    private CompletableFuture<Void> submit(String contentHash, String originalName) {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(contentHash, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(contentHash, originalName);
+                    created.complete(null);
+                } catch (Throwable e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(contentHash, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(contentHash, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+    
+    private void generate(String contentHash, String originalName) throws IOException {
+        if (PDF_EXTENSION.equals(extension(originalName))) {
+            BufferedImage page = renderFirstPage(contentHash);
+            store(contentHash, Kind.PREVIEW, page);
+            store(contentHash, Kind.THUMBNAIL, fit(page, thumbnailSize, thumbnailSize));
+        } else {
+            BufferedImage image = decodeImage(contentHash);
+            store(contentHash, Kind.THUMBNAIL, fit(image, thumbnailSize, thumbnailSize));
+        }
+        logger.debug("衍生图已生成: {}", contentHash);
+    }
+    
+    // 按预览宽度渲染 PDF 第一页，渲染后的像素数不超过上限；
+    // 本地存储直接打开文件，对象存储时超出内存阈值的部分缓存到临时文件
+    private BufferedImage renderFirstPage(String contentHash) throws IOException {
+        Optional<Path> localFile = blobStore.localPath(contentHash);
+        try (PDDocument document = localFile.isPresent()
+                ? PDDocument.load(localFile.get().toFile(), MemoryUsageSetting.setupTempFileOnly())
+                : loadRemote(contentHash)) {
+            if (document.getNumberOfPages() == 0) {
+                throw new IOException("PDF 没有页面");
+            }
+            PDPage page = document.getPage(0);
+            float scale = previewScale(page.getCropBox().getWidth(), page.getCropBox().getHeight());
+            return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+    }
+    
+    // 极窄极长的页面按宽度放大会得到巨大的位图，按像素总数缩小比例；缩小后单边仍过长时拒绝
+    private float previewScale(float width, float height) throws IOException {
+        if (!(width > 0) || !(height > 0)) {
+            throw new IOException("PDF 页面尺寸无效: " + width + "x" + height);
+        }
+        double scale = (double) previewWidth / width;
+        double area = (double) width * height;
+        if (area * scale * scale > maxPixels) {
+            scale = Math.sqrt(maxPixels / area);
+        }
+        if (width * scale > MAX_PREVIEW_DIMENSION || height * scale > MAX_PREVIEW_DIMENSION) {
+            throw new IOException("PDF 页面长宽比过大: " + width + "x" + height);
+        }
+        return (float) scale;
+    }
+    
+    private PDDocument loadRemote(String contentHash) throws IOException {
+        try (InputStream in = blobStore.get(contentHash)) {
+            return PDDocument.load(in, MemoryUsageSetting.setupMixed(16L * 1024 * 1024));
+        }
+    }
+    
+    // 解码前先读取尺寸，按目标大小设置隔行采样，大图不必整幅解码到内存
+    private BufferedImage decodeImage(String contentHash) throws IOException {
+        try (InputStream in = blobStore.get(contentHash);
+             ImageInputStream imageInput = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                throw new IOException("不支持的图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IOException("图片尺寸过大: " + width + "x" + height);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.min(width, height) / (thumbnailSize * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+    
+    // 等比缩放到 maxWidth x maxHeight 以内，透明背景填充为白色
+    private BufferedImage fit(BufferedImage source, int maxWidth, int maxHeight) {
+        double scale = Math.min(1.0, Math.min((double) maxWidth / source.getWidth(),
+                (double) maxHeight / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+    
+    private void store(String contentHash, Kind kind, BufferedImage image) throws IOException {
+        BufferedImage rgb = image.getType() == BufferedImage.TYPE_INT_RGB
+                ? image : fit(image, image.getWidth(), image.getHeight());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.8f);
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(rgb, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        byte[] bytes = out.toByteArray();
+        blobStore.put(key(contentHash, kind), new ByteArrayInputStream(bytes), bytes.length);
+    }
+    
+    private static String extension(String originalName) {
+        if (originalName == null) {
+            return "";
+        }
+        int dot = originalName.lastIndexOf('.');
+        return dot >= 0 ? originalName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
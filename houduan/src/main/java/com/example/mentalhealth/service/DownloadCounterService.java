@@ -0,0 +1,108 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.event.DownloadCountsFlushedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 问卷下载次数写回缓冲：下载时只在内存中累加，定时批量写回数据库，
+ * 读取时合并尚未写回的增量。
+ */
+@Service
+public class DownloadCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadCounterService.class);
+
+    private static final String FLUSH_SQL =
+            "UPDATE questionnaires SET download_count = COALESCE(download_count, 0) + ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // 问卷ID -> 未写回的下载增量；写回时整条移除，只保留有增量的问卷
+    private final Map<Long, Long> pendingCounts = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次下载
+     */
+    public void increment(Long questionnaireId) {
+        pendingCounts.merge(questionnaireId, 1L, Long::sum);
+    }
+
+    /**
+     * 获取尚未写回数据库的下载增量
+     */
+    public long getPendingCount(Long questionnaireId) {
+        return pendingCounts.getOrDefault(questionnaireId, 0L);
+    }
+
+    /**
+     * 获取有未写回增量的问卷ID
+     */
+    public Set<Long> getPendingIds() {
+        return Set.copyOf(pendingCounts.keySet());
+    }
+
+    /**
+     * 合并数据库中的下载次数与未写回的增量
+     */
+    public int mergeDownloadCount(Long questionnaireId, Integer persistedCount) {
+        long base = persistedCount != null ? persistedCount : 0;
+        return (int) Math.min(Integer.MAX_VALUE, base + getPendingCount(questionnaireId));
+    }
+
+    /**
+     * 定时批量写回下载次数
+     */
+    @Scheduled(fixedDelayString = "${questionnaire.download-count.flush-interval-ms:5000}")
+    public void flush() {
+        List<Object[]> batch = new ArrayList<>();
+        for (Long questionnaireId : pendingCounts.keySet()) {
+            // remove 与 merge 都是原子操作，移除之后的下载会重新建立条目，不会丢失
+            Long delta = pendingCounts.remove(questionnaireId);
+            if (delta != null && delta > 0) {
+                batch.add(new Object[]{delta, questionnaireId});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+            logger.debug("下载次数已写回: {} 条", batch.size());
+            Set<Long> flushedIds = new HashSet<>();
+            for (Object[] row : batch) {
+                flushedIds.add((Long) row[1]);
+            }
+            eventPublisher.publishEvent(new DownloadCountsFlushedEvent(flushedIds));
+        } catch (Exception e) {
+            // 写回失败时把增量放回缓冲，等待下次重试
+            for (Object[] row : batch) {
+                pendingCounts.merge((Long) row[1], (Long) row[0], Long::sum);
+            }
+            logger.error("下载次数写回失败: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
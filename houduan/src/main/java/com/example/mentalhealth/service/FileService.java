@@ -1,35 +1,53 @@
 package com.example.mentalhealth.service;
 
+import com.example.mentalhealth.dto.CursorPageResponse;
+import com.example.mentalhealth.dto.DownloadDescriptor;
 import com.example.mentalhealth.dto.FileInfoResponse;
 import com.example.mentalhealth.dto.FileUploadResponse;
 import com.example.mentalhealth.entity.FileRecord;
 import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.entity.UserStatistics;
+import com.example.mentalhealth.event.ContentStoredEvent;
 import com.example.mentalhealth.repository.FileRecordRepository;
+import com.example.mentalhealth.util.Checksums;
+import com.example.mentalhealth.util.DownloadUrlSigner;
+import com.example.mentalhealth.util.KeysetCursor;
+import com.example.mentalhealth.util.StreamingMultipartUpload;
+import com.example.mentalhealth.util.TransferMetrics;
+import io.micrometer.core.annotation.Timed;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "service.calls", histogram = true)
 public class FileService {
     
     private static final Logger logger = LoggerFactory.getLogger(FileService.class);
@@ -37,14 +55,33 @@ public class FileService {
     @Autowired
     private FileRecordRepository fileRecordRepository;
     
-    @Value("${file.upload.dir:uploads}")
-    private String uploadDir;
+    @Autowired
+    private SearchIndexService searchIndexService;
+    
+    @Autowired
+    private UserStatisticsService userStatisticsService;
+    
+    @Autowired
+    private BlobStoreService blobStoreService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private DownloadUrlSigner downloadUrlSigner;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private ViewVersionService viewVersionService;
+    
+    @Autowired
+    private TransferMetrics transferMetrics;
     
     @Value("${file.max.size:52428800}") // 默认50MB
     private long maxFileSize;
     
-    @Value("${server.port:8080}")
-    private String serverPort;
     
     // 支持的文件类型
     private static final String[] ALLOWED_DOCUMENT_EXTENSIONS = {".pdf", ".doc", ".docx"};
@@ -55,76 +92,127 @@ public class FileService {
      * 上传文件
      */
     public FileUploadResponse uploadFile(MultipartFile file, String description, User user) {
+        Path staged = null;
         try {
             // 验证文件
             validateFile(file);
             // 确定文件分类
             FileRecord.FileCategory category = determineFileCategory(file.getOriginalFilename());
-            // 生成存储文件名
-            String storedName = generateStoredFileName(file.getOriginalFilename());
-            // 创建上传目录
-            Path uploadPath = createUploadDirectory(category);
-            // 保存文件到磁盘
-            Path filePath = uploadPath.resolve(storedName);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+            // 写入暂存文件并计算内容摘要
+            staged = blobStoreService.newStagingFile();
+            String contentHash;
+            try (InputStream in = file.getInputStream()) {
+                contentHash = Checksums.copy(in, staged);
+            }
             // 保存文件记录到数据库
-            FileRecord fileRecord = new FileRecord(
-                file.getOriginalFilename(),
-                storedName,
-                filePath.toString(),
-                file.getSize(),
-                file.getContentType(),
-                category,
-                user
-            );
-            fileRecord.setDescription(description);
-            fileRecord = fileRecordRepository.save(fileRecord);
-            // 生成下载URL
-            String downloadUrl = generateDownloadUrl(fileRecord.getId());
-            logger.info("文件上传成功: {} (用户: {})", file.getOriginalFilename(), user.getUsername());
-            return new FileUploadResponse(fileRecord, downloadUrl);
+            return saveFileRecord(file.getOriginalFilename(), contentHash, staged, file.getSize(),
+                    file.getContentType(), category, description, user);
         } catch (Exception e) {
             logger.error("文件上传失败: {}", e.getMessage(), e);
             throw new RuntimeException("文件上传失败: " + e.getMessage());
+        } finally {
+            deleteStaged(staged);
         }
     }
     
     /**
-     * 下载文件
+     * 流式上传文件：边解析请求体边写入暂存文件并计算摘要，不经过容器的临时文件
+     * @throws IllegalArgumentException 文件为空、过大、类型不支持或校验和不一致
      */
-    public Resource downloadFile(Long fileId, User user) {
-        try {
-            // 查找文件记录
-            Optional<FileRecord> fileRecordOpt = fileRecordRepository.findByIdAndUploadedByAndIsActiveTrue(fileId, user);
-            if (fileRecordOpt.isEmpty()) {
-                throw new RuntimeException("文件不存在或无权限访问");
-            }
-            FileRecord fileRecord = fileRecordOpt.get();
-            Path filePath = Paths.get(fileRecord.getFilePath());
-            // 检查文件是否存在
-            if (!Files.exists(filePath)) {
-                throw new RuntimeException("文件不存在: " + fileRecord.getOriginalName());
-            }
-            Resource resource = new UrlResource(filePath.toUri());
-            if (resource.exists() && resource.isReadable()) {
-                logger.info("文件下载: {} (用户: {})", fileRecord.getOriginalName(), user.getUsername());
-                return resource;
-            } else {
-                throw new RuntimeException("无法读取文件: " + fileRecord.getOriginalName());
+    public FileUploadResponse uploadFileStream(HttpServletRequest request, User user) throws IOException {
+        try (StreamingMultipartUpload upload = StreamingMultipartUpload.receive(
+                request, "file", maxFileSize, this::resolveStreamTarget)) {
+            String originalName = upload.getOriginalName();
+            upload.commit();
+            try {
+                return saveFileRecord(originalName, upload.getSha256(), upload.getTarget(), upload.getSize(),
+                        upload.getContentType(), determineFileCategory(originalName),
+                        upload.getField("description"), user);
+            } finally {
+                deleteStaged(upload.getTarget());
             }
-        } catch (Exception e) {
-            logger.error("文件下载失败: {}", e.getMessage(), e);
-            throw new RuntimeException("文件下载失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 重复上传短路：用户已上传过相同内容时直接生成新的文件记录，不再传输文件
+     * 分类和 MIME 类型都沿用已有记录（同一内容），新文件名的扩展名必须属于同一分类
+     * @return 没有可复用的内容时返回空，客户端改为正常上传
+     * @throws IllegalArgumentException 摘要格式不正确、文件类型不支持或与已有内容的分类不一致
+     */
+    public Optional<FileUploadResponse> uploadByHash(String sha256, String fileName, String description, User user) {
+        if (!Checksums.isSha256(sha256)) {
+            throw new IllegalArgumentException("无效的内容摘要");
+        }
+        String originalName = StringUtils.getFilename(StringUtils.cleanPath(fileName));
+        validateFileName(originalName);
+        String contentHash = sha256.toLowerCase();
+        return fileRecordRepository.findFirstByUploadedByAndContentHash(user, contentHash)
+                .map(existing -> {
+                    if (determineFileCategory(originalName) != existing.getCategory()) {
+                        throw new IllegalArgumentException("文件类型与已上传的相同内容不一致");
+                    }
+                    return saveFileRecord(originalName, contentHash, null, existing.getFileSize(),
+                            existing.getFileType(), existing.getCategory(), description, user);
+                });
+    }
+    
+    /**
+     * 为分片上传分配暂存文件（校验文件名和类型），完成后通过 registerStoredFile 登记
+     * @throws IllegalArgumentException 文件名为空或文件类型不支持
+     */
+    public Path allocateStagingFile(String originalName) throws IOException {
+        validateFileName(originalName);
+        return blobStoreService.newStagingFile();
+    }
+    
+    /**
+     * 为调用方已通过 BlobStoreService.upload 写入内容存储的内容生成文件记录（分片上传完成时调用）
+     * 加入调用方的事务：调用方在同一事务中确认上传会话仍然有效，登记失败时一起回滚
+     */
+    public FileUploadResponse registerStoredFile(String originalName, String contentHash, long size,
+                                                 String contentType, String description, User user) {
+        return registerFileRecord(originalName, contentHash, true, size, contentType,
+                determineFileCategory(originalName), description, user);
+    }
+    
+    /**
+     * 解析下载信息（一次查询完成权限校验、元数据和文件定位）
+     */
+    public DownloadDescriptor resolveDownload(Long fileId, User user) {
+        DownloadDescriptor descriptor = resolveContent(fileId, user);
+        logger.info("文件下载: {} (用户: {})", descriptor.getOriginalName(), user.getUsername());
+        return descriptor;
+    }
+    
+    /**
+     * 解析文件内容的位置（下载和缩略图共用，不记录下载日志）
+     */
+    public DownloadDescriptor resolveContent(Long fileId, User user) {
+        Optional<FileRecord> fileRecordOpt = fileRecordRepository.findByIdAndUploadedByAndIsActiveTrue(fileId, user);
+        if (fileRecordOpt.isEmpty()) {
+            throw new RuntimeException("文件不存在或无权限访问");
+        }
+        
+        FileRecord fileRecord = fileRecordOpt.get();
+        // 已登记内容的记录从存储后端读取，内容缺失时由下载引擎返回 404；旧记录仍读本地路径
+        Path filePath = Paths.get(fileRecord.getFilePath());
+        if (fileRecord.getContentHash() == null && !Files.isReadable(filePath)) {
+            throw new RuntimeException("文件不存在: " + fileRecord.getOriginalName());
+        }
+        DownloadDescriptor descriptor = new DownloadDescriptor(fileRecord.getId(), fileRecord.getOriginalName(),
+                fileRecord.getFileType(), fileRecord.getFileSize(), fileRecord.getContentHash(), filePath);
+        descriptor.setCategory(fileRecord.getCategory().name());
+        return descriptor;
+    }
+    
     /**
      * 获取用户的文件列表
      */
     public List<FileInfoResponse> getUserFiles(User user) {
         List<FileRecord> files = fileRecordRepository.findByUploadedByAndIsActiveTrueOrderByCreatedAtDesc(user);
         return files.stream()
-                .map(file -> new FileInfoResponse(file, generateDownloadUrl(file.getId())))
+                .map(file -> new FileInfoResponse(file, generateDownloadUrl(file)))
                 .collect(Collectors.toList());
     }
     
@@ -133,7 +221,29 @@ public class FileService {
      */
     public Page<FileInfoResponse> getUserFiles(User user, Pageable pageable) {
         Page<FileRecord> files = fileRecordRepository.findByUploadedByAndIsActiveTrueOrderByCreatedAtDesc(user, pageable);
-        return files.map(file -> new FileInfoResponse(file, generateDownloadUrl(file.getId())));
+        return files.map(file -> new FileInfoResponse(file, generateDownloadUrl(file)));
+    }
+    
+    /**
+     * 游标分页获取用户的文件列表（按 (createdAt, id) 倒序，不统计总数）
+     * @param cursor 上一页返回的续传令牌，为空时从第一页开始
+     */
+    public CursorPageResponse<FileInfoResponse> getUserFiles(User user, String cursor, int size) {
+        int pageSize = KeysetCursor.pageSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        Pageable pageable = PageRequest.of(0, pageSize);
+        Slice<FileRecord> files = after == null
+                ? fileRecordRepository.findFirstSliceByUser(user, pageable)
+                : fileRecordRepository.findSliceByUserAfter(user, after.getTime(), after.getId(), pageable);
+        String nextCursor = null;
+        if (files.hasNext()) {
+            FileRecord last = files.getContent().get(files.getNumberOfElements() - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        List<FileInfoResponse> content = files.getContent().stream()
+                .map(file -> new FileInfoResponse(file, generateDownloadUrl(file)))
+                .collect(Collectors.toList());
+        return new CursorPageResponse<>(content, nextCursor, files.hasNext(), pageSize);
     }
     
     /**
@@ -142,7 +252,7 @@ public class FileService {
     public List<FileInfoResponse> getUserFilesByCategory(User user, FileRecord.FileCategory category) {
         List<FileRecord> files = fileRecordRepository.findByUploadedByAndCategoryAndIsActiveTrueOrderByCreatedAtDesc(user, category);
         return files.stream()
-                .map(file -> new FileInfoResponse(file, generateDownloadUrl(file.getId())))
+                .map(file -> new FileInfoResponse(file, generateDownloadUrl(file)))
                 .collect(Collectors.toList());
     }
     
@@ -150,14 +260,36 @@ public class FileService {
      * 搜索用户文件
      */
     public List<FileInfoResponse> searchUserFiles(User user, String filename) {
-        List<FileRecord> files = fileRecordRepository.findByUploadedByAndOriginalNameContaining(user, filename);
-        return files.stream()
-                .map(file -> new FileInfoResponse(file, generateDownloadUrl(file.getId())))
+        return searchUserFiles(user, filename, 0, 0);
+    }
+    
+    /**
+     * 分页搜索用户文件（按相关度排序，size小于等于0时返回全部结果）
+     */
+    public List<FileInfoResponse> searchUserFiles(User user, String filename, int page, int size) {
+        if (!searchIndexService.isReady()) {
+            List<FileRecord> files = fileRecordRepository
+                    .findByUploadedByAndOriginalNameContaining(user, filename, searchPage(page, size));
+            return files.stream()
+                    .map(file -> new FileInfoResponse(file, generateDownloadUrl(file)))
+                    .collect(Collectors.toList());
+        }
+        List<Long> ids = searchIndexService.searchFiles(filename, user.getId(), page, size);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, FileRecord> files = fileRecordRepository.findWithUploaderByIdIn(ids).stream()
+                .filter(file -> Boolean.TRUE.equals(file.getIsActive()))
+                .collect(Collectors.toMap(FileRecord::getId, Function.identity()));
+        return ids.stream()
+                .map(files::get)
+                .filter(Objects::nonNull)
+                .map(file -> new FileInfoResponse(file, generateDownloadUrl(file)))
                 .collect(Collectors.toList());
     }
     
     /**
-     * 删除文件（软删除）
+     * 删除文件（软删除），记录和统计汇总在同一事务中更新
      */
     public void deleteFile(Long fileId, User user) {
         Optional<FileRecord> fileRecordOpt = fileRecordRepository.findByIdAndUploadedByAndIsActiveTrue(fileId, user);
@@ -168,7 +300,12 @@ public class FileService {
         FileRecord fileRecord = fileRecordOpt.get();
         fileRecord.setIsActive(false);
         fileRecord.setUpdatedAt(LocalDateTime.now());
-        fileRecordRepository.save(fileRecord);
+        transactionTemplate.executeWithoutResult(status -> {
+            fileRecordRepository.save(fileRecord);
+            userStatisticsService.fileRemoved(fileRecord);
+        });
+        searchIndexService.removeFile(fileRecord.getId());
+        viewVersionService.bump(ViewVersionService.userFiles(user.getId()));
         
         logger.info("文件已删除: {} (用户: {})", fileRecord.getOriginalName(), user.getUsername());
     }
@@ -183,24 +320,126 @@ public class FileService {
         }
         
         FileRecord fileRecord = fileRecordOpt.get();
-        return new FileInfoResponse(fileRecord, generateDownloadUrl(fileRecord.getId()));
+        return new FileInfoResponse(fileRecord, generateDownloadUrl(fileRecord));
     }
     
     /**
      * 获取用户文件统计信息
      */
     public FileStatistics getUserFileStatistics(User user) {
-        long totalFiles = fileRecordRepository.countByUploadedByAndIsActiveTrue(user);
-        long documentCount = fileRecordRepository.countByUploadedByAndCategoryAndIsActiveTrue(user, FileRecord.FileCategory.DOCUMENT);
-        long videoCount = fileRecordRepository.countByUploadedByAndCategoryAndIsActiveTrue(user, FileRecord.FileCategory.VIDEO);
-        long imageCount = fileRecordRepository.countByUploadedByAndCategoryAndIsActiveTrue(user, FileRecord.FileCategory.IMAGE);
-        Long totalSize = fileRecordRepository.sumFileSizeByUser(user);
+        if (userStatisticsService.isEnabled()) {
+            UserStatistics statistics = userStatisticsService.getOrBuild(user.getId());
+            return new FileStatistics(statistics.getFileCount(), statistics.getDocumentCount(),
+                    statistics.getVideoCount(), statistics.getImageCount(), statistics.getTotalFileSize());
+        }
+        
+        // 一条 GROUP BY 查询得到各分类数量和总大小
+        long totalFiles = 0;
+        long documentCount = 0;
+        long videoCount = 0;
+        long imageCount = 0;
+        long totalSize = 0;
+        for (FileRecordRepository.CategoryStatistics row : fileRecordRepository.aggregateByCategory(user)) {
+            totalFiles += row.getCount();
+            totalSize += row.getTotalSize();
+            switch (row.getCategory()) {
+                case DOCUMENT -> documentCount = row.getCount();
+                case VIDEO -> videoCount = row.getCount();
+                case IMAGE -> imageCount = row.getCount();
+                default -> { }
+            }
+        }
         
-        return new FileStatistics(totalFiles, documentCount, videoCount, imageCount, totalSize != null ? totalSize : 0L);
+        return new FileStatistics(totalFiles, documentCount, videoCount, imageCount, totalSize);
     }
     
     // 私有方法
     
+    // 内容先在事务外写入存储后端，文件记录、统计和内容引用在同一事务中写入；staged 为空表示复用已存储的内容
+    // 内容在事务之外写入存储，之后的登记失败时由 collectGarbage 回收
+    private FileUploadResponse saveFileRecord(String originalName, String contentHash, Path staged, long size,
+                                              String contentType, FileRecord.FileCategory category,
+                                              String description, User user) {
+        if (staged != null) {
+            blobStoreService.upload(contentHash, size, staged);
+        }
+        return registerFileRecord(originalName, contentHash, staged != null, size, contentType, category,
+                description, user);
+    }
+    
+    // uploaded 为 true 时内容刚由 upload 写入，否则复用已存储的内容（秒传）
+    private FileUploadResponse registerFileRecord(String originalName, String contentHash, boolean uploaded,
+                                                  long size, String contentType, FileRecord.FileCategory category,
+                                                  String description, User user) {
+        FileRecord entity = new FileRecord(
+            originalName,
+            generateStoredFileName(originalName),
+            blobStoreService.location(contentHash),
+            size,
+            contentType,
+            category,
+            user
+        );
+        entity.setDescription(description);
+        entity.setContentHash(contentHash);
+        FileRecord fileRecord = transactionTemplate.execute(status -> {
+            // 插入明细之前取用户行锁，避免外键共享锁升级造成死锁
+            userStatisticsService.lockUser(user.getId());
+            FileRecord saved = fileRecordRepository.save(entity);
+            userStatisticsService.fileAdded(saved);
+            if (uploaded) {
+                blobStoreService.retain(contentHash, size);
+            } else if (!blobStoreService.retainExisting(contentHash)) {
+                throw new IllegalStateException("存储内容不存在: " + contentHash);
+            }
+            return saved;
+        });
+        searchIndexService.indexFile(fileRecord);
+        viewVersionService.bump(ViewVersionService.userFiles(user.getId()));
+        if (uploaded) {
+            transferMetrics.recordUpload(category.name(), size);
+        }
+        eventPublisher.publishEvent(new ContentStoredEvent(contentHash, originalName));
+        // 生成下载URL
+        String downloadUrl = generateDownloadUrl(fileRecord);
+        logger.info("文件上传成功: {} (用户: {})", originalName, user.getUsername());
+        return new FileUploadResponse(fileRecord, downloadUrl);
+    }
+    
+    // 流式上传在读到文件头时校验类型并分配暂存文件，此时还不知道文件大小
+    // LIKE 回退的分页与 SearchIndexService 一致：页码小于 0 按第一页，size 小于等于 0 返回全部结果
+    private static Pageable searchPage(int page, int size) {
+        return size > 0 ? PageRequest.of(Math.max(0, page), size) : Pageable.unpaged();
+    }
+    
+    private Path resolveStreamTarget(String originalName) {
+        try {
+            return allocateStagingFile(originalName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private void deleteStaged(Path staged) {
+        if (staged == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(staged);
+        } catch (IOException e) {
+            logger.warn("删除暂存文件失败: {} ({})", staged, e.getMessage());
+        }
+    }
+    
+    private void validateFileName(String originalName) {
+        if (!StringUtils.hasText(originalName)) {
+            throw new IllegalArgumentException("文件名不能为空");
+        }
+        if (!isAllowedFileType(originalName)) {
+            throw new IllegalArgumentException("不支持的文件类型。支持的格式：PDF, DOC, DOCX, MP4, AVI, MOV, WMV, FLV, MKV, JPG, JPEG, PNG, GIF, BMP, WEBP");
+        }
+    }
+    
     private void validateFile(MultipartFile file) {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("文件不能为空");
@@ -210,18 +449,12 @@ public class FileService {
             throw new IllegalArgumentException("文件大小不能超过 " + (maxFileSize / 1024 / 1024) + "MB");
         }
         
-        String originalFilename = file.getOriginalFilename();
-        if (!StringUtils.hasText(originalFilename)) {
-            throw new IllegalArgumentException("文件名不能为空");
-        }
-        
-        // 验证文件扩展名
-        if (!isAllowedFileType(originalFilename)) {
-            throw new IllegalArgumentException("不支持的文件类型。支持的格式：PDF, DOC, DOCX, MP4, AVI, MOV, WMV, FLV, MKV, JPG, JPEG, PNG, GIF, BMP, WEBP");
-        }
+        // 验证文件名和扩展名
+        validateFileName(file.getOriginalFilename());
     }
     
-    private boolean isAllowedFileType(String filename) {
+    // 包内可见：benchmarks 模块的 FileServiceBenchmark 直接调用
+    boolean isAllowedFileType(String filename) {
         String extension = getFileExtension(filename).toLowerCase();
         
         for (String allowedExt : ALLOWED_DOCUMENT_EXTENSIONS) {
@@ -237,7 +470,8 @@ public class FileService {
         return false;
     }
     
-    private FileRecord.FileCategory determineFileCategory(String filename) {
+    // 包内可见：benchmarks 模块的 FileServiceBenchmark 直接调用
+    FileRecord.FileCategory determineFileCategory(String filename) {
         String extension = getFileExtension(filename).toLowerCase();
         
         for (String docExt : ALLOWED_DOCUMENT_EXTENSIONS) {
@@ -258,21 +492,20 @@ public class FileService {
         return lastDotIndex > 0 ? filename.substring(lastDotIndex) : "";
     }
     
-    private String generateStoredFileName(String originalFilename) {
+    // 包内可见：benchmarks 模块的 FileServiceBenchmark 直接调用
+    String generateStoredFileName(String originalFilename) {
         String extension = getFileExtension(originalFilename);
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
         return timestamp + "_" + UUID.randomUUID().toString().substring(0, 8) + extension;
     }
     
-    private Path createUploadDirectory(FileRecord.FileCategory category) throws IOException {
-        String categoryDir = category.name().toLowerCase();
-        Path uploadPath = Paths.get(uploadDir, categoryDir);
-        Files.createDirectories(uploadPath);
-        return uploadPath;
-    }
-    
-    private String generateDownloadUrl(Long fileId) {
-        return "http://localhost:" + serverPort + "/api/files/download/" + fileId;
+    // 已登记内容的文件返回签名链接；尚未迁移的旧文件仍走需要认证的下载接口
+    private String generateDownloadUrl(FileRecord fileRecord) {
+        if (fileRecord.getContentHash() != null) {
+            return downloadUrlSigner.sign(fileRecord.getContentHash(), fileRecord.getOriginalName(),
+                    fileRecord.getFileType(), null);
+        }
+        return downloadUrlSigner.getBaseUrl() + "/api/files/download/" + fileRecord.getId();
     }
     
     // 文件统计信息内部类
@@ -0,0 +1,120 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.dto.QuestionnaireInfoResponse;
+import com.example.mentalhealth.event.DownloadCountsFlushedEvent;
+import com.example.mentalhealth.event.QuestionnaireChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 已发布问卷目录的读穿缓存：已发布列表、热门列表、分类列表
+ * 容量和过期时间有上限；问卷变更事件在事务提交后按键失效，下载次数写回后只失效包含这些问卷的列表。
+ * 命中率通过 Micrometer 的 cache.gets / cache.evictions 等指标暴露（cache=publishedCatalog）。
+ */
+@Service
+public class PublishedCatalogCache {
+
+    public static final String CACHE_NAME = "publishedCatalog";
+
+    private static final String PUBLISHED_KEY = "published";
+    private static final String POPULAR_KEY_PREFIX = "popular:";
+    private static final String CATEGORY_KEY_PREFIX = "category:";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${questionnaire.catalog-cache.max-size:1000}")
+    private long maxSize;
+
+    @Value("${questionnaire.catalog-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    private Cache<String, List<QuestionnaireInfoResponse>> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public List<QuestionnaireInfoResponse> getPublished(Supplier<List<QuestionnaireInfoResponse>> loader) {
+        return get(PUBLISHED_KEY, loader);
+    }
+
+    public List<QuestionnaireInfoResponse> getPopular(int limit, Supplier<List<QuestionnaireInfoResponse>> loader) {
+        return get(POPULAR_KEY_PREFIX + limit, loader);
+    }
+
+    public List<QuestionnaireInfoResponse> getByCategory(String category, Supplier<List<QuestionnaireInfoResponse>> loader) {
+        return get(CATEGORY_KEY_PREFIX + category, loader);
+    }
+
+    /**
+     * 问卷变更提交后失效相关的键；没有事务时立即执行
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQuestionnaireChanged(QuestionnaireChangedEvent event) {
+        if (event.affectsPublished()) {
+            cache.invalidate(PUBLISHED_KEY);
+            cache.asMap().keySet().removeIf(key -> key.startsWith(POPULAR_KEY_PREFIX));
+        }
+        if (event.getPreviousCategory() != null) {
+            cache.invalidate(CATEGORY_KEY_PREFIX + event.getPreviousCategory());
+        }
+        if (event.getCurrentCategory() != null) {
+            cache.invalidate(CATEGORY_KEY_PREFIX + event.getCurrentCategory());
+        }
+    }
+
+    /**
+     * 下载次数写回后，包含这些问卷的列表中的下载次数和热门排序已过期，只失效这些列表
+     * 列表外的问卷因下载次数上升进入热门列表的情况，由过期时间兜底
+     */
+    @EventListener
+    public void onDownloadCountsFlushed(DownloadCountsFlushedEvent event) {
+        Set<Long> ids = event.getQuestionnaireIds();
+        if (ids.isEmpty()) {
+            return;
+        }
+        cache.asMap().values().removeIf(list -> containsAny(list, ids));
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    // 私有方法
+
+    private List<QuestionnaireInfoResponse> get(String key, Supplier<List<QuestionnaireInfoResponse>> loader) {
+        return cache.get(key, k -> List.copyOf(loader.get()));
+    }
+
+    private static boolean containsAny(List<QuestionnaireInfoResponse> list, Set<Long> ids) {
+        for (QuestionnaireInfoResponse item : list) {
+            if (ids.contains(item.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,36 +1,60 @@
 package com.example.mentalhealth.service;
 
+import com.example.mentalhealth.dto.CursorPageResponse;
+import com.example.mentalhealth.dto.DownloadDescriptor;
 import com.example.mentalhealth.dto.QuestionnaireInfoResponse;
 import com.example.mentalhealth.dto.QuestionnaireUploadResponse;
 import com.example.mentalhealth.entity.Questionnaire;
 import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.entity.UserStatistics;
+import com.example.mentalhealth.event.ContentStoredEvent;
+import com.example.mentalhealth.event.QuestionnaireChangedEvent;
 import com.example.mentalhealth.repository.QuestionnaireRepository;
+import com.example.mentalhealth.util.Checksums;
+import com.example.mentalhealth.util.DownloadUrlSigner;
+import com.example.mentalhealth.util.KeysetCursor;
+import com.example.mentalhealth.util.StreamingMultipartUpload;
+import com.example.mentalhealth.util.TransferMetrics;
+import io.micrometer.core.annotation.Timed;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "service.calls", histogram = true)
 public class QuestionnaireService {
     
     private static final Logger logger = LoggerFactory.getLogger(QuestionnaireService.class);
@@ -38,14 +62,39 @@ public class QuestionnaireService {
     @Autowired
     private QuestionnaireRepository questionnaireRepository;
     
-    @Value("${file.upload.dir:uploads}")
-    private String uploadDir;
+    @Autowired
+    private DownloadCounterService downloadCounterService;
+    
+    @Autowired
+    private SearchIndexService searchIndexService;
+    
+    @Autowired
+    private TagService tagService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private PublishedCatalogCache publishedCatalogCache;
+    
+    @Autowired
+    private UserStatisticsService userStatisticsService;
+    
+    @Autowired
+    private BlobStoreService blobStoreService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private DownloadUrlSigner downloadUrlSigner;
+    
+    @Autowired
+    private TransferMetrics transferMetrics;
     
     @Value("${file.max.size:52428800}") // 默认50MB
     private long maxFileSize;
     
-    @Value("${server.port:8080}")
-    private String serverPort;
     
     // 支持的文件类型
     private static final String[] ALLOWED_EXTENSIONS = {
@@ -63,91 +112,126 @@ public class QuestionnaireService {
             String category,
             String tags,
             User user) {
+        Path staged = null;
         try {
             // 验证文件
             validateFile(file);
+            tagService.validateTags(tags);
             
             // 如果没有提供标题，使用文件名
             if (!StringUtils.hasText(title)) {
                 title = file.getOriginalFilename();
             }
             
-            // 生成存储文件名
-            String storedName = generateStoredFileName(file.getOriginalFilename());
-            
-            // 创建问卷专用目录
-            Path uploadPath = createQuestionnaireDirectory();
-            
-            // 保存文件到磁盘
-            Path filePath = uploadPath.resolve(storedName);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-            
-            // 保存问卷记录到数据库
-            Questionnaire questionnaire = new Questionnaire(
-                title,
-                file.getOriginalFilename(),
-                storedName,
-                filePath.toString(),
-                file.getSize(),
-                file.getContentType(),
-                user
-            );
-            questionnaire.setDescription(description);
-            questionnaire.setCategory(category);
-            questionnaire.setTags(tags);
-            questionnaire = questionnaireRepository.save(questionnaire);
-            
-            // 生成下载URL
-            String downloadUrl = generateDownloadUrl(questionnaire.getId());
-            
-            logger.info("问卷上传成功: {} (用户: {})", title, user.getUsername());
+            // 写入暂存文件并计算内容摘要
+            staged = blobStoreService.newStagingFile();
+            String contentHash;
+            try (InputStream in = file.getInputStream()) {
+                contentHash = Checksums.copy(in, staged);
+            }
             
-            return new QuestionnaireUploadResponse(questionnaire, downloadUrl);
+            return saveQuestionnaire(title, file.getOriginalFilename(), contentHash, staged, file.getSize(),
+                    file.getContentType(), description, category, tags, user);
             
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("问卷上传失败: {}", e.getMessage(), e);
             throw new RuntimeException("问卷上传失败: " + e.getMessage());
+        } finally {
+            deleteStaged(staged);
         }
     }
     
     /**
-     * 下载问卷
+     * 流式上传问卷：边解析请求体边写入暂存文件并计算摘要，不经过容器的临时文件
+     * 表单字段（title、description、category、tags）可以出现在文件部分之前或之后
+     * @throws IllegalArgumentException 文件为空、过大、类型不支持、标签不合法或校验和不一致
      */
-    @Transactional
-    public Resource downloadQuestionnaire(Long questionnaireId, User user) {
-        try {
-            // 查找问卷记录
-            Optional<Questionnaire> questionnaireOpt = questionnaireRepository.findByIdAndIsActiveTrue(questionnaireId);
-            if (questionnaireOpt.isEmpty()) {
-                throw new RuntimeException("问卷不存在");
-            }
-            
-            Questionnaire questionnaire = questionnaireOpt.get();
-            Path filePath = Paths.get(questionnaire.getFilePath());
-            
-            // 检查文件是否存在
-            if (!Files.exists(filePath)) {
-                throw new RuntimeException("问卷文件不存在: " + questionnaire.getTitle());
+    public QuestionnaireUploadResponse uploadQuestionnaireStream(HttpServletRequest request, User user)
+            throws IOException {
+        try (StreamingMultipartUpload upload = StreamingMultipartUpload.receive(
+                request, "file", maxFileSize, this::resolveStreamTarget)) {
+            String tags = upload.getField("tags");
+            tagService.validateTags(tags);
+            String title = upload.getField("title");
+            if (!StringUtils.hasText(title)) {
+                title = upload.getOriginalName();
             }
-            
-            Resource resource = new UrlResource(filePath.toUri());
-            if (resource.exists() && resource.isReadable()) {
-                // 增加下载次数
-                questionnaire.incrementDownloadCount();
-                questionnaireRepository.save(questionnaire);
-                
-                logger.info("问卷下载: {} (用户: {})", questionnaire.getTitle(), user.getUsername());
-                return resource;
-            } else {
-                throw new RuntimeException("无法读取问卷文件: " + questionnaire.getTitle());
+            upload.commit();
+            try {
+                return saveQuestionnaire(title, upload.getOriginalName(), upload.getSha256(), upload.getTarget(),
+                        upload.getSize(), upload.getContentType(), upload.getField("description"),
+                        upload.getField("category"), tags, user);
+            } finally {
+                deleteStaged(upload.getTarget());
             }
-            
-        } catch (Exception e) {
-            logger.error("问卷下载失败: {}", e.getMessage(), e);
-            throw new RuntimeException("问卷下载失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 重复上传短路：用户已上传过相同内容时直接生成新的问卷，不再传输文件
+     * @return 没有可复用的内容时返回空，客户端改为正常上传
+     * @throws IllegalArgumentException 摘要格式不正确、文件类型不支持或标签不合法
+     */
+    public Optional<QuestionnaireUploadResponse> uploadQuestionnaireByHash(
+            String sha256,
+            String fileName,
+            String title,
+            String description,
+            String category,
+            String tags,
+            User user) {
+        if (!Checksums.isSha256(sha256)) {
+            throw new IllegalArgumentException("无效的内容摘要");
+        }
+        String originalName = StringUtils.getFilename(StringUtils.cleanPath(fileName));
+        validateFileName(originalName);
+        tagService.validateTags(tags);
+        String contentHash = sha256.toLowerCase();
+        Optional<Questionnaire> existing = questionnaireRepository.findFirstByCreatedByAndContentHash(user, contentHash);
+        if (existing.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(saveQuestionnaire(StringUtils.hasText(title) ? title : originalName, originalName,
+                contentHash, null, existing.get().getFileSize(), existing.get().getFileType(),
+                description, category, tags, user));
+    }
+    
+    /**
+     * 解析问卷下载信息（一次查询完成元数据和文件定位）
+     */
+    public DownloadDescriptor resolveDownload(Long questionnaireId, User user) {
+        DownloadDescriptor descriptor = resolveContent(questionnaireId);
+        
+        // 增加下载次数（写入内存缓冲，定时批量写回）
+        downloadCounterService.increment(descriptor.getId());
+        
+        logger.info("问卷下载: {} (用户: {})", descriptor.getOriginalName(), user.getUsername());
+        return descriptor;
+    }
+    
+    /**
+     * 解析问卷文件的位置（下载和缩略图共用，不计下载次数）
+     */
+    public DownloadDescriptor resolveContent(Long questionnaireId) {
+        Optional<Questionnaire> questionnaireOpt = questionnaireRepository.findByIdAndIsActiveTrue(questionnaireId);
+        if (questionnaireOpt.isEmpty()) {
+            throw new RuntimeException("问卷不存在");
+        }
+        
+        Questionnaire questionnaire = questionnaireOpt.get();
+        // 已登记内容的问卷从存储后端读取，旧记录仍读本地路径
+        Path filePath = Paths.get(questionnaire.getFilePath());
+        if (questionnaire.getContentHash() == null && !Files.isReadable(filePath)) {
+            throw new RuntimeException("问卷文件不存在: " + questionnaire.getTitle());
+        }
+        DownloadDescriptor descriptor = new DownloadDescriptor(questionnaire.getId(), questionnaire.getOriginalName(),
+                questionnaire.getFileType(), questionnaire.getFileSize(), questionnaire.getContentHash(), filePath);
+        descriptor.setCategory(TransferMetrics.QUESTIONNAIRE);
+        return descriptor;
+    }
+    
     /**
      * 获取用户的问卷列表
      */
@@ -155,7 +239,7 @@ public class QuestionnaireService {
         List<Questionnaire> questionnaires = questionnaireRepository
                 .findByCreatedByAndIsActiveTrueOrderByCreatedAtDesc(user);
         return questionnaires.stream()
-                .map(q -> new QuestionnaireInfoResponse(q, generateDownloadUrl(q.getId())))
+                .map(this::toInfoResponse)
                 .collect(Collectors.toList());
     }
     
@@ -165,18 +249,30 @@ public class QuestionnaireService {
     public Page<QuestionnaireInfoResponse> getUserQuestionnaires(User user, Pageable pageable) {
         Page<Questionnaire> questionnaires = questionnaireRepository
                 .findByCreatedByAndIsActiveTrueOrderByCreatedAtDesc(user, pageable);
-        return questionnaires.map(q -> new QuestionnaireInfoResponse(q, generateDownloadUrl(q.getId())));
+        return questionnaires.map(this::toInfoResponse);
+    }
+    
+    /**
+     * 游标分页获取用户的问卷列表（按 (createdAt, id) 倒序，不统计总数）
+     * @param cursor 上一页返回的续传令牌，为空时从第一页开始
+     */
+    public CursorPageResponse<QuestionnaireInfoResponse> getUserQuestionnaires(User user, String cursor, int size) {
+        return loadSlice(cursor, size,
+                pageable -> questionnaireRepository.findFirstSliceByCreator(user, pageable),
+                (after, pageable) -> questionnaireRepository.findSliceByCreatorAfter(
+                        user, after.getTime(), after.getId(), pageable),
+                Questionnaire::getCreatedAt);
     }
     
     /**
      * 获取所有已发布的问卷
      */
     public List<QuestionnaireInfoResponse> getPublishedQuestionnaires() {
-        List<Questionnaire> questionnaires = questionnaireRepository
-                .findByStatusAndIsActiveTrueOrderByPublishedAtDesc(Questionnaire.QuestionnaireStatus.PUBLISHED);
-        return questionnaires.stream()
-                .map(q -> new QuestionnaireInfoResponse(q, generateDownloadUrl(q.getId())))
-                .collect(Collectors.toList());
+        return publishedCatalogCache.getPublished(() -> questionnaireRepository
+                .findByStatusAndIsActiveTrueOrderByPublishedAtDesc(Questionnaire.QuestionnaireStatus.PUBLISHED)
+                .stream()
+                .map(this::toInfoResponse)
+                .collect(Collectors.toList()));
     }
     
     /**
@@ -186,7 +282,19 @@ public class QuestionnaireService {
         Page<Questionnaire> questionnaires = questionnaireRepository
                 .findByStatusAndIsActiveTrueOrderByPublishedAtDesc(
                     Questionnaire.QuestionnaireStatus.PUBLISHED, pageable);
-        return questionnaires.map(q -> new QuestionnaireInfoResponse(q, generateDownloadUrl(q.getId())));
+        return questionnaires.map(this::toInfoResponse);
+    }
+    
+    /**
+     * 游标分页获取已发布的问卷（按 (publishedAt, id) 倒序，不统计总数）
+     * @param cursor 上一页返回的续传令牌，为空时从第一页开始
+     */
+    public CursorPageResponse<QuestionnaireInfoResponse> getPublishedQuestionnaires(String cursor, int size) {
+        return loadSlice(cursor, size,
+                questionnaireRepository::findFirstPublishedSlice,
+                (after, pageable) -> questionnaireRepository.findPublishedSliceAfter(
+                        after.getTime(), after.getId(), pageable),
+                Questionnaire::getPublishedAt);
     }
     
     /**
@@ -197,7 +305,7 @@ public class QuestionnaireService {
         List<Questionnaire> questionnaires = questionnaireRepository
                 .findByCreatedByAndStatusAndIsActiveTrueOrderByCreatedAtDesc(user, status);
         return questionnaires.stream()
-                .map(q -> new QuestionnaireInfoResponse(q, generateDownloadUrl(q.getId())))
+                .map(this::toInfoResponse)
                 .collect(Collectors.toList());
     }
     
@@ -205,21 +313,44 @@ public class QuestionnaireService {
      * 搜索问卷
      */
     public List<QuestionnaireInfoResponse> searchQuestionnaires(String keyword) {
-        List<Questionnaire> questionnaires = questionnaireRepository.findByTitleContaining(keyword);
-        return questionnaires.stream()
-                .map(q -> new QuestionnaireInfoResponse(q, generateDownloadUrl(q.getId())))
-                .collect(Collectors.toList());
+        return searchQuestionnaires(keyword, 0, 0);
+    }
+    
+    /**
+     * 分页搜索问卷（按相关度排序，size小于等于0时返回全部结果）
+     */
+    public List<QuestionnaireInfoResponse> searchQuestionnaires(String keyword, int page, int size) {
+        if (!searchIndexService.isReady()) {
+            List<Questionnaire> questionnaires = questionnaireRepository
+                    .findByTitleContaining(keyword, searchPage(page, size));
+            return questionnaires.stream()
+                    .map(this::toInfoResponse)
+                    .collect(Collectors.toList());
+        }
+        List<Long> ids = searchIndexService.searchQuestionnaires(keyword, null, page, size);
+        return loadInOrder(ids);
     }
     
     /**
      * 搜索用户问卷
      */
     public List<QuestionnaireInfoResponse> searchUserQuestionnaires(User user, String keyword) {
-        List<Questionnaire> questionnaires = questionnaireRepository
-                .findByCreatedByAndTitleContaining(user, keyword);
-        return questionnaires.stream()
-                .map(q -> new QuestionnaireInfoResponse(q, generateDownloadUrl(q.getId())))
-                .collect(Collectors.toList());
+        return searchUserQuestionnaires(user, keyword, 0, 0);
+    }
+    
+    /**
+     * 分页搜索用户问卷（按相关度排序，size小于等于0时返回全部结果）
+     */
+    public List<QuestionnaireInfoResponse> searchUserQuestionnaires(User user, String keyword, int page, int size) {
+        if (!searchIndexService.isReady()) {
+            List<Questionnaire> questionnaires = questionnaireRepository
+                    .findByCreatedByAndTitleContaining(user, keyword, searchPage(page, size));
+            return questionnaires.stream()
+                    .map(this::toInfoResponse)
+                    .collect(Collectors.toList());
+        }
+        List<Long> ids = searchIndexService.searchQuestionnaires(keyword, user.getId(), page, size);
+        return loadInOrder(ids);
     }
     
     /**
@@ -232,7 +363,7 @@ public class QuestionnaireService {
         }
         
         Questionnaire questionnaire = questionnaireOpt.get();
-        return new QuestionnaireInfoResponse(questionnaire, generateDownloadUrl(questionnaire.getId()));
+        return toInfoResponse(questionnaire);
     }
     
     /**
@@ -247,8 +378,13 @@ public class QuestionnaireService {
         }
         
         Questionnaire questionnaire = questionnaireOpt.get();
+        Questionnaire.QuestionnaireStatus previousStatus = questionnaire.getStatus();
         questionnaire.publish();
         questionnaireRepository.save(questionnaire);
+        searchIndexService.indexQuestionnaire(questionnaire);
+        tagService.refreshIndex(questionnaire);
+        userStatisticsService.questionnaireStatusChanged(questionnaire, previousStatus);
+        publishChanged(questionnaire, previousStatus, questionnaire.getCategory());
         
         logger.info("问卷已发布: {} (用户: {})", questionnaire.getTitle(), user.getUsername());
     }
@@ -265,8 +401,13 @@ public class QuestionnaireService {
         }
         
         Questionnaire questionnaire = questionnaireOpt.get();
+        Questionnaire.QuestionnaireStatus previousStatus = questionnaire.getStatus();
         questionnaire.archive();
         questionnaireRepository.save(questionnaire);
+        searchIndexService.indexQuestionnaire(questionnaire);
+        tagService.refreshIndex(questionnaire);
+        userStatisticsService.questionnaireStatusChanged(questionnaire, previousStatus);
+        publishChanged(questionnaire, previousStatus, questionnaire.getCategory());
         
         logger.info("问卷已归档: {} (用户: {})", questionnaire.getTitle(), user.getUsername());
     }
@@ -286,6 +427,10 @@ public class QuestionnaireService {
         questionnaire.setIsActive(false);
         questionnaire.setUpdatedAt(LocalDateTime.now());
         questionnaireRepository.save(questionnaire);
+        searchIndexService.removeQuestionnaire(questionnaire.getId());
+        tagService.removeFromIndex(questionnaire.getId());
+        userStatisticsService.questionnaireRemoved(questionnaire);
+        publishChanged(questionnaire, questionnaire.getStatus(), questionnaire.getCategory());
         
         logger.info("问卷已删除: {} (用户: {})", questionnaire.getTitle(), user.getUsername());
     }
@@ -308,6 +453,8 @@ public class QuestionnaireService {
         }
         
         Questionnaire questionnaire = questionnaireOpt.get();
+        tagService.validateTags(tags);
+        String previousCategory = questionnaire.getCategory();
         
         if (StringUtils.hasText(title)) {
             questionnaire.setTitle(title);
@@ -323,23 +470,42 @@ public class QuestionnaireService {
         }
         
         questionnaire = questionnaireRepository.save(questionnaire);
+        searchIndexService.indexQuestionnaire(questionnaire);
+        if (tags != null) {
+            tagService.syncTags(questionnaire);
+        } else {
+            tagService.refreshIndex(questionnaire);
+        }
+        publishChanged(questionnaire, questionnaire.getStatus(), previousCategory);
         
         logger.info("问卷信息已更新: {} (用户: {})", questionnaire.getTitle(), user.getUsername());
         
-        return new QuestionnaireInfoResponse(questionnaire, generateDownloadUrl(questionnaire.getId()));
+        return toInfoResponse(questionnaire);
     }
     
     /**
      * 获取问卷统计信息
      */
     public QuestionnaireStatistics getUserQuestionnaireStatistics(User user) {
-        long totalCount = questionnaireRepository.countByCreatedByAndIsActiveTrue(user);
-        long draftCount = questionnaireRepository.countByCreatedByAndStatusAndIsActiveTrue(
-                user, Questionnaire.QuestionnaireStatus.DRAFT);
-        long publishedCount = questionnaireRepository.countByCreatedByAndStatusAndIsActiveTrue(
-                user, Questionnaire.QuestionnaireStatus.PUBLISHED);
-        long archivedCount = questionnaireRepository.countByCreatedByAndStatusAndIsActiveTrue(
-                user, Questionnaire.QuestionnaireStatus.ARCHIVED);
+        if (userStatisticsService.isEnabled()) {
+            UserStatistics statistics = userStatisticsService.getOrBuild(user.getId());
+            return new QuestionnaireStatistics(statistics.getQuestionnaireCount(), statistics.getDraftCount(),
+                    statistics.getPublishedCount(), statistics.getArchivedCount());
+        }
+        
+        // 一条 GROUP BY 查询得到各状态数量
+        long totalCount = 0;
+        long draftCount = 0;
+        long publishedCount = 0;
+        long archivedCount = 0;
+        for (QuestionnaireRepository.StatusStatistics row : questionnaireRepository.aggregateByStatus(user)) {
+            totalCount += row.getCount();
+            switch (row.getStatus()) {
+                case DRAFT -> draftCount = row.getCount();
+                case PUBLISHED -> publishedCount = row.getCount();
+                case ARCHIVED -> archivedCount = row.getCount();
+            }
+        }
         
         return new QuestionnaireStatistics(totalCount, draftCount, publishedCount, archivedCount);
     }
@@ -348,26 +514,141 @@ public class QuestionnaireService {
      * 根据分类获取问卷
      */
     public List<QuestionnaireInfoResponse> getQuestionnairesByCategory(String category) {
-        List<Questionnaire> questionnaires = questionnaireRepository
-                .findByCategoryAndIsActiveTrueOrderByCreatedAtDesc(category);
-        return questionnaires.stream()
-                .map(q -> new QuestionnaireInfoResponse(q, generateDownloadUrl(q.getId())))
-                .collect(Collectors.toList());
+        return publishedCatalogCache.getByCategory(category, () -> questionnaireRepository
+                .findByCategoryAndIsActiveTrueOrderByCreatedAtDesc(category)
+                .stream()
+                .map(this::toInfoResponse)
+                .collect(Collectors.toList()));
     }
     
     /**
      * 获取热门问卷
      */
     public List<QuestionnaireInfoResponse> getPopularQuestionnaires(int limit) {
-        List<Questionnaire> questionnaires = questionnaireRepository
-                .findPopularQuestionnaires(Pageable.ofSize(limit));
-        return questionnaires.stream()
-                .map(q -> new QuestionnaireInfoResponse(q, generateDownloadUrl(q.getId())))
-                .collect(Collectors.toList());
+        return publishedCatalogCache.getPopular(limit, () -> loadPopularQuestionnaires(limit));
+    }
+    
+    /**
+     * 按标签组合筛选问卷
+     * @param tags 标签列表
+     * @param matchAll true 表示同时包含所有标签，false 表示包含任一标签
+     * @param status 问卷状态（可选；不传时只返回已发布问卷，mine 为 true 时返回自己所有状态的问卷）
+     * @param category 问卷分类（可选）
+     * @param mine 只返回当前用户创建的问卷；草稿和归档问卷只能查询自己的
+     */
+    @Transactional(readOnly = true)
+    public List<QuestionnaireInfoResponse> findByTags(List<String> tags, boolean matchAll,
+            Questionnaire.QuestionnaireStatus status, String category, boolean mine, User user,
+            int page, int size) {
+        Long creatorId = null;
+        if (mine) {
+            creatorId = user.getId();
+        } else if (status == null) {
+            status = Questionnaire.QuestionnaireStatus.PUBLISHED;
+        } else if (status != Questionnaire.QuestionnaireStatus.PUBLISHED) {
+            throw new IllegalArgumentException("只能查询自己的草稿和归档问卷，请同时指定 mine=true");
+        }
+        List<Long> ids = tagService.findQuestionnaireIds(tags, matchAll, status, category, creatorId);
+        if (ids == null) {
+            throw new RuntimeException("标签索引正在初始化，请稍后重试");
+        }
+        if (size > 0) {
+            int from = Math.max(0, page) * size;
+            ids = from >= ids.size() ? List.of() : ids.subList(from, Math.min(ids.size(), from + size));
+        }
+        return loadInOrder(ids);
+    }
+    
+    /**
+     * 获取所有标签及使用次数
+     */
+    public Map<String, Integer> getTagCounts() {
+        return tagService.getTagCounts();
     }
     
     // 私有方法
     
+    // 问卷行、索引、标签关联和内容引用在同一事务中写入，任一步失败都整体回滚；staged 为空表示复用已存储的内容
+    private QuestionnaireUploadResponse saveQuestionnaire(String title, String originalName, String contentHash,
+                                                          Path staged, long size, String contentType,
+                                                          String description, String category, String tags,
+                                                          User user) {
+        Questionnaire entity = new Questionnaire(
+            title,
+            originalName,
+            generateStoredFileName(originalName),
+            blobStoreService.location(contentHash),
+            size,
+            contentType,
+            user
+        );
+        entity.setDescription(description);
+        entity.setCategory(category);
+        entity.setTags(tags);
+        entity.setContentHash(contentHash);
+        // 内容在事务外写入存储后端，事务中只登记引用
+        if (staged != null) {
+            blobStoreService.upload(contentHash, size, staged);
+        }
+        Questionnaire questionnaire = transactionTemplate.execute(status -> {
+            // 插入明细之前取用户行锁，避免外键共享锁升级造成死锁
+            userStatisticsService.lockUser(user.getId());
+            Questionnaire saved = questionnaireRepository.save(entity);
+            searchIndexService.indexQuestionnaire(saved);
+            tagService.syncTags(saved);
+            userStatisticsService.questionnaireAdded(saved);
+            if (staged != null) {
+                blobStoreService.retain(contentHash, size);
+            } else if (!blobStoreService.retainExisting(contentHash)) {
+                throw new IllegalStateException("存储内容不存在: " + contentHash);
+            }
+            return saved;
+        });
+        eventPublisher.publishEvent(new QuestionnaireChangedEvent(
+                questionnaire.getId(), null, questionnaire.getStatus(), null, questionnaire.getCategory()));
+        eventPublisher.publishEvent(new ContentStoredEvent(contentHash, originalName));
+        if (staged != null) {
+            transferMetrics.recordUpload(TransferMetrics.QUESTIONNAIRE, size);
+        }
+        
+        // 生成下载URL
+        String downloadUrl = generateDownloadUrl(questionnaire);
+        
+        logger.info("问卷上传成功: {} (用户: {})", title, user.getUsername());
+        
+        return new QuestionnaireUploadResponse(questionnaire, downloadUrl);
+    }
+    
+    // 流式上传在读到文件头时校验类型并分配暂存文件，此时还不知道文件大小
+    private Path resolveStreamTarget(String originalName) {
+        validateFileName(originalName);
+        try {
+            return blobStoreService.newStagingFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private void deleteStaged(Path staged) {
+        if (staged == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(staged);
+        } catch (IOException e) {
+            logger.warn("删除暂存文件失败: {} ({})", staged, e.getMessage());
+        }
+    }
+    
+    private void validateFileName(String originalName) {
+        if (!StringUtils.hasText(originalName)) {
+            throw new IllegalArgumentException("文件名不能为空");
+        }
+        if (!isAllowedFileType(originalName)) {
+            throw new IllegalArgumentException("不支持的文件类型。支持的格式：PDF, DOC, DOCX, XLS, XLSX, TXT, JPG, JPEG, PNG, GIF");
+        }
+    }
+    
     private void validateFile(MultipartFile file) {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("文件不能为空");
@@ -377,15 +658,8 @@ public class QuestionnaireService {
             throw new IllegalArgumentException("文件大小不能超过 " + (maxFileSize / 1024 / 1024) + "MB");
         }
         
-        String originalFilename = file.getOriginalFilename();
-        if (!StringUtils.hasText(originalFilename)) {
-            throw new IllegalArgumentException("文件名不能为空");
-        }
-        
-        // 验证文件扩展名
-        if (!isAllowedFileType(originalFilename)) {
-            throw new IllegalArgumentException("不支持的文件类型。支持的格式：PDF, DOC, DOCX, XLS, XLSX, TXT, JPG, JPEG, PNG, GIF");
-        }
+        // 验证文件名和扩展名
+        validateFileName(file.getOriginalFilename());
     }
     
     private boolean isAllowedFileType(String filename) {
@@ -409,14 +683,88 @@ public class QuestionnaireService {
         return "questionnaire_" + timestamp + "_" + UUID.randomUUID().toString().substring(0, 8) + extension;
     }
     
-    private Path createQuestionnaireDirectory() throws IOException {
-        Path uploadPath = Paths.get(uploadDir, "questionnaires");
-        Files.createDirectories(uploadPath);
-        return uploadPath;
+    // 事务提交后由目录缓存按键失效
+    private void publishChanged(Questionnaire questionnaire, Questionnaire.QuestionnaireStatus previousStatus,
+                                String previousCategory) {
+        eventPublisher.publishEvent(new QuestionnaireChangedEvent(questionnaire.getId(), previousStatus,
+                questionnaire.getStatus(), previousCategory, questionnaire.getCategory()));
+    }
+    
+    private List<QuestionnaireInfoResponse> loadPopularQuestionnaires(int limit) {
+        // 数据库中的前 limit 名加上有未写回增量的问卷作为候选，合并增量后重新排序再截断
+        List<Questionnaire> candidates = new ArrayList<>(
+                questionnaireRepository.findPopularQuestionnaires(Pageable.ofSize(limit)));
+        Set<Long> pendingIds = new HashSet<>(downloadCounterService.getPendingIds());
+        candidates.forEach(questionnaire -> pendingIds.remove(questionnaire.getId()));
+        if (!pendingIds.isEmpty()) {
+            questionnaireRepository.findWithCreatorByIdIn(pendingIds).stream()
+                    .filter(questionnaire -> questionnaire.getStatus() == Questionnaire.QuestionnaireStatus.PUBLISHED
+                            && Boolean.TRUE.equals(questionnaire.getIsActive()))
+                    .forEach(candidates::add);
+        }
+        return candidates.stream()
+                .map(this::toInfoResponse)
+                .sorted(Comparator.comparing(QuestionnaireInfoResponse::getDownloadCount).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+    
+    private CursorPageResponse<QuestionnaireInfoResponse> loadSlice(
+            String cursor, int size,
+            Function<Pageable, Slice<Questionnaire>> firstPage,
+            BiFunction<KeysetCursor, Pageable, Slice<Questionnaire>> nextPage,
+            Function<Questionnaire, LocalDateTime> sortTime) {
+        int pageSize = KeysetCursor.pageSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        Pageable pageable = PageRequest.of(0, pageSize);
+        Slice<Questionnaire> questionnaires = after == null
+                ? firstPage.apply(pageable)
+                : nextPage.apply(after, pageable);
+        String nextCursor = null;
+        if (questionnaires.hasNext()) {
+            Questionnaire last = questionnaires.getContent().get(questionnaires.getNumberOfElements() - 1);
+            nextCursor = new KeysetCursor(sortTime.apply(last), last.getId()).encode();
+        }
+        List<QuestionnaireInfoResponse> content = questionnaires.getContent().stream()
+                .map(this::toInfoResponse)
+                .collect(Collectors.toList());
+        return new CursorPageResponse<>(content, nextCursor, questionnaires.hasNext(), pageSize);
     }
     
-    private String generateDownloadUrl(Long questionnaireId) {
-        return "http://localhost:" + serverPort + "/api/questionnaires/download/" + questionnaireId;
+    private List<QuestionnaireInfoResponse> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Questionnaire> questionnaires = questionnaireRepository.findWithCreatorByIdIn(ids).stream()
+                .filter(q -> Boolean.TRUE.equals(q.getIsActive()))
+                .collect(Collectors.toMap(Questionnaire::getId, Function.identity()));
+        return ids.stream()
+                .map(questionnaires::get)
+                .filter(Objects::nonNull)
+                .map(this::toInfoResponse)
+                .collect(Collectors.toList());
+    }
+    
+    // LIKE 回退的分页与 SearchIndexService 一致：页码小于 0 按第一页，size 小于等于 0 返回全部结果
+    private static Pageable searchPage(int page, int size) {
+        return size > 0 ? PageRequest.of(Math.max(0, page), size) : Pageable.unpaged();
+    }
+    
+    private QuestionnaireInfoResponse toInfoResponse(Questionnaire questionnaire) {
+        QuestionnaireInfoResponse response = new QuestionnaireInfoResponse(
+                questionnaire, generateDownloadUrl(questionnaire));
+        response.setDownloadCount(downloadCounterService.mergeDownloadCount(
+                questionnaire.getId(), questionnaire.getDownloadCount()));
+        return response;
+    }
+    
+    // 已登记内容的问卷返回签名链接（带问卷 ID 用于下载计数）；尚未迁移的旧问卷仍走需要认证的下载接口
+    private String generateDownloadUrl(Questionnaire questionnaire) {
+        if (questionnaire.getContentHash() != null) {
+            return downloadUrlSigner.sign(questionnaire.getContentHash(), questionnaire.getOriginalName(),
+                    questionnaire.getFileType(), questionnaire.getId());
+        }
+        return downloadUrlSigner.getBaseUrl() + "/api/questionnaires/download/" + questionnaire.getId();
     }
     
     // 问卷统计信息内部类
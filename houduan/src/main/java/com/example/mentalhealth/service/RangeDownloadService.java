@@ -0,0 +1,726 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.dto.DownloadDescriptor;
+import com.example.mentalhealth.storage.BlobStat;
+import com.example.mentalhealth.storage.BlobStore;
+import com.example.mentalhealth.util.BandwidthLimiter;
+import com.example.mentalhealth.util.TransferMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * 文件下载引擎：支持 Range / If-Range 断点续传与多段下载（206 / multipart/byteranges），
+ * 本地文件的单段响应优先交给 Tomcat sendfile，其余情况使用 FileChannel.transferTo 直接写入响应通道；
+ * 对象存储中的内容按分段发起范围读取，只拉取客户端需要的字节。
+ * 支持 If-None-Match / If-Modified-Since 条件请求，内容未变化时返回 304。
+ * 开启 download.async.enabled 后，不能走 sendfile 的单段响应改为异步输出：请求线程立即释放，
+ * 由少量 I/O 线程在连接可写时分块写出（逐连接背压），并可按用户限制总带宽。
+ */
+@Service
+public class RangeDownloadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RangeDownloadService.class);
+
+    // 单次请求允许的最大分段数，超过则忽略 Range 返回完整内容
+    private static final int MAX_RANGES = 16;
+
+    private static final String MULTIPART_BOUNDARY = "MENTAL_HEALTH_BYTE_RANGES";
+    private static final LongConsumer NOT_RECORDED = bytes -> { };
+
+    // Tomcat sendfile 相关请求属性
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private TransferMetrics transferMetrics;
+
+    @Value("${download.chunk-size:65536}")
+    private int chunkSize;
+
+    @Value("${download.async.enabled:false}")
+    private boolean asyncEnabled;
+
+    @Value("${download.async.io-threads:4}")
+    private int ioThreads;
+
+    @Value("${download.async.timeout-ms:3600000}")
+    private long asyncTimeoutMs;
+
+    @Value("${download.bandwidth.per-user-bytes-per-second:0}")
+    private long bandwidthPerUser;
+
+    // 异步输出的 I/O 线程，同时负责限速后的延迟续写
+    private ScheduledThreadPoolExecutor ioExecutor;
+
+    // 按用户限速，未配置时为 null
+    private BandwidthLimiter bandwidthLimiter;
+
+    @PostConstruct
+    public void init() {
+        // 只有异步输出会按限速分块写出；同步路径不限速，也不必为此放弃 sendfile
+        if (bandwidthPerUser > 0 && asyncEnabled) {
+            bandwidthLimiter = new BandwidthLimiter(bandwidthPerUser, chunkSize);
+        } else if (bandwidthPerUser > 0) {
+            logger.warn("download.bandwidth.per-user-bytes-per-second 仅在 download.async.enabled=true 时生效，当前不限速");
+        }
+        if (asyncEnabled) {
+            AtomicInteger threadIndex = new AtomicInteger();
+            ioExecutor = new ScheduledThreadPoolExecutor(ioThreads, runnable -> {
+                Thread thread = new Thread(runnable, "download-io-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            logger.info("异步下载已启用: I/O 线程 {}，每用户限速 {}", ioThreads,
+                    bandwidthLimiter != null ? bandwidthPerUser + " B/s" : "不限");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ioExecutor != null) {
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 输出下载描述对应的内容：已登记内容从存储后端读取，旧记录读取本地路径；按分类累计下载字节数
+     */
+    public void write(DownloadDescriptor descriptor, HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        String disposition = buildContentDisposition(descriptor.getOriginalName());
+        LongConsumer written = bytes -> transferMetrics.recordDownload(descriptor.getCategory(), bytes);
+        if (descriptor.getContentHash() != null) {
+            writeBlobContent(descriptor.getContentHash(), disposition, descriptor.getFileType(),
+                    request, response, written);
+        } else {
+            writeFileContent(descriptor.getFilePath(), disposition, descriptor.getFileType(),
+                    request, response, written);
+        }
+    }
+
+    /**
+     * 输出存储后端中的内容；内容不存在时返回 404
+     * @param key 内容的 SHA-256
+     */
+    public void writeBlob(String key, String filename, String contentType,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeBlobContent(key, buildContentDisposition(filename), contentType, request, response,
+                bytes -> transferMetrics.recordDownload(TransferMetrics.UNKNOWN, bytes));
+    }
+
+    /**
+     * 输出存储后端中的内容供浏览器直接显示（缩略图等），不带下载文件名
+     */
+    public void writeInline(String key, String contentType,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeBlobContent(key, "inline", contentType, request, response, NOT_RECORDED);
+    }
+
+    /**
+     * 输出文件内容
+     * @param filePath 磁盘文件路径
+     * @param filename 下载时展示的文件名
+     * @param contentType 文件MIME类型
+     */
+    public void writeFile(Path filePath, String filename, String contentType,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeFileContent(filePath, buildContentDisposition(filename), contentType, request, response, NOT_RECORDED);
+    }
+
+    /**
+     * 构造支持中文的 Content-Disposition 头：filename* 带 UTF-8 编码的原名，
+     * filename 只保留 ASCII（非 ASCII 字符替换为下划线），否则 Tomcat 会整个丢弃该响应头
+     */
+    public String buildContentDisposition(String filename) {
+        String encodedFilename = URLEncoder.encode(filename, StandardCharsets.UTF_8).replaceAll("\\+", "%20");
+        StringBuilder fallback = new StringBuilder(filename.length());
+        for (int i = 0; i < filename.length(); i++) {
+            char c = filename.charAt(i);
+            fallback.append(c < 0x20 || c > 0x7e || c == '"' || c == '\\' ? '_' : c);
+        }
+        return "attachment; filename=\"" + fallback + "\"; filename*=UTF-8''" + encodedFilename;
+    }
+
+    // 私有方法
+
+    // 以下输出方法在响应体写完后把实际写出的字节数交给 written（异步输出在传输结束时；未变化、范围无效、内容不存在时不调用）
+
+    private void writeBlobContent(String key, String disposition, String contentType, HttpServletRequest request,
+                                  HttpServletResponse response, LongConsumer written) throws IOException {
+        Optional<BlobStat> stat = blobStore.stat(key);
+        if (stat.isEmpty()) {
+            logger.warn("存储内容不存在: {}", key);
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Path localFile = blobStore.localPath(key).orElse(null);
+        write(new Content(key, localFile, stat.get().getSize(), stat.get().getLastModified()),
+                disposition, contentType, request, response, written);
+    }
+
+    private void writeFileContent(Path filePath, String disposition, String contentType, HttpServletRequest request,
+                                  HttpServletResponse response, LongConsumer written) throws IOException {
+        write(new Content(null, filePath, Files.size(filePath), Files.getLastModifiedTime(filePath).toMillis()),
+                disposition, contentType, request, response, written);
+    }
+
+    private void write(Content content, String disposition, String contentType, HttpServletRequest request,
+                       HttpServletResponse response, LongConsumer written) throws IOException {
+        long length = content.length;
+        long lastModified = content.lastModified;
+        // 按内容哈希寻址的内容不会变化，直接以哈希作为强 ETag
+        String etag = content.key != null ? "\"" + content.key + "\"" : buildETag(length, lastModified);
+        String mimeType = StringUtils.hasText(contentType) ? contentType : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition);
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        List<ByteRange> ranges = resolveRanges(request, length, etag, lastModified);
+        if (ranges == null) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(mimeType);
+            response.setContentLengthLong(length);
+            writeSingle(content, new ByteRange(0, length - 1), request, response, written);
+        } else if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(mimeType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(length));
+            response.setContentLengthLong(range.length());
+            writeSingle(content, range, request, response, written);
+        } else {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            writeMultipart(content, ranges, mimeType, length, response, written);
+        }
+    }
+
+    private void writeSingle(Content content, ByteRange range, HttpServletRequest request,
+                             HttpServletResponse response, LongConsumer written) throws IOException {
+        if (range.length() == 0) {
+            return;
+        }
+
+        // 容器支持 sendfile 时由内核直接把文件页写入 socket（sendfile 无法限速，配置限速时改走异步输出）
+        if (content.localFile != null && bandwidthLimiter == null
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, content.localFile.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, range.start);
+            request.setAttribute(SENDFILE_END_ATTR, range.end + 1);
+            // 由容器在返回后写出，无法观察实际写出量，按响应长度计
+            written.accept(range.length());
+            return;
+        }
+
+        if (ioExecutor != null && request.isAsyncSupported()) {
+            writeAsync(content, range, request, response, written);
+            return;
+        }
+
+        if (content.localFile == null) {
+            copyRange(content.key, range, response.getOutputStream());
+        } else {
+            try (FileChannel channel = FileChannel.open(content.localFile, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+                transfer(channel, range, target);
+            }
+        }
+        response.flushBuffer();
+        written.accept(range.length());
+    }
+
+    private void writeAsync(Content content, ByteRange range, HttpServletRequest request,
+                            HttpServletResponse response, LongConsumer written) throws IOException {
+        AsyncTransfer transfer = new AsyncTransfer(content, range, bandwidthKey(request), written);
+        try {
+            AsyncContext asyncContext = request.startAsync(request, response);
+            asyncContext.setTimeout(asyncTimeoutMs);
+            asyncContext.addListener(transfer);
+            transfer.start(asyncContext, response.getOutputStream());
+        } catch (IOException | RuntimeException e) {
+            transfer.release();
+            throw e;
+        }
+    }
+
+    // 限速按登录用户计算，签名链接等匿名下载按客户端 IP 计算
+    // （反向代理后的客户端地址由 server.forward-headers-strategy 从 X-Forwarded-For 解析）
+    private String bandwidthKey(HttpServletRequest request) {
+        return request.getUserPrincipal() != null
+                ? "user:" + request.getUserPrincipal().getName()
+                : "ip:" + request.getRemoteAddr();
+    }
+
+    private void writeMultipart(Content content, List<ByteRange> ranges, String mimeType, long length,
+                                HttpServletResponse response, LongConsumer written) throws IOException {
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] header = ("\r\n--" + MULTIPART_BOUNDARY + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + mimeType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + range.length();
+        }
+        byte[] closing = ("\r\n--" + MULTIPART_BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + MULTIPART_BOUNDARY);
+        response.setContentLengthLong(contentLength);
+
+        OutputStream out = response.getOutputStream();
+        if (content.localFile == null) {
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                copyRange(content.key, ranges.get(i), out);
+            }
+        } else {
+            WritableByteChannel target = Channels.newChannel(out);
+            try (FileChannel channel = FileChannel.open(content.localFile, StandardOpenOption.READ)) {
+                for (int i = 0; i < ranges.size(); i++) {
+                    out.write(partHeaders.get(i));
+                    transfer(channel, ranges.get(i), target);
+                }
+            }
+        }
+        out.write(closing);
+        response.flushBuffer();
+        written.accept(contentLength);
+    }
+
+    private void transfer(FileChannel channel, ByteRange range, WritableByteChannel target) throws IOException {
+        long position = range.start;
+        long end = range.end + 1;
+        while (position < end) {
+            long written = channel.transferTo(position, end - position, target);
+            if (written <= 0) {
+                throw new EOFException("文件在传输过程中被截断");
+            }
+            position += written;
+        }
+    }
+
+    // 对象存储按范围读取，每段一次请求
+    private void copyRange(String key, ByteRange range, OutputStream out) throws IOException {
+        byte[] buffer = new byte[chunkSize];
+        long remaining = range.length();
+        try (InputStream in = blobStore.get(key, range.start, range.length())) {
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("文件在传输过程中被截断");
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * 解析请求中的 Range 头
+     * @return 空列表表示返回完整内容；null 表示范围无法满足（416）
+     */
+    private List<ByteRange> resolveRanges(HttpServletRequest request, long length, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (!StringUtils.hasText(rangeHeader) || !rangeHeader.startsWith("bytes=")) {
+            return new ArrayList<>();
+        }
+        if (!ifRangeMatches(request, etag, lastModified)) {
+            return new ArrayList<>();
+        }
+
+        String[] specs = rangeHeader.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            logger.warn("Range 分段过多({})，忽略分段请求", specs.length);
+            return new ArrayList<>();
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            String trimmed = spec.trim();
+            int dash = trimmed.indexOf('-');
+            if (dash < 0) {
+                return new ArrayList<>();
+            }
+            try {
+                String startPart = trimmed.substring(0, dash).trim();
+                String endPart = trimmed.substring(dash + 1).trim();
+                long start;
+                long end;
+                if (startPart.isEmpty()) {
+                    // 后缀形式：bytes=-500 表示最后500字节
+                    long suffixLength = Long.parseLong(endPart);
+                    if (suffixLength <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffixLength);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(startPart);
+                    long requestedEnd = endPart.isEmpty() ? Long.MAX_VALUE : Long.parseLong(endPart);
+                    if (requestedEnd < start) {
+                        // 语法无效的范围，按规范忽略整个 Range 头
+                        return new ArrayList<>();
+                    }
+                    end = Math.min(requestedEnd, length - 1);
+                }
+                if (start < length && start <= end) {
+                    ranges.add(new ByteRange(start, end));
+                }
+            } catch (NumberFormatException e) {
+                return new ArrayList<>();
+            }
+        }
+        return ranges.isEmpty() ? null : coalesce(ranges);
+    }
+
+    // 合并重叠或相邻的分段（RFC 9110 §15.3.7.2 允许不按请求顺序合并），
+    // 否则 bytes=0-,0-,... 这样的请求会让响应体成倍超过文件大小
+    private List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(range -> range.start));
+        List<ByteRange> merged = new ArrayList<>(sorted.size());
+        ByteRange current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            ByteRange next = sorted.get(i);
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    // If-None-Match 优先（弱比较，支持多个 ETag 与 *）；没有时才看 If-Modified-Since（秒级精度）
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (StringUtils.hasText(ifNoneMatch)) {
+            String opaque = etag.substring(etag.indexOf('"'));
+            for (String candidate : ifNoneMatch.split(",")) {
+                String trimmed = candidate.trim();
+                if (trimmed.startsWith("W/")) {
+                    trimmed = trimmed.substring(2);
+                }
+                if (trimmed.equals("*") || trimmed.equals(opaque)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try {
+            long since = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return since != -1 && lastModified / 1000 <= since / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (!StringUtils.hasText(ifRange)) {
+            return true;
+        }
+        String trimmed = ifRange.trim();
+        // If-Range 只允许强比较，弱 ETag 一律视为不匹配，返回完整内容
+        if (trimmed.startsWith("W/")) {
+            return false;
+        }
+        if (trimmed.startsWith("\"")) {
+            return trimmed.equals(etag);
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private String buildETag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * 一次异步输出：容器通知可写（onWritePossible）或限速等待结束时，在 I/O 线程上写出后续分块，
+     * isReady() 为 false 时立即返回，等待容器下一次通知，慢速连接不会积压数据也不占用线程。
+     * 通知计数保证同一连接任意时刻只有一个线程在写。
+     */
+    private class AsyncTransfer implements WriteListener, AsyncListener {
+        private final Content content;
+        private final long end;
+        private final String bandwidthKey;
+        private final LongConsumer written;
+        private final byte[] buffer;
+        private final AtomicInteger signals = new AtomicInteger();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private AsyncContext asyncContext;
+        private ServletOutputStream out;
+        private FileChannel channel;
+        private InputStream stream;
+        private long position;
+        // 已交给容器输出的字节数，传输结束时计入下载字节数
+        private long bytesWritten;
+        // 已读取、等待写出的字节数
+        private int pending;
+        // 限速等待结束的时刻（纳秒），0 表示无需等待
+        private long resumeAt;
+
+        AsyncTransfer(Content content, ByteRange range, String bandwidthKey, LongConsumer written)
+                throws IOException {
+            this.content = content;
+            this.position = range.start;
+            this.end = range.end + 1;
+            this.bandwidthKey = bandwidthKey;
+            this.written = written;
+            this.buffer = new byte[(int) Math.min(chunkSize, range.length())];
+            if (content.localFile != null) {
+                channel = FileChannel.open(content.localFile, StandardOpenOption.READ);
+            } else {
+                stream = blobStore.get(content.key, range.start, range.length());
+            }
+        }
+
+        void start(AsyncContext asyncContext, ServletOutputStream out) {
+            this.asyncContext = asyncContext;
+            this.out = out;
+            // 设置后容器会在连接可写时回调 onWritePossible
+            out.setWriteListener(this);
+        }
+
+        @Override
+        public void onWritePossible() {
+            signal();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            finish(error);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            finish(new TimeoutException("异步下载超时"));
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            finish(event.getThrowable());
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        private void signal() {
+            if (signals.getAndIncrement() == 0) {
+                try {
+                    ioExecutor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    finish(e);
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                try {
+                    if (pump()) {
+                        finish(null);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    finish(e);
+                }
+                missed = signals.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        // 尽可能写出分块；全部写完返回 true
+        private boolean pump() throws IOException {
+            while (!finished.get()) {
+                if (pending == 0) {
+                    if (position >= end) {
+                        return true;
+                    }
+                    pending = read();
+                    position += pending;
+                    if (bandwidthLimiter != null) {
+                        long wait = bandwidthLimiter.reserve(bandwidthKey, pending);
+                        resumeAt = wait > 0 ? System.nanoTime() + wait : 0;
+                    }
+                }
+                if (resumeAt != 0) {
+                    long wait = resumeAt - System.nanoTime();
+                    if (wait > 0) {
+                        ioExecutor.schedule(this::signal, wait, TimeUnit.NANOSECONDS);
+                        return false;
+                    }
+                    resumeAt = 0;
+                }
+                if (!out.isReady()) {
+                    return false;
+                }
+                out.write(buffer, 0, pending);
+                bytesWritten += pending;
+                pending = 0;
+            }
+            return false;
+        }
+
+        private int read() throws IOException {
+            int length = (int) Math.min(buffer.length, end - position);
+            if (channel != null) {
+                ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+                while (target.hasRemaining()) {
+                    if (channel.read(target, position + target.position()) < 0) {
+                        throw new EOFException("文件在传输过程中被截断");
+                    }
+                }
+            } else {
+                int offset = 0;
+                while (offset < length) {
+                    int read = stream.read(buffer, offset, length - offset);
+                    if (read < 0) {
+                        throw new EOFException("文件在传输过程中被截断");
+                    }
+                    offset += read;
+                }
+            }
+            return length;
+        }
+
+        // 结束异步请求；剩余的缓冲数据由容器在 complete 时写出
+        private void finish(Throwable error) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            if (error != null) {
+                logger.warn("异步下载中断: {} ({})", error.getMessage(),
+                        content.key != null ? content.key : content.localFile);
+            }
+            written.accept(bytesWritten);
+            release();
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // 容器已结束该请求
+            }
+        }
+
+        private void release() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                if (stream != null) {
+                    stream.close();
+                }
+            } catch (IOException e) {
+                logger.debug("关闭下载源失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    // 待输出的内容：localFile 为空时按 key 从存储后端读取
+    private static class Content {
+        private final String key;
+        private final Path localFile;
+        private final long length;
+        private final long lastModified;
+
+        Content(String key, Path localFile, long length, long lastModified) {
+            this.key = key;
+            this.localFile = localFile;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+    // 字节范围（闭区间）
+    private static class ByteRange {
+        private final long start;
+        private final long end;
+
+        ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        long length() {
+            return end - start + 1;
+        }
+
+        String toContentRange(long totalLength) {
+            return "bytes " + start + "-" + end + "/" + totalLength;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.Questionnaire;
+import com.example.mentalhealth.repository.FileRecordRepository;
+import com.example.mentalhealth.repository.QuestionnaireRepository;
+import com.example.mentalhealth.util.InvertedIndex;
+import com.example.mentalhealth.util.SearchTokenizer;
+import com.example.mentalhealth.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 问卷与文件的内存全文检索索引
+ * 启动时从数据库重建，上传、更新、删除、发布、归档时增量维护
+ * 中日韩文字按二元组匹配，字母数字词按子串匹配（port 命中 report），与索引就绪前回退的 LIKE 查询一致
+ */
+@Service
+public class SearchIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexService.class);
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    // 字段权重
+    private static final int TITLE_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int TAG_WEIGHT = 2;
+    private static final int FILE_NAME_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    @Autowired
+    private QuestionnaireRepository questionnaireRepository;
+
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+
+    private final InvertedIndex questionnaireIndex = new InvertedIndex();
+    private final InvertedIndex fileIndex = new InvertedIndex();
+
+    // 文档ID -> 所属用户ID，用于"我的"检索过滤
+    private final Map<Long, Long> questionnaireOwners = new ConcurrentHashMap<>();
+    private final Map<Long, Long> fileOwners = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+
+    /**
+     * 索引是否已完成初始化（未就绪时调用方应回退到数据库查询）
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 从数据库重建全部索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        questionnaireIndex.clear();
+        questionnaireOwners.clear();
+        fileIndex.clear();
+        fileOwners.clear();
+
+        long lastId = 0L;
+        List<Questionnaire> questionnaires;
+        do {
+            questionnaires = questionnaireRepository.findActiveAfterId(lastId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+            for (Questionnaire questionnaire : questionnaires) {
+                putQuestionnaire(questionnaire);
+                lastId = questionnaire.getId();
+            }
+        } while (questionnaires.size() == REBUILD_BATCH_SIZE);
+
+        lastId = 0L;
+        List<FileRecord> files;
+        do {
+            files = fileRecordRepository.findActiveAfterId(lastId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+            for (FileRecord file : files) {
+                putFile(file);
+                lastId = file.getId();
+            }
+        } while (files.size() == REBUILD_BATCH_SIZE);
+
+        ready = true;
+        logger.info("检索索引重建完成: 问卷 {} 条, 文件 {} 条, 耗时 {} ms",
+                questionnaireIndex.size(), fileIndex.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 新增或更新问卷索引（在事务提交后生效）
+     */
+    public void indexQuestionnaire(Questionnaire questionnaire) {
+        if (!Boolean.TRUE.equals(questionnaire.getIsActive())) {
+            removeQuestionnaire(questionnaire.getId());
+            return;
+        }
+        Map<String, Integer> terms = questionnaireTerms(questionnaire);
+        Long id = questionnaire.getId();
+        Long ownerId = questionnaire.getCreatedBy().getId();
+        TransactionUtils.runAfterCommit(() -> {
+            questionnaireIndex.put(id, terms);
+            questionnaireOwners.put(id, ownerId);
+        });
+    }
+
+    /**
+     * 删除问卷索引（在事务提交后生效）
+     */
+    public void removeQuestionnaire(Long questionnaireId) {
+        TransactionUtils.runAfterCommit(() -> {
+            questionnaireIndex.remove(questionnaireId);
+            questionnaireOwners.remove(questionnaireId);
+        });
+    }
+
+    /**
+     * 新增或更新文件索引（在事务提交后生效）
+     */
+    public void indexFile(FileRecord fileRecord) {
+        if (!Boolean.TRUE.equals(fileRecord.getIsActive())) {
+            removeFile(fileRecord.getId());
+            return;
+        }
+        Map<String, Integer> terms = fileTerms(fileRecord);
+        Long id = fileRecord.getId();
+        Long ownerId = fileRecord.getUploadedBy().getId();
+        TransactionUtils.runAfterCommit(() -> {
+            fileIndex.put(id, terms);
+            fileOwners.put(id, ownerId);
+        });
+    }
+
+    /**
+     * 删除文件索引（在事务提交后生效）
+     */
+    public void removeFile(Long fileId) {
+        TransactionUtils.runAfterCommit(() -> {
+            fileIndex.remove(fileId);
+            fileOwners.remove(fileId);
+        });
+    }
+
+    /**
+     * 检索问卷
+     * @param keyword 关键词
+     * @param ownerId 限定创建用户（为空表示不限）
+     * @param page 页码，从0开始
+     * @param size 每页大小，小于等于0表示返回全部结果
+     * @return 按相关度排序的问卷ID
+     */
+    public List<Long> searchQuestionnaires(String keyword, Long ownerId, int page, int size) {
+        return search(questionnaireIndex, questionnaireOwners, keyword, ownerId, page, size);
+    }
+
+    /**
+     * 检索用户文件
+     * @return 按相关度排序的文件ID
+     */
+    public List<Long> searchFiles(String keyword, Long ownerId, int page, int size) {
+        return search(fileIndex, fileOwners, keyword, ownerId, page, size);
+    }
+
+    // 私有方法
+
+    // 多个词项须全部命中，但不要求在原文中相邻；字母数字词按子串匹配，与原 LIKE 查询一致
+    private List<Long> search(InvertedIndex index, Map<Long, Long> owners, String keyword,
+                              Long ownerId, int page, int size) {
+        List<String> exactTerms = new ArrayList<>();
+        List<String> substringTerms = new ArrayList<>();
+        for (String token : SearchTokenizer.queryTokens(keyword)) {
+            if (SearchTokenizer.isWordToken(token)) {
+                substringTerms.add(token);
+            } else {
+                exactTerms.add(token);
+            }
+        }
+
+        List<Long> ranked;
+        if (exactTerms.isEmpty() && substringTerms.isEmpty()) {
+            // 空关键词与原 LIKE '%%' 一样返回全部，按ID倒序（新上传的在前）
+            ranked = index.documentIds().stream()
+                    .filter(id -> ownerId == null || ownerId.equals(owners.get(id)))
+                    .sorted(Comparator.reverseOrder())
+                    .collect(Collectors.toList());
+        } else {
+            Map<Long, Double> scores = index.search(exactTerms, substringTerms);
+            ranked = scores.entrySet().stream()
+                    .filter(entry -> ownerId == null || ownerId.equals(owners.get(entry.getKey())))
+                    .sorted(Map.Entry.<Long, Double>comparingByValue(Comparator.reverseOrder())
+                            .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+        }
+
+        if (size <= 0) {
+            return ranked;
+        }
+        int from = Math.max(0, page) * size;
+        if (from >= ranked.size()) {
+            return new ArrayList<>();
+        }
+        return ranked.subList(from, Math.min(ranked.size(), from + size));
+    }
+
+    private void putQuestionnaire(Questionnaire questionnaire) {
+        questionnaireIndex.put(questionnaire.getId(), questionnaireTerms(questionnaire));
+        questionnaireOwners.put(questionnaire.getId(), questionnaire.getCreatedBy().getId());
+    }
+
+    private void putFile(FileRecord fileRecord) {
+        fileIndex.put(fileRecord.getId(), fileTerms(fileRecord));
+        fileOwners.put(fileRecord.getId(), fileRecord.getUploadedBy().getId());
+    }
+
+    private Map<String, Integer> questionnaireTerms(Questionnaire questionnaire) {
+        Map<String, Integer> terms = new HashMap<>();
+        addField(terms, questionnaire.getTitle(), TITLE_WEIGHT);
+        addField(terms, questionnaire.getCategory(), CATEGORY_WEIGHT);
+        addField(terms, questionnaire.getTags(), TAG_WEIGHT);
+        addField(terms, questionnaire.getOriginalName(), FILE_NAME_WEIGHT);
+        addField(terms, questionnaire.getDescription(), DESCRIPTION_WEIGHT);
+        return terms;
+    }
+
+    private Map<String, Integer> fileTerms(FileRecord fileRecord) {
+        Map<String, Integer> terms = new HashMap<>();
+        addField(terms, fileRecord.getOriginalName(), TITLE_WEIGHT);
+        addField(terms, fileRecord.getDescription(), DESCRIPTION_WEIGHT);
+        return terms;
+    }
+
+    private void addField(Map<String, Integer> terms, String text, int weight) {
+        for (String token : SearchTokenizer.indexTokens(text)) {
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+}
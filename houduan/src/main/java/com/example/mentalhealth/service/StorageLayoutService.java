@@ -0,0 +1,53 @@
+package com.example.mentalhealth.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * 上传目录的布局：内容按 SHA-256 前缀分两级目录存放（blobs/ab/cd/abcd...），
+ * 每个目录的条目数保持在几百以内，目录查找和备份不随文件总数变慢
+ */
+@Service
+public class StorageLayoutService {
+    
+    private static final String BLOB_DIR = "blobs";
+    private static final String STAGING_DIR = ".staging";
+    
+    // 分片布局之前的目录：按分类平铺的文件和问卷目录
+    private static final List<String> LEGACY_DIRS = List.of("document", "video", "image", "other", "questionnaires");
+    
+    @Value("${file.upload.dir:uploads}")
+    private String uploadDir;
+    
+    /**
+     * 内容的存储路径
+     */
+    public Path blobPath(String sha256) {
+        return blobRoot().resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+    
+    /**
+     * 暂存目录（与内容目录在同一文件系统，保证重命名是原子的）
+     */
+    public Path stagingDir() {
+        return blobRoot().resolve(STAGING_DIR);
+    }
+    
+    /**
+     * 内容目录根
+     */
+    public Path blobRoot() {
+        return Paths.get(uploadDir, BLOB_DIR);
+    }
+    
+    /**
+     * 分片布局之前的平铺目录，迁移完成后为空
+     */
+    public List<Path> legacyDirectories() {
+        return LEGACY_DIRS.stream().map(dir -> Paths.get(uploadDir, dir)).toList();
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.Questionnaire;
+import com.example.mentalhealth.repository.FileRecordRepository;
+import com.example.mentalhealth.repository.QuestionnaireRepository;
+import com.example.mentalhealth.util.Checksums;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 把按分类平铺的旧文件（content_hash 为空）在线迁移到当前的存储后端（本地时为 blobs/ab/cd/ 布局），每轮处理一批：
+ * 计算摘要登记为内容，改写 file_path 和 content_hash。
+ * 新路径先建好，数据库改写提交后旧路径进入删除队列，到下一轮才删除，
+ * 期间已经读到旧路径的下载仍能打开文件，迁移不需要停机。
+ * 迁移失败的记录在扫描到末尾后从头重试；旧目录中只删除对应记录已改写到新路径的文件。
+ */
+@Service
+public class StorageMigrationService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StorageMigrationService.class);
+    
+    @Autowired
+    private StorageLayoutService storageLayoutService;
+    
+    @Autowired
+    private BlobStoreService blobStoreService;
+    
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+    
+    @Autowired
+    private QuestionnaireRepository questionnaireRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${storage.migration.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${storage.migration.batch-size:200}")
+    private int batchSize;
+    
+    // 只由调度线程访问
+    private final List<Path> pendingDeletes = new ArrayList<>();
+    private long fileCursor = 0;
+    private long questionnaireCursor = 0;
+    
+    @Scheduled(fixedDelayString = "${storage.migration.interval-ms:60000}",
+               initialDelayString = "${storage.migration.initial-delay-ms:30000}")
+    public void migrateBatch() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            // 上一轮已改写引用的旧路径
+            deletePending();
+            int migrated = migrateLegacyFiles() + migrateLegacyQuestionnaires();
+            if (migrated > 0) {
+                logger.info("存储布局迁移：本轮迁移 {} 个文件", migrated);
+            } else if (pendingDeletes.isEmpty()) {
+                sweepLegacyDirectories();
+            }
+        } catch (Exception e) {
+            logger.error("存储布局迁移失败: {}", e.getMessage(), e);
+        }
+    }
+    
+    // 私有方法
+    
+    // 游标只用于分批；扫描到末尾后归零，下一轮从头重试本轮之前失败的记录（已迁移的记录不再被查到）
+    private int migrateLegacyFiles() {
+        List<FileRecord> batch = fileRecordRepository.findLegacyAfterId(fileCursor, PageRequest.of(0, batchSize));
+        int migrated = 0;
+        for (FileRecord fileRecord : batch) {
+            fileCursor = fileRecord.getId();
+            if (migrateLegacyFile(fileRecord.getFilePath(),
+                    (sha256, path) -> fileRecordRepository.assignContent(fileRecord.getId(), sha256, path))) {
+                migrated++;
+            }
+        }
+        if (batch.size() < batchSize) {
+            fileCursor = 0;
+        }
+        return migrated;
+    }
+    
+    private int migrateLegacyQuestionnaires() {
+        List<Questionnaire> batch = questionnaireRepository.findLegacyAfterId(questionnaireCursor,
+                PageRequest.of(0, batchSize));
+        int migrated = 0;
+        for (Questionnaire questionnaire : batch) {
+            questionnaireCursor = questionnaire.getId();
+            if (migrateLegacyFile(questionnaire.getFilePath(),
+                    (sha256, path) -> questionnaireRepository.assignContent(questionnaire.getId(), sha256, path))) {
+                migrated++;
+            }
+        }
+        if (batch.size() < batchSize) {
+            questionnaireCursor = 0;
+        }
+        return migrated;
+    }
+    
+    // 旧文件先链接到暂存路径并在事务外写入存储后端，登记引用和改写引用在同一事务中完成
+    private boolean migrateLegacyFile(String filePath, BiFunction<String, String, Integer> assignContent) {
+        Path source = Paths.get(filePath);
+        if (!Files.isRegularFile(source)) {
+            logger.warn("存储布局迁移：文件不存在，跳过 {}", filePath);
+            return false;
+        }
+        Path staged = null;
+        try {
+            String sha256 = Checksums.sha256(source);
+            long size = Files.size(source);
+            staged = blobStoreService.newStagingFile();
+            linkOrCopy(source, staged);
+            blobStoreService.upload(sha256, size, staged);
+            String target = blobStoreService.location(sha256);
+            Boolean assigned = transactionTemplate.execute(status -> {
+                if (assignContent.apply(sha256, target) == 0) {
+                    return false;
+                }
+                blobStoreService.retain(sha256, size);
+                return true;
+            });
+            if (Boolean.TRUE.equals(assigned)) {
+                pendingDeletes.add(source);
+                return true;
+            }
+            return false;
+        } catch (Exception e) {
+            logger.warn("存储布局迁移失败: {} ({})", filePath, e.getMessage());
+            return false;
+        } finally {
+            deleteQuietly(staged);
+        }
+    }
+    
+    // 链接到暂存路径：同一文件系统内用硬链接（不复制数据），不支持时复制
+    private void linkOrCopy(Path source, Path staged) throws IOException {
+        try {
+            Files.createLink(staged, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(source, staged);
+        }
+    }
+    
+    private void deletePending() {
+        for (Path path : pendingDeletes) {
+            deleteQuietly(path);
+        }
+        pendingDeletes.clear();
+    }
+    
+    // 清理重启前没来得及删除的旧文件：只删除对应记录已登记内容、且没有任何记录仍指向该路径的文件，
+    // 迁移失败或不认识的文件保留
+    private void sweepLegacyDirectories() throws IOException {
+        for (Path dir : storageLayoutService.legacyDirectories()) {
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            List<Path> leftovers;
+            try (Stream<Path> entries = Files.list(dir)) {
+                leftovers = entries.filter(Files::isRegularFile).filter(this::isMigrated)
+                        .limit(batchSize).collect(Collectors.toList());
+            }
+            leftovers.forEach(this::deleteQuietly);
+            if (!leftovers.isEmpty()) {
+                logger.info("存储布局迁移：清理旧目录 {} 中的 {} 个文件", dir, leftovers.size());
+            }
+        }
+    }
+    
+    private boolean isMigrated(Path path) {
+        String storedName = path.getFileName().toString();
+        String filePath = path.toString();
+        return (fileRecordRepository.existsByStoredNameAndContentHashIsNotNull(storedName)
+                || questionnaireRepository.existsByStoredNameAndContentHashIsNotNull(storedName))
+                && !fileRecordRepository.existsByFilePath(filePath)
+                && !questionnaireRepository.existsByFilePath(filePath);
+    }
+    
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("删除文件失败: {} ({})", path, e.getMessage());
+        }
+    }
+}
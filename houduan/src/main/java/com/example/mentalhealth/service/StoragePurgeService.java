@@ -0,0 +1,113 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.Questionnaire;
+import com.example.mentalhealth.repository.FileRecordRepository;
+import com.example.mentalhealth.repository.QuestionnaireRepository;
+import com.example.mentalhealth.repository.QuestionnaireTagRepository;
+import com.example.mentalhealth.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 彻底清除软删除超过保留期的文件记录和问卷
+ * 删除行的同时释放内容引用，最后一个引用清除后由 BlobStoreService 删除物理文件；
+ * 没有内容摘要的旧数据文件单独存放，提交后直接删除。
+ */
+@Service
+public class StoragePurgeService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StoragePurgeService.class);
+    
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+    
+    @Autowired
+    private QuestionnaireRepository questionnaireRepository;
+    
+    @Autowired
+    private QuestionnaireTagRepository questionnaireTagRepository;
+    
+    @Autowired
+    private BlobStoreService blobStoreService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${storage.purge.retention-days:30}")
+    private long retentionDays;
+    
+    @Scheduled(fixedDelayString = "${storage.purge.interval-ms:86400000}",
+               initialDelayString = "${storage.purge.initial-delay-ms:600000}")
+    public void purge() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        try {
+            int files = purgeFiles(cutoff);
+            int questionnaires = purgeQuestionnaires(cutoff);
+            if (files > 0 || questionnaires > 0) {
+                logger.info("已清除软删除的文件 {} 个、问卷 {} 个", files, questionnaires);
+            }
+        } catch (Exception e) {
+            logger.error("清除软删除记录失败: {}", e.getMessage(), e);
+        }
+        blobStoreService.collectGarbage();
+    }
+    
+    // 私有方法
+    
+    private int purgeFiles(LocalDateTime cutoff) {
+        int purged = 0;
+        List<FileRecord> batch;
+        while (!(batch = fileRecordRepository.findTop100ByIsActiveFalseAndUpdatedAtBefore(cutoff)).isEmpty()) {
+            for (FileRecord fileRecord : batch) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    fileRecordRepository.deleteById(fileRecord.getId());
+                    releaseContent(fileRecord.getContentHash(), fileRecord.getFilePath());
+                });
+                purged++;
+            }
+        }
+        return purged;
+    }
+    
+    private int purgeQuestionnaires(LocalDateTime cutoff) {
+        int purged = 0;
+        List<Questionnaire> batch;
+        while (!(batch = questionnaireRepository.findTop100ByIsActiveFalseAndUpdatedAtBefore(cutoff)).isEmpty()) {
+            for (Questionnaire questionnaire : batch) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    questionnaireTagRepository.deleteByQuestionnaireId(questionnaire.getId());
+                    questionnaireRepository.deleteById(questionnaire.getId());
+                    releaseContent(questionnaire.getContentHash(), questionnaire.getFilePath());
+                });
+                purged++;
+            }
+        }
+        return purged;
+    }
+    
+    private void releaseContent(String contentHash, String filePath) {
+        if (contentHash != null) {
+            blobStoreService.release(contentHash);
+            return;
+        }
+        TransactionUtils.runAfterCommit(() -> {
+            try {
+                Files.deleteIfExists(Paths.get(filePath));
+            } catch (IOException e) {
+                logger.warn("删除文件失败: {} ({})", filePath, e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.entity.Questionnaire;
+import com.example.mentalhealth.entity.QuestionnaireTag;
+import com.example.mentalhealth.entity.Tag;
+import com.example.mentalhealth.repository.QuestionnaireRepository;
+import com.example.mentalhealth.repository.QuestionnaireTagRepository;
+import com.example.mentalhealth.repository.TagRepository;
+import com.example.mentalhealth.util.TagBitmapIndex;
+import com.example.mentalhealth.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 标签服务：维护标签字典、questionnaire_tag 关联表以及内存标签位图
+ */
+@Service
+public class TagService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TagService.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    // 与 tags.name 列长度一致
+    private static final int MAX_TAG_LENGTH = 100;
+
+    // 并发上传创建同名标签时只保留一行，另一方重新读取
+    private static final String INSERT_TAG_SQL = "INSERT IGNORE INTO tags (name, created_at) VALUES (?, ?)";
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private QuestionnaireTagRepository questionnaireTagRepository;
+
+    @Autowired
+    private QuestionnaireRepository questionnaireRepository;
+
+    @Value("${questionnaire.tags.migrate-on-startup:true}")
+    private boolean migrateOnStartup;
+
+    private final TagBitmapIndex bitmapIndex = new TagBitmapIndex();
+
+    private volatile boolean ready = false;
+
+    /**
+     * 解析逗号分隔的标签字符串（兼容中文逗号），去空格、转小写并去重
+     */
+    public Set<String> parseTags(String tags) {
+        Set<String> result = new LinkedHashSet<>();
+        if (!StringUtils.hasText(tags)) {
+            return result;
+        }
+        for (String tag : tags.split("[,，]")) {
+            String normalized = tag.trim().toLowerCase(Locale.ROOT);
+            if (!normalized.isEmpty()) {
+                result.add(normalized);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 校验用户提交的标签
+     * @throws IllegalArgumentException 标签超过长度限制
+     */
+    public void validateTags(String tags) {
+        for (String tag : parseTags(tags)) {
+            if (tag.length() > MAX_TAG_LENGTH) {
+                throw new IllegalArgumentException("标签长度不能超过 " + MAX_TAG_LENGTH + " 个字符: " + tag);
+            }
+        }
+    }
+
+    /**
+     * 同步问卷的标签关联，并在事务提交后更新位图
+     */
+    @Transactional
+    public void syncTags(Questionnaire questionnaire) {
+        questionnaireTagRepository.deleteByQuestionnaireId(questionnaire.getId());
+        syncTagsInternal(questionnaire);
+        refreshIndex(questionnaire);
+    }
+
+    /**
+     * 仅更新位图中的状态和分类（标签未变化时使用，例如发布、归档）
+     */
+    public void refreshIndex(Questionnaire questionnaire) {
+        refreshIndex(questionnaire, parseTags(questionnaire.getTags()));
+    }
+
+    /**
+     * 从位图中移除问卷（软删除时使用，关联行保留）
+     */
+    public void removeFromIndex(Long questionnaireId) {
+        TransactionUtils.runAfterCommit(() -> bitmapIndex.remove(questionnaireId));
+    }
+
+    /**
+     * 多标签组合查询
+     * @param tags 标签
+     * @param matchAll true 为 AND，false 为 OR
+     * @param status 问卷状态（可选）
+     * @param category 问卷分类（可选）
+     * @param creatorId 只返回该用户创建的问卷（可选）
+     * @return 命中的问卷ID（新建在前）；索引未就绪时返回 null
+     */
+    public List<Long> findQuestionnaireIds(Collection<String> tags, boolean matchAll,
+                                           Questionnaire.QuestionnaireStatus status, String category,
+                                           Long creatorId) {
+        if (!ready) {
+            return null;
+        }
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String tag : tags) {
+            normalized.addAll(parseTags(tag));
+        }
+        return bitmapIndex.query(normalized, matchAll, status != null ? status.name() : null,
+                StringUtils.hasText(category) ? category : null, creatorId);
+    }
+
+    /**
+     * 获取所有标签及其问卷数量
+     */
+    public Map<String, Integer> getTagCounts() {
+        return bitmapIndex.tagCounts();
+    }
+
+    /**
+     * 启动时迁移旧的逗号分隔标签并重建位图
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (migrateOnStartup) {
+            migrateLegacyTags();
+        }
+        rebuildIndex();
+    }
+
+    /**
+     * 把 questionnaires.tags 字符串列迁移到 questionnaire_tag 关联表（只处理尚无关联的问卷，可重复执行）
+     */
+    public void migrateLegacyTags() {
+        int migrated = 0;
+        long lastId = 0L;
+        List<Questionnaire> batch;
+        do {
+            batch = questionnaireRepository.findActiveAfterId(lastId, PageRequest.of(0, BATCH_SIZE));
+            List<Long> ids = batch.stream().map(Questionnaire::getId).collect(Collectors.toList());
+            Set<Long> linked = ids.isEmpty() ? Set.of() : questionnaireTagRepository.findTagNamesByQuestionnaireIds(ids)
+                    .stream()
+                    .map(row -> (Long) row[0])
+                    .collect(Collectors.toSet());
+            for (Questionnaire questionnaire : batch) {
+                lastId = questionnaire.getId();
+                if (!linked.contains(questionnaire.getId()) && !parseTags(questionnaire.getTags()).isEmpty()) {
+                    transactionTemplate.executeWithoutResult(status -> syncTagsInternal(questionnaire));
+                    migrated++;
+                }
+            }
+        } while (batch.size() == BATCH_SIZE);
+
+        if (migrated > 0) {
+            logger.info("旧标签迁移完成: {} 条问卷", migrated);
+        }
+    }
+
+    /**
+     * 从关联表重建内存位图
+     */
+    public void rebuildIndex() {
+        long start = System.currentTimeMillis();
+        bitmapIndex.clear();
+        long lastId = 0L;
+        List<Questionnaire> batch;
+        do {
+            batch = questionnaireRepository.findActiveAfterId(lastId, PageRequest.of(0, BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<Long> ids = batch.stream().map(Questionnaire::getId).collect(Collectors.toList());
+            Map<Long, Set<String>> tagsById = new HashMap<>();
+            for (Object[] row : questionnaireTagRepository.findTagNamesByQuestionnaireIds(ids)) {
+                tagsById.computeIfAbsent((Long) row[0], k -> new LinkedHashSet<>()).add((String) row[1]);
+            }
+            for (Questionnaire questionnaire : batch) {
+                bitmapIndex.put(questionnaire.getId(),
+                        tagsById.getOrDefault(questionnaire.getId(), Set.of()),
+                        questionnaire.getStatus().name(),
+                        questionnaire.getCategory(),
+                        questionnaire.getCreatedBy().getId());
+                lastId = questionnaire.getId();
+            }
+        } while (batch.size() == BATCH_SIZE);
+
+        ready = true;
+        logger.info("标签位图重建完成，耗时 {} ms", System.currentTimeMillis() - start);
+    }
+
+    // 私有方法
+
+    private void syncTagsInternal(Questionnaire questionnaire) {
+        Set<String> tagNames = new LinkedHashSet<>();
+        for (String tag : parseTags(questionnaire.getTags())) {
+            // 旧数据中的超长标签无法写入字典，跳过
+            if (tag.length() > MAX_TAG_LENGTH) {
+                logger.warn("跳过超长标签: 问卷 {}, 标签 {}", questionnaire.getId(), tag);
+            } else {
+                tagNames.add(tag);
+            }
+        }
+        Map<String, Tag> tags = resolveTags(tagNames);
+        List<QuestionnaireTag> links = tags.values().stream()
+                .map(tag -> new QuestionnaireTag(questionnaire.getId(), tag.getId()))
+                .collect(Collectors.toList());
+        questionnaireTagRepository.saveAll(links);
+    }
+
+    private Map<String, Tag> resolveTags(Set<String> tagNames) {
+        Map<String, Tag> tags = new HashMap<>();
+        if (tagNames.isEmpty()) {
+            return tags;
+        }
+        for (Tag tag : tagRepository.findByNameIn(tagNames)) {
+            tags.put(tag.getName(), tag);
+        }
+        List<String> missing = new ArrayList<>();
+        for (String name : tagNames) {
+            if (!tags.containsKey(name)) {
+                missing.add(name);
+            }
+        }
+        if (missing.isEmpty()) {
+            return tags;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_TAG_SQL, missing, missing.size(), (ps, name) -> {
+            ps.setString(1, name);
+            ps.setTimestamp(2, now);
+        });
+        for (Tag tag : tagRepository.findByNameInForUpdate(missing)) {
+            tags.put(tag.getName(), tag);
+        }
+        if (tags.size() < tagNames.size()) {
+            throw new IllegalStateException("创建标签失败: " + missing);
+        }
+        return tags;
+    }
+
+    private void refreshIndex(Questionnaire questionnaire, Set<String> tagNames) {
+        Long id = questionnaire.getId();
+        String status = questionnaire.getStatus().name();
+        String category = questionnaire.getCategory();
+        Long creatorId = questionnaire.getCreatedBy().getId();
+        TransactionUtils.runAfterCommit(() -> bitmapIndex.put(id, tagNames, status, category, creatorId));
+    }
+}
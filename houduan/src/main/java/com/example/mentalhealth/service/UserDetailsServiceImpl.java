@@ -2,25 +2,77 @@ package com.example.mentalhealth.service;
 
 import com.example.mentalhealth.entity.User;
 import com.example.mentalhealth.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
     
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${auth.principal-cache.max-size:10000}")
+    private long principalCacheMaxSize;
+    
+    @Value("${auth.principal-cache.ttl-seconds:30}")
+    private long principalCacheTtlSeconds;
+    
+    // 用户名 -> 已认证请求使用的 User 主体；资料、角色、启用状态变更时调用 evictUser
+    private Cache<String, User> principals;
+    
+    @PostConstruct
+    void init() {
+        principals = Caffeine.newBuilder()
+                .maximumSize(principalCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(principalCacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "principals");
+    }
+    
+    /**
+     * 从数据库加载用户（登录认证使用，始终读取最新数据并刷新主体缓存）
+     */
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("用户不存在: " + username));
+        principals.put(username, user);
         
         return user;
     }
+    
+    /**
+     * 加载请求主体（JWT 请求使用），缓存未命中时才查询数据库
+     */
+    public UserDetails loadCachedUserByUsername(String username) throws UsernameNotFoundException {
+        User cached = principals.getIfPresent(username);
+        if (cached != null) {
+            return cached;
+        }
+        return loadUserByUsername(username);
+    }
+    
+    /**
+     * 使缓存的主体失效，下次请求重新从数据库加载
+     */
+    public void evictUser(String username) {
+        principals.invalidate(username);
+    }
 }
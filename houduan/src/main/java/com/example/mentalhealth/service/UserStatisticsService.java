@@ -0,0 +1,214 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.Questionnaire;
+import com.example.mentalhealth.entity.UserStatistics;
+import com.example.mentalhealth.repository.UserStatisticsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 用户统计汇总行（user_statistics）的增量维护
+ * 开启 statistics.materialized.enabled 后，上传、删除、发布、归档在同一事务中更新汇总行，
+ * 统计接口直接读取；汇总行不存在时从明细表补建。
+ * 增量更新和补建都先锁住 users 中该用户的行：补建等到进行中的增量事务提交后才读取明细，
+ * 补建期间开始的增量事务等补建提交后再更新汇总行，明细变更不会既被补建漏掉又没有增量。
+ * 新增明细的事务在 INSERT 之前调用 lockUser，先取行锁再写明细（见 lockUser）。
+ */
+@Service
+public class UserStatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserStatisticsService.class);
+
+    // 增量更新和补建共用的用户行锁
+    private static final String LOCK_USER_SQL = "SELECT id FROM users WHERE id = ? FOR UPDATE";
+
+    // 持有用户行锁后从明细表汇总（一致性读，不加锁）
+    private static final String AGGREGATE_SQL =
+            "SELECT f.file_count, f.document_count, f.video_count, f.image_count, f.total_file_size, "
+            + "q.questionnaire_count, q.draft_count, q.published_count, q.archived_count "
+            + "FROM (SELECT COUNT(*) AS file_count, "
+            + "COALESCE(SUM(CASE WHEN category = 'DOCUMENT' THEN 1 ELSE 0 END), 0) AS document_count, "
+            + "COALESCE(SUM(CASE WHEN category = 'VIDEO' THEN 1 ELSE 0 END), 0) AS video_count, "
+            + "COALESCE(SUM(CASE WHEN category = 'IMAGE' THEN 1 ELSE 0 END), 0) AS image_count, "
+            + "COALESCE(SUM(file_size), 0) AS total_file_size "
+            + "FROM file_records WHERE uploaded_by = ? AND is_active = TRUE) f, "
+            + "(SELECT COUNT(*) AS questionnaire_count, "
+            + "COALESCE(SUM(CASE WHEN status = 'DRAFT' THEN 1 ELSE 0 END), 0) AS draft_count, "
+            + "COALESCE(SUM(CASE WHEN status = 'PUBLISHED' THEN 1 ELSE 0 END), 0) AS published_count, "
+            + "COALESCE(SUM(CASE WHEN status = 'ARCHIVED' THEN 1 ELSE 0 END), 0) AS archived_count "
+            + "FROM questionnaires WHERE created_by = ? AND is_active = TRUE) q";
+
+    // 持有用户行锁时汇总行不会被并发补建，INSERT IGNORE 只防御锁之外的写入
+    private static final String INSERT_SQL =
+            "INSERT IGNORE INTO user_statistics (user_id, file_count, document_count, video_count, image_count, "
+            + "total_file_size, questionnaire_count, draft_count, published_count, archived_count, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserStatisticsRepository userStatisticsRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${statistics.materialized.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 是否启用汇总行
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 启用时清空上次运行留下的汇总行并按需补建，避免读到此前关闭期间未维护的旧数据；未启用时不访问汇总表
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (enabled) {
+            int deleted = jdbcTemplate.update("DELETE FROM user_statistics");
+            if (deleted > 0) {
+                logger.info("统计汇总已启用，已清空 {} 条汇总行，读取时重新补建", deleted);
+            }
+        }
+    }
+
+    /**
+     * 读取用户的汇总行，不存在时从明细表补建
+     */
+    public UserStatistics getOrBuild(Long userId) {
+        Optional<UserStatistics> statistics = userStatisticsRepository.findById(userId);
+        if (statistics.isPresent()) {
+            return statistics.get();
+        }
+        transactionTemplate.executeWithoutResult(status -> build(userId));
+        return userStatisticsRepository.findById(userId)
+                .orElseThrow(() -> new IllegalStateException("统计汇总补建失败: " + userId));
+    }
+
+    /**
+     * 在插入引用该用户的明细行之前取用户行锁（与增量更新、补建是同一把锁）；未启用时不加锁
+     * MySQL 插入明细行时对 users 行加外键共享锁，之后再申请排他锁会与同一用户并发上传的事务互相等待而死锁，
+     * 先取排他锁则并发事务在这里排队
+     */
+    public void lockUser(Long userId) {
+        if (enabled) {
+            jdbcTemplate.queryForList(LOCK_USER_SQL, Long.class, userId);
+        }
+    }
+
+    public void fileAdded(FileRecord fileRecord) {
+        applyFileDelta(fileRecord, 1);
+    }
+
+    public void fileRemoved(FileRecord fileRecord) {
+        applyFileDelta(fileRecord, -1);
+    }
+
+    public void questionnaireAdded(Questionnaire questionnaire) {
+        applyQuestionnaireDelta(questionnaire.getCreatedBy().getId(), 1, null, questionnaire.getStatus());
+    }
+
+    public void questionnaireRemoved(Questionnaire questionnaire) {
+        applyQuestionnaireDelta(questionnaire.getCreatedBy().getId(), -1, questionnaire.getStatus(), null);
+    }
+
+    public void questionnaireStatusChanged(Questionnaire questionnaire, Questionnaire.QuestionnaireStatus previousStatus) {
+        if (previousStatus != questionnaire.getStatus()) {
+            applyQuestionnaireDelta(questionnaire.getCreatedBy().getId(), 0, previousStatus, questionnaire.getStatus());
+        }
+    }
+
+    // 私有方法
+
+    private void build(Long userId) {
+        if (jdbcTemplate.queryForList(LOCK_USER_SQL, Long.class, userId).isEmpty()) {
+            throw new IllegalStateException("用户不存在: " + userId);
+        }
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(AGGREGATE_SQL, userId, userId);
+        Map<String, Object> row = rows.get(0);
+        jdbcTemplate.update(INSERT_SQL, userId, row.get("file_count"), row.get("document_count"),
+                row.get("video_count"), row.get("image_count"), row.get("total_file_size"),
+                row.get("questionnaire_count"), row.get("draft_count"), row.get("published_count"),
+                row.get("archived_count"), Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private void applyFileDelta(FileRecord fileRecord, int sign) {
+        if (!enabled) {
+            return;
+        }
+        long size = fileRecord.getFileSize() != null ? fileRecord.getFileSize() : 0L;
+        StringBuilder sql = new StringBuilder("UPDATE user_statistics SET file_count = file_count + ?, ")
+                .append("total_file_size = total_file_size + ?");
+        String categoryColumn = categoryColumn(fileRecord.getCategory());
+        if (categoryColumn != null) {
+            sql.append(", ").append(categoryColumn).append(" = ").append(categoryColumn).append(" + ?");
+        }
+        sql.append(", updated_at = ? WHERE user_id = ?");
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Long userId = fileRecord.getUploadedBy().getId();
+        // 先取用户行锁，与补建互斥（新增明细时已在 INSERT 之前取得）；汇总行不存在时更新 0 行，之后读取时补建
+        lockUser(userId);
+        if (categoryColumn != null) {
+            jdbcTemplate.update(sql.toString(), sign, sign * size, sign, now, userId);
+        } else {
+            jdbcTemplate.update(sql.toString(), sign, sign * size, now, userId);
+        }
+    }
+
+    private void applyQuestionnaireDelta(Long userId, int countDelta,
+                                         Questionnaire.QuestionnaireStatus removedStatus,
+                                         Questionnaire.QuestionnaireStatus addedStatus) {
+        if (!enabled) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("UPDATE user_statistics SET questionnaire_count = questionnaire_count + ")
+                .append(countDelta);
+        if (removedStatus != null) {
+            String column = statusColumn(removedStatus);
+            sql.append(", ").append(column).append(" = ").append(column).append(" - 1");
+        }
+        if (addedStatus != null) {
+            String column = statusColumn(addedStatus);
+            sql.append(", ").append(column).append(" = ").append(column).append(" + 1");
+        }
+        sql.append(", updated_at = ? WHERE user_id = ?");
+        // 同 applyFileDelta
+        lockUser(userId);
+        jdbcTemplate.update(sql.toString(), Timestamp.valueOf(LocalDateTime.now()), userId);
+    }
+
+    private String categoryColumn(FileRecord.FileCategory category) {
+        return switch (category) {
+            case DOCUMENT -> "document_count";
+            case VIDEO -> "video_count";
+            case IMAGE -> "image_count";
+            case OTHER -> null;
+        };
+    }
+
+    private String statusColumn(Questionnaire.QuestionnaireStatus status) {
+        return switch (status) {
+            case DRAFT -> "draft_count";
+            case PUBLISHED -> "published_count";
+            case ARCHIVED -> "archived_count";
+        };
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.event.DownloadCountsFlushedEvent;
+import com.example.mentalhealth.event.QuestionnaireChangedEvent;
+import com.example.mentalhealth.util.DownloadUrlSigner;
+import com.example.mentalhealth.util.TransactionUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 列表视图的版本号：每个视图（某用户的文件列表、已发布问卷目录）一个内存计数器，
+ * 相关数据提交修改后递增。列表接口用版本号生成 ETag / Last-Modified，
+ * 客户端携带的校验器未变化时直接返回 304，不查询数据库。
+ * 版本号只在本节点内递增；ETag 同时包含签名链接窗口，其他节点的修改最迟在一个窗口后可见。
+ */
+@Service
+public class ViewVersionService {
+    
+    public static final String PUBLISHED_CATALOG = "questionnaires:published";
+    
+    private static final String USER_FILES_PREFIX = "files:";
+    
+    // 启动标识：重启后计数器从头开始，旧 ETag 不会误匹配
+    private final String instanceId = Long.toString(System.currentTimeMillis(), 36);
+    
+    // 全局递增序号，被淘汰后重建的视图也不会复用旧版本号
+    private final AtomicLong sequence = new AtomicLong();
+    
+    @Autowired
+    private DownloadUrlSigner downloadUrlSigner;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${view-version.max-size:100000}")
+    private long maxSize;
+    
+    private Cache<String, Version> versions;
+    
+    @PostConstruct
+    public void init() {
+        versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "viewVersions");
+    }
+    
+    /**
+     * 用户文件列表视图
+     */
+    public static String userFiles(Long userId) {
+        return USER_FILES_PREFIX + userId;
+    }
+    
+    /**
+     * 当前事务提交后递增视图版本；没有事务时立即递增
+     * 必须在提交之后递增，否则并发读取可能用新版本号缓存旧数据
+     */
+    public void bump(String view) {
+        TransactionUtils.runAfterCommit(() -> versions.asMap().compute(view,
+                (key, previous) -> new Version(sequence.incrementAndGet(), nextLastModified(previous))));
+    }
+    
+    /**
+     * 按视图版本处理条件请求：校验器匹配时写入 304 并返回 true；
+     * 否则在响应中设置 ETag / Last-Modified，调用方继续查询并输出内容。
+     * 必须在查询数据之前调用，查询期间发生的修改会让下一次请求得到新版本。
+     */
+    public boolean checkNotModified(String view, ServletWebRequest request) {
+        Version version = versions.get(view, key -> new Version(sequence.incrementAndGet(), nextLastModified(null)));
+        long windowStart = downloadUrlSigner.currentWindowStart();
+        String etag = "W/\"" + instanceId + "-" + version.number + "-" + Long.toString(windowStart / 1000, 36) + "\"";
+        long lastModified = Math.max(version.lastModified, windowStart);
+        HttpServletResponse response = request.getResponse();
+        if (response != null) {
+            // 允许浏览器保存，但每次使用前都要重新校验
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        }
+        return request.checkNotModified(etag, lastModified);
+    }
+    
+    /**
+     * 已发布问卷变更提交后目录视图过期
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQuestionnaireChanged(QuestionnaireChangedEvent event) {
+        if (event.affectsPublished()) {
+            bump(PUBLISHED_CATALOG);
+        }
+    }
+    
+    /**
+     * 下载次数写回后目录中的下载次数和热门排序都已变化
+     */
+    @EventListener
+    public void onDownloadCountsFlushed(DownloadCountsFlushedEvent event) {
+        bump(PUBLISHED_CATALOG);
+    }
+    
+    // 私有方法
+    
+    // Last-Modified 只有秒级精度：新时间取整到下一秒，并且至少比上一版本晚一秒，
+    // 保证同一秒内的多次修改不会让 If-Modified-Since 误判为未修改
+    private long nextLastModified(Version previous) {
+        long now = (System.currentTimeMillis() / 1000 + 1) * 1000;
+        return previous != null ? Math.max(now, previous.lastModified + 1000) : now;
+    }
+    
+    private static class Version {
+        private final long number;
+        private final long lastModified;
+        
+        Version(long number, long lastModified) {
+            this.number = number;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.mentalhealth.storage;
+
+/**
+ * 存储内容的元数据
+ */
+public class BlobStat {
+
+    private final long size;
+    private final long lastModified;
+
+    public BlobStat(long size, long lastModified) {
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * 最后修改时间（毫秒时间戳）
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.mentalhealth.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * 内容存储后端：按键（内容的 SHA-256）存取不可变的二进制内容
+ * 由 storage.backend 选择实现：local（本地文件系统，默认）或 s3（S3 协议的对象存储，如 MinIO）
+ */
+public interface BlobStore {
+
+    /**
+     * 写入本地文件的内容；大文件分段上传
+     * 实现可以直接移动源文件（本地存储同一文件系统内的重命名），调用方之后删除残留的源文件
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * 流式写入内容，不在本地落盘；超过分段大小时按分段依次上传
+     * @param size 内容长度，未知时传 -1
+     */
+    void put(String key, InputStream content, long size) throws IOException;
+
+    /**
+     * 读取完整内容
+     * @throws java.nio.file.NoSuchFileException 内容不存在
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * 读取 [offset, offset + length) 范围内的内容
+     * @throws java.nio.file.NoSuchFileException 内容不存在
+     */
+    InputStream get(String key, long offset, long length) throws IOException;
+
+    /**
+     * 删除内容，不存在时返回 false
+     */
+    boolean delete(String key) throws IOException;
+
+    /**
+     * 内容的大小和修改时间，不存在时返回空
+     */
+    Optional<BlobStat> stat(String key) throws IOException;
+
+    /**
+     * 内容位置的描述（写入记录的 file_path，便于排查）
+     */
+    String location(String key);
+
+    /**
+     * 内容在本地文件系统中的路径，下载时可交给容器 sendfile；对象存储返回空
+     */
+    default Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.mentalhealth.storage;
+
+import com.example.mentalhealth.service.StorageLayoutService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * 本地文件系统存储：内容存放在 {file.upload.dir}/blobs/ab/cd/ 下（布局见 StorageLayoutService）
+ * 写入先落到暂存目录再原子重命名，读到一半的下载不会看到不完整的文件
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStore implements BlobStore {
+
+    @Autowired
+    private StorageLayoutService storageLayoutService;
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = storageLayoutService.blobPath(key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // 源文件在其他文件系统上，先复制到暂存目录
+            try (InputStream in = Files.newInputStream(source)) {
+                put(key, in, Files.size(source));
+            }
+        }
+    }
+
+    @Override
+    public void put(String key, InputStream content, long size) throws IOException {
+        Path target = storageLayoutService.blobPath(key);
+        Path stagingDir = storageLayoutService.stagingDir();
+        Files.createDirectories(stagingDir);
+        Files.createDirectories(target.getParent());
+        Path temp = stagingDir.resolve(UUID.randomUUID().toString());
+        try {
+            Files.copy(content, temp);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(storageLayoutService.blobPath(key));
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(storageLayoutService.blobPath(key), StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return Files.deleteIfExists(storageLayoutService.blobPath(key));
+    }
+
+    @Override
+    public Optional<BlobStat> stat(String key) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(storageLayoutService.blobPath(key),
+                    BasicFileAttributes.class);
+            return Optional.of(new BlobStat(attributes.size(), attributes.lastModifiedTime().toMillis()));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public String location(String key) {
+        return storageLayoutService.blobPath(key).toString();
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.of(storageLayoutService.blobPath(key));
+    }
+
+    // 最多读取 remaining 字节，关闭时关闭底层文件
+    private static class BoundedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
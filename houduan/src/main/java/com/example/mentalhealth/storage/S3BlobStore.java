@@ -0,0 +1,239 @@
+package com.example.mentalhealth.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * S3 协议的对象存储（AWS S3、MinIO 等），多个节点共享同一个桶
+ * 超过分段大小的内容用 multipart upload 按分段流式上传，内存中最多缓存一个分段；
+ * 读取用 Range 请求，断点续传和多段下载只拉取需要的字节。
+ * 本地测试可以指向 MinIO：storage.s3.endpoint=http://localhost:9000，path-style-access=true，create-bucket=true
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+public class S3BlobStore implements BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3BlobStore.class);
+
+    // S3 要求除最后一段外每段至少 5MB
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    @Value("${storage.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${storage.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${storage.s3.bucket:mental-health}")
+    private String bucket;
+
+    @Value("${storage.s3.access-key:}")
+    private String accessKey;
+
+    @Value("${storage.s3.secret-key:}")
+    private String secretKey;
+
+    @Value("${storage.s3.path-style-access:true}")
+    private boolean pathStyleAccess;
+
+    @Value("${storage.s3.key-prefix:blobs/}")
+    private String keyPrefix;
+
+    @Value("${storage.s3.part-size:16777216}")
+    private long partSize;
+
+    @Value("${storage.s3.create-bucket:false}")
+    private boolean createBucket;
+
+    private S3Client client;
+
+    @PostConstruct
+    public void init() {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(pathStyleAccess).build());
+        if (StringUtils.hasText(endpoint)) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        // 未配置密钥时使用默认凭证链（环境变量、实例角色等）
+        if (StringUtils.hasText(accessKey)) {
+            builder.credentialsProvider(StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(accessKey, secretKey)));
+        }
+        client = builder.build();
+        partSize = Math.max(partSize, MIN_PART_SIZE);
+
+        if (createBucket) {
+            try {
+                client.headBucket(request -> request.bucket(bucket));
+            } catch (NoSuchBucketException e) {
+                client.createBucket(request -> request.bucket(bucket));
+                logger.info("已创建存储桶: {}", bucket);
+            }
+        }
+        logger.info("内容存储使用 S3 后端: {} (bucket: {})", StringUtils.hasText(endpoint) ? endpoint : region, bucket);
+    }
+
+    @PreDestroy
+    public void close() {
+        client.close();
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        long size = Files.size(source);
+        if (size <= partSize) {
+            execute(() -> client.putObject(request -> request.bucket(bucket).key(objectKey(key)),
+                    RequestBody.fromFile(source)));
+            return;
+        }
+        try (InputStream in = Files.newInputStream(source)) {
+            put(key, in, size);
+        }
+    }
+
+    @Override
+    public void put(String key, InputStream content, long size) throws IOException {
+        byte[] first = content.readNBytes((int) partSize);
+        if (first.length < partSize) {
+            execute(() -> client.putObject(request -> request.bucket(bucket).key(objectKey(key)),
+                    RequestBody.fromBytes(first)));
+            return;
+        }
+        putMultipart(objectKey(key), first, content);
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        try {
+            return client.getObject(request -> request.bucket(bucket).key(objectKey(key)));
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(location(key));
+        } catch (SdkException e) {
+            throw new IOException("读取存储内容失败: " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        String range = "bytes=" + offset + "-" + (offset + length - 1);
+        try {
+            return client.getObject(request -> request.bucket(bucket).key(objectKey(key)).range(range));
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(location(key));
+        } catch (SdkException e) {
+            throw new IOException("读取存储内容失败: " + key, e);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        // DeleteObject 对不存在的对象同样返回成功，先确认是否存在
+        if (stat(key).isEmpty()) {
+            return false;
+        }
+        execute(() -> client.deleteObject(request -> request.bucket(bucket).key(objectKey(key))));
+        return true;
+    }
+
+    @Override
+    public Optional<BlobStat> stat(String key) throws IOException {
+        try {
+            HeadObjectResponse head = client.headObject(request -> request.bucket(bucket).key(objectKey(key)));
+            return Optional.of(new BlobStat(head.contentLength(), head.lastModified().toEpochMilli()));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw new IOException("查询存储内容失败: " + key, e);
+        } catch (SdkException e) {
+            throw new IOException("查询存储内容失败: " + key, e);
+        }
+    }
+
+    @Override
+    public String location(String key) {
+        return "s3://" + bucket + "/" + objectKey(key);
+    }
+
+    // 私有方法
+
+    // 与本地布局相同（ab/cd/abcd...），已有的 blobs 目录可以直接同步到桶中；哈希前缀让请求均匀分布到各个分区
+    private String objectKey(String key) {
+        return keyPrefix + key.substring(0, 2) + "/" + key.substring(2, 4) + "/" + key;
+    }
+
+    private void putMultipart(String objectKey, byte[] first, InputStream content) throws IOException {
+        String uploadId = client.createMultipartUpload(request -> request.bucket(bucket).key(objectKey)).uploadId();
+        List<CompletedPart> parts = new ArrayList<>();
+        try {
+            byte[] part = first;
+            int partNumber = 1;
+            while (part.length > 0) {
+                int number = partNumber++;
+                byte[] body = part;
+                String eTag = client.uploadPart(request -> request.bucket(bucket).key(objectKey)
+                                .uploadId(uploadId).partNumber(number).contentLength((long) body.length),
+                        RequestBody.fromBytes(body)).eTag();
+                parts.add(CompletedPart.builder().partNumber(number).eTag(eTag).build());
+                part = content.readNBytes((int) partSize);
+            }
+            client.completeMultipartUpload(request -> request.bucket(bucket).key(objectKey).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build()));
+        } catch (IOException | RuntimeException e) {
+            // 未完成的分段会一直占用空间，失败时主动中止
+            try {
+                client.abortMultipartUpload(request -> request.bucket(bucket).key(objectKey).uploadId(uploadId));
+            } catch (SdkException abortError) {
+                logger.warn("中止分段上传失败: {} ({})", objectKey, abortError.getMessage());
+            }
+            if (e instanceof SdkException) {
+                throw new IOException("上传存储内容失败: " + objectKey, e);
+            }
+            throw e;
+        }
+    }
+
+    private void execute(Runnable operation) throws IOException {
+        try {
+            operation.run();
+        } catch (SdkException e) {
+            throw new IOException("存储操作失败", e);
+        }
+    }
+}
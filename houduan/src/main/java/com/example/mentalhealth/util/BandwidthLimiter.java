@@ -0,0 +1,51 @@
+package com.example.mentalhealth.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按键（用户）限速：同一个键的所有连接共享一个速率（GCRA 令牌桶）。
+ * 采用预约方式，调用方先预约要发送的字节数，按返回的等待时间延后发送，不阻塞线程。
+ */
+public final class BandwidthLimiter {
+
+    private final long bytesPerSecond;
+    private final long burstNanos;
+
+    // 键 -> 理论到达时间（纳秒），即按限定速率发完已预约字节的时刻
+    private final Cache<String, AtomicLong> buckets = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    /**
+     * @param bytesPerSecond 每个键的速率
+     * @param burstBytes 空闲后允许立即发送的字节数
+     */
+    public BandwidthLimiter(long bytesPerSecond, long burstBytes) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("限速必须大于0");
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.burstNanos = burstBytes * 1_000_000_000L / bytesPerSecond;
+    }
+
+    /**
+     * 预约发送 bytes 字节
+     * @return 发送前需要等待的纳秒数，0 表示可以立即发送
+     */
+    public long reserve(String key, int bytes) {
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong(System.nanoTime()));
+        long cost = bytes * 1_000_000_000L / bytesPerSecond;
+        while (true) {
+            long now = System.nanoTime();
+            long previous = bucket.get();
+            long next = Math.max(previous, now) + cost;
+            if (bucket.compareAndSet(previous, next)) {
+                return Math.max(0, next - now - burstNanos);
+            }
+        }
+    }
+}
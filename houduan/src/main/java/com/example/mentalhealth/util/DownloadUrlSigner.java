@@ -0,0 +1,158 @@
+package com.example.mentalhealth.util;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * 带 HMAC 签名、限时有效的下载链接
+ * 链接中带有内容的 SHA-256、文件名、MIME 类型、过期时间（和可选的问卷 ID，用于下载计数），
+ * 下载时只在内存中验签，不查询用户和文件记录。
+ * 签名密钥与 JWT 密钥分开：未配置 download.signing-secret 时用 HKDF 从 jwt.secret 按用途标签派生，
+ * 两种签名不会互相冒用。
+ */
+@Component
+public class DownloadUrlSigner {
+
+    public static final String PATH_PREFIX = "/api/blobs/";
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadUrlSigner.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    // HKDF 派生签名密钥时的用途标签，更换后所有已发出的链接失效
+    private static final String KEY_PURPOSE = "mental-health/download-url-signing/v1";
+
+    // 过期时间向上对齐到这个粒度，同一时段生成的链接相同，浏览器和 CDN 可以复用缓存
+    private static final long EXPIRY_ALIGN_SECONDS = 300;
+
+    @Value("${download.signing-secret:}")
+    private String signingSecret;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    @Value("${download.base-url:http://localhost:${server.port:8080}}")
+    private String baseUrl;
+
+    @Value("${download.url-ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    private SecretKeySpec signingKey;
+
+    @PostConstruct
+    void init() {
+        if (StringUtils.hasText(signingSecret)) {
+            signingKey = new SecretKeySpec(signingSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        } else {
+            signingKey = new SecretKeySpec(deriveKey(jwtSecret.getBytes(StandardCharsets.UTF_8)), ALGORITHM);
+            logger.info("未配置 download.signing-secret，下载链接签名密钥由 jwt.secret 派生");
+        }
+        // 去掉末尾的斜杠，拼接路径时不出现 //
+        while (baseUrl.endsWith("/")) {
+            baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
+        }
+    }
+
+    /**
+     * 对外访问的根地址（来自 download.base-url）
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * 当前链接窗口的开始时间（毫秒）：窗口内生成的链接相同，进入下一个窗口后链接的过期时间随之变化，
+     * 包含链接的列表响应以此作为校验器的一部分
+     */
+    public long currentWindowStart() {
+        long now = System.currentTimeMillis() / 1000;
+        return ((now + ttlSeconds) / EXPIRY_ALIGN_SECONDS * EXPIRY_ALIGN_SECONDS - ttlSeconds) * 1000;
+    }
+
+    /**
+     * 生成签名下载链接
+     * @param sha256 内容的 SHA-256
+     * @param questionnaireId 下载时计数的问卷 ID，普通文件传 null
+     */
+    public String sign(String sha256, String filename, String contentType, Long questionnaireId) {
+        long now = System.currentTimeMillis() / 1000;
+        long expires = ((now + ttlSeconds) / EXPIRY_ALIGN_SECONDS + 1) * EXPIRY_ALIGN_SECONDS;
+        String type = contentType != null ? contentType : "";
+        StringBuilder url = new StringBuilder(baseUrl).append(PATH_PREFIX).append(sha256)
+                .append("?name=").append(encode(filename))
+                .append("&type=").append(encode(type))
+                .append("&expires=").append(expires);
+        if (questionnaireId != null) {
+            url.append("&qid=").append(questionnaireId);
+        }
+        url.append("&sig=").append(signature(sha256, filename, type, expires, questionnaireId));
+        return url.toString();
+    }
+
+    /**
+     * 校验签名和有效期
+     * @return 签名正确且未过期时返回 true
+     */
+    public boolean verify(String sha256, String filename, String contentType, long expires,
+                          Long questionnaireId, String sig) {
+        if (!Checksums.isSha256(sha256) || !StringUtils.hasText(sig) || filename == null) {
+            return false;
+        }
+        if (expires < System.currentTimeMillis() / 1000) {
+            return false;
+        }
+        String expected = signature(sha256, filename, contentType != null ? contentType : "", expires,
+                questionnaireId);
+        // 定长比较，避免通过响应时间逐字节猜出签名
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                sig.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // 私有方法
+
+    private String signature(String sha256, String filename, String contentType, long expires,
+                             Long questionnaireId) {
+        String payload = sha256 + '\n' + filename + '\n' + contentType + '\n' + expires + '\n'
+                + (questionnaireId != null ? questionnaireId : "");
+        try {
+            // Mac 实例不是线程安全的，每次新建（密钥只解析一次）
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(signingKey);
+            byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("下载链接签名失败", e);
+        }
+    }
+
+    // HKDF-SHA256（RFC 5869）：空盐提取，以用途标签扩展出 32 字节密钥
+    private static byte[] deriveKey(byte[] inputKey) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(new byte[32], ALGORITHM));
+            byte[] pseudoRandomKey = mac.doFinal(inputKey);
+            mac.init(new SecretKeySpec(pseudoRandomKey, ALGORITHM));
+            mac.update(KEY_PURPOSE.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 1);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("派生下载链接签名密钥失败", e);
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
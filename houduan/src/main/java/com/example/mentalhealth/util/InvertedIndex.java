@@ -0,0 +1,223 @@
+package com.example.mentalhealth.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 线程安全的内存倒排索引（词项 -> 文档ID -> 权重）。
+ * 另维护 n-gram -> 词项 的索引（n 为 1~3），子串查询先按 n-gram 取候选词项，不再遍历全部词项。
+ */
+public class InvertedIndex {
+
+    private static final int GRAM_SIZE = 3;
+
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<String, Set<String>> grams = new HashMap<>();
+    private final Map<Long, Map<String, Integer>> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 新增或替换文档
+     * @param docId 文档ID
+     * @param termWeights 词项及其权重
+     */
+    public void put(Long docId, Map<String, Integer> termWeights) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(docId);
+            Map<String, Integer> terms = new HashMap<>(termWeights);
+            documents.put(docId, terms);
+            for (Map.Entry<String, Integer> entry : terms.entrySet()) {
+                Map<Long, Integer> posting = postings.get(entry.getKey());
+                if (posting == null) {
+                    posting = new HashMap<>();
+                    postings.put(entry.getKey(), posting);
+                    addGrams(entry.getKey());
+                }
+                posting.put(docId, entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除文档
+     */
+    public void remove(Long docId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            grams.clear();
+            documents.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 全部文档ID
+     */
+    public List<Long> documentIds() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(documents.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 检索：所有词项都必须命中（AND），按 权重 × IDF 累加打分
+     * @param exactTerms 精确匹配的词项
+     * @param substringTerms 子串匹配的词项（命中任一包含它的索引词即可，如 port 命中 report）
+     * @return 文档ID -> 得分
+     */
+    public Map<Long, Double> search(Collection<String> exactTerms, Collection<String> substringTerms) {
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            int totalDocs = Math.max(1, documents.size());
+
+            for (String term : exactTerms) {
+                Map<Long, Integer> matched = postings.get(term);
+                scores = intersect(scores, matched, totalDocs);
+                if (scores.isEmpty()) {
+                    return scores;
+                }
+            }
+            for (String part : substringTerms) {
+                Map<Long, Integer> matched = new HashMap<>();
+                for (String term : termsContaining(part)) {
+                    postings.get(term).forEach((docId, weight) -> matched.merge(docId, weight, Math::max));
+                }
+                scores = intersect(scores, matched, totalDocs);
+                if (scores.isEmpty()) {
+                    return scores;
+                }
+            }
+            return scores != null ? scores : new HashMap<>();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 不超过 GRAM_SIZE 的子串本身就是 n-gram；更长的子串取各三元组候选集的交集，再确认包含关系
+    private Collection<String> termsContaining(String part) {
+        if (part.isEmpty()) {
+            return postings.keySet();
+        }
+        if (part.length() <= GRAM_SIZE) {
+            return grams.getOrDefault(part, Set.of());
+        }
+        Set<String> smallest = null;
+        for (int i = 0; i + GRAM_SIZE <= part.length(); i++) {
+            Set<String> candidates = grams.get(part.substring(i, i + GRAM_SIZE));
+            if (candidates == null) {
+                return Set.of();
+            }
+            if (smallest == null || candidates.size() < smallest.size()) {
+                smallest = candidates;
+            }
+        }
+        List<String> terms = new ArrayList<>();
+        for (String term : smallest) {
+            if (term.contains(part)) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private void addGrams(String term) {
+        for (String gram : gramsOf(term)) {
+            grams.computeIfAbsent(gram, k -> new HashSet<>()).add(term);
+        }
+    }
+
+    private void removeGrams(String term) {
+        for (String gram : gramsOf(term)) {
+            Set<String> terms = grams.get(gram);
+            if (terms != null) {
+                terms.remove(term);
+                if (terms.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    private Set<String> gramsOf(String term) {
+        Set<String> result = new HashSet<>();
+        for (int n = 1; n <= GRAM_SIZE; n++) {
+            for (int i = 0; i + n <= term.length(); i++) {
+                result.add(term.substring(i, i + n));
+            }
+        }
+        return result;
+    }
+
+    private Map<Long, Double> intersect(Map<Long, Double> scores, Map<Long, Integer> matched, int totalDocs) {
+        Map<Long, Double> result = new HashMap<>();
+        if (matched == null || matched.isEmpty()) {
+            return result;
+        }
+
+        double idf = Math.log(1.0 + (double) totalDocs / matched.size());
+        if (scores == null) {
+            matched.forEach((docId, weight) -> result.put(docId, weight * idf));
+        } else {
+            scores.forEach((docId, score) -> {
+                Integer weight = matched.get(docId);
+                if (weight != null) {
+                    result.put(docId, score + weight * idf);
+                }
+            });
+        }
+        return result;
+    }
+
+    private void removeInternal(Long docId) {
+        Map<String, Integer> terms = documents.remove(docId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Map<Long, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(docId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                    removeGrams(term);
+                }
+            }
+        }
+    }
+}
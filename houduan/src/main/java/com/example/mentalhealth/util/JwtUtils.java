@@ -1,16 +1,29 @@
 package com.example.mentalhealth.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtils {
@@ -23,8 +36,49 @@ public class JwtUtils {
     @Value("${jwt.expiration}")
     private long jwtExpirationMs;
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // 签名密钥和解析器启动时构建一次，二者都是线程安全的
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+    
+    // 已验证 token 的 SHA-256 -> 解析后的 claims，每条在 token 自身的过期时间失效
+    private Cache<String, Claims> verifiedClaims;
+    
+    // 验证结果计数：jwt.validations{outcome}
+    private Counter validCounter;
+    private Counter cachedCounter;
+    private Counter emptyCounter;
+    private Counter invalidSignatureCounter;
+    private Counter malformedCounter;
+    private Counter expiredCounter;
+    private Counter unsupportedCounter;
+    private Counter invalidCounter;
+    
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new ClaimsExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, "jwtClaims");
+        validCounter = outcomeCounter("valid");
+        cachedCounter = outcomeCounter("cached");
+        emptyCounter = outcomeCounter("empty");
+        invalidSignatureCounter = outcomeCounter("invalid_signature");
+        malformedCounter = outcomeCounter("malformed");
+        expiredCounter = outcomeCounter("expired");
+        unsupportedCounter = outcomeCounter("unsupported");
+        invalidCounter = outcomeCounter("invalid");
     }
     
     /**
@@ -39,7 +93,7 @@ public class JwtUtils {
                 .setSubject(userPrincipal.getUsername())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
@@ -49,12 +103,11 @@ public class JwtUtils {
      * @return 用户名
      */
     public String getUserNameFromJwtToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        Claims claims = getVerifiedClaims(token);
+        if (claims == null) {
+            throw new JwtException("Invalid JWT token");
+        }
+        return claims.getSubject();
     }
     
     /**
@@ -63,23 +116,91 @@ public class JwtUtils {
      * @return 是否有效
      */
     public boolean validateJwtToken(String authToken) {
+        return getVerifiedClaims(authToken) != null;
+    }
+    
+    /**
+     * 验证并解析JWT token，同一 token 在过期前只验签一次
+     * @param token JWT token
+     * @return 解析后的 claims，token 无效时返回 null
+     */
+    public Claims getVerifiedClaims(String token) {
+        if (token == null || token.isEmpty()) {
+            logger.error("JWT claims string is empty");
+            emptyCounter.increment();
+            return null;
+        }
+        String key = sha256(token);
+        Claims cached = verifiedClaims.getIfPresent(key);
+        if (cached != null) {
+            cachedCounter.increment();
+            return cached;
+        }
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(authToken);
-            return true;
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            verifiedClaims.put(key, claims);
+            validCounter.increment();
+            return claims;
         } catch (SecurityException e) {
             logger.error("Invalid JWT signature: {}", e.getMessage());
+            invalidSignatureCounter.increment();
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
+            malformedCounter.increment();
         } catch (ExpiredJwtException e) {
             logger.error("JWT token is expired: {}", e.getMessage());
+            expiredCounter.increment();
         } catch (UnsupportedJwtException e) {
             logger.error("JWT token is unsupported: {}", e.getMessage());
+            unsupportedCounter.increment();
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
+            emptyCounter.increment();
+        } catch (JwtException e) {
+            logger.error("Invalid JWT token: {}", e.getMessage());
+            invalidCounter.increment();
+        }
+        return null;
+    }
+    
+    // 私有方法
+    
+    private Counter outcomeCounter(String outcome) {
+        return Counter.builder("jwt.validations")
+                .description("JWT 验证结果（cached 为命中已验证缓存）")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+    
+    private static String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    // 缓存条目在 token 的 exp 时刻失效；没有 exp 的 token 按签发有效期缓存
+    private class ClaimsExpiry implements Expiry<String, Claims> {
+        
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            long remainingMs = expiration != null
+                    ? expiration.getTime() - System.currentTimeMillis()
+                    : jwtExpirationMs;
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+        }
+        
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+        
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
         }
-        return false;
     }
 }
\ No newline at end of file
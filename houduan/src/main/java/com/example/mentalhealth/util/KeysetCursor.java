@@ -0,0 +1,77 @@
+package com.example.mentalhealth.util;
+
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 游标分页位置：排序时间 + ID，编码为不透明的 URL 安全字符串
+ */
+public final class KeysetCursor {
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * 每页大小上限，超过时按上限返回
+     */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final LocalDateTime time;
+    private final Long id;
+
+    public KeysetCursor(LocalDateTime time, Long id) {
+        this.time = time;
+        this.id = id;
+    }
+
+    public LocalDateTime getTime() {
+        return time;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * 校验每页大小并限制在上限以内
+     * @throws IllegalArgumentException 每页大小不大于0
+     */
+    public static int pageSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("每页大小必须大于0");
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * 编码为续传令牌
+     */
+    public String encode() {
+        String raw = time + String.valueOf(SEPARATOR) + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析续传令牌；为空时返回 null（第一页）
+     * @throws IllegalArgumentException 令牌格式不正确
+     */
+    public static KeysetCursor decode(String token) {
+        if (!StringUtils.hasText(token)) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator <= 0) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.mentalhealth.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 全文检索分词工具：中日韩文字按单字+二元组切分，字母数字按单词切分（小写）
+ */
+public final class SearchTokenizer {
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 建索引使用的分词：CJK 连续片段同时输出单字和二元组，便于单字查询
+     */
+    public static List<String> indexTokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, tokens, true);
+        return tokens;
+    }
+
+    /**
+     * 查询使用的分词：CJK 片段长度为1时输出单字，否则只输出二元组
+     */
+    public static List<String> queryTokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, tokens, false);
+        return tokens;
+    }
+
+    /**
+     * 是否为字母数字单词（查询时按子串匹配）
+     */
+    public static boolean isWordToken(String token) {
+        return !token.isEmpty() && !isCjk(token.codePointAt(0));
+    }
+
+    private static void tokenize(String text, List<String> tokens, boolean forIndex) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int cp = text.codePointAt(i);
+            if (isCjk(cp)) {
+                int start = i;
+                while (i < length && isCjk(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                addCjkRun(text.substring(start, i), tokens, forIndex);
+            } else if (Character.isLetterOrDigit(cp)) {
+                int start = i;
+                while (i < length) {
+                    int next = text.codePointAt(i);
+                    if (!Character.isLetterOrDigit(next) || isCjk(next)) {
+                        break;
+                    }
+                    i += Character.charCount(next);
+                }
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+    }
+
+    private static void addCjkRun(String run, List<String> tokens, boolean forIndex) {
+        int[] cps = run.codePoints().toArray();
+        if (cps.length == 1 || forIndex) {
+            for (int cp : cps) {
+                tokens.add(new String(Character.toChars(cp)));
+            }
+        }
+        for (int j = 0; j + 1 < cps.length; j++) {
+            tokens.add(new String(cps, j, 2));
+        }
+    }
+
+    private static boolean isCjk(int cp) {
+        if (Character.isIdeographic(cp)) {
+            return true;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.mentalhealth.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUpload;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.UploadContext;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 流式 multipart 上传：边解析请求体边写入最终目录下的临时文件，
+ * 过程中校验大小并计算 SHA-256，提交时原子重命名为目标文件。
+ * 请求体不经过容器的临时文件，每个字节只落盘一次。
+ */
+public final class StreamingMultipartUpload implements Closeable {
+
+    // 客户端可选提供的 SHA-256（十六进制），与服务端计算结果不一致时拒绝
+    public static final String CHECKSUM_HEADER = "X-Content-SHA256";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FIELD_SIZE = 64 * 1024;
+    private static final int MAX_PARTS = 20;
+    private static final String PART_SUFFIX = ".part";
+
+    private final Map<String, String> fields = new HashMap<>();
+    private String originalName;
+    private String contentType;
+    private long size;
+    private String sha256;
+    private Path target;
+    private Path partFile;
+    private boolean committed;
+
+    private StreamingMultipartUpload() {
+    }
+
+    /**
+     * 解析请求体，把文件部分写入 targetResolver 给出的目标路径旁的临时文件
+     * @param filePartName 文件字段名
+     * @param maxFileSize 文件大小上限，超过时中断并删除临时文件
+     * @param targetResolver 原始文件名 -> 最终存储路径（文件类型不允许时抛出 IllegalArgumentException）
+     * @throws IllegalArgumentException 请求格式不正确、缺少文件、文件为空、过大或校验和不一致
+     */
+    public static StreamingMultipartUpload receive(HttpServletRequest request, String filePartName,
+                                                   long maxFileSize, Function<String, Path> targetResolver)
+            throws IOException {
+        String requestContentType = request.getContentType();
+        if (requestContentType == null || !requestContentType.toLowerCase().startsWith("multipart/")) {
+            throw new IllegalArgumentException("请求必须是 multipart/form-data");
+        }
+
+        FileUpload fileUpload = new FileUpload();
+        fileUpload.setHeaderEncoding(StandardCharsets.UTF_8.name());
+        fileUpload.setFileCountMax(MAX_PARTS);
+        // 超过上限时 commons-fileupload 直接关闭底层流，不再读完剩余的请求体
+        fileUpload.setFileSizeMax(maxFileSize);
+
+        StreamingMultipartUpload upload = new StreamingMultipartUpload();
+        try {
+            FileItemIterator items = fileUpload.getItemIterator(new ServletUploadContext(request));
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (item.isFormField()) {
+                    upload.fields.put(item.getFieldName(), readField(item));
+                } else if (filePartName.equals(item.getFieldName()) && upload.partFile == null) {
+                    upload.writeFile(item, maxFileSize, targetResolver);
+                } else {
+                    // 其他文件部分直接丢弃
+                    item.openStream().transferTo(OutputStream.nullOutputStream());
+                }
+            }
+        } catch (FileUploadException e) {
+            upload.close();
+            throw rejected(e, maxFileSize);
+        } catch (FileUploadBase.FileUploadIOException e) {
+            upload.close();
+            throw rejected((FileUploadException) e.getCause(), maxFileSize);
+        } catch (IOException | RuntimeException e) {
+            upload.close();
+            throw e;
+        }
+
+        if (upload.partFile == null) {
+            throw new IllegalArgumentException("文件不能为空");
+        }
+        String expected = request.getHeader(CHECKSUM_HEADER);
+        if (StringUtils.hasText(expected) && !expected.trim().equalsIgnoreCase(upload.sha256)) {
+            upload.close();
+            throw new IllegalArgumentException("文件校验和不一致");
+        }
+        return upload;
+    }
+
+    /**
+     * 原子重命名为目标文件
+     */
+    public void commit() throws IOException {
+        Files.move(partFile, target, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    /**
+     * 未提交时删除临时文件
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed && partFile != null) {
+            Files.deleteIfExists(partFile);
+        }
+    }
+
+    public String getField(String name) {
+        return fields.get(name);
+    }
+
+    public String getOriginalName() {
+        return originalName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public Path getTarget() {
+        return target;
+    }
+
+    // 私有方法
+
+    private void writeFile(FileItemStream item, long maxFileSize, Function<String, Path> targetResolver)
+            throws IOException {
+        originalName = StringUtils.getFilename(StringUtils.cleanPath(item.getName() != null ? item.getName() : ""));
+        if (!StringUtils.hasText(originalName)) {
+            throw new IllegalArgumentException("文件名不能为空");
+        }
+        contentType = item.getContentType();
+        target = targetResolver.apply(originalName);
+        partFile = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+
+        MessageDigest digest = Checksums.newSha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new DigestInputStream(item.openStream(), digest);
+             OutputStream out = Files.newOutputStream(partFile, StandardOpenOption.CREATE_NEW,
+                     StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                size += read;
+                out.write(buffer, 0, read);
+            }
+        }
+        if (size == 0) {
+            throw new IllegalArgumentException("文件不能为空");
+        }
+        sha256 = Checksums.hex(digest);
+    }
+
+    private static IllegalArgumentException rejected(FileUploadException e, long maxFileSize) {
+        if (e instanceof FileUploadBase.FileSizeLimitExceededException) {
+            return new IllegalArgumentException("文件大小不能超过 " + (maxFileSize / 1024 / 1024) + "MB");
+        }
+        return new IllegalArgumentException("上传请求解析失败: " + e.getMessage());
+    }
+
+    private static String readField(FileItemStream item) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        try (InputStream in = item.openStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (out.size() + read > MAX_FIELD_SIZE) {
+                    throw new IllegalArgumentException("表单字段过长: " + item.getFieldName());
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    // 把 Jakarta Servlet 请求适配为 commons-fileupload 的上传上下文
+    private static class ServletUploadContext implements UploadContext {
+
+        private final HttpServletRequest request;
+
+        ServletUploadContext(HttpServletRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public long contentLength() {
+            return request.getContentLengthLong();
+        }
+
+        @Override
+        public String getCharacterEncoding() {
+            return request.getCharacterEncoding();
+        }
+
+        @Override
+        public String getContentType() {
+            return request.getContentType();
+        }
+
+        @Override
+        @Deprecated
+        public int getContentLength() {
+            return request.getContentLength();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return request.getInputStream();
+        }
+    }
+}
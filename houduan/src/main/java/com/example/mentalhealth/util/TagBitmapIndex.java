@@ -0,0 +1,195 @@
+package com.example.mentalhealth.util;
+
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 标签位图索引：标签 / 状态 / 分类 / 创建者 -> 问卷ID位图，支持多标签 AND / OR 组合过滤。
+ * 使用 Roaring 压缩位图，每个位图的内存只与成员数量相关，与问卷ID的最大值无关；
+ * 查询时直接对位图做交并运算得到新位图，不复制整份位图。
+ */
+public class TagBitmapIndex {
+
+    // 查询时只读，不会被修改
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final Map<String, RoaringBitmap> tagBitmaps = new HashMap<>();
+    private final Map<String, RoaringBitmap> statusBitmaps = new HashMap<>();
+    private final Map<String, RoaringBitmap> categoryBitmaps = new HashMap<>();
+    private final Map<Long, RoaringBitmap> creatorBitmaps = new HashMap<>();
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 新增或替换问卷
+     */
+    public void put(Long id, Collection<String> tags, String status, String category, Long creatorId) {
+        int bit = toBit(id);
+        lock.writeLock().lock();
+        try {
+            removeInternal(bit);
+            Entry entry = new Entry(new LinkedHashSet<>(tags), status, category, creatorId);
+            entries.put(bit, entry);
+            all.add(bit);
+            for (String tag : entry.tags) {
+                tagBitmaps.computeIfAbsent(tag, k -> new RoaringBitmap()).add(bit);
+            }
+            if (status != null) {
+                statusBitmaps.computeIfAbsent(status, k -> new RoaringBitmap()).add(bit);
+            }
+            if (category != null) {
+                categoryBitmaps.computeIfAbsent(category, k -> new RoaringBitmap()).add(bit);
+            }
+            if (creatorId != null) {
+                creatorBitmaps.computeIfAbsent(creatorId, k -> new RoaringBitmap()).add(bit);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(toBit(id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            tagBitmaps.clear();
+            statusBitmaps.clear();
+            categoryBitmaps.clear();
+            creatorBitmaps.clear();
+            all.clear();
+            entries.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 组合查询
+     * @param tags 标签（为空表示不按标签过滤）
+     * @param matchAll true 表示所有标签都必须命中，false 表示命中任一标签
+     * @param status 状态（为空表示不限）
+     * @param category 分类（为空表示不限）
+     * @param creatorId 创建者ID（为空表示不限）
+     * @return 命中的问卷ID，按ID倒序（新建在前）
+     */
+    public List<Long> query(Collection<String> tags, boolean matchAll, String status, String category,
+                            Long creatorId) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = all;
+            if (tags != null && !tags.isEmpty()) {
+                RoaringBitmap matched = null;
+                for (String tag : tags) {
+                    RoaringBitmap bitmap = tagBitmaps.getOrDefault(tag, EMPTY);
+                    if (matched == null) {
+                        matched = bitmap;
+                    } else if (matchAll) {
+                        matched = RoaringBitmap.and(matched, bitmap);
+                    } else {
+                        matched = RoaringBitmap.or(matched, bitmap);
+                    }
+                }
+                result = matched;
+            }
+            if (status != null) {
+                result = RoaringBitmap.and(result, statusBitmaps.getOrDefault(status, EMPTY));
+            }
+            if (category != null) {
+                result = RoaringBitmap.and(result, categoryBitmaps.getOrDefault(category, EMPTY));
+            }
+            if (creatorId != null) {
+                result = RoaringBitmap.and(result, creatorBitmaps.getOrDefault(creatorId, EMPTY));
+            }
+
+            List<Long> ids = new ArrayList<>(result.getCardinality());
+            IntIterator iterator = result.getReverseIntIterator();
+            while (iterator.hasNext()) {
+                ids.add((long) iterator.next());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取各标签的问卷数量
+     */
+    public Map<String, Integer> tagCounts() {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> counts = new HashMap<>();
+            tagBitmaps.forEach((tag, bitmap) -> counts.put(tag, bitmap.getCardinality()));
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeInternal(int bit) {
+        Entry entry = entries.remove(bit);
+        if (entry == null) {
+            return;
+        }
+        all.remove(bit);
+        for (String tag : entry.tags) {
+            clearBit(tagBitmaps, tag, bit);
+        }
+        clearBit(statusBitmaps, entry.status, bit);
+        clearBit(categoryBitmaps, entry.category, bit);
+        clearBit(creatorBitmaps, entry.creatorId, bit);
+    }
+
+    private <K> void clearBit(Map<K, RoaringBitmap> bitmaps, K key, int bit) {
+        if (key == null) {
+            return;
+        }
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.remove(bit);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private int toBit(Long id) {
+        if (id == null || id < 0 || id >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("问卷ID超出位图索引范围: " + id);
+        }
+        return id.intValue();
+    }
+
+    private static class Entry {
+        private final Set<String> tags;
+        private final String status;
+        private final String category;
+        private final Long creatorId;
+
+        Entry(Set<String> tags, String status, String category, Long creatorId) {
+            this.tags = tags;
+            this.status = status;
+            this.category = category;
+            this.creatorId = creatorId;
+        }
+    }
+}
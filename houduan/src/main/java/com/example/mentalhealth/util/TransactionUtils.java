@@ -0,0 +1,29 @@
+package com.example.mentalhealth.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 事务相关工具方法
+ */
+public final class TransactionUtils {
+    
+    private TransactionUtils() {
+    }
+    
+    /**
+     * 在当前事务提交后执行；没有活动事务时立即执行
+     */
+    public static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
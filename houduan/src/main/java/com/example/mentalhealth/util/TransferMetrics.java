@@ -0,0 +1,58 @@
+package com.example.mentalhealth.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 上传、下载字节数计数器：storage.transfer.bytes{direction, category}
+ * category 为文件分类（DOCUMENT、VIDEO、IMAGE、OTHER），问卷为 QUESTIONNAIRE，
+ * 签名链接只知道内容哈希，记为 UNKNOWN
+ */
+@Component
+public class TransferMetrics {
+
+    public static final String QUESTIONNAIRE = "QUESTIONNAIRE";
+    public static final String UNKNOWN = "UNKNOWN";
+
+    private static final String METRIC_NAME = "storage.transfer.bytes";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 记录上传内容的字节数（复用已存储内容的秒传不计）
+     */
+    public void recordUpload(String category, long bytes) {
+        record("upload", category, bytes);
+    }
+
+    /**
+     * 记录下载响应体实际写出的字节数（异步下载在传输结束时记录，中断时只计已写出部分；304、416 不计）
+     */
+    public void recordDownload(String category, long bytes) {
+        record("download", category, bytes);
+    }
+
+    // 私有方法
+
+    private void record(String direction, String category, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        String tag = category != null ? category : UNKNOWN;
+        counters.computeIfAbsent(direction + ':' + tag, key -> Counter.builder(METRIC_NAME)
+                        .description("上传、下载的内容字节数")
+                        .baseUnit("bytes")
+                        .tag("direction", direction)
+                        .tag("category", tag)
+                        .register(meterRegistry))
+                .increment(bytes);
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.mentalhealth.benchmark;
+
+import com.example.mentalhealth.service.RangeDownloadService;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.http11.Http11NioProtocol;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 慢速下载并发基准：对比 Tomcat 平台线程池、虚拟线程执行器和异步输出（平台线程池 + download.async）
+ * 在 1k~10k 个慢速客户端同时下载时的吞吐与首字节延迟。
+ * 服务端是内嵌 Tomcat + RangeDownloadService.writeFile，关闭 sendfile，模拟对象存储后端逐段阻塞拷贝的情况；
+ * 客户端每个连接一个虚拟线程，用很小的接收缓冲区按固定速率读取，使服务端写出时阻塞。
+ *
+ * 不是单元测试（类名不以 Test 结尾，mvn test 不会执行）。运行方式（JDK 21，先调高文件句柄上限 ulimit -n 65536）：
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *      -Dbench.concurrency=1000,2000,5000,10000 com.example.mentalhealth.benchmark.SlowDownloadBenchmark
+ * </pre>
+ * 可选参数：bench.modes（platform,virtual,async）、bench.file-size（字节，默认 1MB）、
+ * bench.client-rate（每个客户端每秒读取字节数，默认 256KB）、bench.max-threads（平台线程池大小，默认 200，与 Tomcat 默认值相同）
+ */
+public class SlowDownloadBenchmark {
+
+    private static final int CLIENT_RECEIVE_BUFFER = 16 * 1024;
+    private static final int READ_BUFFER = 8 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 60_000;
+
+    private final long fileSize = Long.getLong("bench.file-size", 1024 * 1024);
+    private final long clientRate = Long.getLong("bench.client-rate", 256 * 1024);
+    private final int maxThreads = Integer.getInteger("bench.max-threads", 200);
+
+    public static void main(String[] args) throws Exception {
+        List<String> modes = Arrays.asList(System.getProperty("bench.modes", "platform,virtual,async").split(","));
+        int[] levels = Arrays.stream(System.getProperty("bench.concurrency", "1000,2000,5000,10000").split(","))
+                .mapToInt(level -> Integer.parseInt(level.trim()))
+                .toArray();
+        new SlowDownloadBenchmark().run(modes, levels);
+    }
+
+    private void run(List<String> modes, int[] levels) throws Exception {
+        Path workDir = Files.createTempDirectory("slow-download-bench");
+        Path file = workDir.resolve("video.mp4");
+        Files.write(file, new byte[(int) fileSize]);
+
+        System.out.printf("文件 %d KB，客户端速率 %d KB/s，平台线程池 %d%n", fileSize / 1024, clientRate / 1024, maxThreads);
+        System.out.printf("%-9s %8s %8s %8s %10s %10s %10s %10s %10s%n", "mode", "clients", "ok", "failed",
+                "wall(s)", "dl/s", "MB/s", "ttfb p50", "ttfb p99");
+        for (String mode : modes) {
+            Tomcat tomcat = startServer(workDir.resolve("tomcat-" + mode.trim()), file, mode.trim());
+            try {
+                int port = tomcat.getConnector().getLocalPort();
+                for (int level : levels) {
+                    long start = System.nanoTime();
+                    Sample[] samples = runLevel(port, level);
+                    report(mode.trim(), samples, System.nanoTime() - start);
+                }
+            } finally {
+                tomcat.stop();
+                tomcat.destroy();
+            }
+        }
+    }
+
+    // 私有方法
+
+    private Tomcat startServer(Path baseDir, Path file, String mode) throws LifecycleException {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+
+        Connector connector = new Connector(Http11NioProtocol.class.getName());
+        connector.setPort(0);
+        connector.setProperty("useSendfile", "false");
+        connector.setProperty("maxConnections", "-1");
+        connector.setProperty("acceptCount", "10000");
+        connector.setProperty("maxThreads", String.valueOf(maxThreads));
+        connector.setProperty("connectionTimeout", "600000");
+        if ("virtual".equals(mode)) {
+            // 与 VirtualThreadConfig 相同的执行器
+            connector.getProtocolHandler().setExecutor(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-vt-", 0).factory()));
+        }
+        tomcat.setConnector(connector);
+
+        RangeDownloadService downloadService = new RangeDownloadService();
+        ReflectionTestUtils.setField(downloadService, "chunkSize", 65536);
+        ReflectionTestUtils.setField(downloadService, "asyncEnabled", "async".equals(mode));
+        ReflectionTestUtils.setField(downloadService, "ioThreads", 4);
+        downloadService.init();
+
+        Context context = tomcat.addContext("", null);
+        Wrapper servlet = Tomcat.addServlet(context, "download", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                downloadService.writeFile(file, "video.mp4", "video/mp4", request, response);
+            }
+        });
+        servlet.setAsyncSupported(true);
+        context.addServletMappingDecoded("/download", "download");
+        tomcat.start();
+        return tomcat;
+    }
+
+    private Sample[] runLevel(int port, int clients) throws Exception {
+        List<Future<Sample>> futures = new ArrayList<>(clients);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                futures.add(executor.submit(() -> fetch(port)));
+            }
+        }
+        Sample[] samples = new Sample[clients];
+        for (int i = 0; i < clients; i++) {
+            samples[i] = futures.get(i).get();
+        }
+        return samples;
+    }
+
+    private Sample fetch(int port) {
+        long begin = System.nanoTime();
+        long firstByte = -1;
+        long received = 0;
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(CLIENT_RECEIVE_BUFFER);
+            socket.connect(new InetSocketAddress("127.0.0.1", port), CONNECT_TIMEOUT_MS);
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /download HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[READ_BUFFER];
+            long firstByteAt = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (firstByte < 0) {
+                    firstByteAt = System.nanoTime();
+                    firstByte = firstByteAt - begin;
+                }
+                received += read;
+                // 按客户端速率限速：读到第 n 个字节的时间不早于 n / rate
+                long due = firstByteAt + received * 1_000_000_000L / clientRate;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(Duration.ofNanos(wait));
+                }
+            }
+        } catch (IOException e) {
+            return new Sample(firstByte, received, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Sample(firstByte, received, false);
+        }
+        // 响应头也计入 received，收满文件大小即视为成功
+        return new Sample(firstByte, received, received >= fileSize);
+    }
+
+    private void report(String mode, Sample[] samples, long wall) {
+        int clients = samples.length;
+        int ok = 0;
+        long bytes = 0;
+        long[] ttfb = new long[clients];
+        int measured = 0;
+        for (int i = 0; i < clients; i++) {
+            Sample sample = samples[i];
+            if (sample.ok) {
+                ok++;
+            }
+            bytes += sample.bytes;
+            if (sample.firstByte >= 0) {
+                ttfb[measured++] = sample.firstByte;
+            }
+        }
+        long[] sorted = Arrays.copyOf(ttfb, measured);
+        Arrays.sort(sorted);
+        double seconds = wall / 1e9;
+        System.out.printf("%-9s %8d %8d %8d %10.1f %10.1f %10.1f %8dms %8dms%n", mode, clients, ok, clients - ok,
+                seconds, ok / seconds, bytes / seconds / 1024 / 1024,
+                percentile(sorted, 0.50) / 1_000_000, percentile(sorted, 0.99) / 1_000_000);
+    }
+
+    private long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static class Sample {
+        private final long firstByte;
+        private final long bytes;
+        private final boolean ok;
+
+        Sample(long firstByte, long bytes, boolean ok) {
+            this.firstByte = firstByte;
+            this.bytes = bytes;
+            this.ok = ok;
+        }
+    }
+}
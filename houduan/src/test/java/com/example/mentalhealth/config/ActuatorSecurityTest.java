@@ -0,0 +1,52 @@
+package com.example.mentalhealth.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * 监控端点的访问控制：健康检查公开，Prometheus 需要抓取凭证，其余端点拒绝
+ */
+@SpringBootTest(properties = "metrics.prometheus.scrape-token=scrape-secret")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ActuatorSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void healthIsPublic() throws Exception {
+        assertThat(status("/actuator/health", null)).isEqualTo(200);
+    }
+
+    @Test
+    void prometheusRequiresScrapeToken() throws Exception {
+        assertThat(status("/actuator/prometheus", null)).isEqualTo(401);
+        assertThat(status("/actuator/prometheus", "Bearer wrong-secret")).isEqualTo(401);
+        assertThat(status("/actuator/prometheus", "Bearer scrape-secret")).isNotIn(401, 403);
+    }
+
+    @Test
+    void otherEndpointsAreDenied() throws Exception {
+        assertThat(status("/actuator/metrics", null)).isEqualTo(401);
+        assertThat(status("/actuator/metrics", "Bearer scrape-secret")).isEqualTo(401);
+        assertThat(status("/actuator/env", "Bearer scrape-secret")).isEqualTo(401);
+    }
+
+    // 私有方法
+
+    private int status(String path, String authorization) throws Exception {
+        var request = get(path);
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        return mockMvc.perform(request).andReturn().getResponse().getStatus();
+    }
+}
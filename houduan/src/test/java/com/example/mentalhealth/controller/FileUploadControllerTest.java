@@ -0,0 +1,167 @@
+package com.example.mentalhealth.controller;
+
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.UserRepository;
+import com.example.mentalhealth.service.StorageLayoutService;
+import com.example.mentalhealth.util.Checksums;
+import com.example.mentalhealth.util.JwtUtils;
+import com.example.mentalhealth.util.StreamingMultipartUpload;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 上传接口走真实的 Servlet 容器：延迟解析 multipart 时流式接口自己读取请求体，
+ * MultipartFile 接口照常工作；超限和校验和不一致时返回 400 且不留下临时文件
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "file.max.size=65536")
+@ActiveProfiles("test")
+class FileUploadControllerTest {
+
+    private static final String BOUNDARY = "----file-upload-controller-test";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private StorageLayoutService storageLayoutService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private String token;
+
+    @BeforeEach
+    void createUser() {
+        String name = "upload-" + UUID.randomUUID().toString().substring(0, 8);
+        User user = userRepository.save(new User(name, name + "@example.com", "password"));
+        token = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    @Test
+    void streamUploadReadsDescriptionAfterFilePart() throws Exception {
+        byte[] content = ("流式上传-" + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+
+        HttpResponse<String> response = post("/api/files/upload/stream", multipartBody(content, "文件之后的说明"),
+                sha256(content));
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        JsonNode data = objectMapper.readTree(response.body()).get("data");
+        assertThat(data.get("description").asText()).isEqualTo("文件之后的说明");
+        assertThat(data.get("fileSize").asLong()).isEqualTo(content.length);
+    }
+
+    @Test
+    void streamUploadOverLimitIsRejectedWithoutLeftovers() throws Exception {
+        List<Path> before = partFiles();
+
+        HttpResponse<String> response = post("/api/files/upload/stream",
+                multipartBody(new byte[512 * 1024], "说明"), null);
+
+        assertThat(response.statusCode()).isEqualTo(400);
+        assertThat(partFiles()).isEqualTo(before);
+    }
+
+    @Test
+    void streamUploadChecksumMismatchIsRejectedWithoutLeftovers() throws Exception {
+        byte[] content = ("校验和-" + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+        List<Path> before = partFiles();
+
+        HttpResponse<String> response = post("/api/files/upload/stream", multipartBody(content, null),
+                sha256("其他内容".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(response.statusCode()).isEqualTo(400);
+        assertThat(objectMapper.readTree(response.body()).get("message").asText()).isEqualTo("文件校验和不一致");
+        assertThat(partFiles()).isEqualTo(before);
+    }
+
+    @Test
+    void multipartFileEndpointStillWorksWithLazyResolution() throws Exception {
+        byte[] content = ("普通上传-" + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+
+        HttpResponse<String> response = post("/api/files/upload", multipartBody(content, "普通上传"), null);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        JsonNode data = objectMapper.readTree(response.body()).get("data");
+        assertThat(data.get("description").asText()).isEqualTo("普通上传");
+        assertThat(data.get("fileSize").asLong()).isEqualTo(content.length);
+    }
+
+    // 私有方法
+
+    private HttpResponse<String> post(String path, byte[] body, String checksum) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (checksum != null) {
+            request.header(StreamingMultipartUpload.CHECKSUM_HEADER, checksum);
+        }
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+    }
+
+    private List<Path> partFiles() throws IOException {
+        Path stagingDir = storageLayoutService.stagingDir();
+        if (!Files.isDirectory(stagingDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(stagingDir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".part")).sorted().toList();
+        }
+    }
+
+    // 文件部分在前、description 字段在后
+    private static byte[] multipartBody(byte[] content, String description) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"记录.pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(content);
+        out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        if (description != null) {
+            out.write(("--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"description\"\r\n\r\n"
+                    + description + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        out.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] content) {
+        MessageDigest digest = Checksums.newSha256();
+        digest.update(content);
+        return Checksums.hex(digest);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.mentalhealth.controller;
+
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.UserRepository;
+import com.example.mentalhealth.service.ViewVersionService;
+import com.example.mentalhealth.util.JwtUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * 列表视图的条件请求：ETag 未变化时返回 304，视图版本只在修改提交后递增
+ */
+@SpringBootTest(properties = "questionnaire.download-count.flush-interval-ms=3600000")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ListViewConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private ViewVersionService viewVersionService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+    private String token;
+
+    @BeforeEach
+    void createUser() {
+        String name = "etag-" + UUID.randomUUID().toString().substring(0, 8);
+        user = userRepository.save(new User(name, name + "@example.com", "password"));
+        token = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    @Test
+    void fileListAnswers304ForMatchingEtag() throws Exception {
+        assertNotModifiedOnRevalidation("/api/files/list");
+    }
+
+    @Test
+    void publishedCatalogAnswers304ForMatchingEtag() throws Exception {
+        assertNotModifiedOnRevalidation("/api/questionnaires/published");
+    }
+
+    @Test
+    void popularListAnswers304ForMatchingEtag() throws Exception {
+        assertNotModifiedOnRevalidation("/api/questionnaires/popular");
+    }
+
+    @Test
+    void versionIsBumpedOnlyAfterCommit() throws Exception {
+        String path = "/api/files/list";
+        String view = ViewVersionService.userFiles(user.getId());
+        String etag = perform(path, null).getHeader(HttpHeaders.ETAG);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            viewVersionService.bump(view);
+            // 提交前其他请求仍然看到旧版本
+            assertThat(CompletableFuture.supplyAsync(() -> statusOf(path, etag)).join()).isEqualTo(304);
+        });
+        MockHttpServletResponse afterCommit = perform(path, etag);
+        assertThat(afterCommit.getStatus()).isEqualTo(200);
+        String newEtag = afterCommit.getHeader(HttpHeaders.ETAG);
+        assertThat(newEtag).isNotEqualTo(etag);
+
+        // 回滚的修改不递增版本
+        transactionTemplate.executeWithoutResult(status -> {
+            viewVersionService.bump(view);
+            status.setRollbackOnly();
+        });
+        assertThat(perform(path, newEtag).getStatus()).isEqualTo(304);
+    }
+
+    // 私有方法
+
+    private void assertNotModifiedOnRevalidation(String path) throws Exception {
+        MockHttpServletResponse first = perform(path, null);
+        assertThat(first.getStatus()).isEqualTo(200);
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        assertThat(etag).startsWith("W/\"");
+        assertThat(first.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo("private, no-cache");
+
+        MockHttpServletResponse second = perform(path, etag);
+        assertThat(second.getStatus()).isEqualTo(304);
+        assertThat(second.getContentAsByteArray()).isEmpty();
+        assertThat(second.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+    }
+
+    private int statusOf(String path, String etag) {
+        try {
+            return perform(path, etag).getStatus();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private MockHttpServletResponse perform(String path, String etag) throws Exception {
+        var request = get(path)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        if (etag != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+}
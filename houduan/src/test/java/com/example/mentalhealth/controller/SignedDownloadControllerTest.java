@@ -0,0 +1,102 @@
+package com.example.mentalhealth.controller;
+
+import com.example.mentalhealth.service.DownloadCounterService;
+import com.example.mentalhealth.storage.BlobStore;
+import com.example.mentalhealth.util.Checksums;
+import com.example.mentalhealth.util.DownloadUrlSigner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * 签名下载：问卷链接按签名中的问卷 ID 累计下载次数，Range 续传不重复计数，篡改问卷 ID 被拒绝
+ */
+@SpringBootTest(properties = "questionnaire.download-count.flush-interval-ms=3600000")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SignedDownloadControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DownloadUrlSigner downloadUrlSigner;
+
+    @Autowired
+    private DownloadCounterService downloadCounterService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    private String sha256;
+    private long questionnaireId;
+
+    @BeforeEach
+    void storeContent() throws Exception {
+        byte[] content = ("签名下载-" + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+        MessageDigest digest = Checksums.newSha256();
+        digest.update(content);
+        sha256 = Checksums.hex(digest);
+        blobStore.put(sha256, new ByteArrayInputStream(content), content.length);
+        // 计数只在内存缓冲中累计（写回间隔已调大），不需要真实的问卷行
+        questionnaireId = ThreadLocalRandom.current().nextLong(1_000_000, Long.MAX_VALUE);
+    }
+
+    @Test
+    void questionnaireLinkCountsFullDownloads() throws Exception {
+        String url = downloadUrlSigner.sign(sha256, "问卷.pdf", "application/pdf", questionnaireId);
+
+        assertThat(perform(get(URI.create(url))).getStatus()).isEqualTo(200);
+        assertThat(perform(get(URI.create(url))).getStatus()).isEqualTo(200);
+
+        assertThat(downloadCounterService.getPendingCount(questionnaireId)).isEqualTo(2);
+    }
+
+    @Test
+    void rangeFollowUpIsNotCounted() throws Exception {
+        String url = downloadUrlSigner.sign(sha256, "问卷.pdf", "application/pdf", questionnaireId);
+
+        assertThat(perform(get(URI.create(url))).getStatus()).isEqualTo(200);
+        assertThat(perform(get(URI.create(url)).header(HttpHeaders.RANGE, "bytes=0-9")).getStatus())
+                .isEqualTo(206);
+
+        assertThat(downloadCounterService.getPendingCount(questionnaireId)).isEqualTo(1);
+    }
+
+    @Test
+    void tamperedQuestionnaireIdIsRejected() throws Exception {
+        String fileUrl = downloadUrlSigner.sign(sha256, "文件.pdf", "application/pdf", null);
+        String questionnaireUrl = downloadUrlSigner.sign(sha256, "问卷.pdf", "application/pdf", questionnaireId);
+
+        assertThat(perform(get(URI.create(fileUrl + "&qid=" + questionnaireId))).getStatus()).isEqualTo(403);
+        assertThat(perform(get(URI.create(questionnaireUrl.replace("qid=" + questionnaireId,
+                "qid=" + (questionnaireId + 1))))).getStatus()).isEqualTo(403);
+        assertThat(perform(get(URI.create(fileUrl))).getStatus()).isEqualTo(200);
+
+        assertThat(downloadCounterService.getPendingCount(questionnaireId)).isZero();
+        assertThat(downloadCounterService.getPendingCount(questionnaireId + 1)).isZero();
+    }
+
+    // 私有方法
+
+    private MockHttpServletResponse perform(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+}
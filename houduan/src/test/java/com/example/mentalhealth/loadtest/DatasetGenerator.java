@@ -0,0 +1,173 @@
+package com.example.mentalhealth.loadtest;
+
+import com.example.mentalhealth.service.BlobStoreService;
+import com.example.mentalhealth.service.SearchIndexService;
+import com.example.mentalhealth.storage.BlobStore;
+import com.example.mentalhealth.util.Checksums;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 压测数据生成：用户、文件记录和已发布问卷按 JDBC 批量写入，
+ * 文件内容只生成少量不同的 blob 由所有记录共享（与线上按内容去重的存储方式一致），
+ * 写入后重建搜索索引。随机数种子固定，同样的参数每次生成同样的数据。
+ */
+class DatasetGenerator {
+
+    static final String PASSWORD = "loadtest123";
+
+    private static final int BATCH_SIZE = 1000;
+
+    // 文件名和问卷标题的词表，搜索关键词从中选取
+    static final String[] WORDS = {"焦虑", "抑郁", "睡眠", "压力", "情绪", "自评", "量表", "随访", "团体", "辅导",
+            "评估", "筛查", "青少年", "家庭", "创伤", "记录", "干预", "正念", "咨询", "适应"};
+
+    private static final String[] EXTENSIONS = {".pdf", ".docx", ".mp4", ".jpg", ".png"};
+    private static final String[] CONTENT_TYPES = {"application/pdf",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document", "video/mp4",
+            "image/jpeg", "image/png"};
+    private static final String[] CATEGORIES = {"DOCUMENT", "DOCUMENT", "VIDEO", "IMAGE", "IMAGE"};
+    private static final String[] QUESTIONNAIRE_CATEGORIES = {"焦虑", "抑郁", "睡眠", "压力", "人际"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+    private final BlobStoreService blobStoreService;
+    private final SearchIndexService searchIndexService;
+    private final Random random = new Random(20240301L);
+
+    DatasetGenerator(JdbcTemplate jdbcTemplate, BlobStore blobStore, BlobStoreService blobStoreService,
+                     SearchIndexService searchIndexService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+        this.blobStoreService = blobStoreService;
+        this.searchIndexService = searchIndexService;
+    }
+
+    /**
+     * 生成数据集
+     * @param passwordHash 所有用户共用的密码哈希（BCrypt 计算较慢，只算一次）
+     */
+    Dataset generate(LoadTestConfig config, String passwordHash) throws IOException {
+        List<String> blobs = createBlobs(config.blobs, config.blobSize);
+        List<Long> userIds = createUsers(config.users, passwordHash);
+        List<long[]> files = createFiles(userIds, config.filesPerUser, blobs, config.blobSize);
+        createQuestionnaires(userIds, config.questionnaires, blobs, config.blobSize);
+        updateRefCounts(blobs, config.blobSize);
+        searchIndexService.rebuild();
+        return new Dataset(userIds, files);
+    }
+
+    static String username(int index) {
+        return "lt-user-" + index;
+    }
+
+    // 私有方法
+
+    private List<String> createBlobs(int count, int size) throws IOException {
+        List<String> hashes = new ArrayList<>(count);
+        byte[] content = new byte[size];
+        for (int i = 0; i < count; i++) {
+            random.nextBytes(content);
+            MessageDigest digest = Checksums.newSha256();
+            digest.update(content);
+            String sha256 = Checksums.hex(digest);
+            blobStore.put(sha256, new ByteArrayInputStream(content), size);
+            hashes.add(sha256);
+        }
+        return hashes;
+    }
+
+    private List<Long> createUsers(int count, String passwordHash) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{username(i), username(i) + "@loadtest.local", passwordHash, now, now,
+                    true, "USER", "压测用户" + i});
+        }
+        batchInsert("INSERT INTO users (username, email, password, created_at, updated_at, is_enabled, role, name) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        return jdbcTemplate.queryForList("SELECT id FROM users WHERE username LIKE 'lt-user-%' ORDER BY id",
+                Long.class);
+    }
+
+    // 返回 {文件 ID, 所属用户 ID}
+    private List<long[]> createFiles(List<Long> userIds, int filesPerUser, List<String> blobs, int size) {
+        List<Object[]> rows = new ArrayList<>(userIds.size() * filesPerUser);
+        LocalDateTime base = LocalDateTime.now().minusDays(365);
+        int index = 0;
+        for (Long userId : userIds) {
+            for (int i = 0; i < filesPerUser; i++, index++) {
+                int type = random.nextInt(EXTENSIONS.length);
+                String sha256 = blobs.get(random.nextInt(blobs.size()));
+                Timestamp createdAt = Timestamp.valueOf(base.plusMinutes(random.nextInt(365 * 24 * 60)));
+                rows.add(new Object[]{name(index) + EXTENSIONS[type], "lt_file_" + index + EXTENSIONS[type],
+                        blobStoreService.location(sha256), (long) size, CONTENT_TYPES[type], sha256, CATEGORIES[type],
+                        userId, createdAt, createdAt, "压测数据", true});
+            }
+        }
+        batchInsert("INSERT INTO file_records (original_name, stored_name, file_path, file_size, file_type, "
+                + "content_hash, category, uploaded_by, created_at, updated_at, description, is_active) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        return jdbcTemplate.query("SELECT id, uploaded_by FROM file_records WHERE stored_name LIKE 'lt_file_%'",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+    }
+
+    private void createQuestionnaires(List<Long> userIds, int count, List<String> blobs, int size) {
+        List<Object[]> rows = new ArrayList<>(count);
+        LocalDateTime base = LocalDateTime.now().minusDays(365);
+        for (int i = 0; i < count; i++) {
+            String sha256 = blobs.get(random.nextInt(blobs.size()));
+            Timestamp createdAt = Timestamp.valueOf(base.plusMinutes(random.nextInt(365 * 24 * 60)));
+            rows.add(new Object[]{name(i) + "问卷", "questionnaire_" + i + ".pdf", "lt_questionnaire_" + i + ".pdf",
+                    blobStoreService.location(sha256), (long) size, "application/pdf", sha256, "PUBLISHED",
+                    userIds.get(random.nextInt(userIds.size())), createdAt, createdAt, createdAt, true,
+                    QUESTIONNAIRE_CATEGORIES[random.nextInt(QUESTIONNAIRE_CATEGORIES.length)], random.nextInt(1000)});
+        }
+        batchInsert("INSERT INTO questionnaires (title, original_name, stored_name, file_path, file_size, file_type, "
+                + "content_hash, status, created_by, created_at, updated_at, published_at, is_active, category, "
+                + "download_count) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    // 引用计数与实际引用行数一致，避免后台回收误删
+    private void updateRefCounts(List<String> blobs, int size) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(blobs.size());
+        for (String sha256 : blobs) {
+            Long references = jdbcTemplate.queryForObject("SELECT (SELECT COUNT(*) FROM file_records WHERE content_hash = ?) "
+                    + "+ (SELECT COUNT(*) FROM questionnaires WHERE content_hash = ?)", Long.class, sha256, sha256);
+            rows.add(new Object[]{sha256, (long) size, references, now});
+        }
+        batchInsert("INSERT INTO stored_blobs (sha256, file_size, ref_count, created_at) VALUES (?, ?, ?, ?)", rows);
+    }
+
+    private String name(int index) {
+        return WORDS[random.nextInt(WORDS.length)] + WORDS[random.nextInt(WORDS.length)] + "_" + index;
+    }
+
+    private void batchInsert(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+
+    /**
+     * 生成结果：用户 ID（下标与用户名序号一致）和文件 {ID, 所属用户 ID}
+     */
+    static class Dataset {
+        final List<Long> userIds;
+        final List<long[]> files;
+
+        Dataset(List<Long> userIds, List<long[]> files) {
+            this.userIds = userIds;
+            this.files = files;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.mentalhealth.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按场景记录延迟（微秒）、错误数和超时数（超时也计入错误），生成带分位数和预算检查结果的报告
+ * 延迟从计划发出时间算起，请求排队等待的时间也计入（避免协调遗漏）
+ */
+class LatencyRecorder {
+
+    private final Map<String, ConcurrentLinkedQueue<Long>> samples = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> timeouts = new ConcurrentHashMap<>();
+
+    void record(String scenario, long latencyMicros, boolean success) {
+        samples.computeIfAbsent(scenario, key -> new ConcurrentLinkedQueue<>()).add(latencyMicros);
+        if (!success) {
+            errors.computeIfAbsent(scenario, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * 记录超时的请求：延迟按超时发生时计，同时计为错误
+     */
+    void recordTimeout(String scenario, long latencyMicros) {
+        record(scenario, latencyMicros, false);
+        timeouts.computeIfAbsent(scenario, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * 生成报告：每个场景的请求数、错误率、实际 RPS 和 p50/p95/p99/max（毫秒），以及预算检查结果
+     * 预算格式：<场景>.p50 / .p95 / .p99（毫秒）、<场景>.error-rate；default.* 作用于所有场景
+     */
+    Map<String, Object> report(int durationSeconds, Properties budgets) {
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        boolean pass = true;
+        for (String scenario : samples.keySet().stream().sorted().toList()) {
+            long[] latencies = samples.get(scenario).stream().mapToLong(Long::longValue).sorted().toArray();
+            long errorCount = errors.getOrDefault(scenario, new AtomicLong()).get();
+            double errorRate = latencies.length == 0 ? 0 : (double) errorCount / latencies.length;
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", latencies.length);
+            stats.put("errors", errorCount);
+            stats.put("timeouts", timeouts.getOrDefault(scenario, new AtomicLong()).get());
+            stats.put("errorRate", errorRate);
+            stats.put("rps", (double) latencies.length / durationSeconds);
+            Map<String, Double> observed = new LinkedHashMap<>();
+            observed.put("p50", percentileMillis(latencies, 0.50));
+            observed.put("p95", percentileMillis(latencies, 0.95));
+            observed.put("p99", percentileMillis(latencies, 0.99));
+            observed.forEach((name, value) -> stats.put(name + "Ms", value));
+            stats.put("maxMs", latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1000.0);
+
+            Map<String, Object> violations = new LinkedHashMap<>();
+            for (Map.Entry<String, Double> entry : observed.entrySet()) {
+                String budget = budget(budgets, scenario, entry.getKey());
+                if (budget != null && entry.getValue() > Double.parseDouble(budget)) {
+                    violations.put(entry.getKey() + "Ms", entry.getValue() + " > " + budget);
+                }
+            }
+            String errorBudget = budget(budgets, scenario, "error-rate");
+            if (errorBudget != null && errorRate > Double.parseDouble(errorBudget)) {
+                violations.put("errorRate", errorRate + " > " + errorBudget);
+            }
+            stats.put("violations", violations);
+            stats.put("pass", violations.isEmpty());
+            pass &= violations.isEmpty();
+            endpoints.put(scenario, stats);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("pass", pass);
+        report.put("endpoints", endpoints);
+        return report;
+    }
+
+    // 私有方法
+
+    private String budget(Properties budgets, String scenario, String metric) {
+        return budgets.getProperty(scenario + "." + metric, budgets.getProperty("default." + metric));
+    }
+
+    private double percentileMillis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000.0;
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.mentalhealth.loadtest;
+
+import com.example.mentalhealth.service.BlobStoreService;
+import com.example.mentalhealth.service.SearchIndexService;
+import com.example.mentalhealth.storage.BlobStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 端到端压测：在 H2 内存库和临时上传目录上启动完整应用，批量生成数据后按目标 RPS 以开环方式发送
+ * 登录、列表、搜索、上传、下载的混合请求，按场景统计 p50/p95/p99，结果写入 JSON 报告并与预算比较。
+ *
+ * 默认 mvn test 不执行（loadtest 标签），运行方式：
+ * <pre>
+ * mvn -B test -Ploadtest -Dloadtest.rps=300 -Dloadtest.duration-seconds=120
+ * </pre>
+ * 参数见 LoadTestConfig，预算见 src/test/resources/loadtest-budgets.properties。
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+@Tag("loadtest")
+class LoadTest {
+
+    private static final Path UPLOAD_DIR = createTempDirectory();
+
+    private static final String MULTIPART_BOUNDARY = "LoadTestBoundary7MA4YWxkTrZu0gW";
+
+    @DynamicPropertySource
+    static void uploadDirectory(DynamicPropertyRegistry registry) {
+        registry.add("file.upload.dir", UPLOAD_DIR::toString);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private final LoadTestConfig config = new LoadTestConfig();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong uploadSequence = new AtomicLong();
+
+    private HttpClient client;
+    private DatasetGenerator.Dataset dataset;
+    private List<String> tokens;
+    private Map<Long, Integer> userIndexes;
+    private List<String> scenarios;
+    private int[] cumulativeWeights;
+
+    @Test
+    void endpointsMeetLatencyBudgets() throws Exception {
+        config.validate();
+        long seedStart = System.nanoTime();
+        dataset = new DatasetGenerator(jdbcTemplate, blobStore, blobStoreService, searchIndexService)
+                .generate(config, passwordEncoder.encode(DatasetGenerator.PASSWORD));
+        System.out.printf("数据生成完成: %d 用户, %d 文件, %d 问卷, 用时 %d ms%n", dataset.userIds.size(),
+                dataset.files.size(), config.questionnaires, (System.nanoTime() - seedStart) / 1_000_000);
+
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        loginAll();
+        prepareMix();
+
+        run(config.warmupSeconds, new LatencyRecorder());
+        LatencyRecorder recorder = new LatencyRecorder();
+        run(config.durationSeconds, recorder);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generatedAt", LocalDateTime.now().toString());
+        report.put("config", config.describe());
+        report.putAll(recorder.report(config.durationSeconds, loadBudgets()));
+        Path reportFile = Paths.get(config.report);
+        Files.createDirectories(reportFile.toAbsolutePath().getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), report);
+        System.out.println("压测报告: " + reportFile.toAbsolutePath());
+
+        assertThat(report.get("pass"))
+                .as("超出预算的接口见 %s: %s", reportFile, report.get("endpoints"))
+                .isEqualTo(true);
+    }
+
+    // 私有方法
+
+    // 开环发送：第 i 个请求的计划时间为 start + i / rps，不等待前一个请求返回
+    private void run(int seconds, LatencyRecorder recorder) {
+        long interval = 1_000_000_000L / config.rps;
+        long total = (long) config.rps * seconds;
+        List<CompletableFuture<Void>> pending = new ArrayList<>((int) total);
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long intended = start + i * interval;
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String scenario = pickScenario();
+            HttpRequest request = buildRequest(scenario).timeout(requestTimeout()).build();
+            // HttpRequest.timeout 只约束到收到响应头，响应体读取由 orTimeout 兜底，保证 allOf 一定结束
+            pending.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .orTimeout(config.requestTimeoutSeconds, TimeUnit.SECONDS)
+                    .handle((response, error) -> {
+                        long latency = (System.nanoTime() - intended) / 1000;
+                        if (isTimeout(error)) {
+                            recorder.recordTimeout(scenario, latency);
+                        } else {
+                            recorder.record(scenario, latency, error == null && response.statusCode() < 400);
+                        }
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+    }
+
+    private HttpRequest.Builder buildRequest(String scenario) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int userIndex = random.nextInt(tokens.size());
+        String keyword = URLEncoder.encode(DatasetGenerator.WORDS[random.nextInt(DatasetGenerator.WORDS.length)],
+                StandardCharsets.UTF_8);
+        return switch (scenario) {
+            case "login" -> HttpRequest.newBuilder(uri("/api/auth/login"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(loginBody(userIndex)));
+            case "list-files" -> authorized("/api/files/list", userIndex).GET();
+            case "published" -> authorized("/api/questionnaires/published", userIndex).GET();
+            case "search-files" -> authorized("/api/files/search?size=20&keyword=" + keyword, userIndex).GET();
+            case "search-questionnaires" ->
+                    authorized("/api/questionnaires/search?size=20&keyword=" + keyword, userIndex).GET();
+            case "download" -> {
+                long[] file = dataset.files.get(random.nextInt(dataset.files.size()));
+                yield authorized("/api/files/download/" + file[0], userIndexes.get(file[1])).GET();
+            }
+            case "upload" -> authorized("/api/files/upload", userIndex)
+                    .header("Content-Type", "multipart/form-data; boundary=" + MULTIPART_BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(uploadBody()));
+            default -> throw new IllegalArgumentException("未知场景: " + scenario);
+        };
+    }
+
+    private void loginAll() throws Exception {
+        tokens = new ArrayList<>(dataset.userIds.size());
+        userIndexes = new HashMap<>();
+        List<Future<String>> logins = new ArrayList<>(dataset.userIds.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < dataset.userIds.size(); i++) {
+                int userIndex = i;
+                logins.add(executor.submit(() -> login(userIndex)));
+            }
+        }
+        for (int i = 0; i < logins.size(); i++) {
+            tokens.add(logins.get(i).get());
+            userIndexes.put(dataset.userIds.get(i), i);
+        }
+    }
+
+    private String login(int userIndex) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(loginBody(userIndex)))
+                .timeout(requestTimeout())
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).as("登录失败: %s", response.body()).isEqualTo(200);
+        return objectMapper.readTree(response.body()).path("data").path("token").asText();
+    }
+
+    private void prepareMix() {
+        Map<String, Integer> weights = config.weights();
+        scenarios = new ArrayList<>(weights.keySet());
+        cumulativeWeights = new int[scenarios.size()];
+        int sum = 0;
+        for (int i = 0; i < scenarios.size(); i++) {
+            sum += weights.get(scenarios.get(i));
+            cumulativeWeights[i] = sum;
+        }
+    }
+
+    private String pickScenario() {
+        int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return scenarios.get(i);
+            }
+        }
+        return scenarios.get(scenarios.size() - 1);
+    }
+
+    private Duration requestTimeout() {
+        return Duration.ofSeconds(config.requestTimeoutSeconds);
+    }
+
+    // sendAsync 的异常经 CompletableFuture 传递时可能包了一层 CompletionException
+    private static boolean isTimeout(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof HttpTimeoutException || cause instanceof TimeoutException;
+    }
+
+    private HttpRequest.Builder authorized(String path, int userIndex) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Authorization", "Bearer " + tokens.get(userIndex));
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private String loginBody(int userIndex) {
+        return "{\"username\":\"" + DatasetGenerator.username(userIndex) + "\",\"password\":\""
+                + DatasetGenerator.PASSWORD + "\"}";
+    }
+
+    // 每次上传的内容都不同，走完整的写入路径而不是去重
+    private byte[] uploadBody() {
+        byte[] content = new byte[config.uploadSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 512);
+        String header = "--" + MULTIPART_BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"lt_upload_"
+                + uploadSequence.incrementAndGet() + ".pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n";
+        body.writeBytes(header.getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + MULTIPART_BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    // 优先读取 loadtest.budgets 指向的文件，不存在时从 classpath 读取
+    private Properties loadBudgets() throws IOException {
+        Properties budgets = new Properties();
+        Path file = Paths.get(config.budgets);
+        try (InputStream in = Files.exists(file)
+                ? Files.newInputStream(file)
+                : new ClassPathResource(config.budgets).getInputStream()) {
+            budgets.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        return budgets;
+    }
+
+    private static Path createTempDirectory() {
+        try {
+            return Files.createTempDirectory("loadtest-uploads");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.mentalhealth.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 压测参数，全部可用 -D 系统属性覆盖，例如 mvn test -Ploadtest -Dloadtest.rps=500
+ */
+class LoadTestConfig {
+
+    // 数据集规模
+    final int users = Integer.getInteger("loadtest.users", 200);
+    final int filesPerUser = Integer.getInteger("loadtest.files-per-user", 50);
+    final int questionnaires = Integer.getInteger("loadtest.questionnaires", 2000);
+    final int blobs = Integer.getInteger("loadtest.blobs", 16);
+    final int blobSize = Integer.getInteger("loadtest.blob-size", 256 * 1024);
+    final int uploadSize = Integer.getInteger("loadtest.upload-size", 64 * 1024);
+
+    // 负载
+    final int rps = Integer.getInteger("loadtest.rps", 200);
+    final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+    final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 60);
+    // 单个请求的超时，超时记为错误
+    final int requestTimeoutSeconds = Integer.getInteger("loadtest.request-timeout-seconds", 30);
+    final String mix = System.getProperty("loadtest.mix",
+            "login:5,list-files:20,published:15,search-files:15,search-questionnaires:10,download:25,upload:10");
+
+    // 输出
+    final String report = System.getProperty("loadtest.report", "target/loadtest/report.json");
+    final String budgets = System.getProperty("loadtest.budgets", "loadtest-budgets.properties");
+
+    /**
+     * 校验负载参数，在生成数据之前调用
+     * @throws IllegalArgumentException 参数超出范围
+     */
+    void validate() {
+        // 按 1 / rps 纳秒间隔发送，超过 1e9 时间隔为 0
+        if (rps <= 0 || rps > 1_000_000_000) {
+            throw new IllegalArgumentException("loadtest.rps 必须在 1 到 1000000000 之间: " + rps);
+        }
+        if (users <= 0) {
+            throw new IllegalArgumentException("loadtest.users 必须大于0: " + users);
+        }
+        if (warmupSeconds < 0 || durationSeconds <= 0) {
+            throw new IllegalArgumentException("loadtest.warmup-seconds 不能小于0，loadtest.duration-seconds 必须大于0");
+        }
+        if (requestTimeoutSeconds <= 0) {
+            throw new IllegalArgumentException("loadtest.request-timeout-seconds 必须大于0: " + requestTimeoutSeconds);
+        }
+        if (weights().values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("loadtest.mix 的权重之和必须大于0: " + mix);
+        }
+    }
+
+    /**
+     * 场景名 -> 权重，按配置顺序
+     */
+    Map<String, Integer> weights() {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("无效的场景配置: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("场景权重不能为负数: " + entry);
+            }
+            weights.put(parts[0].trim(), weight);
+        }
+        return weights;
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("users", users);
+        description.put("filesPerUser", filesPerUser);
+        description.put("questionnaires", questionnaires);
+        description.put("blobSize", blobSize);
+        description.put("uploadSize", uploadSize);
+        description.put("targetRps", rps);
+        description.put("warmupSeconds", warmupSeconds);
+        description.put("durationSeconds", durationSeconds);
+        description.put("requestTimeoutSeconds", requestTimeoutSeconds);
+        description.put("mix", mix);
+        return description;
+    }
+}
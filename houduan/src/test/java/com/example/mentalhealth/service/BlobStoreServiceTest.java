@@ -0,0 +1,189 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.dto.FileUploadResponse;
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.FileRecordRepository;
+import com.example.mentalhealth.repository.StoredBlobRepository;
+import com.example.mentalhealth.repository.UserRepository;
+import com.example.mentalhealth.storage.BlobStore;
+import com.example.mentalhealth.util.Checksums;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 内容寻址存储：重复内容只存一份并累计引用，清除最后一个引用后回收，
+ * 回收时在行锁下复查引用计数，重复上传短路要求分类一致
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class BlobStoreServiceTest {
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private StoragePurgeService storagePurgeService;
+
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        String name = "blob-" + UUID.randomUUID().toString().substring(0, 8);
+        user = userRepository.save(new User(name, name + "@example.com", "password"));
+    }
+
+    @Test
+    void duplicateContentIsStoredOnceAndCounted() throws IOException {
+        byte[] content = uniqueContent();
+        FileUploadResponse first = upload("a.pdf", content);
+        FileUploadResponse second = upload("b.pdf", content);
+        String hash = contentHash(first);
+
+        assertThat(contentHash(second)).isEqualTo(hash);
+        assertThat(refCount(hash)).isEqualTo(2);
+        assertThat(blobStore.stat(hash)).hasValueSatisfying(stat -> assertThat(stat.getSize())
+                .isEqualTo(content.length));
+
+        assertThat(fileService.uploadByHash(hash, "c.docx", null, user)).isPresent();
+        assertThat(refCount(hash)).isEqualTo(3);
+    }
+
+    @Test
+    void uploadByHashKeepsCategoryOfExistingContent() throws IOException {
+        String hash = contentHash(upload("scale.pdf", uniqueContent()));
+
+        FileUploadResponse renamed = fileService.uploadByHash(hash, "scale-v2.docx", null, user).orElseThrow();
+        FileRecord record = fileRecordRepository.findById(renamed.getId()).orElseThrow();
+        assertThat(record.getCategory()).isEqualTo(FileRecord.FileCategory.DOCUMENT);
+        assertThat(record.getFileType()).isEqualTo("application/pdf");
+
+        assertThatThrownBy(() -> fileService.uploadByHash(hash, "scale.mp4", null, user))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(refCount(hash)).isEqualTo(2);
+    }
+
+    @Test
+    void purgeReleasesReferencesAndCollectsUnreferencedContent() throws IOException {
+        byte[] content = uniqueContent();
+        FileUploadResponse kept = upload("kept.pdf", content);
+        FileUploadResponse purged = upload("purged.pdf", content);
+        String hash = contentHash(kept);
+
+        fileService.deleteFile(purged.getId(), user);
+        expireSoftDeleted(purged.getId());
+        storagePurgeService.purge();
+
+        assertThat(fileRecordRepository.findById(purged.getId())).isEmpty();
+        assertThat(refCount(hash)).isEqualTo(1);
+        assertThat(blobStore.stat(hash)).isPresent();
+
+        fileService.deleteFile(kept.getId(), user);
+        expireSoftDeleted(kept.getId());
+        storagePurgeService.purge();
+
+        assertThat(storedBlobRepository.findById(hash)).isEmpty();
+        assertThat(blobStore.stat(hash)).isEmpty();
+    }
+
+    @Test
+    void garbageCollectionRechecksReferenceCountUnderLock() throws IOException {
+        String hash = contentHash(upload("live.pdf", uniqueContent()));
+
+        // 查询无引用内容之后、加锁之前，同一内容又被登记了一次：列表已过期，行锁下的引用计数为 1
+        StoredBlobRepository stale = mock(StoredBlobRepository.class);
+        when(stale.findUnreferencedHashes()).thenReturn(List.of(hash));
+        ReflectionTestUtils.setField(blobStoreService, "storedBlobRepository", stale);
+        try {
+            assertThat(blobStoreService.collectGarbage()).isZero();
+        } finally {
+            ReflectionTestUtils.setField(blobStoreService, "storedBlobRepository", storedBlobRepository);
+        }
+
+        assertThat(refCount(hash)).isEqualTo(1);
+        assertThat(blobStore.stat(hash)).isPresent();
+    }
+
+    @Test
+    void retainFailsWhenContentWasCollectedAfterUpload() throws IOException {
+        byte[] content = uniqueContent();
+        Path staged = blobStoreService.newStagingFile();
+        Files.write(staged, content);
+        String hash = Checksums.sha256(staged);
+
+        blobStoreService.upload(hash, content.length, staged);
+        Files.deleteIfExists(staged);
+        // 上传完成后、登记引用之前被回收
+        assertThat(blobStoreService.collectGarbage()).isPositive();
+
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(
+                status -> blobStoreService.retain(hash, content.length)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(storedBlobRepository.findById(hash)).isEmpty();
+    }
+
+    // 私有方法
+
+    private FileUploadResponse upload(String name, byte[] content) {
+        return fileService.uploadFile(new MockMultipartFile("file", name, "application/pdf", content), null, user);
+    }
+
+    private String contentHash(FileUploadResponse response) {
+        return fileRecordRepository.findById(response.getId()).orElseThrow().getContentHash();
+    }
+
+    private long refCount(String hash) {
+        return storedBlobRepository.findById(hash).orElseThrow().getRefCount();
+    }
+
+    private void expireSoftDeleted(Long fileId) {
+        jdbcTemplate.update("UPDATE file_records SET updated_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(365)), fileId);
+    }
+
+    private static byte[] uniqueContent() {
+        return ("%PDF-1.4 " + UUID.randomUUID()).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.FileRecordRepository;
+import com.example.mentalhealth.repository.UserRepository;
+import com.example.mentalhealth.storage.BlobStore;
+import com.example.mentalhealth.util.Checksums;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 批量导出：游标跨批读取不重复不遗漏，已压缩格式 0 级写入，缺失内容跳过，条目名去掉路径分隔符
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class BulkExportServiceTest {
+
+    private static final int CONTENT_SIZE = 64 * 1024;
+
+    @Autowired
+    private BulkExportService bulkExportService;
+
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    private final Map<Long, String> names = new LinkedHashMap<>();
+    private User user;
+    private int originalBatchSize;
+
+    @BeforeEach
+    void setUp() {
+        String name = "export-" + UUID.randomUUID().toString().substring(0, 8);
+        user = userRepository.save(new User(name, name + "@example.com", "password"));
+        // 每批 2 条，6 条记录需要读 3 批
+        originalBatchSize = (int) ReflectionTestUtils.getField(bulkExportService, "batchSize");
+        ReflectionTestUtils.setField(bulkExportService, "batchSize", 2);
+    }
+
+    @AfterEach
+    void restoreBatchSize() {
+        ReflectionTestUtils.setField(bulkExportService, "batchSize", originalBatchSize);
+    }
+
+    @Test
+    void exportsEveryStoredFileAcrossBatches() throws Exception {
+        long video = addStored("随访录像.mp4");
+        long pdf = addStored("记录.pdf");
+        long unsafe = addStored("../报告\\草稿.pdf");
+        long missingBlob = addRecord("丢失.pdf", "cd".repeat(32), blobStoreService.location("cd".repeat(32)));
+        long missingLegacy = addRecord("旧文件.pdf", null, "target/test-uploads/missing-" + UUID.randomUUID());
+        long docx = addStored("问卷.docx");
+        // 全部放到同一时刻，跨批续传只能靠 ID 区分
+        jdbcTemplate.update("UPDATE file_records SET created_at = ? WHERE uploaded_by = ?",
+                Timestamp.valueOf(LocalDateTime.of(2024, 1, 1, 12, 0)), user.getId());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exported = bulkExportService.exportUserFiles(user, out);
+
+        Map<String, ZipEntry> entries = readEntries(out.toByteArray());
+        assertThat(exported).isEqualTo(4);
+        assertThat(entries.keySet()).containsExactlyElementsOf(
+                List.of(docx, unsafe, pdf, video).stream()
+                        .sorted(Comparator.reverseOrder())
+                        .map(id -> id == unsafe ? id + "_.._报告_草稿.pdf" : entryName(id))
+                        .toList());
+        assertThat(entries.keySet()).noneMatch(name -> name.startsWith(missingBlob + "_")
+                || name.startsWith(missingLegacy + "_"));
+
+        // 已压缩格式 0 级写入（压缩后不小于原始大小），其他格式正常压缩
+        assertThat(entries.get(video + "_随访录像.mp4").getCompressedSize()).isGreaterThanOrEqualTo(CONTENT_SIZE);
+        assertThat(entries.get(docx + "_问卷.docx").getCompressedSize()).isGreaterThanOrEqualTo(CONTENT_SIZE);
+        assertThat(entries.get(pdf + "_记录.pdf").getCompressedSize()).isLessThan(CONTENT_SIZE / 10);
+        assertThat(entries.values()).allSatisfy(entry -> assertThat(entry.getSize()).isEqualTo(CONTENT_SIZE));
+    }
+
+    // 私有方法
+
+    private String entryName(long id) {
+        return id + "_" + names.get(id);
+    }
+
+    // 内容高度可压缩，便于区分 0 级和正常压缩
+    private long addStored(String name) throws Exception {
+        byte[] unit = ("导出内容-" + UUID.randomUUID() + "\n").getBytes(StandardCharsets.UTF_8);
+        byte[] content = new byte[CONTENT_SIZE];
+        for (int i = 0; i < CONTENT_SIZE; i++) {
+            content[i] = unit[i % unit.length];
+        }
+        MessageDigest digest = Checksums.newSha256();
+        digest.update(content);
+        String sha256 = Checksums.hex(digest);
+        blobStore.put(sha256, new ByteArrayInputStream(content), content.length);
+        return addRecord(name, sha256, blobStoreService.location(sha256));
+    }
+
+    private long addRecord(String name, String contentHash, String filePath) {
+        FileRecord record = new FileRecord(name, UUID.randomUUID() + ".bin", filePath, (long) CONTENT_SIZE,
+                "application/octet-stream", FileRecord.FileCategory.DOCUMENT, user);
+        record.setContentHash(contentHash);
+        long id = fileRecordRepository.save(record).getId();
+        names.put(id, name);
+        return id;
+    }
+
+    private static Map<String, ZipEntry> readEntries(byte[] zip) throws Exception {
+        Map<String, ZipEntry> entries = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip), StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                // 读完条目后才有压缩大小
+                in.transferTo(ByteArrayOutputStream.nullOutputStream());
+                entries.put(entry.getName(), entry);
+            }
+        }
+        return entries;
+    }
+}
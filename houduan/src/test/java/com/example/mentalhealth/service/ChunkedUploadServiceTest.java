@@ -0,0 +1,286 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.dto.ChunkedUploadInitRequest;
+import com.example.mentalhealth.dto.ChunkedUploadStatusResponse;
+import com.example.mentalhealth.dto.FileUploadResponse;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.FileRecordRepository;
+import com.example.mentalhealth.repository.UploadSessionRepository;
+import com.example.mentalhealth.repository.UserRepository;
+import com.example.mentalhealth.util.Checksums;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * 分片上传：乱序到达、重试已记录的分片、损坏分片不落盘、完成后的分片被拒绝、每用户的会话上限，
+ * 以及完成时内容在事务之外上传、登记失败时 .part 保留可以重试
+ */
+@SpringBootTest(properties = {
+        "file.chunked.chunk-size=4",
+        "file.chunked.max-sessions-per-user=2",
+        "file.chunked.max-reserved-bytes-per-user=64"
+})
+@ActiveProfiles("test")
+class ChunkedUploadServiceTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final List<String> uploads = new ArrayList<>();
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        String name = "chunk-" + UUID.randomUUID().toString().substring(0, 8);
+        user = userRepository.save(new User(name, name + "@example.com", "password"));
+    }
+
+    @AfterEach
+    void abortUploads() {
+        for (String uploadId : uploads) {
+            try {
+                chunkedUploadService.abort(uploadId, user);
+            } catch (Exception ignored) {
+                // 已完成的会话不存在
+            }
+        }
+    }
+
+    @Test
+    void outOfOrderChunksComplete() throws IOException {
+        String uploadId = initiate(CONTENT.length);
+
+        write(uploadId, 2, slice(8, 10));
+        write(uploadId, 0, slice(0, 4));
+        ChunkedUploadStatusResponse status = write(uploadId, 1, slice(4, 8));
+
+        assertThat(status.getMissingChunks()).isEmpty();
+        assertThat(status.getReceivedRanges()).hasSize(1);
+        assertThat(status.getReceivedRanges().get(0).getEnd()).isEqualTo(CONTENT.length);
+
+        FileUploadResponse response = chunkedUploadService.complete(uploadId, user);
+
+        assertThat(fileRecordRepository.findById(response.getId()).orElseThrow().getContentHash())
+                .isEqualTo(sha256(CONTENT));
+        assertThat(uploadSessionRepository.findById(uploadId)).isEmpty();
+    }
+
+    @Test
+    void retryOfRecordedChunkNeverOverwritesIt() throws IOException {
+        String uploadId = initiate(CONTENT.length);
+        write(uploadId, 0, slice(0, 4));
+
+        // 相同校验和、截断的请求体：已记录，不读取请求体
+        ChunkedUploadStatusResponse status = chunkedUploadService.writeChunk(uploadId, 0, null,
+                sha256(slice(0, 4)), new ByteArrayInputStream(slice(0, 1)), user);
+        assertThat(status.getMissingChunks()).containsExactly(1, 2);
+
+        // 不同内容的重试被拒绝
+        byte[] corrupted = "XXXX".getBytes(StandardCharsets.US_ASCII);
+        assertThatThrownBy(() -> write(uploadId, 0, corrupted))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("不同内容");
+        assertThat(readPart(uploadId, 0, 4)).isEqualTo(slice(0, 4));
+
+        write(uploadId, 1, slice(4, 8));
+        write(uploadId, 2, slice(8, 10));
+        FileUploadResponse response = chunkedUploadService.complete(uploadId, user);
+        assertThat(fileRecordRepository.findById(response.getId()).orElseThrow().getContentHash())
+                .isEqualTo(sha256(CONTENT));
+    }
+
+    @Test
+    void corruptOrIncompleteChunkIsNotWritten() throws IOException {
+        String uploadId = initiate(CONTENT.length);
+
+        assertThatThrownBy(() -> chunkedUploadService.writeChunk(uploadId, 1, null, sha256(slice(4, 8)),
+                new ByteArrayInputStream("XXXX".getBytes(StandardCharsets.US_ASCII)), user))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("校验和");
+        assertThatThrownBy(() -> chunkedUploadService.writeChunk(uploadId, 1, null, sha256(slice(4, 8)),
+                new ByteArrayInputStream(slice(4, 6)), user))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("不完整");
+
+        assertThat(chunkedUploadService.getStatus(uploadId, user).getMissingChunks()).containsExactly(0, 1, 2);
+        assertThat(readPart(uploadId, 4, 8)).containsOnly(0);
+        assertThat(chunkFiles(uploadId)).isEmpty();
+    }
+
+    @Test
+    void chunkAfterCompleteIsRejected() throws IOException {
+        String uploadId = initiate(4);
+        write(uploadId, 0, slice(0, 4));
+        chunkedUploadService.complete(uploadId, user);
+
+        assertThatThrownBy(() -> write(uploadId, 0, slice(0, 4)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void completeRequiresAllChunks() throws IOException {
+        String uploadId = initiate(CONTENT.length);
+        write(uploadId, 0, slice(0, 4));
+
+        assertThatThrownBy(() -> chunkedUploadService.complete(uploadId, user))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("2 个分片未上传");
+    }
+
+    @Test
+    void openSessionsAndReservedBytesAreLimitedPerUser() throws IOException {
+        assertThatThrownBy(() -> initiate(65))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("总大小");
+
+        initiate(40);
+        assertThatThrownBy(() -> initiate(30))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("总大小");
+        initiate(20);
+        assertThatThrownBy(() -> initiate(1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("2 个");
+    }
+
+    @Test
+    void contentIsUploadedOutsideTheTransaction() throws IOException {
+        String uploadId = writeAll();
+        Path part = partFile(uploadId);
+        BlobStoreService blobStoreService = (BlobStoreService) ReflectionTestUtils.getField(chunkedUploadService,
+                "blobStoreService");
+        BlobStoreService recording = spy(blobStoreService);
+        List<Boolean> inTransaction = new ArrayList<>();
+        doAnswer(invocation -> {
+            inTransaction.add(TransactionSynchronizationManager.isActualTransactionActive());
+            return invocation.callRealMethod();
+        }).when(recording).upload(anyString(), anyLong(), any(Path.class));
+        ReflectionTestUtils.setField(chunkedUploadService, "blobStoreService", recording);
+        try {
+            chunkedUploadService.complete(uploadId, user);
+        } finally {
+            ReflectionTestUtils.setField(chunkedUploadService, "blobStoreService", blobStoreService);
+        }
+
+        assertThat(inTransaction).containsExactly(false);
+        assertThat(part).doesNotExist();
+    }
+
+    @Test
+    void failedRegistrationKeepsPartFileForRetry() throws IOException {
+        String uploadId = writeAll();
+        Path part = partFile(uploadId);
+        FileService fileService = (FileService) ReflectionTestUtils.getField(chunkedUploadService, "fileService");
+        FileService failing = mock(FileService.class);
+        when(failing.registerStoredFile(anyString(), anyString(), anyLong(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("登记失败"));
+        ReflectionTestUtils.setField(chunkedUploadService, "fileService", failing);
+        try {
+            assertThatThrownBy(() -> chunkedUploadService.complete(uploadId, user))
+                    .isInstanceOf(IllegalStateException.class);
+        } finally {
+            ReflectionTestUtils.setField(chunkedUploadService, "fileService", fileService);
+        }
+
+        // 会话删除随登记一起回滚，.part 没有被内容存储移走
+        assertThat(uploadSessionRepository.findById(uploadId)).isPresent();
+        assertThat(part).hasBinaryContent(CONTENT);
+
+        FileUploadResponse response = chunkedUploadService.complete(uploadId, user);
+        assertThat(fileRecordRepository.findById(response.getId()).orElseThrow().getContentHash())
+                .isEqualTo(sha256(CONTENT));
+        assertThat(part).doesNotExist();
+    }
+
+    // 私有方法
+
+    private String initiate(long size) throws IOException {
+        ChunkedUploadInitRequest request = new ChunkedUploadInitRequest();
+        request.setFileName("session.mp4");
+        request.setFileSize(size);
+        request.setContentType("video/mp4");
+        String uploadId = chunkedUploadService.initiate(request, user).getUploadId();
+        uploads.add(uploadId);
+        return uploadId;
+    }
+
+    private String writeAll() throws IOException {
+        String uploadId = initiate(CONTENT.length);
+        write(uploadId, 0, slice(0, 4));
+        write(uploadId, 1, slice(4, 8));
+        write(uploadId, 2, slice(8, 10));
+        return uploadId;
+    }
+
+    private ChunkedUploadStatusResponse write(String uploadId, int index, byte[] body) throws IOException {
+        return chunkedUploadService.writeChunk(uploadId, index, null, sha256(body),
+                new ByteArrayInputStream(body), user);
+    }
+
+    private byte[] readPart(String uploadId, int from, int to) throws IOException {
+        return Arrays.copyOfRange(Files.readAllBytes(partFile(uploadId)), from, to);
+    }
+
+    private List<Path> chunkFiles(String uploadId) throws IOException {
+        Path part = partFile(uploadId);
+        String prefix = part.getFileName().toString().replace(".part", ".chunk-");
+        try (Stream<Path> files = Files.list(part.getParent())) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).toList();
+        }
+    }
+
+    private Path partFile(String uploadId) {
+        Path target = Paths.get(uploadSessionRepository.findById(uploadId).orElseThrow().getTargetPath());
+        return target.resolveSibling(target.getFileName() + ".part");
+    }
+
+    private static byte[] slice(int from, int to) {
+        return Arrays.copyOfRange(CONTENT, from, to);
+    }
+
+    private static String sha256(byte[] data) {
+        MessageDigest digest = Checksums.newSha256();
+        digest.update(data);
+        return Checksums.hex(digest);
+    }
+}
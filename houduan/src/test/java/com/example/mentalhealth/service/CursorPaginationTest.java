@@ -0,0 +1,111 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.dto.CursorPageResponse;
+import com.example.mentalhealth.dto.FileInfoResponse;
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.FileRecordRepository;
+import com.example.mentalhealth.repository.UserRepository;
+import com.example.mentalhealth.util.KeysetCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 游标分页：创建时间相同时按 ID 续传，不重复不遗漏；最后一页没有续传令牌；每页大小有上限
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CursorPaginationTest {
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        String name = "cursor-" + UUID.randomUUID().toString().substring(0, 8);
+        user = userRepository.save(new User(name, name + "@example.com", "password"));
+    }
+
+    @Test
+    void equalTimestampsAreOrderedById() {
+        List<Long> ids = addFiles(7);
+        // 全部放到同一时刻，续传只能靠 ID 区分
+        jdbcTemplate.update("UPDATE file_records SET created_at = ? WHERE uploaded_by = ?",
+                Timestamp.valueOf(LocalDateTime.of(2024, 1, 1, 12, 0)), user.getId());
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPageResponse<FileInfoResponse> page = fileService.getUserFiles(user, cursor, 3);
+            page.getContent().forEach(file -> seen.add(file.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).containsExactlyElementsOf(ids.stream().sorted(Comparator.reverseOrder()).toList());
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        addFiles(4);
+
+        CursorPageResponse<FileInfoResponse> first = fileService.getUserFiles(user, null, 2);
+        assertThat(first.isHasNext()).isTrue();
+        assertThat(first.getNextCursor()).isNotNull();
+
+        CursorPageResponse<FileInfoResponse> last = fileService.getUserFiles(user, first.getNextCursor(), 2);
+        assertThat(last.getContent()).hasSize(2);
+        assertThat(last.isHasNext()).isFalse();
+        assertThat(last.getNextCursor()).isNull();
+
+        CursorPageResponse<FileInfoResponse> exact = fileService.getUserFiles(user, null, 4);
+        assertThat(exact.getContent()).hasSize(4);
+        assertThat(exact.getNextCursor()).isNull();
+    }
+
+    @Test
+    void pageSizeIsClamped() {
+        CursorPageResponse<FileInfoResponse> page = fileService.getUserFiles(user, null, 1_000_000);
+
+        assertThat(page.getSize()).isEqualTo(KeysetCursor.MAX_PAGE_SIZE);
+    }
+
+    // 私有方法
+
+    private List<Long> addFiles(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = "page-" + i + ".pdf";
+            ids.add(fileRecordRepository.save(new FileRecord(name, UUID.randomUUID() + "-" + name,
+                    "target/test-uploads/" + name, 10L, "application/pdf",
+                    FileRecord.FileCategory.DOCUMENT, user)).getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.storage.BlobStat;
+import com.example.mentalhealth.storage.LocalBlobStore;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 衍生图的尺寸上限：原图像素数超限时不生成，PDF 预览按像素上限缩小渲染比例，长宽比过大时不生成
+ */
+class DerivativeServiceTest {
+
+    private static final long MAX_PIXELS = 1_000_000;
+    private static final int PREVIEW_WIDTH = 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private LocalBlobStore blobStore;
+    private DerivativeService service;
+
+    @BeforeEach
+    void setUp() {
+        StorageLayoutService storageLayoutService = new StorageLayoutService();
+        ReflectionTestUtils.setField(storageLayoutService, "uploadDir", tempDir.toString());
+        blobStore = new LocalBlobStore();
+        ReflectionTestUtils.setField(blobStore, "storageLayoutService", storageLayoutService);
+
+        service = new DerivativeService();
+        ReflectionTestUtils.setField(service, "blobStore", blobStore);
+        ReflectionTestUtils.setField(service, "workers", 1);
+        ReflectionTestUtils.setField(service, "queueCapacity", 10);
+        ReflectionTestUtils.setField(service, "thumbnailSize", 320);
+        ReflectionTestUtils.setField(service, "previewWidth", PREVIEW_WIDTH);
+        ReflectionTestUtils.setField(service, "maxPixels", MAX_PIXELS);
+        ReflectionTestUtils.setField(service, "waitTimeoutMs", 30000L);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void regularPageIsRenderedAtPreviewWidth() throws Exception {
+        String key = putPdf("a".repeat(64), 100, 80);
+
+        BufferedImage preview = read(service.ensure(key, "page.pdf", DerivativeService.Kind.PREVIEW), key,
+                DerivativeService.Kind.PREVIEW);
+
+        assertThat(preview.getWidth()).isEqualTo(PREVIEW_WIDTH);
+        assertThat((long) preview.getWidth() * preview.getHeight()).isLessThanOrEqualTo(MAX_PIXELS);
+    }
+
+    @Test
+    void tallPageIsScaledDownToPixelLimit() throws Exception {
+        // 按宽度放大会得到 1024 x 51200（5200 万像素）
+        String key = putPdf("b".repeat(64), 100, 5000);
+
+        BufferedImage preview = read(service.ensure(key, "tall.pdf", DerivativeService.Kind.PREVIEW), key,
+                DerivativeService.Kind.PREVIEW);
+
+        assertThat(preview.getWidth()).isLessThan(PREVIEW_WIDTH);
+        assertThat((long) preview.getWidth() * preview.getHeight()).isLessThanOrEqualTo(MAX_PIXELS);
+    }
+
+    @Test
+    void degeneratePageIsRejected() throws Exception {
+        // 1pt 宽、14400pt 高：按像素上限缩小后高度仍远超单边上限
+        String key = putPdf("c".repeat(64), 1, 14400);
+
+        assertThat(service.ensure(key, "strip.pdf", DerivativeService.Kind.PREVIEW)).isEmpty();
+        assertThat(blobStore.stat(DerivativeService.key(key, DerivativeService.Kind.THUMBNAIL))).isEmpty();
+    }
+
+    @Test
+    void imageOverPixelLimitIsRejected() throws Exception {
+        String key = putImage("d".repeat(64), 1001, 1000);
+
+        assertThat(service.ensure(key, "huge.png", DerivativeService.Kind.THUMBNAIL)).isEmpty();
+    }
+
+    @Test
+    void imageWithinPixelLimitGetsThumbnail() throws Exception {
+        String key = putImage("e".repeat(64), 1000, 500);
+
+        BufferedImage thumbnail = read(service.ensure(key, "photo.png", DerivativeService.Kind.THUMBNAIL), key,
+                DerivativeService.Kind.THUMBNAIL);
+
+        assertThat(thumbnail.getWidth()).isEqualTo(320);
+        assertThat(thumbnail.getHeight()).isEqualTo(160);
+    }
+
+    // 私有方法
+
+    private String putPdf(String key, float width, float height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage(new PDRectangle(width, height)));
+            document.save(out);
+        }
+        blobStore.put(key, new ByteArrayInputStream(out.toByteArray()), out.size());
+        return key;
+    }
+
+    private String putImage(String key, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        blobStore.put(key, new ByteArrayInputStream(out.toByteArray()), out.size());
+        return key;
+    }
+
+    private BufferedImage read(Optional<BlobStat> stat, String key, DerivativeService.Kind kind)
+            throws IOException {
+        assertThat(stat).isPresent();
+        try (InputStream in = blobStore.get(DerivativeService.key(key, kind))) {
+            return ImageIO.read(in);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.event.DownloadCountsFlushedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DownloadCounterServiceTest {
+
+    private DownloadCounterService service;
+    private JdbcTemplate jdbcTemplate;
+    private ApplicationEventPublisher eventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        service = new DownloadCounterService();
+        jdbcTemplate = mock(JdbcTemplate.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "eventPublisher", eventPublisher);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushWritesDeltasAndDropsEntries() {
+        service.increment(1L);
+        service.increment(1L);
+        service.increment(2L);
+        assertThat(service.mergeDownloadCount(1L, 10)).isEqualTo(12);
+        assertThat(service.getPendingIds()).containsExactlyInAnyOrder(1L, 2L);
+
+        service.flush();
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture());
+        assertThat(batch.getValue()).extracting(row -> row[1] + "=" + row[0])
+                .containsExactlyInAnyOrder("1=2", "2=1");
+        assertThat(service.getPendingCount(1L)).isZero();
+        assertThat(pendingCounts()).isEmpty();
+
+        ArgumentCaptor<DownloadCountsFlushedEvent> event = ArgumentCaptor.forClass(DownloadCountsFlushedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getQuestionnaireIds()).isEqualTo(Set.of(1L, 2L));
+    }
+
+    @Test
+    void incrementAfterFlushStartsNewDelta() {
+        service.increment(1L);
+        service.flush();
+
+        service.increment(1L);
+
+        // 写回后数据库为 11，缓冲只剩写回之后的一次
+        assertThat(service.getPendingCount(1L)).isEqualTo(1);
+        assertThat(service.mergeDownloadCount(1L, 11)).isEqualTo(12);
+        assertThat(service.mergeDownloadCount(2L, null)).isZero();
+    }
+
+    @Test
+    void emptyFlushSkipsDatabase() {
+        service.flush();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void failedFlushKeepsDeltas() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new DataAccessResourceFailureException("down"));
+        service.increment(1L);
+        service.increment(1L);
+
+        service.flush();
+        service.increment(1L);
+
+        assertThat(service.getPendingCount(1L)).isEqualTo(3);
+        assertThat(service.mergeDownloadCount(1L, 10)).isEqualTo(13);
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retriedFlushWritesMergedDelta() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(new int[]{1});
+        service.increment(1L);
+        service.flush();
+        service.increment(1L);
+
+        service.flush();
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), batch.capture());
+        assertThat(batch.getValue()).extracting(row -> row[0]).containsExactly(2L);
+        assertThat(pendingCounts()).isEmpty();
+        verify(eventPublisher).publishEvent(any(DownloadCountsFlushedEvent.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Long> pendingCounts() {
+        return (Map<Long, Long>) ReflectionTestUtils.getField(service, "pendingCounts");
+    }
+}
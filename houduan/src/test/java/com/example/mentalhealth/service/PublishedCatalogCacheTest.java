@@ -0,0 +1,79 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.dto.QuestionnaireInfoResponse;
+import com.example.mentalhealth.event.DownloadCountsFlushedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 下载次数写回只失效包含被写回问卷的列表
+ */
+class PublishedCatalogCacheTest {
+
+    private PublishedCatalogCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cache = new PublishedCatalogCache();
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 600L);
+        cache.init();
+    }
+
+    @Test
+    void flushInvalidatesOnlyListsContainingFlushedIds() {
+        loadAll();
+        assertThat(loads).hasValue(3);
+
+        cache.onDownloadCountsFlushed(new DownloadCountsFlushedEvent(Set.of(3L)));
+        loadAll();
+
+        // 只有分类 B 的列表包含问卷 3
+        assertThat(loads).hasValue(4);
+
+        cache.onDownloadCountsFlushed(new DownloadCountsFlushedEvent(Set.of(1L)));
+        loadAll();
+
+        // 已发布列表和分类 A 的列表都包含问卷 1
+        assertThat(loads).hasValue(6);
+    }
+
+    @Test
+    void flushOfUnlistedIdsKeepsCache() {
+        loadAll();
+
+        cache.onDownloadCountsFlushed(new DownloadCountsFlushedEvent(Set.of(99L)));
+        cache.onDownloadCountsFlushed(new DownloadCountsFlushedEvent(Set.of()));
+        loadAll();
+
+        assertThat(loads).hasValue(3);
+    }
+
+    // 私有方法
+
+    private void loadAll() {
+        cache.getPublished(() -> load(1L, 2L));
+        cache.getByCategory("A", () -> load(1L));
+        cache.getByCategory("B", () -> load(3L));
+    }
+
+    private List<QuestionnaireInfoResponse> load(Long... ids) {
+        loads.incrementAndGet();
+        return Arrays.stream(ids).map(id -> {
+            QuestionnaireInfoResponse response = new QuestionnaireInfoResponse();
+            response.setId(id);
+            return response;
+        }).toList();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.dto.QuestionnaireInfoResponse;
+import com.example.mentalhealth.entity.Questionnaire;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.QuestionnaireRepository;
+import com.example.mentalhealth.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 问卷列表接口：创建者随问卷一起加载，每个列表只执行一条 SQL
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QuestionnaireQueryCountTest {
+
+    private static final String CATEGORY = "语句数测试";
+
+    @Autowired
+    private QuestionnaireService questionnaireService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private PublishedCatalogCache publishedCatalogCache;
+
+    @Autowired
+    private QuestionnaireRepository questionnaireRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> created = new ArrayList<>();
+    private final List<User> creators = new ArrayList<>();
+    private Statistics statistics;
+
+    @BeforeAll
+    void createData() {
+        // 每份问卷属于不同的创建者，逐行加载创建者时语句数会随行数增长
+        for (int i = 0; i < 3; i++) {
+            User creator = userRepository.save(new User("count-user-" + i, "count-user-" + i + "@example.com", "password"));
+            creators.add(creator);
+            Questionnaire questionnaire = new Questionnaire("语句数测试问卷" + i, "count.pdf",
+                    "count_" + UUID.randomUUID() + ".pdf", "unused", 1024L, "application/pdf", creator);
+            questionnaire.setCategory(CATEGORY);
+            questionnaire.publish();
+            questionnaire = questionnaireRepository.save(questionnaire);
+            searchIndexService.indexQuestionnaire(questionnaire);
+            created.add(questionnaire.getId());
+        }
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterAll
+    void deleteData() {
+        created.forEach(searchIndexService::removeQuestionnaire);
+        questionnaireRepository.deleteAllById(created);
+        userRepository.deleteAll(creators);
+    }
+
+    @BeforeEach
+    void resetStatistics() {
+        // 测试的是缓存未命中时的加载查询
+        publishedCatalogCache.invalidateAll();
+        statistics.clear();
+    }
+
+    @Test
+    void publishedListUsesOneStatement() {
+        assertCreatorsLoaded(questionnaireService.getPublishedQuestionnaires());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void popularListUsesOneStatement() {
+        assertCreatorsLoaded(questionnaireService.getPopularQuestionnaires(100));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void searchUsesOneStatement() {
+        assertCreatorsLoaded(questionnaireService.searchQuestionnaires("语句数测试问卷"));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void categoryListUsesOneStatement() {
+        assertCreatorsLoaded(questionnaireService.getQuestionnairesByCategory(CATEGORY));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    // 私有方法
+
+    private void assertCreatorsLoaded(List<QuestionnaireInfoResponse> responses) {
+        assertThat(responses)
+                .filteredOn(response -> created.contains(response.getId()))
+                .extracting(QuestionnaireInfoResponse::getCreatorName)
+                .containsExactlyInAnyOrder("count-user-0", "count-user-1", "count-user-2");
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.dto.DownloadDescriptor;
+import com.example.mentalhealth.util.TransferMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Range / If-Range / 条件请求解析（同步输出路径）
+ */
+class RangeDownloadServiceTest {
+
+    private static final int LENGTH = 100;
+
+    @TempDir
+    Path tempDir;
+
+    private RangeDownloadService service;
+    private MeterRegistry meterRegistry;
+    private Path file;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        TransferMetrics transferMetrics = new TransferMetrics();
+        ReflectionTestUtils.setField(transferMetrics, "meterRegistry", meterRegistry);
+
+        service = new RangeDownloadService();
+        ReflectionTestUtils.setField(service, "transferMetrics", transferMetrics);
+        ReflectionTestUtils.setField(service, "chunkSize", 65536);
+        service.init();
+
+        content = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            content[i] = (byte) i;
+        }
+        file = tempDir.resolve("report.pdf");
+        Files.write(file, content);
+    }
+
+    @Test
+    void noRangeReturnsFullContent() throws IOException {
+        MockHttpServletResponse response = download(new MockHttpServletRequest());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        assertThat(response.getContentLengthLong()).isEqualTo(LENGTH);
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    void singleRange() throws IOException {
+        MockHttpServletResponse response = download(withRange("bytes=10-19"));
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 10-19/100");
+        assertThat(response.getContentAsByteArray()).isEqualTo(slice(10, 20));
+    }
+
+    @Test
+    void suffixRange() throws IOException {
+        MockHttpServletResponse response = download(withRange("bytes=-10"));
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 90-99/100");
+        assertThat(response.getContentAsByteArray()).isEqualTo(slice(90, 100));
+    }
+
+    @Test
+    void openEndedAndOversizedRangesAreClipped() throws IOException {
+        assertThat(download(withRange("bytes=95-")).getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 95-99/100");
+        assertThat(download(withRange("bytes=95-500")).getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 95-99/100");
+        assertThat(download(withRange("bytes=-500")).getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 0-99/100");
+    }
+
+    @Test
+    void unsatisfiableRangeReturns416() throws IOException {
+        MockHttpServletResponse response = download(withRange("bytes=100-200"));
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */100");
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void invalidRangeIsIgnored() throws IOException {
+        assertThat(download(withRange("bytes=20-10")).getStatus()).isEqualTo(200);
+        assertThat(download(withRange("bytes=a-b")).getStatus()).isEqualTo(200);
+        assertThat(download(withRange("items=0-10")).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void multipleRangesUseMultipartByteranges() throws IOException {
+        MockHttpServletResponse response = download(withRange("bytes=0-1, 50-51"));
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentType()).startsWith("multipart/byteranges; boundary=");
+        String body = response.getContentAsString(StandardCharsets.ISO_8859_1);
+        assertThat(body).contains("Content-Range: bytes 0-1/100", "Content-Range: bytes 50-51/100");
+        assertThat(response.getContentLengthLong()).isEqualTo(response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void overlappingRangesAreCoalesced() throws IOException {
+        MockHttpServletResponse repeated = download(withRange("bytes=0-,0-,0-,0-"));
+
+        assertThat(repeated.getStatus()).isEqualTo(206);
+        assertThat(repeated.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 0-99/100");
+        assertThat(repeated.getContentAsByteArray()).isEqualTo(content);
+
+        MockHttpServletResponse overlapping = download(withRange("bytes=60-69, 10-19, 15-30, 31-40"));
+
+        String body = overlapping.getContentAsString(StandardCharsets.ISO_8859_1);
+        assertThat(body).contains("Content-Range: bytes 10-40/100", "Content-Range: bytes 60-69/100");
+        assertThat(body.indexOf("bytes 10-40/100")).isLessThan(body.indexOf("bytes 60-69/100"));
+        assertThat(body).doesNotContain("bytes 15-30/100");
+    }
+
+    @Test
+    void ifRangeRequiresStrongMatch() throws IOException {
+        String etag = download(new MockHttpServletRequest()).getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletRequest matching = withRange("bytes=0-9");
+        matching.addHeader(HttpHeaders.IF_RANGE, etag);
+        assertThat(download(matching).getStatus()).isEqualTo(206);
+
+        MockHttpServletRequest weak = withRange("bytes=0-9");
+        weak.addHeader(HttpHeaders.IF_RANGE, "W/" + etag);
+        assertThat(download(weak).getStatus()).isEqualTo(200);
+
+        MockHttpServletRequest stale = withRange("bytes=0-9");
+        stale.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+        MockHttpServletResponse response = download(stale);
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    void ifNoneMatchReturns304() throws IOException {
+        String etag = download(new MockHttpServletRequest()).getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "W/" + etag);
+        MockHttpServletResponse response = download(request);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void contentDispositionFallbackIsAscii() {
+        String header = service.buildContentDisposition("焦虑 \"自评\"量表.pdf");
+
+        assertThat(header.chars().allMatch(c -> c < 0x7f)).isTrue();
+        assertThat(header).isEqualTo("attachment; filename=\"__ ______.pdf\"; "
+                + "filename*=UTF-8''%E7%84%A6%E8%99%91%20%22%E8%87%AA%E8%AF%84%22%E9%87%8F%E8%A1%A8.pdf");
+    }
+
+    @Test
+    void downloadBytesAreRecordedAfterWrite() throws IOException {
+        DownloadDescriptor descriptor = new DownloadDescriptor(1L, "报告.pdf", "application/pdf", (long) LENGTH,
+                null, file);
+        descriptor.setCategory("DOCUMENT");
+
+        service.write(descriptor, withRange("bytes=10-19"), new MockHttpServletResponse());
+        assertThat(downloadedBytes()).isEqualTo(10);
+
+        service.write(descriptor, withRange("bytes=100-200"), new MockHttpServletResponse());
+        assertThat(downloadedBytes()).isEqualTo(10);
+
+        service.write(descriptor, new MockHttpServletRequest(), new MockHttpServletResponse());
+        assertThat(downloadedBytes()).isEqualTo(10 + LENGTH);
+    }
+
+    @Test
+    void bandwidthLimitRequiresAsync() throws IOException {
+        RangeDownloadService sync = new RangeDownloadService();
+        ReflectionTestUtils.setField(sync, "chunkSize", 65536);
+        ReflectionTestUtils.setField(sync, "bandwidthPerUser", 1024L);
+        sync.init();
+
+        // 同步下载不限速，本地文件仍可走 sendfile
+        assertThat(ReflectionTestUtils.getField(sync, "bandwidthLimiter")).isNull();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sync.writeFile(file, "报告.pdf", "application/pdf", request, response);
+
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.filename"))
+                .isEqualTo(file.toAbsolutePath().toString());
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    // 私有方法
+
+    private double downloadedBytes() {
+        return meterRegistry.counter("storage.transfer.bytes", "direction", "download", "category", "DOCUMENT")
+                .count();
+    }
+
+    private MockHttpServletResponse download(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.writeFile(file, "报告.pdf", "application/pdf", request, response);
+        return response;
+    }
+
+    private MockHttpServletRequest withRange(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, range);
+        return request;
+    }
+
+    private byte[] slice(int from, int to) {
+        return Arrays.copyOfRange(content, from, to);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.dto.FileInfoResponse;
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.FileRecordRepository;
+import com.example.mentalhealth.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 字母数字关键词按子串（而不是前缀）匹配：索引就绪前后的文件名检索结果一致，
+ * 与回退使用的 LIKE '%关键词%' 相同
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SearchFallbackParityTest {
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private Long report;
+    private Long reportV2;
+    private Long phq;
+
+    @BeforeEach
+    void setUp() {
+        String name = "search-" + UUID.randomUUID().toString().substring(0, 8);
+        user = userRepository.save(new User(name, name + "@example.com", "password"));
+        report = addFile("annual report 2024.docx");
+        reportV2 = addFile("reportv2.pdf");
+        phq = addFile("phq9 screening.pdf");
+    }
+
+    @Test
+    void wordQueriesMatchInsideWords() {
+        assertThat(search("epor", true)).containsExactlyInAnyOrder(report, reportV2);
+        assertThat(search("nnual", true)).containsExactly(report);
+        assertThat(search("q9", true)).containsExactly(phq);
+        assertThat(search("reports", true)).isEmpty();
+    }
+
+    @Test
+    void indexMatchesLikeFallback() {
+        for (String keyword : List.of("report", "epor", "port", "nnual", "2024", "doc", "pdf", "q9", "reening", "reports")) {
+            assertThat(search(keyword, true)).as(keyword).isEqualTo(search(keyword, false));
+        }
+    }
+
+    @Test
+    void fallbackHonoursPaging() {
+        // "pdf" 命中其中两个文件
+        for (boolean indexReady : List.of(true, false)) {
+            List<Long> first = search("pdf", indexReady, 0, 1);
+            List<Long> second = search("pdf", indexReady, 1, 1);
+            assertThat(first).as("index ready: %s", indexReady).hasSize(1);
+            assertThat(Stream.concat(first.stream(), second.stream()))
+                    .as("index ready: %s", indexReady)
+                    .containsExactlyInAnyOrder(reportV2, phq);
+            assertThat(search("pdf", indexReady, 2, 1)).as("index ready: %s", indexReady).isEmpty();
+            assertThat(search("pdf", indexReady, -1, 1)).as("index ready: %s", indexReady).isEqualTo(first);
+            assertThat(search("pdf", indexReady, 0, 0)).as("index ready: %s", indexReady).hasSize(2);
+        }
+    }
+
+    // 私有方法
+
+    private Long addFile(String originalName) {
+        FileRecord saved = fileRecordRepository.save(new FileRecord(originalName,
+                UUID.randomUUID() + ".pdf", "target/test-uploads/" + originalName, 10L,
+                "application/pdf", FileRecord.FileCategory.DOCUMENT, user));
+        searchIndexService.indexFile(saved);
+        return saved.getId();
+    }
+
+    private Set<Long> search(String keyword, boolean indexReady) {
+        return Set.copyOf(search(keyword, indexReady, 0, 0));
+    }
+
+    private List<Long> search(String keyword, boolean indexReady, int page, int size) {
+        boolean ready = searchIndexService.isReady();
+        ReflectionTestUtils.setField(searchIndexService, "ready", indexReady);
+        try {
+            return fileService.searchUserFiles(user, keyword, page, size).stream()
+                    .map(FileInfoResponse::getId)
+                    .toList();
+        } finally {
+            ReflectionTestUtils.setField(searchIndexService, "ready", ready);
+        }
+    }
+}
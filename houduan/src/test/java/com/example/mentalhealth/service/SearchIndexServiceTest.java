@@ -0,0 +1,101 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 检索语义：CJK 二元组、字母数字子串、多词 AND、空关键词返回全部
+ */
+class SearchIndexServiceTest {
+
+    private static final long OWNER = 1L;
+    private static final long OTHER = 2L;
+
+    private SearchIndexService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new SearchIndexService();
+        index(1L, OWNER, "PHQ-9 抑郁筛查量表.pdf", "门诊使用");
+        index(2L, OWNER, "GAD-7 焦虑量表.pdf", null);
+        index(3L, OWNER, "annual_report_2024.docx", "心理咨询年度报告");
+        index(4L, OTHER, "焦虑自评量表.pdf", null);
+    }
+
+    @Test
+    void cjkQueryMatchesBigrams() {
+        assertThat(service.searchFiles("焦虑", null, 0, 0)).containsExactlyInAnyOrder(2L, 4L);
+        assertThat(service.searchFiles("量表", OWNER, 0, 0)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(service.searchFiles("抑", OWNER, 0, 0)).containsExactly(1L);
+    }
+
+    @Test
+    void latinQueryMatchesSubstring() {
+        assertThat(service.searchFiles("port", OWNER, 0, 0)).containsExactly(3L);
+        assertThat(service.searchFiles("PHQ", OWNER, 0, 0)).containsExactly(1L);
+        assertThat(service.searchFiles("docx", OWNER, 0, 0)).containsExactly(3L);
+    }
+
+    @Test
+    void latinSubstringOfAnyLengthUsesGramIndex() {
+        assertThat(service.searchFiles("q", OWNER, 0, 0)).containsExactly(1L);
+        assertThat(service.searchFiles("ad", OWNER, 0, 0)).containsExactly(2L);
+        assertThat(service.searchFiles("nnual", OWNER, 0, 0)).containsExactly(3L);
+        assertThat(service.searchFiles("reports", OWNER, 0, 0)).isEmpty();
+
+        service.removeFile(3L);
+
+        assertThat(service.searchFiles("port", OWNER, 0, 0)).isEmpty();
+        assertThat(service.searchFiles("g", OWNER, 0, 0)).containsExactly(2L);
+    }
+
+    @Test
+    void multipleTermsMustAllMatch() {
+        assertThat(service.searchFiles("焦虑 GAD", null, 0, 0)).containsExactly(2L);
+        assertThat(service.searchFiles("焦虑 PHQ", null, 0, 0)).isEmpty();
+    }
+
+    @Test
+    void blankKeywordReturnsAllNewestFirst() {
+        assertThat(service.searchFiles("", OWNER, 0, 0)).containsExactly(3L, 2L, 1L);
+        assertThat(service.searchFiles("  ", null, 0, 2)).containsExactly(4L, 3L);
+        assertThat(service.searchFiles(null, OTHER, 0, 0)).containsExactly(4L);
+    }
+
+    @Test
+    void removedAndInactiveFilesDisappear() {
+        service.removeFile(2L);
+        FileRecord inactive = file(4L, OTHER, "焦虑自评量表.pdf", null);
+        inactive.setIsActive(false);
+        service.indexFile(inactive);
+
+        assertThat(service.searchFiles("焦虑", null, 0, 0)).isEmpty();
+    }
+
+    @Test
+    void pagination() {
+        assertThat(service.searchFiles("", OWNER, 0, 2)).containsExactly(3L, 2L);
+        assertThat(service.searchFiles("", OWNER, 1, 2)).containsExactly(1L);
+        assertThat(service.searchFiles("", OWNER, 2, 2)).isEmpty();
+    }
+
+    // 私有方法
+
+    private void index(long id, long ownerId, String name, String description) {
+        service.indexFile(file(id, ownerId, name, description));
+    }
+
+    private FileRecord file(long id, long ownerId, String name, String description) {
+        User owner = new User();
+        owner.setId(ownerId);
+        FileRecord file = new FileRecord(name, name, null, 1L, "application/octet-stream",
+                FileRecord.FileCategory.DOCUMENT, owner);
+        file.setId(id);
+        file.setDescription(description);
+        return file;
+    }
+}
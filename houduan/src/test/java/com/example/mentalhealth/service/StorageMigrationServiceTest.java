@@ -0,0 +1,100 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.FileRecordRepository;
+import com.example.mentalhealth.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 旧布局迁移：失败的记录在下一轮重试，清理旧目录时只删除已迁移记录的文件
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class StorageMigrationServiceTest {
+
+    @Autowired
+    private StorageMigrationService storageMigrationService;
+
+    @Autowired
+    private StorageLayoutService storageLayoutService;
+
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private Path documentDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        String name = "migrate-" + UUID.randomUUID().toString().substring(0, 8);
+        user = userRepository.save(new User(name, name + "@example.com", "password"));
+        documentDir = storageLayoutService.legacyDirectories().get(0);
+        Files.createDirectories(documentDir);
+        ReflectionTestUtils.setField(storageMigrationService, "enabled", true);
+    }
+
+    @AfterEach
+    void disable() {
+        ReflectionTestUtils.setField(storageMigrationService, "enabled", false);
+    }
+
+    @Test
+    void failedRowIsRetriedAndOnlyMigratedFilesAreSwept() throws IOException {
+        FileRecord migrated = legacyRecord("migrated.pdf", true);
+        FileRecord missing = legacyRecord("missing.pdf", false);
+        Path unknown = Files.writeString(documentDir.resolve("unknown-" + UUID.randomUUID() + ".pdf"), "?");
+
+        storageMigrationService.migrateBatch();
+
+        assertThat(reload(migrated).getContentHash()).isNotNull();
+        assertThat(reload(migrated).getFilePath()).startsWith(storageLayoutService.blobRoot().toString());
+        assertThat(reload(missing).getContentHash()).isNull();
+
+        // 文件恢复后，下一轮从头扫描时重试
+        Files.writeString(Path.of(missing.getFilePath()), "restored " + UUID.randomUUID(), StandardCharsets.UTF_8);
+        storageMigrationService.migrateBatch();
+        assertThat(reload(missing).getContentHash()).isNotNull();
+
+        // 迁移过的旧文件在下一轮删除；之后没有可迁移的记录时清理旧目录，没有对应记录的文件保留
+        storageMigrationService.migrateBatch();
+
+        assertThat(Path.of(migrated.getFilePath())).doesNotExist();
+        assertThat(Path.of(missing.getFilePath())).doesNotExist();
+        assertThat(unknown).exists();
+        Files.deleteIfExists(unknown);
+    }
+
+    // 私有方法
+
+    private FileRecord legacyRecord(String name, boolean withFile) throws IOException {
+        String storedName = UUID.randomUUID() + "-" + name;
+        Path path = documentDir.resolve(storedName);
+        if (withFile) {
+            Files.writeString(path, "legacy " + UUID.randomUUID(), StandardCharsets.UTF_8);
+        }
+        return fileRecordRepository.save(new FileRecord(name, storedName, path.toString(), 10L,
+                "application/pdf", FileRecord.FileCategory.DOCUMENT, user));
+    }
+
+    private FileRecord reload(FileRecord fileRecord) {
+        return fileRecordRepository.findById(fileRecord.getId()).orElseThrow();
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.dto.QuestionnaireInfoResponse;
+import com.example.mentalhealth.entity.Questionnaire;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.QuestionnaireRepository;
+import com.example.mentalhealth.repository.QuestionnaireTagRepository;
+import com.example.mentalhealth.repository.TagRepository;
+import com.example.mentalhealth.repository.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 标签：旧标签列迁移、AND / OR 组合、状态和分类过滤、并发创建同名标签，以及草稿只对创建者可见
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TagServiceTest {
+
+    @Autowired
+    private TagService tagService;
+
+    @Autowired
+    private QuestionnaireService questionnaireService;
+
+    @Autowired
+    private QuestionnaireRepository questionnaireRepository;
+
+    @Autowired
+    private QuestionnaireTagRepository questionnaireTagRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final List<Long> created = new ArrayList<>();
+    private User owner;
+    private User other;
+    private Long sleepAnxiety;
+    private Long anxietyDraft;
+    private Long sleepDepression;
+
+    @BeforeAll
+    void createData() {
+        owner = userRepository.save(new User("tag-owner", "tag-owner@example.com", "password"));
+        other = userRepository.save(new User("tag-other", "tag-other@example.com", "password"));
+        // 只写旧的 tags 列，由迁移生成关联
+        sleepAnxiety = save("焦虑, 睡眠", Questionnaire.QuestionnaireStatus.PUBLISHED, "标签测试-焦虑");
+        anxietyDraft = save("焦虑", Questionnaire.QuestionnaireStatus.DRAFT, "标签测试-焦虑");
+        sleepDepression = save("抑郁，睡眠", Questionnaire.QuestionnaireStatus.PUBLISHED, "标签测试-抑郁");
+
+        tagService.migrateLegacyTags();
+        tagService.rebuildIndex();
+    }
+
+    // 上下文和内存库与其他测试共享，删除本类创建的数据
+    @AfterAll
+    void deleteData() {
+        transactionTemplate.executeWithoutResult(status -> created.forEach(questionnaireTagRepository::deleteByQuestionnaireId));
+        questionnaireRepository.deleteAllById(created);
+        userRepository.deleteAll(List.of(owner, other));
+        tagService.rebuildIndex();
+    }
+
+    @Test
+    void legacyTagsAreMigratedOnce() {
+        assertThat(questionnaireTagRepository.findByIdQuestionnaireId(sleepAnxiety)).hasSize(2);
+        assertThat(questionnaireTagRepository.findByIdQuestionnaireId(sleepDepression)).hasSize(2);
+
+        tagService.migrateLegacyTags();
+
+        assertThat(questionnaireTagRepository.findByIdQuestionnaireId(sleepAnxiety)).hasSize(2);
+        assertThat(tagRepository.findByNameIn(Set.of("焦虑", "睡眠", "抑郁"))).hasSize(3);
+    }
+
+    @Test
+    void matchAllAndMatchAny() {
+        assertThat(ownIds(List.of("焦虑", "睡眠"), true, null, null)).containsExactly(sleepAnxiety);
+        assertThat(ownIds(List.of("焦虑,抑郁"), false, null, null))
+                .containsExactly(sleepDepression, anxietyDraft, sleepAnxiety);
+    }
+
+    @Test
+    void statusAndCategoryFilters() {
+        assertThat(ownIds(List.of("焦虑"), true, Questionnaire.QuestionnaireStatus.DRAFT, null))
+                .containsExactly(anxietyDraft);
+        assertThat(ownIds(List.of("睡眠"), true, null, "标签测试-抑郁")).containsExactly(sleepDepression);
+    }
+
+    @Test
+    void draftsAreVisibleOnlyToTheirCreator() {
+        assertThat(ids(questionnaireService.findByTags(List.of("焦虑"), true, null, null, false, other, 0, 0)))
+                .contains(sleepAnxiety)
+                .doesNotContain(anxietyDraft);
+        assertThat(ids(questionnaireService.findByTags(List.of("焦虑"), true, null, null, true, other, 0, 0)))
+                .isEmpty();
+        assertThat(ids(questionnaireService.findByTags(List.of("焦虑"), true,
+                Questionnaire.QuestionnaireStatus.DRAFT, null, true, owner, 0, 0)))
+                .containsExactly(anxietyDraft);
+        assertThatThrownBy(() -> questionnaireService.findByTags(List.of("焦虑"), true,
+                Questionnaire.QuestionnaireStatus.DRAFT, null, false, other, 0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void concurrentUploadsCreateSameNewTagOnce() throws Exception {
+        int uploads = 4;
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < uploads; i++) {
+            ids.add(save("并发新标签", Questionnaire.QuestionnaireStatus.PUBLISHED, "标签测试-并发"));
+        }
+        CyclicBarrier barrier = new CyclicBarrier(uploads);
+        ExecutorService executor = Executors.newFixedThreadPool(uploads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Long id : ids) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    transactionTemplate.executeWithoutResult(status ->
+                            tagService.syncTags(questionnaireRepository.findById(id).orElseThrow()));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(tagRepository.findByNameIn(Set.of("并发新标签"))).hasSize(1);
+        for (Long id : ids) {
+            assertThat(questionnaireTagRepository.findByIdQuestionnaireId(id)).hasSize(1);
+        }
+    }
+
+    @Test
+    void overlongTagIsRejected() {
+        assertThatThrownBy(() -> tagService.validateTags("焦虑," + "a".repeat(101)))
+                .isInstanceOf(IllegalArgumentException.class);
+        tagService.validateTags("焦虑," + "a".repeat(100));
+    }
+
+    // 私有方法
+
+    private Long save(String tags, Questionnaire.QuestionnaireStatus status, String category) {
+        String storedName = "tags_" + UUID.randomUUID() + ".pdf";
+        Questionnaire questionnaire = new Questionnaire("标签测试问卷", "tags.pdf", storedName, "unused",
+                1024L, "application/pdf", owner);
+        questionnaire.setTags(tags);
+        questionnaire.setStatus(status);
+        questionnaire.setCategory(category);
+        Long id = questionnaireRepository.save(questionnaire).getId();
+        created.add(id);
+        return id;
+    }
+
+    private List<Long> ownIds(List<String> tags, boolean matchAll, Questionnaire.QuestionnaireStatus status,
+                              String category) {
+        return tagService.findQuestionnaireIds(tags, matchAll, status, category, owner.getId());
+    }
+
+    private List<Long> ids(List<QuestionnaireInfoResponse> responses) {
+        return responses.stream().map(QuestionnaireInfoResponse::getId).toList();
+    }
+}
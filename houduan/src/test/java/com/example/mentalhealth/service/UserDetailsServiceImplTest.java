@@ -0,0 +1,85 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 请求主体缓存：命中时不查询 users 表，evictUser 和资料修改后重新加载
+ */
+class UserDetailsServiceImplTest {
+
+    private UserDetailsServiceImpl userDetailsService;
+    private UserRepository userRepository;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User("alice", "alice@example.com", "password");
+        user.setId(1L);
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername("alice")).thenAnswer(invocation -> Optional.of(user));
+        when(userRepository.findById(1L)).thenAnswer(invocation -> Optional.of(user));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userDetailsService = new UserDetailsServiceImpl();
+        ReflectionTestUtils.setField(userDetailsService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(userDetailsService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(userDetailsService, "principalCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(userDetailsService, "principalCacheTtlSeconds", 30L);
+        userDetailsService.init();
+    }
+
+    @Test
+    void cachedPrincipalSkipsRepository() {
+        assertThat(userDetailsService.loadCachedUserByUsername("alice")).isSameAs(user);
+        assertThat(userDetailsService.loadCachedUserByUsername("alice")).isSameAs(user);
+
+        verify(userRepository, times(1)).findByUsername("alice");
+    }
+
+    @Test
+    void loginRefreshesCachedPrincipal() {
+        userDetailsService.loadCachedUserByUsername("alice");
+        userDetailsService.loadUserByUsername("alice");
+        userDetailsService.loadCachedUserByUsername("alice");
+
+        verify(userRepository, times(2)).findByUsername("alice");
+    }
+
+    @Test
+    void evictedPrincipalIsReloaded() {
+        userDetailsService.loadCachedUserByUsername("alice");
+
+        userDetailsService.evictUser("alice");
+        userDetailsService.loadCachedUserByUsername("alice");
+
+        verify(userRepository, times(2)).findByUsername("alice");
+    }
+
+    @Test
+    void profileUpdateEvictsCachedPrincipal() {
+        AuthService authService = new AuthService();
+        ReflectionTestUtils.setField(authService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(authService, "userDetailsService", userDetailsService);
+        userDetailsService.loadCachedUserByUsername("alice");
+
+        authService.updateUserProfile(1L, null, "心理中心", null);
+
+        User reloaded = (User) userDetailsService.loadCachedUserByUsername("alice");
+        assertThat(reloaded.getAffiliation()).isEqualTo("心理中心");
+        verify(userRepository, times(2)).findByUsername("alice");
+    }
+}
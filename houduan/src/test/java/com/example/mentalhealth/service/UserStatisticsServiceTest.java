@@ -0,0 +1,161 @@
+package com.example.mentalhealth.service;
+
+import com.example.mentalhealth.entity.FileRecord;
+import com.example.mentalhealth.entity.User;
+import com.example.mentalhealth.entity.UserStatistics;
+import com.example.mentalhealth.repository.FileRecordRepository;
+import com.example.mentalhealth.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 汇总行的补建和增量更新：补建等待进行中的增量事务提交，明细不会既被补建漏掉又没有增量；
+ * 上传时先取用户行锁再插入明细
+ */
+@SpringBootTest(properties = "statistics.materialized.enabled=true")
+@ActiveProfiles("test")
+class UserStatisticsServiceTest {
+
+    @Autowired
+    private UserStatisticsService userStatisticsService;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private QuestionnaireService questionnaireService;
+
+    @Autowired
+    private FileRecordRepository fileRecordRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        String name = "stats-" + UUID.randomUUID().toString().substring(0, 8);
+        user = userRepository.save(new User(name, name + "@example.com", "password"));
+    }
+
+    @Test
+    void buildThenApplyDeltas() {
+        addFile("a.pdf", FileRecord.FileCategory.DOCUMENT, 100);
+        addFile("b.mp4", FileRecord.FileCategory.VIDEO, 50);
+
+        UserStatistics built = userStatisticsService.getOrBuild(user.getId());
+        assertThat(built.getFileCount()).isEqualTo(2);
+        assertThat(built.getDocumentCount()).isEqualTo(1);
+        assertThat(built.getTotalFileSize()).isEqualTo(150);
+
+        FileRecord image = addFile("c.png", FileRecord.FileCategory.IMAGE, 10);
+        transactionTemplate.executeWithoutResult(status -> userStatisticsService.fileRemoved(image));
+        addFile("d.pdf", FileRecord.FileCategory.DOCUMENT, 1);
+
+        UserStatistics updated = userStatisticsService.getOrBuild(user.getId());
+        assertThat(updated.getFileCount()).isEqualTo(3);
+        assertThat(updated.getDocumentCount()).isEqualTo(2);
+        assertThat(updated.getImageCount()).isZero();
+        assertThat(updated.getTotalFileSize()).isEqualTo(151);
+    }
+
+    @Test
+    void buildWaitsForInFlightDelta() throws Exception {
+        CountDownLatch deltaApplied = new CountDownLatch(1);
+        // 增量事务写入明细、更新汇总行（此时不存在，更新 0 行）后暂不提交
+        CompletableFuture<Void> upload = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+                status -> {
+                    userStatisticsService.lockUser(user.getId());
+                    FileRecord saved = fileRecordRepository.save(newFile("slow.pdf", FileRecord.FileCategory.DOCUMENT, 7));
+                    userStatisticsService.fileAdded(saved);
+                    deltaApplied.countDown();
+                    sleep(500);
+                }));
+        assertThat(deltaApplied.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // 补建在用户行锁上等待增量事务提交，之后读到这条明细
+        UserStatistics built = userStatisticsService.getOrBuild(user.getId());
+        upload.get(10, TimeUnit.SECONDS);
+
+        assertThat(built.getFileCount()).isEqualTo(1);
+        assertThat(built.getTotalFileSize()).isEqualTo(7);
+    }
+
+    @Test
+    void userRowIsLockedBeforeDetailInsert() {
+        // H2 插入明细时不对 users 行加外键共享锁，无法复现 MySQL 上锁升级的死锁；这里检查取锁时明细是否已插入
+        JdbcTemplate jdbcTemplate = (JdbcTemplate) ReflectionTestUtils.getField(userStatisticsService, "jdbcTemplate");
+        List<Long> detailRowsAtLock = new ArrayList<>();
+        JdbcTemplate recording = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+                if (sql.startsWith("SELECT id FROM users")) {
+                    // 与加锁在同一事务中，能看到本事务未提交的明细
+                    detailRowsAtLock.add(queryForObject("SELECT (SELECT COUNT(*) FROM file_records WHERE uploaded_by = ?) "
+                            + "+ (SELECT COUNT(*) FROM questionnaires WHERE created_by = ?)", Long.class, args[0], args[0]));
+                }
+                return super.queryForList(sql, elementType, args);
+            }
+        };
+        ReflectionTestUtils.setField(userStatisticsService, "jdbcTemplate", recording);
+        try {
+            fileService.uploadFile(pdf("lock-file.pdf"), null, user);
+            questionnaireService.uploadQuestionnaire(pdf("lock-questionnaire.pdf"), "加锁顺序", null, null, null, user);
+        } finally {
+            ReflectionTestUtils.setField(userStatisticsService, "jdbcTemplate", jdbcTemplate);
+        }
+
+        // 每次上传在 INSERT 之前取锁一次，更新汇总行时（已持有）再取一次
+        assertThat(detailRowsAtLock).containsExactly(0L, 1L, 1L, 2L);
+    }
+
+    // 私有方法
+
+    private MockMultipartFile pdf(String name) {
+        byte[] content = ("%PDF-1.4 " + name + " " + UUID.randomUUID()).getBytes(StandardCharsets.US_ASCII);
+        return new MockMultipartFile("file", name, "application/pdf", content);
+    }
+
+    private FileRecord addFile(String name, FileRecord.FileCategory category, long size) {
+        return transactionTemplate.execute(status -> {
+            userStatisticsService.lockUser(user.getId());
+            FileRecord saved = fileRecordRepository.save(newFile(name, category, size));
+            userStatisticsService.fileAdded(saved);
+            return saved;
+        });
+    }
+
+    private FileRecord newFile(String name, FileRecord.FileCategory category, long size) {
+        return new FileRecord(name, UUID.randomUUID() + "-" + name, "target/test-uploads/" + name, size,
+                "application/octet-stream", category, user);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
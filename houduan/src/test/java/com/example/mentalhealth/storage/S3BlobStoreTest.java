@@ -0,0 +1,408 @@
+package com.example.mentalhealth.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * S3 后端的读写、范围读取、分段上传和删除，对着进程内的 S3 协议替身运行（不依赖 Docker 或外部服务）
+ * 替身只实现 S3BlobStore 用到的接口：PutObject、GetObject（含 Range）、HeadObject、DeleteObject 和分段上传
+ */
+class S3BlobStoreTest {
+
+    private static final String BUCKET = "test-bucket";
+    private static final long PART_SIZE = 5L * 1024 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private S3StandIn standIn;
+    private S3BlobStore blobStore;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        standIn = new S3StandIn();
+        blobStore = new S3BlobStore();
+        ReflectionTestUtils.setField(blobStore, "endpoint", standIn.endpoint());
+        ReflectionTestUtils.setField(blobStore, "region", "us-east-1");
+        ReflectionTestUtils.setField(blobStore, "bucket", BUCKET);
+        ReflectionTestUtils.setField(blobStore, "accessKey", "test");
+        ReflectionTestUtils.setField(blobStore, "secretKey", "test");
+        ReflectionTestUtils.setField(blobStore, "pathStyleAccess", true);
+        ReflectionTestUtils.setField(blobStore, "keyPrefix", "blobs/");
+        ReflectionTestUtils.setField(blobStore, "partSize", PART_SIZE);
+        ReflectionTestUtils.setField(blobStore, "createBucket", false);
+        blobStore.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        blobStore.close();
+        standIn.stop();
+    }
+
+    @Test
+    void putFileThenGetAndStat() throws IOException {
+        byte[] content = "问卷内容".getBytes(StandardCharsets.UTF_8);
+        Path source = Files.write(tempDir.resolve("small.bin"), content);
+        String key = key('a');
+
+        blobStore.put(key, source);
+
+        assertThat(standIn.objectKeys()).containsExactly("blobs/aa/aa/" + key);
+        assertThat(read(blobStore.get(key))).isEqualTo(content);
+        assertThat(blobStore.stat(key)).hasValueSatisfying(stat -> assertThat(stat.getSize()).isEqualTo(content.length));
+        assertThat(blobStore.location(key)).isEqualTo("s3://" + BUCKET + "/blobs/aa/aa/" + key);
+    }
+
+    @Test
+    void rangeReadReturnsOnlyRequestedBytes() throws IOException {
+        byte[] content = randomBytes(1000);
+        String key = key('b');
+        blobStore.put(key, new ByteArrayInputStream(content), content.length);
+
+        assertThat(read(blobStore.get(key, 100, 50))).isEqualTo(Arrays.copyOfRange(content, 100, 150));
+        assertThat(read(blobStore.get(key, 990, 10))).isEqualTo(Arrays.copyOfRange(content, 990, 1000));
+        assertThat(read(blobStore.get(key, 0, 0))).isEmpty();
+        assertThat(standIn.ranges()).containsExactly("bytes=100-149", "bytes=990-999");
+    }
+
+    @Test
+    void largeContentUsesMultipartUpload() throws IOException {
+        byte[] content = randomBytes((int) PART_SIZE * 2 + 1234);
+        Path source = Files.write(tempDir.resolve("large.bin"), content);
+        String key = key('c');
+
+        blobStore.put(key, source);
+
+        assertThat(standIn.completedParts()).containsExactly(3);
+        assertThat(standIn.pendingUploads()).isZero();
+        assertThat(read(blobStore.get(key))).isEqualTo(content);
+        assertThat(read(blobStore.get(key, PART_SIZE - 2, 4)))
+                .isEqualTo(Arrays.copyOfRange(content, (int) PART_SIZE - 2, (int) PART_SIZE + 2));
+    }
+
+    @Test
+    void failedMultipartUploadIsAborted() {
+        byte[] content = randomBytes((int) PART_SIZE + 10);
+        InputStream failing = new InputStream() {
+            private final InputStream delegate = new ByteArrayInputStream(content);
+
+            @Override
+            public int read() throws IOException {
+                return read(new byte[1], 0, 1) < 0 ? -1 : 0;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = delegate.read(buffer, offset, length);
+                if (n < 0) {
+                    throw new IOException("客户端断开");
+                }
+                return n;
+            }
+        };
+
+        assertThatThrownBy(() -> blobStore.put(key('d'), failing, content.length)).isInstanceOf(IOException.class);
+        assertThat(standIn.pendingUploads()).isZero();
+        assertThat(standIn.objectKeys()).isEmpty();
+    }
+
+    @Test
+    void deleteRemovesObject() throws IOException {
+        String key = key('e');
+        blobStore.put(key, new ByteArrayInputStream(new byte[]{1, 2, 3}), 3);
+
+        assertThat(blobStore.delete(key)).isTrue();
+        assertThat(blobStore.delete(key)).isFalse();
+        assertThat(blobStore.stat(key)).isEmpty();
+        assertThatThrownBy(() -> blobStore.get(key)).isInstanceOf(NoSuchFileException.class);
+        assertThatThrownBy(() -> blobStore.get(key, 0, 1)).isInstanceOf(NoSuchFileException.class);
+    }
+
+    // 私有方法
+
+    private static String key(char c) {
+        return String.valueOf(c).repeat(64);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * 进程内的 S3 协议替身：路径风格寻址，不校验签名，对象保存在内存中
+     */
+    static class S3StandIn {
+
+        private final HttpServer server;
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        private final Map<String, Long> lastModified = new ConcurrentHashMap<>();
+        private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+        private final List<Integer> completedParts = new CopyOnWriteArrayList<>();
+        private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+        S3StandIn() throws IOException {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        String endpoint() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        List<String> objectKeys() {
+            return new ArrayList<>(objects.keySet());
+        }
+
+        List<Integer> completedParts() {
+            return completedParts;
+        }
+
+        List<String> ranges() {
+            return ranges;
+        }
+
+        int pendingUploads() {
+            return uploads.size();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                String path = exchange.getRequestURI().getPath();
+                String prefix = "/" + BUCKET + "/";
+                if (!path.startsWith(prefix)) {
+                    error(exchange, 404, "NoSuchBucket");
+                    return;
+                }
+                String objectKey = path.substring(prefix.length());
+                Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+                switch (exchange.getRequestMethod()) {
+                    case "PUT" -> put(exchange, objectKey, query);
+                    case "POST" -> post(exchange, objectKey, query);
+                    case "GET" -> get(exchange, objectKey);
+                    case "HEAD" -> head(exchange, objectKey);
+                    case "DELETE" -> delete(exchange, objectKey, query);
+                    default -> error(exchange, 405, "MethodNotAllowed");
+                }
+            }
+        }
+
+        private void put(HttpExchange exchange, String objectKey, Map<String, String> query) throws IOException {
+            byte[] body = body(exchange);
+            if (query.containsKey("uploadId")) {
+                Map<Integer, byte[]> parts = uploads.get(query.get("uploadId"));
+                if (parts == null) {
+                    error(exchange, 404, "NoSuchUpload");
+                    return;
+                }
+                parts.put(Integer.parseInt(query.get("partNumber")), body);
+            } else {
+                store(objectKey, body);
+            }
+            exchange.getResponseHeaders().set("ETag", etag(body));
+            exchange.sendResponseHeaders(200, -1);
+        }
+
+        private void post(HttpExchange exchange, String objectKey, Map<String, String> query) throws IOException {
+            body(exchange);
+            if (query.containsKey("uploads")) {
+                String uploadId = UUID.randomUUID().toString();
+                uploads.put(uploadId, new TreeMap<>());
+                xml(exchange, "<InitiateMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>" + objectKey
+                        + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+                return;
+            }
+            Map<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+            if (parts == null) {
+                error(exchange, 404, "NoSuchUpload");
+                return;
+            }
+            ByteArrayOutputStream joined = new ByteArrayOutputStream();
+            for (byte[] part : parts.values()) {
+                joined.write(part);
+            }
+            store(objectKey, joined.toByteArray());
+            completedParts.add(parts.size());
+            xml(exchange, "<CompleteMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>" + objectKey
+                    + "</Key><ETag>&quot;" + parts.size() + "-multipart&quot;</ETag></CompleteMultipartUploadResult>");
+        }
+
+        private void get(HttpExchange exchange, String objectKey) throws IOException {
+            byte[] content = objects.get(objectKey);
+            if (content == null) {
+                error(exchange, 404, "NoSuchKey");
+                return;
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int status = 200;
+            byte[] body = content;
+            if (range != null) {
+                ranges.add(range);
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                int start = Integer.parseInt(bounds[0]);
+                int end = Math.min(Integer.parseInt(bounds[1]), content.length - 1);
+                body = Arrays.copyOfRange(content, start, end + 1);
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range",
+                        "bytes " + start + "-" + end + "/" + content.length);
+            }
+            objectHeaders(exchange, objectKey, content);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        }
+
+        private void head(HttpExchange exchange, String objectKey) throws IOException {
+            byte[] content = objects.get(objectKey);
+            if (content == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            objectHeaders(exchange, objectKey, content);
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+            exchange.sendResponseHeaders(200, -1);
+        }
+
+        private void delete(HttpExchange exchange, String objectKey, Map<String, String> query) throws IOException {
+            if (query.containsKey("uploadId")) {
+                uploads.remove(query.get("uploadId"));
+            } else {
+                objects.remove(objectKey);
+                lastModified.remove(objectKey);
+            }
+            exchange.sendResponseHeaders(204, -1);
+        }
+
+        private void store(String objectKey, byte[] content) {
+            objects.put(objectKey, content);
+            lastModified.put(objectKey, System.currentTimeMillis());
+        }
+
+        private void objectHeaders(HttpExchange exchange, String objectKey, byte[] content) {
+            exchange.getResponseHeaders().set("ETag", etag(content));
+            exchange.getResponseHeaders().set("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME
+                    .format(Instant.ofEpochMilli(lastModified.get(objectKey)).atOffset(ZoneOffset.UTC)));
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        }
+
+        // 明文 HTTP 下 SDK 用 aws-chunked 编码发送带签名的请求体
+        private static byte[] body(HttpExchange exchange) throws IOException {
+            byte[] raw = exchange.getRequestBody().readAllBytes();
+            String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+            if (contentSha256 == null || !contentSha256.startsWith("STREAMING-")) {
+                return raw;
+            }
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            int position = 0;
+            while (position < raw.length) {
+                int lineEnd = indexOfCrlf(raw, position);
+                String header = new String(raw, position, lineEnd - position, StandardCharsets.US_ASCII);
+                int size = Integer.parseInt(header.split(";")[0], 16);
+                if (size == 0) {
+                    break;
+                }
+                decoded.write(raw, lineEnd + 2, size);
+                position = lineEnd + 2 + size + 2;
+            }
+            return decoded.toByteArray();
+        }
+
+        private static int indexOfCrlf(byte[] data, int from) {
+            for (int i = from; i < data.length - 1; i++) {
+                if (data[i] == '\r' && data[i + 1] == '\n') {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("aws-chunked 编码不完整");
+        }
+
+        private static void xml(HttpExchange exchange, String body) throws IOException {
+            byte[] bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/xml");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+
+        private static void error(HttpExchange exchange, int status, String code) throws IOException {
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>" + code
+                    + "</Code><Message>" + code + "</Message></Error>").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/xml");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        private static String etag(byte[] content) {
+            try {
+                return "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content)) + "\"";
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static Map<String, String> query(String rawQuery) {
+            Map<String, String> query = new HashMap<>();
+            if (rawQuery == null) {
+                return query;
+            }
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                query.put(eq < 0 ? pair : pair.substring(0, eq), eq < 0 ? "" : pair.substring(eq + 1));
+            }
+            return query;
+        }
+    }
+}
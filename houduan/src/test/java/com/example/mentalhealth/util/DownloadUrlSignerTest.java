@@ -0,0 +1,153 @@
+package com.example.mentalhealth.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * 签名链接：篡改内容摘要、问卷 ID、过期、错误签名都被拒绝；签名密钥与 JWT 密钥分开；签名按定长比较
+ */
+class DownloadUrlSignerTest {
+
+    private static final String JWT_SECRET = "jwt-secret-used-for-tokens";
+    private static final String SHA256 = "a".repeat(64);
+
+    private DownloadUrlSigner signer;
+
+    @BeforeEach
+    void setUp() {
+        signer = newSigner("");
+    }
+
+    @Test
+    void signedLinkVerifies() {
+        SignedLink link = sign(signer);
+
+        assertThat(signer.verify(link.sha256, link.name, link.type, link.expires, link.qid, link.sig)).isTrue();
+        assertThat(link.name).isEqualTo("焦虑 自评.pdf");
+    }
+
+    @Test
+    void tamperedShaIsRejected() {
+        SignedLink link = sign(signer);
+
+        assertThat(signer.verify("b".repeat(64), link.name, link.type, link.expires, link.qid, link.sig)).isFalse();
+        assertThat(signer.verify("not-a-sha", link.name, link.type, link.expires, link.qid, link.sig)).isFalse();
+        assertThat(signer.verify(link.sha256, "other.pdf", link.type, link.expires, link.qid, link.sig)).isFalse();
+        assertThat(signer.verify(link.sha256, link.name, "text/html", link.expires, link.qid, link.sig)).isFalse();
+        assertThat(signer.verify(link.sha256, link.name, link.type, link.expires + 300, link.qid, link.sig)).isFalse();
+    }
+
+    @Test
+    void questionnaireIdIsCoveredBySignature() {
+        SignedLink link = sign(signer, 42L);
+
+        assertThat(signer.verify(link.sha256, link.name, link.type, link.expires, 42L, link.sig)).isTrue();
+        assertThat(signer.verify(link.sha256, link.name, link.type, link.expires, 43L, link.sig)).isFalse();
+        assertThat(signer.verify(link.sha256, link.name, link.type, link.expires, null, link.sig)).isFalse();
+
+        // 普通文件链接不能加上问卷 ID 去刷下载次数
+        SignedLink fileLink = sign(signer);
+        assertThat(fileLink.qid).isNull();
+        assertThat(signer.verify(fileLink.sha256, fileLink.name, fileLink.type, fileLink.expires, 42L,
+                fileLink.sig)).isFalse();
+    }
+
+    @Test
+    void expiredLinkIsRejected() {
+        ReflectionTestUtils.setField(signer, "ttlSeconds", -3600L);
+        SignedLink link = sign(signer);
+
+        assertThat(link.expires).isLessThan(System.currentTimeMillis() / 1000);
+        assertThat(signer.verify(link.sha256, link.name, link.type, link.expires, link.qid, link.sig)).isFalse();
+    }
+
+    @Test
+    void wrongSignatureIsRejected() {
+        SignedLink link = sign(signer);
+        char last = link.sig.charAt(link.sig.length() - 1);
+        String flipped = link.sig.substring(0, link.sig.length() - 1) + (last == 'A' ? 'B' : 'A');
+
+        assertThat(signer.verify(link.sha256, link.name, link.type, link.expires, link.qid, flipped)).isFalse();
+        assertThat(signer.verify(link.sha256, link.name, link.type, link.expires, link.qid, link.sig + "A")).isFalse();
+        assertThat(signer.verify(link.sha256, link.name, link.type, link.expires, link.qid, "")).isFalse();
+    }
+
+    @Test
+    void signingKeyIsSeparateFromJwtSecret() {
+        SignedLink derived = sign(signer);
+
+        // 直接用 jwt.secret 作为密钥签出的链接不被接受
+        DownloadUrlSigner jwtKeyed = newSigner(JWT_SECRET);
+        SignedLink withJwtKey = sign(jwtKeyed);
+        assertThat(withJwtKey.sig).isNotEqualTo(derived.sig);
+        assertThat(signer.verify(withJwtKey.sha256, withJwtKey.name, withJwtKey.type, withJwtKey.expires,
+                withJwtKey.qid, withJwtKey.sig)).isFalse();
+
+        // 单独配置的密钥优先
+        DownloadUrlSigner configured = newSigner("separate-signing-secret");
+        assertThat(sign(configured).sig).isNotEqualTo(derived.sig);
+    }
+
+    @Test
+    void signatureIsComparedInConstantTime() {
+        SignedLink link = sign(signer);
+
+        try (MockedStatic<MessageDigest> digest = Mockito.mockStatic(MessageDigest.class, Mockito.CALLS_REAL_METHODS)) {
+            assertThat(signer.verify(link.sha256, link.name, link.type, link.expires, link.qid, link.sig)).isTrue();
+            assertThat(signer.verify(link.sha256, link.name, link.type, link.expires, link.qid, "x" + link.sig.substring(1)))
+                    .isFalse();
+
+            digest.verify(() -> MessageDigest.isEqual(any(byte[].class), any(byte[].class)), Mockito.times(2));
+        }
+    }
+
+    // 私有方法
+
+    private static DownloadUrlSigner newSigner(String signingSecret) {
+        DownloadUrlSigner signer = new DownloadUrlSigner();
+        ReflectionTestUtils.setField(signer, "signingSecret", signingSecret);
+        ReflectionTestUtils.setField(signer, "jwtSecret", JWT_SECRET);
+        ReflectionTestUtils.setField(signer, "baseUrl", "http://localhost:9000/");
+        ReflectionTestUtils.setField(signer, "ttlSeconds", 3600L);
+        signer.init();
+        return signer;
+    }
+
+    private static SignedLink sign(DownloadUrlSigner signer) {
+        return sign(signer, null);
+    }
+
+    private static SignedLink sign(DownloadUrlSigner signer, Long questionnaireId) {
+        String url = signer.sign(SHA256, "焦虑 自评.pdf", "application/pdf", questionnaireId);
+        assertThat(url).startsWith("http://localhost:9000" + DownloadUrlSigner.PATH_PREFIX + SHA256 + "?");
+        UriComponents components = UriComponentsBuilder.fromUriString(url).build();
+        return new SignedLink(SHA256, decode(components.getQueryParams().getFirst("name")),
+                decode(components.getQueryParams().getFirst("type")),
+                Long.parseLong(components.getQueryParams().getFirst("expires")),
+                questionnaireId(components.getQueryParams().getFirst("qid")),
+                components.getQueryParams().getFirst("sig"));
+    }
+
+    private static Long questionnaireId(String value) {
+        return value != null ? Long.valueOf(value) : null;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private record SignedLink(String sha256, String name, String type, long expires, Long qid, String sig) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.mentalhealth.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * 已验证 claims 缓存：命中时不再验签，条目在 token 的 exp 时刻失效
+ */
+class JwtUtilsTest {
+
+    private static final String SECRET = "jwt-utils-test-secret-at-least-256-bits-long";
+    private static final long EXPIRATION_MS = 3_600_000L;
+
+    private JwtUtils jwtUtils;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", EXPIRATION_MS);
+        ReflectionTestUtils.setField(jwtUtils, "claimsCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(jwtUtils, "meterRegistry", meterRegistry);
+        jwtUtils.init();
+    }
+
+    @Test
+    void cacheHitSkipsVerification() {
+        String token = token(new Date(System.currentTimeMillis() + 600_000));
+        Claims first = jwtUtils.getVerifiedClaims(token);
+        assertThat(first.getSubject()).isEqualTo("alice");
+
+        // 换成不可用的解析器：命中缓存时不会再调用
+        JwtParser parser = mock(JwtParser.class);
+        ReflectionTestUtils.setField(jwtUtils, "jwtParser", parser);
+
+        assertThat(jwtUtils.getVerifiedClaims(token)).isSameAs(first);
+        assertThat(jwtUtils.getUserNameFromJwtToken(token)).isEqualTo("alice");
+        verifyNoInteractions(parser);
+        assertThat(outcome("valid")).isEqualTo(1);
+        assertThat(outcome("cached")).isEqualTo(2);
+    }
+
+    @Test
+    void entryExpiresAtTokenExpiration() {
+        long remainingMs = 600_000;
+        jwtUtils.getVerifiedClaims(token(new Date(System.currentTimeMillis() + remainingMs)));
+
+        // exp 精确到秒，剩余时间最多被截掉一秒
+        assertThat(expiresAfterMs()).isBetween(remainingMs - 2_000, remainingMs);
+    }
+
+    @Test
+    void tokenWithoutExpirationIsCachedForTheIssuedLifetime() {
+        jwtUtils.getVerifiedClaims(token(null));
+
+        assertThat(expiresAfterMs()).isBetween(EXPIRATION_MS - 1_000, EXPIRATION_MS);
+    }
+
+    @Test
+    void expiredTokenIsNotServedFromCache() throws Exception {
+        long expiresAt = (System.currentTimeMillis() / 1000 + 2) * 1000;
+        String token = token(new Date(expiresAt));
+        assertThat(jwtUtils.getVerifiedClaims(token)).isNotNull();
+
+        Thread.sleep(expiresAt - System.currentTimeMillis() + 200);
+
+        assertThat(jwtUtils.getVerifiedClaims(token)).isNull();
+        assertThat(outcome("cached")).isZero();
+        assertThat(outcome("expired")).isEqualTo(1);
+    }
+
+    @Test
+    void invalidTokenIsNotCached() {
+        String token = token(new Date(System.currentTimeMillis() + 600_000));
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThat(jwtUtils.getVerifiedClaims(tampered)).isNull();
+        assertThat(jwtUtils.getVerifiedClaims(tampered)).isNull();
+        assertThat(claimsCache().estimatedSize()).isZero();
+    }
+
+    // 私有方法
+
+    private static String token(Date expiration) {
+        return Jwts.builder()
+                .setSubject("alice")
+                .setIssuedAt(new Date())
+                .setExpiration(expiration)
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<String, Claims> claimsCache() {
+        return (Cache<String, Claims>) ReflectionTestUtils.getField(jwtUtils, "verifiedClaims");
+    }
+
+    private long expiresAfterMs() {
+        Cache<String, Claims> cache = claimsCache();
+        String key = cache.asMap().keySet().iterator().next();
+        return cache.policy().expireVariably().orElseThrow()
+                .getExpiresAfter(key, TimeUnit.MILLISECONDS).orElseThrow();
+    }
+
+    private double outcome(String outcome) {
+        return meterRegistry.get("jwt.validations").tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.mentalhealth.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 游标编码：往返一致、令牌 URL 安全、格式错误被拒绝；每页大小限制在上限以内
+ */
+class KeysetCursorTest {
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        LocalDateTime time = LocalDateTime.of(2024, 3, 1, 8, 30, 15, 123_456_000);
+        String token = new KeysetCursor(time, 42L).encode();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+        KeysetCursor decoded = KeysetCursor.decode(token);
+        assertThat(decoded.getTime()).isEqualTo(time);
+        assertThat(decoded.getId()).isEqualTo(42L);
+    }
+
+    @Test
+    void blankTokenMeansFirstPage() {
+        assertThat(KeysetCursor.decode(null)).isNull();
+        assertThat(KeysetCursor.decode("")).isNull();
+        assertThat(KeysetCursor.decode("  ")).isNull();
+    }
+
+    @Test
+    void malformedTokenIsRejected() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not base64!")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(encode("2024-03-01T08:30"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(encode("yesterday|1"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(encode("2024-03-01T08:30|x"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void pageSizeIsClamped() {
+        assertThat(KeysetCursor.pageSize(10)).isEqualTo(10);
+        assertThat(KeysetCursor.pageSize(100_000)).isEqualTo(KeysetCursor.MAX_PAGE_SIZE);
+        assertThatThrownBy(() -> KeysetCursor.pageSize(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // 私有方法
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.mentalhealth.util;
+
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.DelegatingServletInputStream;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 流式 multipart 解析：超限时中途停止读取、校验和不一致和请求中断时删除临时文件、文件部分之后的表单字段
+ */
+class StreamingMultipartUploadTest {
+
+    private static final String BOUNDARY = "----streaming-upload-test";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void fieldsAfterFilePartAreRead() throws Exception {
+        byte[] content = "第一次访谈记录".getBytes(StandardCharsets.UTF_8);
+        byte[] body = multipartBody(content, "文件之后的说明");
+
+        try (StreamingMultipartUpload upload = receive(request(new ByteArrayInputStream(body), body.length),
+                1024)) {
+            assertThat(upload.getField("description")).isEqualTo("文件之后的说明");
+            assertThat(upload.getOriginalName()).isEqualTo("记录.txt");
+            assertThat(upload.getSize()).isEqualTo(content.length);
+            assertThat(upload.getSha256()).isEqualTo(sha256(content));
+
+            upload.commit();
+            assertThat(Files.readAllBytes(dir.resolve("target"))).isEqualTo(content);
+        }
+        assertThat(dir.resolve("target")).exists();
+    }
+
+    @Test
+    void oversizedFileStopsReadingMidStream() throws Exception {
+        byte[] content = new byte[4 * 1024 * 1024];
+        byte[] body = multipartBody(content, "说明");
+        CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(body), Long.MAX_VALUE);
+
+        assertThatThrownBy(() -> receive(request(in, body.length), 256 * 1024))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("文件大小不能超过");
+
+        // 超过上限后立即中断，不再读取剩余的请求体
+        assertThat(in.consumed).isLessThan(body.length / 4);
+        assertThat(files()).isEmpty();
+    }
+
+    @Test
+    void checksumMismatchRemovesPartFile() throws Exception {
+        byte[] content = "需要校验的内容".getBytes(StandardCharsets.UTF_8);
+        byte[] body = multipartBody(content, null);
+        MockHttpServletRequest request = request(new ByteArrayInputStream(body), body.length);
+        request.addHeader(StreamingMultipartUpload.CHECKSUM_HEADER, sha256("其他内容".getBytes(StandardCharsets.UTF_8)));
+
+        assertThatThrownBy(() -> receive(request, 1024))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("文件校验和不一致");
+        assertThat(files()).isEmpty();
+    }
+
+    @Test
+    void matchingChecksumIsAccepted() throws Exception {
+        byte[] content = "需要校验的内容".getBytes(StandardCharsets.UTF_8);
+        byte[] body = multipartBody(content, null);
+        MockHttpServletRequest request = request(new ByteArrayInputStream(body), body.length);
+        request.addHeader(StreamingMultipartUpload.CHECKSUM_HEADER, sha256(content).toUpperCase());
+
+        try (StreamingMultipartUpload upload = receive(request, 1024)) {
+            assertThat(upload.getSha256()).isEqualTo(sha256(content));
+        }
+        // 未提交的临时文件在关闭时删除
+        assertThat(files()).isEmpty();
+    }
+
+    @Test
+    void abortedRequestRemovesPartFile() throws Exception {
+        byte[] content = new byte[1024 * 1024];
+        byte[] body = multipartBody(content, null);
+        // 客户端断开：读到一半时抛出 IOException
+        CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(body), body.length / 2);
+
+        assertThatThrownBy(() -> receive(request(in, body.length), body.length))
+                .isInstanceOf(IOException.class);
+        assertThat(files()).isEmpty();
+    }
+
+    // 私有方法
+
+    private StreamingMultipartUpload receive(MockHttpServletRequest request, long maxFileSize) throws IOException {
+        return StreamingMultipartUpload.receive(request, "file", maxFileSize, name -> dir.resolve("target"));
+    }
+
+    private Stream<Path> files() throws IOException {
+        return Files.list(dir).toList().stream();
+    }
+
+    private static MockHttpServletRequest request(InputStream in, int contentLength) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/files/upload/stream") {
+            @Override
+            public ServletInputStream getInputStream() {
+                return new DelegatingServletInputStream(in);
+            }
+        };
+        request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+        request.addHeader("Content-Length", contentLength);
+        return request;
+    }
+
+    // 文件部分在前、description 字段在后
+    private static byte[] multipartBody(byte[] content, String description) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"记录.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(content);
+        out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        if (description != null) {
+            out.write(("--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"description\"\r\n\r\n"
+                    + description + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        out.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] content) {
+        MessageDigest digest = Checksums.newSha256();
+        digest.update(content);
+        return Checksums.hex(digest);
+    }
+
+    // 统计已读取的字节数，读到 failAfter 时模拟连接中断
+    private static class CountingInputStream extends InputStream {
+
+        private final InputStream delegate;
+        private final long failAfter;
+        private long consumed;
+
+        CountingInputStream(InputStream delegate, long failAfter) {
+            this.delegate = delegate;
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (consumed >= failAfter) {
+                throw new IOException("连接已断开");
+            }
+            int read = delegate.read(b, off, (int) Math.min(len, failAfter - consumed));
+            if (read > 0) {
+                consumed += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.mentalhealth.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TagBitmapIndexTest {
+
+    private TagBitmapIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TagBitmapIndex();
+        index.put(1L, Set.of("焦虑", "睡眠"), "PUBLISHED", "焦虑", 10L);
+        index.put(2L, Set.of("焦虑"), "DRAFT", "焦虑", 10L);
+        index.put(3L, Set.of("抑郁", "睡眠"), "PUBLISHED", "抑郁", 20L);
+        // 稀疏的大ID
+        index.put(2_000_000_000L, Set.of("睡眠"), "PUBLISHED", "睡眠", 20L);
+    }
+
+    @Test
+    void matchAllIntersectsTags() {
+        assertThat(index.query(List.of("焦虑", "睡眠"), true, null, null, null)).containsExactly(1L);
+        assertThat(index.query(List.of("焦虑", "不存在"), true, null, null, null)).isEmpty();
+    }
+
+    @Test
+    void matchAnyUnitesTagsNewestFirst() {
+        assertThat(index.query(List.of("焦虑", "抑郁"), false, null, null, null)).containsExactly(3L, 2L, 1L);
+        assertThat(index.query(List.of("睡眠"), false, null, null, null)).containsExactly(2_000_000_000L, 3L, 1L);
+    }
+
+    @Test
+    void statusAndCategoryNarrowResults() {
+        assertThat(index.query(List.of("焦虑"), true, "PUBLISHED", null, null)).containsExactly(1L);
+        assertThat(index.query(List.of("睡眠"), false, "PUBLISHED", "抑郁", null)).containsExactly(3L);
+        assertThat(index.query(List.of(), true, "DRAFT", null, null)).containsExactly(2L);
+        assertThat(index.query(List.of(), true, "ARCHIVED", null, null)).isEmpty();
+        assertThat(index.query(List.of(), true, null, null, null)).containsExactly(2_000_000_000L, 3L, 2L, 1L);
+    }
+
+    @Test
+    void creatorLimitsResultsToOwnQuestionnaires() {
+        assertThat(index.query(List.of("焦虑"), true, null, null, 10L)).containsExactly(2L, 1L);
+        assertThat(index.query(List.of("焦虑"), true, "DRAFT", null, 20L)).isEmpty();
+        assertThat(index.query(List.of(), true, null, null, 30L)).isEmpty();
+    }
+
+    @Test
+    void putReplacesAndRemoveDropsEntry() {
+        index.put(2L, Set.of("抑郁"), "PUBLISHED", "抑郁", 20L);
+        index.remove(3L);
+
+        assertThat(index.query(List.of(), true, null, null, 10L)).containsExactly(1L);
+        assertThat(index.query(List.of("焦虑"), true, null, null, null)).containsExactly(1L);
+        assertThat(index.query(List.of("抑郁"), true, "PUBLISHED", "抑郁", null)).containsExactly(2L);
+        assertThat(index.tagCounts()).containsEntry("焦虑", 1).containsEntry("抑郁", 1).containsEntry("睡眠", 2);
+    }
+
+    @Test
+    void queryResultIsIndependentOfIndex() {
+        List<Long> before = index.query(List.of("焦虑"), true, null, null, null);
+        index.remove(1L);
+
+        assertThat(before).containsExactly(2L, 1L);
+        assertThat(index.query(List.of("焦虑"), true, null, null, null)).containsExactly(2L);
+    }
+
+    @Test
+    void negativeIdIsRejected() {
+        assertThatThrownBy(() -> index.put(-1L, Set.of("焦虑"), "PUBLISHED", null, 10L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}